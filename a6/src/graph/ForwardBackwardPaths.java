@@ -0,0 +1,140 @@
+package graph;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Supports incrementally solving for shortest paths both _from_ and _to_ a single vertex in a graph
+ * with vertices of type `VertexType` and edges of type `EdgeType`.  The forward search (over the
+ * graph's edges) and the backward search (over a reversed view of them) run concurrently, so when
+ * two cores are available both sets of paths are found in about the time of one.  Unlike reversing
+ * paths found by a forward search, this gives correct results for weighers that are not symmetric.
+ * <p>
+ * The weigher must be safe to use from two threads at once.
+ */
+public class ForwardBackwardPaths<VertexType extends Vertex<EdgeType>, EdgeType extends Edge> {
+
+    /**
+     * Solver for paths leading from our starting vertex.
+     */
+    private final ShortestPaths<VertexType, EdgeType> forward;
+
+    /**
+     * Solver for paths leading to our starting vertex (found as paths from it in the reversed
+     * graph).
+     */
+    private final ShortestPaths<ReversedGraph.ReversedVertex<EdgeType>,
+            ReversedGraph.ReversedEdge<EdgeType>> backward;
+
+    /**
+     * Runs the backward search while the calling thread runs the forward one.
+     */
+    private final Executor executor;
+
+    /**
+     * Create a new solver for paths to and from vertices of `graph` whose edge weights are
+     * determined by `weigher`.  The backward half of each search will be run by `executor` (or by
+     * the caller, if `executor` does not get to it first).  If `graph` is not a `ReversibleGraph`,
+     * an index of its incoming edges is built first (see `ReversedGraph.of()`).
+     */
+    public ForwardBackwardPaths(Graph<VertexType> graph, Weigher<EdgeType> weigher,
+            Executor executor) {
+        this.executor = executor;
+        forward = new ShortestPaths<>(graph, weigher);
+        backward = new ShortestPaths<>(ReversedGraph.of(graph), ReversedGraph.weigher(weigher));
+    }
+
+    /**
+     * Change the vertex that paths lead from and to to the vertex with ID `id`, discarding results
+     * for any previous vertex.
+     */
+    public void setStart(int id) {
+        forward.setStart(id);
+        backward.setStart(id);
+    }
+
+    /**
+     * Extend both searches, each settling at most `maxToSettle` more vertices, until paths from our
+     * starting vertex to all of `forwardTargets` and paths from all of `backwardTargets` to our
+     * starting vertex are known.  The two searches run concurrently if our executor has a thread
+     * free; if none has started the backward search by the time the forward one is done, the
+     * calling thread runs it too (so the caller may itself be one of the executor's threads).
+     * Returns whether all of those paths are known.  Requires that a starting vertex has been set.
+     */
+    public boolean extendSearchTo(int[] forwardTargets, int[] backwardTargets, int maxToSettle) {
+        CompletableFuture<Boolean> backwardDone = new CompletableFuture<>();
+        AtomicBoolean claimed = new AtomicBoolean();
+        Runnable backwardHalf = () -> {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    backwardDone.complete(backward.extendSearchTo(backwardTargets, maxToSettle));
+                } catch (RuntimeException | Error e) {
+                    backwardDone.completeExceptionally(e);
+                }
+            }
+        };
+        executor.execute(backwardHalf);
+        boolean forwardDone = forward.extendSearchTo(forwardTargets, maxToSettle);
+        backwardHalf.run();
+        // Propagates any exception thrown by the backward search
+        return backwardDone.join() && forwardDone;
+    }
+
+    /**
+     * Return whether both searches have settled every vertex they can reach.
+     */
+    public boolean allPathsFound() {
+        return forward.allPathsFound() && backward.allPathsFound();
+    }
+
+    /**
+     * Return the sequence of vertex IDs along the shortest known path from our starting vertex to
+     * the vertex with ID `dstId` (inclusive).  Throws IllegalArgumentException if no such path is
+     * known.
+     */
+    public List<Integer> pathFrom(int dstId) {
+        return forward.pathTo(dstId);
+    }
+
+    /**
+     * Return the sequence of vertex IDs along the shortest known path from the vertex with ID
+     * `srcId` to our starting vertex (inclusive).  Throws IllegalArgumentException if no such path
+     * is known.
+     */
+    public List<Integer> pathTo(int srcId) {
+        return backward.pathTo(srcId).reversed();
+    }
+
+    /**
+     * Return the weight of the shortest known path from our starting vertex to the vertex with ID
+     * `dstId`, or -1 if none is known.
+     */
+    public int distanceFrom(int dstId) {
+        return forward.distanceTo(dstId);
+    }
+
+    /**
+     * Return the weight of the shortest known path from the vertex with ID `srcId` to our starting
+     * vertex, or -1 if none is known.
+     */
+    public int distanceTo(int srcId) {
+        return backward.distanceTo(srcId);
+    }
+
+    /**
+     * Return the solver for paths leading from our starting vertex.
+     */
+    public ShortestPaths<VertexType, EdgeType> forward() {
+        return forward;
+    }
+
+    /**
+     * Return the solver for paths leading to our starting vertex (as paths from it in a reversed
+     * view of the graph).
+     */
+    public ShortestPaths<?, ?> backward() {
+        return backward;
+    }
+}
@@ -0,0 +1,444 @@
+package graph;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Answers many point-to-point shortest-path queries in one graph quickly using ALT (A* search with
+ * Landmarks and the Triangle inequality).  Distances from and to a handful of landmark vertices are
+ * precomputed once; since, for any landmark `L`, `d(v,t) >= d(L,t) - d(L,v)` and
+ * `d(v,t) >= d(v,L) - d(t,L)`, they give A* a lower bound on the remaining distance from any vertex
+ * `v` to the target `t`.  Each query then settles only a narrow corridor around its path rather
+ * than everything closer than its target.  Landmarks on the periphery of the graph give the best
+ * bounds.
+ * <p>
+ * Preprocessing takes two full searches per landmark (run in parallel), and the results take
+ * `8 * landmarkCount` bytes per vertex.  Instances are immutable once constructed, so queries may
+ * run on any number of threads at once (each with its own `Query`), provided the weigher is
+ * thread-safe and its weights are non-negative.
+ */
+public class LandmarkPaths<VertexType extends Vertex<EdgeType>, EdgeType extends Edge> {
+
+    /**
+     * The graph we answer queries in.
+     */
+    private final Graph<VertexType> graph;
+
+    /**
+     * Weigher to use in order to query edge weights in our graph.
+     */
+    private final Weigher<EdgeType> weigher;
+
+    /**
+     * How long a precomputation search runs between checks of whether it should pause, beyond
+     * the checks made every few hundred settled vertices.
+     */
+    private static final Duration pauseCheckPeriod = Duration.ofMillis(100);
+
+    /**
+     * `fromLandmark[i][id]` is the distance from the `i`th landmark to the vertex with ID `id`, or
+     * -1 if it is not reachable from that landmark.
+     */
+    private final int[][] fromLandmark;
+
+    /**
+     * `toLandmark[i][id]` is the distance from the vertex with ID `id` to the `i`th landmark, or -1
+     * if that landmark is not reachable from it.
+     */
+    private final int[][] toLandmark;
+
+    /**
+     * Create an instance answering queries in `graph` (with weights from `weigher`) using the
+     * precomputed landmark distances `fromLandmark` and `toLandmark` (see fields).
+     */
+    private LandmarkPaths(Graph<VertexType> graph, Weigher<EdgeType> weigher,
+            int[][] fromLandmark, int[][] toLandmark) {
+        this.graph = graph;
+        this.weigher = weigher;
+        this.fromLandmark = fromLandmark;
+        this.toLandmark = toLandmark;
+    }
+
+    /**
+     * Start precomputing distances from and to each of the vertices with IDs in `landmarkIds` in
+     * `graph` with weights from `weigher`, dividing the searches between as many tasks on
+     * `executor` as it has processors to run them.  Returns a future that completes with an
+     * instance for answering queries once all searches are done.  If `graph` is not a
+     * `ReversibleGraph`, an index of its incoming edges is built first (see `ReversedGraph.of()`).
+     * Requires `landmarkIds` is not empty.
+     */
+    public static <V extends Vertex<E>, E extends Edge> CompletableFuture<LandmarkPaths<V, E>>
+            precompute(Graph<V> graph, Weigher<E> weigher, int[] landmarkIds, Executor executor) {
+        return precompute(graph, weigher, landmarkIds, executor, () -> false);
+    }
+
+    /**
+     * Start precomputing landmark distances as in `precompute(graph, weigher, landmarkIds,
+     * executor)`, but let more urgent work go first: each task checks `pause` every few hundred
+     * settled vertices and, when it returns true, gives up its thread and continues in a new task
+     * submitted to `executor` (which may hold it back until the urgent work is done).  Cancelling
+     * the returned future stops the searches at their next check.
+     */
+    public static <V extends Vertex<E>, E extends Edge> CompletableFuture<LandmarkPaths<V, E>>
+            precompute(Graph<V> graph, Weigher<E> weigher, int[] landmarkIds, Executor executor,
+            BooleanSupplier pause) {
+        assert landmarkIds.length > 0;
+        ReversedGraph<E> reversed = ReversedGraph.of(graph);
+        Weigher<ReversedGraph.ReversedEdge<E>> reversedWeigher = ReversedGraph.weigher(weigher);
+        List<Supplier<ShortestPaths<?, ?>>> solvers = List.of(
+                () -> new ShortestPaths<>(graph, weigher),
+                () -> new ShortestPaths<>(reversed, reversedWeigher));
+
+        // Search `k` finds distances from landmark `k` if `k < n`, else to landmark `k - n`
+        int n = landmarkIds.length;
+        int[][] distances = new int[2 * n][];
+        CompletableFuture<LandmarkPaths<V, E>> result = new CompletableFuture<>();
+        int taskCount = Math.min(2 * n, Runtime.getRuntime().availableProcessors());
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < taskCount; ++t) {
+            DistanceSearches task = new DistanceSearches(solvers, landmarkIds, distances, t,
+                    taskCount, executor, pause, result);
+            tasks.add(task.finished);
+            executor.execute(task);
+        }
+        CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).whenComplete(
+                (ignored, e) -> {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(new LandmarkPaths<>(graph, weigher,
+                                Arrays.copyOfRange(distances, 0, n),
+                                Arrays.copyOfRange(distances, n, 2 * n)));
+                    }
+                });
+        return result;
+    }
+
+    /**
+     * A share of the searches of `precompute()`, run one after another as a task that gives up
+     * its thread whenever asked to pause.  Searches in each direction reuse one solver, created
+     * when first needed.
+     */
+    private static class DistanceSearches implements Runnable {
+
+        /**
+         * Create solvers for searching forward (element 0) and in the reversed graph (element 1).
+         */
+        private final List<Supplier<ShortestPaths<?, ?>>> newSolvers;
+
+        /**
+         * The solvers created so far (null until needed), indexed like `newSolvers`.
+         */
+        private final ShortestPaths<?, ?>[] solvers = new ShortestPaths<?, ?>[2];
+
+        /**
+         * The landmarks' vertex IDs, and the distances found by every search (indexed as in
+         * `precompute()`), which we fill in for our share of them.
+         */
+        private final int[] landmarkIds;
+        private final int[][] distances;
+
+        /**
+         * Our share of the searches is every `stride`th one, starting at `next`, the index of the
+         * search we are currently running.
+         */
+        private int next;
+        private final int stride;
+
+        /**
+         * Whether the search with index `next` has been started.
+         */
+        private boolean started;
+
+        /**
+         * Where we continue after pausing, and when to pause.
+         */
+        private final Executor executor;
+        private final BooleanSupplier pause;
+
+        /**
+         * The result our searches contribute to; once it is done (e.g. cancelled), we stop.
+         */
+        private final CompletableFuture<?> result;
+
+        /**
+         * Completes once our share of the searches is done (or when one fails).
+         */
+        final CompletableFuture<Void> finished = new CompletableFuture<>();
+
+        DistanceSearches(List<Supplier<ShortestPaths<?, ?>>> newSolvers, int[] landmarkIds,
+                int[][] distances, int first, int stride, Executor executor,
+                BooleanSupplier pause, CompletableFuture<?> result) {
+            this.newSolvers = newSolvers;
+            this.landmarkIds = landmarkIds;
+            this.distances = distances;
+            this.next = first;
+            this.stride = stride;
+            this.executor = executor;
+            this.pause = pause;
+            this.result = result;
+        }
+
+        /**
+         * Continue our searches until they are done or we are asked to pause, in which case we
+         * resubmit ourselves to our executor, or until our result is abandoned.
+         */
+        @Override
+        public void run() {
+            try {
+                while (next < distances.length) {
+                    if (result.isDone()) {
+                        return;
+                    }
+                    int direction = next / landmarkIds.length;
+                    if (solvers[direction] == null) {
+                        solvers[direction] = newSolvers.get(direction).get();
+                    }
+                    ShortestPaths<?, ?> solver = solvers[direction];
+                    if (!started) {
+                        solver.setStart(landmarkIds[next % landmarkIds.length]);
+                        started = true;
+                    }
+                    if (!solver.advance(pauseCheckPeriod,
+                            () -> pause.getAsBoolean() || result.isDone())) {
+                        if (pause.getAsBoolean() && !result.isDone()) {
+                            executor.execute(this);
+                            return;
+                        }
+                        continue;
+                    }
+                    distances[next] = solver.distances();
+                    started = false;
+                    next += stride;
+                }
+                finished.complete(null);
+            } catch (RuntimeException | Error e) {
+                finished.completeExceptionally(e);
+            }
+        }
+    }
+
+    /**
+     * Return the number of landmarks we use.
+     */
+    public int landmarkCount() {
+        return fromLandmark.length;
+    }
+
+    /**
+     * Return a lower bound on the distance from the vertex with ID `fromId` to the vertex with ID
+     * `toId`, derived from our landmark distances (0 if they give no information).
+     */
+    public int lowerBound(int fromId, int toId) {
+        int bound = 0;
+        for (int i = 0; i < fromLandmark.length; ++i) {
+            int[] from = fromLandmark[i];
+            if (from[fromId] >= 0 && from[toId] >= 0) {
+                bound = Math.max(bound, from[toId] - from[fromId]);
+            }
+            int[] to = toLandmark[i];
+            if (to[fromId] >= 0 && to[toId] >= 0) {
+                bound = Math.max(bound, to[fromId] - to[toId]);
+            }
+        }
+        return bound;
+    }
+
+    /**
+     * Return a new query solver.  Each solver holds arrays the size of the graph (cleared in time
+     * proportional to each query's size), so reuse one for a sequence of queries on one thread.
+     */
+    public Query newQuery() {
+        return new Query();
+    }
+
+    /**
+     * Start finding the shortest paths from each vertex with ID `srcIds[i]` to the vertex with ID
+     * `dstIds[i]`, dividing the queries between as many tasks on `executor` as it has processors
+     * to run them.  Returns a future that completes with the paths as lists of vertex IDs
+     * (including both ends), in the same order as the queries, with null for any query whose
+     * destination is unreachable.  Requires `srcIds` and `dstIds` have the same length.
+     */
+    public CompletableFuture<List<List<Integer>>> pathsBetween(int[] srcIds, int[] dstIds,
+            Executor executor) {
+        assert srcIds.length == dstIds.length;
+        int n = srcIds.length;
+        int taskCount = Math.max(1, Math.min(n, Runtime.getRuntime().availableProcessors()));
+        List<CompletableFuture<List<List<Integer>>>> tasks = new ArrayList<>();
+        for (int t = 0; t < taskCount; ++t) {
+            int begin = (int) ((long) n * t / taskCount);
+            int end = (int) ((long) n * (t + 1) / taskCount);
+            tasks.add(CompletableFuture.supplyAsync(() -> {
+                Query query = newQuery();
+                List<List<Integer>> paths = new ArrayList<>();
+                for (int i = begin; i < end; ++i) {
+                    paths.add(query.pathBetween(srcIds[i], dstIds[i]));
+                }
+                return paths;
+            }, executor));
+        }
+        return CompletableFuture.allOf(tasks.toArray(CompletableFuture[]::new)).thenApply(
+                ignored -> {
+                    List<List<Integer>> paths = new ArrayList<>(n);
+                    for (CompletableFuture<List<List<Integer>>> task : tasks) {
+                        paths.addAll(task.join());
+                    }
+                    return paths;
+                });
+    }
+
+    /**
+     * Finds shortest paths between pairs of vertices with A* search, guided by our landmark bounds.
+     * Must only be used by one thread at a time.
+     */
+    public class Query {
+
+        /**
+         * `distances[id]` is the weight of the shortest known path from the current query's
+         * source to the vertex with ID `id`, or -1 if no such path is known.
+         */
+        private final int[] distances;
+
+        /**
+         * `predecessors[id]` is the ID of the penultimate vertex along that path, or -1 if `id` is
+         * the source or no path to it is known.
+         */
+        private final int[] predecessors;
+
+        /**
+         * IDs of vertices whose shortest paths from the source are known.  Since our bounds are
+         * consistent, a vertex never needs to be revisited once settled.
+         */
+        private final BitSet settledIds;
+
+        /**
+         * Discovered vertices, ordered by the known distance to them plus the lower bound on the
+         * distance from them to the target.
+         */
+        private final MinQueue<Integer> frontier = new HeapMinQueue<>();
+
+        /**
+         * IDs of the vertices discovered by the current query (the first `touchedCount`
+         * elements), so that the next query can reset only those.
+         */
+        private int[] touched;
+        private int touchedCount;
+
+        /**
+         * The number of vertices settled by the most recent query.
+         */
+        private int settledCount;
+
+        private Query() {
+            distances = new int[graph.vertexCount()];
+            predecessors = new int[graph.vertexCount()];
+            settledIds = new BitSet(graph.vertexCount());
+            Arrays.fill(distances, -1);
+            Arrays.fill(predecessors, -1);
+            touched = new int[Math.min(1024, Math.max(1, graph.vertexCount()))];
+        }
+
+        /**
+         * Return the sequence of vertex IDs along a shortest path from the vertex with ID `srcId`
+         * to the vertex with ID `dstId` (inclusive), or null if there is no such path.
+         */
+        public List<Integer> pathBetween(int srcId, int dstId) {
+            if (!search(srcId, dstId)) {
+                return null;
+            }
+            List<Integer> path = new ArrayList<>();
+            for (int current = dstId; current >= 0; current = predecessors[current]) {
+                path.add(current);
+            }
+            return path.reversed();
+        }
+
+        /**
+         * Return the weight of a shortest path from the vertex with ID `srcId` to the vertex with
+         * ID `dstId`, or -1 if there is no such path.
+         */
+        public int distanceBetween(int srcId, int dstId) {
+            return search(srcId, dstId) ? distances[dstId] : -1;
+        }
+
+        /**
+         * Return the number of vertices settled by the most recent query (a measure of how much
+         * work it took).
+         */
+        public int settledCount() {
+            return settledCount;
+        }
+
+        /**
+         * Search from the vertex with ID `srcId` until the vertex with ID `dstId` is settled,
+         * returning whether it was reached.
+         */
+        private boolean search(int srcId, int dstId) {
+            reset();
+            touch(srcId);
+            distances[srcId] = 0;
+            frontier.addOrUpdate(srcId, lowerBound(srcId, dstId));
+            while (!frontier.isEmpty()) {
+                int currentId = frontier.remove();
+                if (settledIds.get(currentId)) {
+                    continue;
+                }
+                settledIds.set(currentId);
+                settledCount += 1;
+                if (currentId == dstId) {
+                    return true;
+                }
+                for (EdgeType e : graph.getVertex(currentId).outgoingEdges()) {
+                    int targetId = e.endId();
+                    if (settledIds.get(targetId)) {
+                        continue;
+                    }
+                    int targetDist = distances[currentId] + weigher.weight(e);
+                    if (distances[targetId] == -1 || targetDist < distances[targetId]) {
+                        if (distances[targetId] == -1) {
+                            touch(targetId);
+                        }
+                        distances[targetId] = targetDist;
+                        predecessors[targetId] = currentId;
+                        frontier.addOrUpdate(targetId,
+                                targetDist + lowerBound(targetId, dstId));
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Clear the results of the previous query, visiting only the vertices it discovered.
+         */
+        private void reset() {
+            for (int i = 0; i < touchedCount; ++i) {
+                int id = touched[i];
+                distances[id] = -1;
+                predecessors[id] = -1;
+                settledIds.clear(id);
+            }
+            touchedCount = 0;
+            settledCount = 0;
+            frontier.clear();
+        }
+
+        /**
+         * Record that the vertex with ID `id` has just been discovered.
+         */
+        private void touch(int id) {
+            if (touchedCount == touched.length) {
+                touched = Arrays.copyOf(touched, 2 * touched.length);
+            }
+            touched[touchedCount] = id;
+            touchedCount += 1;
+        }
+    }
+}
@@ -8,7 +8,9 @@ import java.util.List;
 public class PathfindingSnapshot {
 
     /**
-     * The ID of the starting vertex for the pathfinding operation that produced this snapshot.
+     * The ID of the starting vertex for the pathfinding operation that produced this snapshot.  If
+     * that search started from several seed vertices, this is the first of them, and each path
+     * starts from whichever seed is nearest to its destination.
      */
     private final int startId;
 
@@ -20,24 +22,52 @@ public class PathfindingSnapshot {
 
     /**
      * `predecessors[id]` is the ID of the penultimate vertex along the shortest known path from the
-     * starting vertex to the vertex with ID `id`, or -1 if `id==startId` or if no such path is
-     * currently known.
+     * starting vertex to the vertex with ID `id`, or -1 if `id` is a starting vertex or if no such
+     * path is currently known.
      */
     private final int[] predecessors;
 
     /**
      * `settledIds[id]` is true if the shortest path has been determined from the starting vertex to
-     * the vertex with ID `id`.
+     * the vertex with ID `id`.  Null for views of a solver's progress, whose settled vertices are
+     * those closer than `settledBelow`.
      */
     private final BitSet settledIds;
 
+    /**
+     * For views of a solver's progress (see `ShortestPaths.progress()`), which share the solver's
+     * `distances` and `predecessors` while its search continues, the distance below which every
+     * discovered vertex had been settled when the view was taken (`Integer.MAX_VALUE` if the
+     * search had finished).  Unused for other snapshots.
+     */
+    private final int settledBelow;
+
+    /**
+     * The IDs of the discovered vertices, in the order they were discovered (only the first
+     * `discoveredCount` elements are meaningful).  May be shared with the solver that took this
+     * snapshot and with its later snapshots of the same search, which only ever append to it.
+     */
+    private final int[] discoveryOrder;
+
+    /**
+     * The number of meaningful elements in `discoveryOrder`.
+     */
+    private final int discoveredCount;
+
+    /**
+     * Identifies the search this snapshot was taken from; snapshots of the same search (whose
+     * discovery orders extend one another) share it.
+     */
+    private final Object search;
+
     /**
      * Create a new snapshot of the progress of finding shortest paths from a vertex with ID
      * `startId`. `distances[id]` must specify the total weight of the shortest known path so far
      * from the start to the vertex with ID `id`, while `predecessors[id]` must provide the ID of
      * the penultimate vertex along that path (both should be -1 if no path reaching that vertex has
      * yet been found).  `settledIds` must specify for which vertex IDs the true shortest path has
-     * been found.  Note that defensive copies are made of all arguments.
+     * been found.  Note that defensive copies are made of all arguments.  The discovered vertices
+     * are taken to have been discovered in order of ID, in a search of their own.
      */
     public PathfindingSnapshot(int startId, int[] distances, int[] predecessors,
             BitSet settledIds) {
@@ -45,6 +75,62 @@ public class PathfindingSnapshot {
         this.predecessors = Arrays.copyOf(predecessors, predecessors.length);
         this.distances = Arrays.copyOf(distances, distances.length);
         this.settledIds = (BitSet) settledIds.clone();
+        settledBelow = 0;
+        int[] order = new int[distances.length];
+        int count = 0;
+        for (int id = 0; id < distances.length; ++id) {
+            if (distances[id] >= 0) {
+                order[count++] = id;
+            }
+        }
+        discoveryOrder = order;
+        discoveredCount = count;
+        search = new Object();
+    }
+
+    /**
+     * Create a snapshot as above, whose vertices were discovered in the order given by the first
+     * `discoveredCount` elements of `discoveryOrder`, in the search identified by `search`.
+     * `discoveryOrder` is not copied, so its first `discoveredCount` elements must never be
+     * changed.
+     */
+    PathfindingSnapshot(int startId, int[] distances, int[] predecessors, BitSet settledIds,
+            int[] discoveryOrder, int discoveredCount, Object search) {
+        this.startId = startId;
+        this.predecessors = Arrays.copyOf(predecessors, predecessors.length);
+        this.distances = Arrays.copyOf(distances, distances.length);
+        this.settledIds = (BitSet) settledIds.clone();
+        settledBelow = 0;
+        this.discoveryOrder = discoveryOrder;
+        this.discoveredCount = discoveredCount;
+        this.search = search;
+    }
+
+    /**
+     * Create a view of a search's progress as described for `settledBelow`.  None of the arrays are
+     * copied: `distances` and `predecessors` may continue to change, except at vertices closer
+     * than `settledBelow`, and the first `discoveredCount` elements of `discoveryOrder` must never
+     * be changed.
+     */
+    private PathfindingSnapshot(int startId, int[] distances, int[] predecessors,
+            int settledBelow, int[] discoveryOrder, int discoveredCount, Object search) {
+        this.startId = startId;
+        this.distances = distances;
+        this.predecessors = predecessors;
+        settledIds = null;
+        this.settledBelow = settledBelow;
+        this.discoveryOrder = discoveryOrder;
+        this.discoveredCount = discoveredCount;
+        this.search = search;
+    }
+
+    /**
+     * Return a view of a search's progress that shares its arrays; see the constructor above.
+     */
+    static PathfindingSnapshot view(int startId, int[] distances, int[] predecessors,
+            int settledBelow, int[] discoveryOrder, int discoveredCount, Object search) {
+        return new PathfindingSnapshot(startId, distances, predecessors, settledBelow,
+                discoveryOrder, discoveredCount, search);
     }
 
     /**
@@ -53,7 +139,8 @@ public class PathfindingSnapshot {
      * path's distance will be the shortest possible.  Throws IllegalArgumentException if the
      * destination vertex has not been discovered.  Note that, while the returned path may not be
      * the unique path with that distance, an instance of this class will always return the same
-     * path when queried for the same destination.
+     * path when queried for the same destination (for views of a search's progress, only if the
+     * destination is settled).
      */
     public List<Integer> pathTo(int dstId) {
         if (!discovered(dstId)) {
@@ -61,27 +148,42 @@ public class PathfindingSnapshot {
         }
         List<Integer> path = new ArrayList<>();
         int current = dstId;
-        while (current != startId) {
+        while (current >= 0) {
             path.add(current);
             current = predecessors[current];
         }
-        path.add(startId);
 
         return path.reversed();
     }
 
     /**
      * Return the total weight along the shortest known path from the starting vertex to the vertex
-     * with ID `dstId`.  If no path is known, return -1.  Requires `dstId` is a valid vertex ID in
-     * the graph.
+     * with ID `dstId`.  If no path is known, return -1.  For views of a search's progress, this is
+     * only stable if the vertex is settled.  Requires `dstId` is a valid vertex ID in the graph.
      */
     public int distanceTo(int dstId) {
         return distances[dstId];
     }
 
+    /**
+     * Return the ID of the penultimate vertex along the shortest known path from the starting
+     * vertex to the vertex with ID `id`, or -1 if `id` is the starting vertex or has not been
+     * discovered.
+     */
+    public int predecessor(int id) {
+        return predecessors[id];
+    }
+
+    /**
+     * Return the number of vertices in the graph this snapshot was taken from.
+     */
+    public int vertexCount() {
+        return distances.length;
+    }
+
     /**
      * Return the ID of the starting vertex for the pathfinding operation that produced this
-     * snapshot.
+     * snapshot (the first seed vertex, if it started from several).
      */
     public int start() {
         return startId;
@@ -91,7 +193,8 @@ public class PathfindingSnapshot {
      * Return whether a path is known from the starting vertex to the vertex with ID `id`.
      */
     public boolean discovered(int id) {
-        return predecessors[id] >= 0 || id == startId;
+        // Checking distance rather than predecessor also covers starting vertices
+        return distances[id] >= 0;
     }
 
     /**
@@ -99,6 +202,46 @@ public class PathfindingSnapshot {
      * to the vertex with ID `id`.
      */
     public boolean settled(int id) {
+        if (settledIds == null) {
+            int distance = distances[id];
+            return distance >= 0 && distance < settledBelow;
+        }
         return settledIds.get(id);
     }
+
+    /**
+     * Return whether this snapshot records the distances and predecessors of the vertices that
+     * had been discovered but not settled, so that a search can be resumed from them.  Views of a
+     * search's progress do not, unless the search had finished.
+     */
+    public boolean frontierKnown() {
+        return settledIds != null || settledBelow == Integer.MAX_VALUE;
+    }
+
+    /**
+     * Return the number of vertices that had been discovered when this snapshot was taken
+     * (including any that have since been rediscovered after edge weights changed, so this may
+     * exceed the number for which `discovered()` is true).
+     */
+    public int discoveredCount() {
+        return discoveredCount;
+    }
+
+    /**
+     * Return the ID of the `i`th vertex to be discovered.  Requires `i` is in
+     * [0..`discoveredCount()`).
+     */
+    public int discoveredId(int i) {
+        assert i >= 0 && i < discoveredCount;
+        return discoveryOrder[i];
+    }
+
+    /**
+     * Return whether this snapshot was taken from the same search as `earlier`, and no earlier
+     * than it, so that the vertices `earlier` had discovered are the first `earlier.
+     * discoveredCount()` vertices discovered by this snapshot, in the same order.
+     */
+    public boolean continues(PathfindingSnapshot earlier) {
+        return search == earlier.search && discoveredCount >= earlier.discoveredCount;
+    }
 }
@@ -0,0 +1,124 @@
+package graph;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.function.IntFunction;
+
+/**
+ * A view of a directed graph with edges of type `EdgeType` in which the direction of every edge is
+ * reversed.  Shortest paths from a vertex in this view are shortest paths _to_ that vertex in the
+ * original graph (read in reverse).  Reversed edges wrap the original edges so that weighers for
+ * the original graph can still be used (see `weigher()`).
+ */
+public class ReversedGraph<EdgeType extends Edge>
+        implements Graph<ReversedGraph.ReversedVertex<EdgeType>> {
+
+    /**
+     * The number of vertices in the original graph.
+     */
+    private final int vertexCount;
+
+    /**
+     * Maps the ID of a vertex to the edges leading to it in the original graph.
+     */
+    private final IntFunction<Iterable<EdgeType>> incomingEdges;
+
+    /**
+     * Create a reversed view of `graph`, which must be able to enumerate incoming edges itself.
+     */
+    public ReversedGraph(ReversibleGraph<?, EdgeType> graph) {
+        this(graph.vertexCount(), graph::incomingEdges);
+    }
+
+    private ReversedGraph(int vertexCount, IntFunction<Iterable<EdgeType>> incomingEdges) {
+        this.vertexCount = vertexCount;
+        this.incomingEdges = incomingEdges;
+    }
+
+    /**
+     * Return a reversed view of `graph`.  If `graph` is a `ReversibleGraph`, the view is created
+     * directly; otherwise, an index of every vertex's incoming edges is built first, which takes
+     * time and space proportional to the number of edges in `graph`.
+     */
+    @SuppressWarnings("unchecked")
+    public static <EdgeType extends Edge> ReversedGraph<EdgeType> of(
+            Graph<? extends Vertex<EdgeType>> graph) {
+        if (graph instanceof ReversibleGraph<?, ?> reversible) {
+            // A reversible graph of `Vertex<EdgeType>`s must enumerate `EdgeType`s in both
+            //  directions.
+            return new ReversedGraph<>((ReversibleGraph<?, EdgeType>) reversible);
+        }
+        List<List<EdgeType>> index = new ArrayList<>(graph.vertexCount());
+        for (int id = 0; id < graph.vertexCount(); ++id) {
+            index.add(new ArrayList<>());
+        }
+        for (int id = 0; id < graph.vertexCount(); ++id) {
+            for (EdgeType e : graph.getVertex(id).outgoingEdges()) {
+                index.get(e.endId()).add(e);
+            }
+        }
+        return new ReversedGraph<>(graph.vertexCount(), index::get);
+    }
+
+    /**
+     * Return a weigher for the edges of a reversed graph that gives each reversed edge the weight
+     * that `weigher` gives to the original edge.
+     */
+    public static <EdgeType extends Edge> Weigher<ReversedEdge<EdgeType>> weigher(
+            Weigher<EdgeType> weigher) {
+        return edge -> weigher.weight(edge.original());
+    }
+
+    @Override
+    public int vertexCount() {
+        return vertexCount;
+    }
+
+    @Override
+    public ReversedVertex<EdgeType> getVertex(int id) {
+        assert id >= 0 && id < vertexCount;
+        return new ReversedVertex<>(id, incomingEdges.apply(id));
+    }
+
+    /**
+     * A vertex in a reversed graph whose outgoing edges are the reversals of the edges in
+     * `incoming`, which lead to the vertex with ID `id` in the original graph.
+     */
+    public record ReversedVertex<EdgeType extends Edge>(int id, Iterable<EdgeType> incoming)
+            implements Vertex<ReversedEdge<EdgeType>> {
+
+        @Override
+        public Iterable<ReversedEdge<EdgeType>> outgoingEdges() {
+            return () -> new Iterator<>() {
+                private final Iterator<EdgeType> it = incoming.iterator();
+
+                @Override
+                public boolean hasNext() {
+                    return it.hasNext();
+                }
+
+                @Override
+                public ReversedEdge<EdgeType> next() {
+                    return new ReversedEdge<>(it.next());
+                }
+            };
+        }
+    }
+
+    /**
+     * An edge in a reversed graph that leads from the destination of `original` to its source.
+     */
+    public record ReversedEdge<EdgeType extends Edge>(EdgeType original) implements Edge {
+
+        @Override
+        public int startId() {
+            return original.endId();
+        }
+
+        @Override
+        public int endId() {
+            return original.startId();
+        }
+    }
+}
@@ -0,0 +1,17 @@
+package graph;
+
+/**
+ * A directed graph that can efficiently enumerate the edges leading _to_ each of its vertices, in
+ * addition to the outgoing edges provided by its vertices.  This allows searching it "backwards"
+ * (see `ReversedGraph`) without first building an index of incoming edges.
+ */
+public interface ReversibleGraph<VertexType extends Vertex<EdgeType>, EdgeType extends Edge>
+        extends Graph<VertexType> {
+
+    /**
+     * Return an object supporting iteration over all of the edges connecting another vertex in this
+     * graph to the vertex with ID `id`.  That vertex serves as the "destination" vertex for each
+     * such edge.
+     */
+    Iterable<EdgeType> incomingEdges(int id);
+}
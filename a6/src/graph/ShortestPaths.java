@@ -1,7 +1,11 @@
 package graph;
 
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.BitSet;
+import java.util.List;
+import java.util.function.BooleanSupplier;
 
 /**
  * Supports incrementally solving for shortest paths from a starting vertex in a graph with vertices
@@ -10,6 +14,13 @@ import java.util.BitSet;
  */
 public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends Edge> {
 
+    /**
+     * The number of vertices settled between checks of the clock and cancellation token in
+     * time-budgeted searches.  Small enough that a check happens well within a millisecond on
+     * any reasonable graph, large enough that the checks themselves cost almost nothing.
+     */
+    private static final int pollInterval = 256;
+
     /**
      * The graph we are searching for paths in.
      */
@@ -22,7 +33,7 @@ public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends
 
     /**
      * The ID of the starting vertex for our current search, or -1 if no starting vertex has yet
-     * been selected.
+     * been selected.  If the search started from several seed vertices, this is the first of them.
      */
     private int startId;
 
@@ -30,14 +41,14 @@ public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends
      * `distances[id]` is the weight of the shortest known path from our starting vertex to the
      * vertex with ID `id`, or -1 if no such path is currently known.
      */
-    private final int[] distances;
+    private int[] distances;
 
     /**
      * `predecessors[id]` is the ID of the penultimate vertex along the shortest known path from our
-     * starting vertex to the vertex with ID `id`, or -1 if `id==startId` or if no such path is
-     * currently known.
+     * starting vertex to the vertex with ID `id`, or -1 if `id` is a starting vertex (whose
+     * shortest known path is itself) or if no such path is currently known.
      */
-    private final int[] predecessors;
+    private int[] predecessors;
 
     /**
      * Queue of vertex IDs currently known to be reachable from the starting vertex but for whom the
@@ -50,7 +61,64 @@ public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends
      * `settledIds.get(id)` is true if the shortest path has been determined from our starting
      * vertex to the vertex with ID `id`.
      */
-    private final BitSet settledIds;
+    private BitSet settledIds;
+
+    /**
+     * The number of vertices whose IDs are set in `settledIds`.
+     */
+    private int settledTotal;
+
+    /**
+     * The distance from our starting vertex to the most recently settled vertex (0 if none have
+     * been settled).  Since vertices are settled in order of distance, every vertex closer than
+     * this has been settled.
+     */
+    private int settledRadius;
+
+    /**
+     * IDs of the vertices whose entries in `distances` have been set since the last reset, in the
+     * order they were discovered (only the first `touchedCount` elements are meaningful).  This
+     * lets us reset in time proportional to the size of the previous search rather than the size of
+     * the graph, which matters when one solver is reused for many small, goal-bounded searches.
+     */
+    private int[] touched;
+
+    /**
+     * The number of meaningful elements in `touched`.
+     */
+    private int touchedCount;
+
+    /**
+     * Whether `touched` has been shared with a snapshot, in which case its meaningful elements
+     * must not be overwritten: the next reset starts a new array instead of reusing it.
+     */
+    private boolean touchedShared;
+
+    /**
+     * Whether `distances` and `predecessors` have been shared with a progress view (see
+     * `progress()`), in which case the entries of settled vertices must not be changed: the next
+     * reset or repair starts new arrays instead of reusing them.
+     */
+    private boolean arraysShared;
+
+    /**
+     * Identifies our current search in the snapshots taken of it.  Replaced whenever results are
+     * discarded or revised, so that snapshots from before then do not claim to be continued by
+     * those from after.
+     */
+    private Object search;
+
+    /**
+     * A view of our graph's incoming edges, used by `repair()`.  Created on first use.
+     */
+    private ReversedGraph<EdgeType> reversed;
+
+    /**
+     * Marks the vertices being re-solved by `repair()`, which clears each mark it sets before
+     * returning, so that repairs need not allocate or scan anything the size of our graph.
+     * Created on first use.
+     */
+    private BitSet affectedIds;
 
     /**
      * Create a new shortest paths solver for the graph `graph` whose edge weights are determined by
@@ -62,6 +130,9 @@ public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends
         distances = new int[graph.vertexCount()];
         predecessors = new int[graph.vertexCount()];
         settledIds = new BitSet(graph.vertexCount());
+        Arrays.fill(distances, -1);
+        Arrays.fill(predecessors, -1);
+        touched = new int[Math.min(1024, Math.max(1, graph.vertexCount()))];
 
         frontier = new HeapMinQueue<>();
 
@@ -70,22 +141,88 @@ public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends
 
     /**
      * Clear any intermediate pathfinding results in preparation for finding paths from a new
-     * starting point.
+     * starting point.  Only the vertices discovered by the previous search are visited.
      */
     private void reset() {
-        Arrays.fill(distances, -1);
-        Arrays.fill(predecessors, -1);
+        if (arraysShared) {
+            distances = new int[vertexCount()];
+            predecessors = new int[vertexCount()];
+            settledIds = new BitSet(vertexCount());
+            Arrays.fill(distances, -1);
+            Arrays.fill(predecessors, -1);
+            arraysShared = false;
+        } else {
+            for (int i = 0; i < touchedCount; ++i) {
+                int id = touched[i];
+                distances[id] = -1;
+                predecessors[id] = -1;
+                settledIds.clear(id);
+            }
+        }
+        touchedCount = 0;
+        if (touchedShared) {
+            touched = new int[Math.min(1024, Math.max(1, vertexCount()))];
+            touchedShared = false;
+        }
+        search = new Object();
         frontier.clear();
-        settledIds.clear();
+        settledTotal = 0;
+        settledRadius = 0;
         startId = -1;
     }
 
+    /**
+     * Record that the vertex with ID `id` has just been discovered (its distance is about to be
+     * set for the first time since the last reset).
+     */
+    private void markTouched(int id) {
+        if (touchedCount == touched.length) {
+            touched = Arrays.copyOf(touched, 2 * touched.length);
+        }
+        touched[touchedCount] = id;
+        touchedCount += 1;
+    }
+
     /**
      * Return the number of vertices for which the final shortest paths from the current starting
      * point are known.
      */
     public int settledCount() {
-        return settledIds.cardinality();
+        return settledTotal;
+    }
+
+    /**
+     * Return whether the shortest path from the current starting point to the vertex with ID `id`
+     * is known.
+     */
+    public boolean settled(int id) {
+        return settledIds.get(id);
+    }
+
+    /**
+     * Return the weight of the shortest known path from the current starting point to the vertex
+     * with ID `id`, or -1 if no path to it is known yet.  The distance is final if `settled(id)`.
+     */
+    public int distanceTo(int id) {
+        return distances[id];
+    }
+
+    /**
+     * Return a copy of the weights of the shortest known paths from the current starting point to
+     * every vertex, indexed by vertex ID (-1 where no path is known yet).  Cheaper than a snapshot
+     * when only distances are needed.
+     */
+    public int[] distances() {
+        return distances.clone();
+    }
+
+    /**
+     * Return the distance from the current starting point to the farthest vertex settled so far.
+     * Shortest paths are known to every vertex closer than this, so comparing it to the distance of
+     * a target vertex gives a measure of a goal-bounded search's progress.
+     */
+    public int settledRadius() {
+        return settledRadius;
     }
 
     /**
@@ -112,10 +249,214 @@ public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends
     public void setStart(int startId) {
         reset();
         this.startId = startId;
+        markTouched(startId);
         distances[startId] = 0;
         frontier.addOrUpdate(startId, 0);
     }
 
+    /**
+     * Change our starting point to the set of seed vertices with IDs in `seedIds`, discarding any
+     * pathfinding results from any previous starting point.  A single search from the seeds finds,
+     * for every vertex, the shortest path from whichever seed is nearest to it, which is much
+     * cheaper than searching from each seed in turn.  Requires `seedIds` is not empty.
+     */
+    public void setStart(int[] seedIds) {
+        setStart(seedIds, new int[seedIds.length]);
+    }
+
+    /**
+     * Change our starting point to the set of seed vertices with IDs in `seedIds`, as in
+     * `setStart(int[])`, but treat each seed as already being `initialDistances[i]` away from the
+     * start (as if a virtual start vertex were connected to each seed by an edge of that weight).
+     * A seed may therefore end up with a predecessor if it is cheaper to reach from another seed.
+     * If a seed is listed more than once, its smallest initial distance is used.  Requires
+     * `seedIds` is not empty and `initialDistances` has the same length, with non-negative
+     * elements.
+     */
+    public void setStart(int[] seedIds, int[] initialDistances) {
+        assert seedIds.length > 0;
+        assert seedIds.length == initialDistances.length;
+        reset();
+        startId = seedIds[0];
+        for (int i = 0; i < seedIds.length; ++i) {
+            int id = seedIds[i];
+            int dist = initialDistances[i];
+            assert dist >= 0;
+            if (distances[id] == -1) {
+                markTouched(id);
+            } else if (distances[id] <= dist) {
+                continue;
+            }
+            distances[id] = dist;
+            frontier.addOrUpdate(id, dist);
+        }
+    }
+
+    /**
+     * Continue the search that produced `snapshot`, discarding any pathfinding results from any
+     * previous starting point.  Vertices that `snapshot` had discovered but not settled are
+     * returned to the frontier, so extending the search from here gives the same results as if it
+     * had never been interrupted.  If `snapshot` does not record its frontier (see
+     * `PathfindingSnapshot.frontierKnown()`), only its settled vertices are taken from it, and the
+     * frontier is found again by relaxing their edges.  Requires `snapshot` was taken from a search
+     * in our graph with our weigher.
+     */
+    public void resume(PathfindingSnapshot snapshot) {
+        assert snapshot.vertexCount() == vertexCount();
+        reset();
+        startId = snapshot.start();
+        boolean frontierKnown = snapshot.frontierKnown();
+        for (int id = 0; id < vertexCount(); ++id) {
+            boolean settled = snapshot.settled(id);
+            if (!settled && !(frontierKnown && snapshot.discovered(id))) {
+                continue;
+            }
+            markTouched(id);
+            distances[id] = snapshot.distanceTo(id);
+            predecessors[id] = snapshot.predecessor(id);
+            if (settled) {
+                settledIds.set(id);
+                settledTotal += 1;
+                settledRadius = Math.max(settledRadius, distances[id]);
+            } else {
+                frontier.addOrUpdate(id, distances[id]);
+            }
+        }
+        if (!frontierKnown) {
+            for (int i = 0, count = touchedCount; i < count; ++i) {
+                int id = touched[i];
+                for (EdgeType e : graph.getVertex(id).outgoingEdges()) {
+                    int targetId = e.endId();
+                    if (settledIds.get(targetId)) {
+                        continue;
+                    }
+                    int targetDist = distances[id] + weigher.weight(e);
+                    if (distances[targetId] == -1) {
+                        markTouched(targetId);
+                    } else if (targetDist >= distances[targetId]) {
+                        continue;
+                    }
+                    distances[targetId] = targetDist;
+                    predecessors[targetId] = id;
+                    frontier.addOrUpdate(targetId, targetDist);
+                }
+            }
+        }
+    }
+
+    /**
+     * Update our completed search after the weights of edges leading into the vertices with IDs in
+     * `changedIds` have changed (increased or decreased), re-solving only the part of the
+     * shortest-path tree that the change can affect rather than searching again from scratch.
+     * Returns the number of vertices that had to be settled again.
+     * <p>
+     * Paths to vertices outside the subtrees of the changed vertices do not use any changed edge,
+     * so their distances are still valid upper bounds.  The affected subtrees are cleared, their
+     * vertices re-seeded from their unaffected in-neighbors, and a search from those seeds then
+     * settles them again, also lowering the distances of any other vertices that became cheaper
+     * to reach.  Seed vertices keep their initial distances.  Incoming edges are enumerated via
+     * `ReversedGraph.of()` (building an index of them on first use if our graph is not a
+     * `ReversibleGraph`).  Takes time proportional to the size of the affected subtrees, not of our
+     * graph.  Requires all paths have been found and weights are non-negative.
+     */
+    public int repair(int[] changedIds) {
+        assert allPathsFound();
+        if (reversed == null) {
+            reversed = ReversedGraph.of(graph);
+        }
+        // Vertices may lose their settled status, which our discovery order and any views of our
+        //  progress cannot express
+        search = new Object();
+        if (arraysShared) {
+            distances = distances.clone();
+            predecessors = predecessors.clone();
+            settledIds = (BitSet) settledIds.clone();
+            arraysShared = false;
+        }
+        if (affectedIds == null) {
+            affectedIds = new BitSet(vertexCount());
+        }
+
+        // Find the vertices whose tree paths pass through a changed vertex by walking down the tree
+        //  from each changed vertex (a vertex's children are the targets of its outgoing edges
+        //  whose predecessor it is), so only the affected subtrees are visited
+        int[] affected = new int[Math.max(16, changedIds.length)];
+        int affectedCount = 0;
+        for (int id : changedIds) {
+            // Seeds are never affected, since their distances do not depend on any edge
+            if (predecessors[id] >= 0 && !affectedIds.get(id)) {
+                affectedIds.set(id);
+                affected[affectedCount++] = id;
+            }
+        }
+        for (int i = 0; i < affectedCount; ++i) {
+            int v = affected[i];
+            for (EdgeType e : graph.getVertex(v).outgoingEdges()) {
+                int child = e.endId();
+                if (predecessors[child] != v || affectedIds.get(child)) {
+                    continue;
+                }
+                if (affectedCount == affected.length) {
+                    affected = Arrays.copyOf(affected, 2 * affectedCount);
+                }
+                affectedIds.set(child);
+                affected[affectedCount++] = child;
+            }
+        }
+
+        for (int i = 0; i < affectedCount; ++i) {
+            int v = affected[i];
+            distances[v] = -1;
+            predecessors[v] = -1;
+            settledIds.clear(v);
+        }
+        settledTotal -= affectedCount;
+        for (int i = 0; i < affectedCount; ++i) {
+            int v = affected[i];
+            for (EdgeType e : reversed.getVertex(v).incoming()) {
+                int u = e.startId();
+                if (affectedIds.get(u) || distances[u] < 0) {
+                    continue;
+                }
+                int d = distances[u] + weigher.weight(e);
+                if (distances[v] == -1 || d < distances[v]) {
+                    distances[v] = d;
+                    predecessors[v] = u;
+                }
+            }
+            if (distances[v] >= 0) {
+                frontier.addOrUpdate(v, distances[v]);
+            }
+        }
+        for (int i = 0; i < affectedCount; ++i) {
+            affectedIds.clear(affected[i]);
+        }
+
+        int resettled = 0;
+        while (!frontier.isEmpty()) {
+            int currentId = frontier.remove();
+            settledIds.set(currentId);
+            settledTotal += 1;
+            settledRadius = Math.max(settledRadius, distances[currentId]);
+            resettled += 1;
+            for (EdgeType e : graph.getVertex(currentId).outgoingEdges()) {
+                int targetId = e.endId();
+                int targetDist = distances[currentId] + weigher.weight(e);
+                if (distances[targetId] == -1 || targetDist < distances[targetId]) {
+                    if (settledIds.get(targetId)) {
+                        // An unaffected vertex that is now cheaper to reach
+                        settledIds.clear(targetId);
+                        settledTotal -= 1;
+                    }
+                    distances[targetId] = targetDist;
+                    predecessors[targetId] = currentId;
+                    frontier.addOrUpdate(targetId, targetDist);
+                }
+            }
+        }
+        return resettled;
+    }
+
     /**
      * Find the shortest paths from `start` to every vertex in our graph reachable from `start`,
      * returning an object from which those paths can be queried.
@@ -140,30 +481,192 @@ public class ShortestPaths<VertexType extends Vertex<EdgeType>, EdgeType extends
      * starting vertex has been set.
      */
     public PathfindingSnapshot extendSearch(int maxToSettle) {
+        advance(maxToSettle);
+        return snapshot();
+    }
+
+    /**
+     * Extend our search as in `extendSearch()`, but without taking a snapshot of the results
+     * (which costs time proportional to the size of the graph).  Returns whether shortest paths
+     * have now been found for all reachable vertices.  Requires `maxToSettle` is non-negative and
+     * that a starting vertex has been set.
+     */
+    public boolean advance(int maxToSettle) {
         assert startId >= 0;
         assert maxToSettle >= 0;
         int settledCount = 0;
 
         while (!frontier.isEmpty() && settledCount< maxToSettle) {
-            int currentId = frontier.remove(); //closest vertex on the frontier
-            if (settledIds.get(currentId)){ //already settled
-                continue;
+            if (settleNext() >= 0) {
+                settledCount ++;
             }
-            settledIds.set(currentId);
-            settledCount ++;
-            for (EdgeType e : graph.getVertex(currentId).outgoingEdges()) { //iterate over the closest vertex's neighbors
-                int targetId = e.endId(); //id for the neighbor in this iteration
-                if (!settledIds.get(targetId)) {//neighbor is not settled
-                    int weight = weigher.weight(e);
-                    int targetDist = distances[currentId] + weight;
-                    if (distances[targetId] == -1 || targetDist < distances[targetId]) {//neighbor isn't settled or current distance is less than neighbor distance
-                        distances[targetId] = targetDist;
-                        predecessors[targetId] = currentId;
-                        frontier.addOrUpdate(targetId, targetDist);
+        }
+        return allPathsFound();
+    }
+
+    /**
+     * Extend our search until `budget` has elapsed (or all paths have been found), then return a
+     * snapshot of our results as in `extendSearch(int)`.  Since the cost of settling a vertex
+     * depends on the graph and weigher, this is a steadier way of pacing a search than a fixed
+     * vertex count.  Requires that a starting vertex has been set.
+     */
+    public PathfindingSnapshot extendSearch(Duration budget) {
+        advance(budget, () -> false);
+        return snapshot();
+    }
+
+    /**
+     * Extend our search until `budget` has elapsed, `cancelled` returns true, or all paths have
+     * been found, whichever comes first, without taking a snapshot.  Both the clock and
+     * `cancelled` are checked every few hundred settled vertices, so the search overruns its budget
+     * (or continues after cancellation) only briefly.  Returns whether shortest paths have now been
+     * found for all reachable vertices.  Requires that a starting vertex has been set.
+     */
+    public boolean advance(Duration budget, BooleanSupplier cancelled) {
+        assert startId >= 0;
+        long deadline = System.nanoTime() + budget.toNanos();
+        while (!frontier.isEmpty()) {
+            for (int i = 0; i < pollInterval && !frontier.isEmpty(); ++i) {
+                settleNext();
+            }
+            if (cancelled.getAsBoolean() || System.nanoTime() - deadline >= 0) {
+                break;
+            }
+        }
+        return allPathsFound();
+    }
+
+    /**
+     * Return a snapshot of our current pathfinding results, from which paths can be queried even
+     * after this solver moves on to a new starting point.  Requires that a starting vertex has been
+     * set.  The snapshot shares our record of the order in which vertices were discovered (which we
+     * only append to until the next reset), so it costs nothing to include.
+     */
+    public PathfindingSnapshot snapshot() {
+        assert startId >= 0;
+        touchedShared = true;
+        return(new PathfindingSnapshot(startId, distances, predecessors, settledIds, touched,
+                touchedCount, search));
+    }
+
+    /**
+     * Return a view of our current pathfinding results for reporting the progress of a search
+     * that may continue on another thread, which, unlike a snapshot, costs nothing to take: it
+     * shares our arrays rather than copying them.  It only reports the vertices closer than our
+     * most recently settled one as settled (all of them, once all paths have been found), since
+     * their entries never change again in this search, and does not record the frontier.  Queries
+     * about other vertices may see later results of the search.  Our arrays are replaced, rather
+     * than cleared, at the next reset or repair, so views stay valid after we move on.  Requires
+     * that a starting vertex has been set, and that views are passed to other threads safely
+     * (e.g. through a synchronized queue).
+     */
+    public PathfindingSnapshot progress() {
+        assert startId >= 0;
+        touchedShared = true;
+        arraysShared = true;
+        int settledBelow = frontier.isEmpty() ? Integer.MAX_VALUE : settledRadius;
+        return PathfindingSnapshot.view(startId, distances, predecessors, settledBelow, touched,
+                touchedCount, search);
+    }
+
+    /**
+     * Return the ID of the starting vertex for our current search, or -1 if none has been set.
+     */
+    public int start() {
+        return startId;
+    }
+
+    /**
+     * Find the shortest paths from `startId` to each of the vertices in `targetIds`, stopping as
+     * soon as they are all known (or every reachable vertex has been settled).  Only vertices
+     * closer than the farthest target are settled, so this is much cheaper than `findAllPaths()`
+     * when the targets are near the start.  Query the results with `pathTo()` and `distanceTo()`.
+     */
+    public void findPathsTo(int startId, int... targetIds) {
+        setStart(startId);
+        extendSearchTo(targetIds, vertexCount());
+    }
+
+    /**
+     * Extend our search as in `extendSearch()`, settling at most `maxToSettle` more vertices, but
+     * stop as soon as shortest paths are known to all of the vertices in `targetIds`.  Returns
+     * whether they are all known.  Unlike `extendSearch()`, no snapshot is made, so this is
+     * suitable for small searches in large graphs.  Requires `maxToSettle` is non-negative and that
+     * a starting vertex has been set.
+     */
+    public boolean extendSearchTo(int[] targetIds, int maxToSettle) {
+        assert startId >= 0;
+        assert maxToSettle >= 0;
+        int settledCount = 0;
+        while (!allSettled(targetIds)) {
+            if (frontier.isEmpty() || settledCount == maxToSettle) {
+                return false;
+            }
+            if (settleNext() >= 0) {
+                settledCount ++;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Return the sequence of vertex IDs along the shortest known path from the current starting
+     * point to the vertex with ID `dstId` (inclusive).  Throws IllegalArgumentException if no path
+     * to that vertex is known.  See `PathfindingSnapshot.pathTo()`.
+     */
+    public List<Integer> pathTo(int dstId) {
+        if (distances[dstId] < 0) {
+            throw new IllegalArgumentException();
+        }
+        // The path starts at whichever seed it leads back to (there is only one unless the search
+        //  was started from several)
+        List<Integer> path = new ArrayList<>();
+        for (int current = dstId; current >= 0; current = predecessors[current]) {
+            path.add(current);
+        }
+        return path.reversed();
+    }
+
+    /**
+     * Return whether shortest paths to all of the vertices with IDs in `ids` are known.
+     */
+    private boolean allSettled(int[] ids) {
+        for (int id : ids) {
+            if (!settledIds.get(id)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Remove the closest vertex from the frontier and, if it was not already settled, settle it and
+     * relax its outgoing edges.  Returns the ID of the newly settled vertex, or -1 if the removed
+     * vertex had already been settled.  Requires the frontier is not empty.
+     */
+    private int settleNext() {
+        int currentId = frontier.remove(); //closest vertex on the frontier
+        if (settledIds.get(currentId)){ //already settled
+            return -1;
+        }
+        settledIds.set(currentId);
+        settledTotal += 1;
+        settledRadius = distances[currentId];
+        for (EdgeType e : graph.getVertex(currentId).outgoingEdges()) { //iterate over the closest vertex's neighbors
+            int targetId = e.endId(); //id for the neighbor in this iteration
+            if (!settledIds.get(targetId)) {//neighbor is not settled
+                int weight = weigher.weight(e);
+                int targetDist = distances[currentId] + weight;
+                if (distances[targetId] == -1 || targetDist < distances[targetId]) {//neighbor isn't settled or current distance is less than neighbor distance
+                    if (distances[targetId] == -1) {
+                        markTouched(targetId);
                     }
+                    distances[targetId] = targetDist;
+                    predecessors[targetId] = currentId;
+                    frontier.addOrUpdate(targetId, targetDist);
                 }
             }
         }
-        return(new PathfindingSnapshot(startId, distances, predecessors, settledIds));
+        return currentId;
     }
 }
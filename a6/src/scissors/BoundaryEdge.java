@@ -0,0 +1,9 @@
+package scissors;
+
+import graph.Edge;
+
+/**
+ * An edge between neighboring boundary fragments (see `BoundaryGraph`), with its precomputed
+ * `weight`.
+ */
+record BoundaryEdge(int startId, int endId, int weight) implements Edge {}
@@ -0,0 +1,14 @@
+package scissors;
+
+import graph.Vertex;
+
+/**
+ * A vertex of the `BoundaryGraph` `graph`: the boundary fragment with index `id`.
+ */
+record BoundaryFragment(BoundaryGraph graph, int id) implements Vertex<BoundaryEdge> {
+
+    @Override
+    public Iterable<BoundaryEdge> outgoingEdges() {
+        return graph.edgesFrom(id);
+    }
+}
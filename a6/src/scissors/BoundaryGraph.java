@@ -0,0 +1,445 @@
+package scissors;
+
+import graph.Graph;
+import graph.Weigher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The graph of boundaries between the superpixels of an image.  Each vertex is a "fragment": the
+ * whole stretch of boundary shared by one pair of adjacent superpixels, located at the boundary
+ * pixel nearest its middle.  Two fragments are joined where they meet at a junction of three or
+ * more superpixels, so a path through this graph follows superpixel borders from junction to
+ * junction.  With superpixels `s` pixels across there are roughly `3 / s^2` fragments per pixel,
+ * so searches here are two to three orders of magnitude smaller than in the `ImageGraph`.
+ * <p>
+ * Each fragment has a unit cost: the mean weight of the pixel edges running along it.  The weight
+ * of an edge between two fragments is the mean of their unit costs times the distance between
+ * them, approximating the weight of the pixel path between them along the boundary.  Instances are
+ * immutable once constructed.
+ */
+class BoundaryGraph implements Graph<BoundaryFragment> {
+
+    /**
+     * The number of sums accumulated for each fragment: of its crossings' x and y coordinates,
+     * of its crossings, of the weights sampled beside them, and of those samples.
+     */
+    private static final int sumCount = 5;
+
+    /**
+     * The superpixels whose boundaries we represent.
+     */
+    private final Superpixels superpixels;
+
+    /**
+     * `labelsA[f]` and `labelsB[f]` are the labels of the superpixels on either side of fragment
+     * `f`, with `labelsA[f] < labelsB[f]`.
+     */
+    private final int[] labelsA;
+    private final int[] labelsB;
+
+    /**
+     * `positionIds[f]` is the ID of the pixel nearest the middle of fragment `f`.
+     */
+    private final int[] positionIds;
+
+    /**
+     * `unitCosts[f]` is the mean weight of the pixel edges running along fragment `f`.
+     */
+    private final double[] unitCosts;
+
+    /**
+     * Adjacency in compressed form: the neighbors of fragment `f` are
+     * `neighbors[neighborStart[f]..neighborStart[f + 1])`, reached by edges with the corresponding
+     * `neighborWeights`.
+     */
+    private final int[] neighborStart;
+    private final int[] neighbors;
+    private final int[] neighborWeights;
+
+    /**
+     * Fragments bordering each superpixel, in compressed form: those bordering the superpixel
+     * labeled `l` are `labelFragments[labelStart[l]..labelStart[l + 1])`.
+     */
+    private final int[] labelStart;
+    private final int[] labelFragments;
+
+    /**
+     * Find the boundaries between `superpixels` of the image of `graph`, costing them with
+     * `weigher`.  Each pass over the pixels runs in parallel over bands of rows (as in
+     * `Superpixels`), whose results are then combined in order, so the graph does not depend on
+     * how many bands there are.  Requires `weigher` is thread-safe.
+     */
+    BoundaryGraph(Superpixels superpixels, ImageGraph graph, Weigher<ImageEdge> weigher) {
+        this.superpixels = superpixels;
+        int height = superpixels.height();
+        int bandCount = Math.min(height, 4 * Runtime.getRuntime().availableProcessors());
+        Band[] bands = new Band[bandCount];
+        for (int band = 0; band < bandCount; ++band) {
+            bands[band] = new Band((int) ((long) height * band / bandCount),
+                    (int) ((long) height * (band + 1) / bandCount));
+        }
+
+        // Pass 1: each band numbers the fragments crossing its rows and accumulates their extents
+        //  and costs.  Fragments are then numbered in order of their first crossing, with the
+        //  sums of all bands they cross combined.
+        Arrays.stream(bands).parallel().forEach(band -> band.accumulate(weigher));
+        int crossed = Arrays.stream(bands).mapToInt(band -> band.count).sum();
+        LongIntMap fragmentIds = new LongIntMap(crossed);
+        long[] keys = new long[crossed];
+        long[] sums = new long[sumCount * crossed];
+        for (Band band : bands) {
+            band.fragmentIds = new int[band.count];
+            for (int i = 0; i < band.count; ++i) {
+                int f = fragmentIds.putIfAbsent(band.keys[i], fragmentIds.size());
+                if (f == LongIntMap.absent) {
+                    f = fragmentIds.size() - 1;
+                    keys[f] = band.keys[i];
+                }
+                band.fragmentIds[i] = f;
+                for (int k = 0; k < sumCount; ++k) {
+                    sums[sumCount * f + k] += band.sums[sumCount * i + k];
+                }
+            }
+        }
+        int n = fragmentIds.size();
+        labelsA = new int[n];
+        labelsB = new int[n];
+        unitCosts = new double[n];
+        for (int f = 0; f < n; ++f) {
+            labelsA[f] = (int) (keys[f] >> 32);
+            labelsB[f] = (int) keys[f];
+            long weightSum = sums[sumCount * f + 3];
+            long samples = sums[sumCount * f + 4];
+            unitCosts[f] = (samples > 0) ? Math.max(1.0, (double) weightSum / samples) : 1.0;
+        }
+
+        // Pass 2: place each fragment at its crossing nearest its centroid (the first such
+        //  crossing, in raster order)
+        Arrays.stream(bands).parallel().forEach(band -> band.place(sums));
+        positionIds = new int[n];
+        long[] bestDistance = new long[n];
+        Arrays.fill(bestDistance, Long.MAX_VALUE);
+        for (Band band : bands) {
+            for (int i = 0; i < band.count; ++i) {
+                int f = band.fragmentIds[i];
+                if (band.bestDistance[i] < bestDistance[f]) {
+                    bestDistance[f] = band.bestDistance[i];
+                    positionIds[f] = band.bestIds[i];
+                }
+            }
+        }
+
+        // Pass 3: join fragments meeting at each junction (a 2x2 block spanning 3+ superpixels)
+        long[] edges = Arrays.stream(bands).parallel().map(band -> band.junctions(fragmentIds))
+                .flatMapToLong(Arrays::stream).sorted().distinct().toArray();
+        neighborStart = new int[n + 1];
+        neighbors = new int[edges.length];
+        neighborWeights = new int[edges.length];
+        for (int i = 0; i < edges.length; ++i) {
+            int f = (int) (edges[i] >> 32);
+            int g = (int) edges[i];
+            neighborStart[f + 1] += 1;
+            neighbors[i] = g;
+            neighborWeights[i] = (int) Math.max(1,
+                    Math.round((unitCosts[f] + unitCosts[g]) / 2 * distance(f, g)));
+        }
+        for (int f = 0; f < n; ++f) {
+            neighborStart[f + 1] += neighborStart[f];
+        }
+
+        // Index fragments by the superpixels they border
+        labelStart = new int[superpixels.regionCount() + 1];
+        for (int f = 0; f < n; ++f) {
+            labelStart[labelsA[f] + 1] += 1;
+            labelStart[labelsB[f] + 1] += 1;
+        }
+        for (int l = 0; l < superpixels.regionCount(); ++l) {
+            labelStart[l + 1] += labelStart[l];
+        }
+        labelFragments = new int[2 * n];
+        int[] fill = Arrays.copyOf(labelStart, labelStart.length - 1);
+        for (int f = 0; f < n; ++f) {
+            labelFragments[fill[labelsA[f]]++] = f;
+            labelFragments[fill[labelsB[f]]++] = f;
+        }
+    }
+
+    /**
+     * Return the key identifying the fragment between the superpixels labeled `a` and `b`.
+     */
+    private static long key(int a, int b) {
+        return ((long) Math.min(a, b) << 32) | Math.max(a, b);
+    }
+
+    /**
+     * Return 1 if the labels `a` and `b` are equal, else 0, without branching.  Requires both are
+     * non-negative (so their XOR is, and subtracting 1 only goes negative if it is 0).
+     */
+    private static int same(int a, int b) {
+        return ((a ^ b) - 1) >>> 31;
+    }
+
+    /**
+     * The rows [y0..y1) of the image, and what each pass over them finds.  Crossings between a
+     * pixel and its neighbor below belong to the band of the upper pixel.
+     */
+    private class Band {
+
+        /**
+         * The first row in this band, and the row after its last.
+         */
+        final int y0;
+        final int y1;
+
+        /**
+         * Band-local indices of the fragments crossing our rows, by key (see `key()`), and the key
+         * of each index (only the first `count` elements are meaningful).
+         */
+        final LongIntMap localIds = new LongIntMap(64);
+        long[] keys = new long[64];
+        int count;
+
+        /**
+         * `sums[sumCount * i + k]` is the `k`th sum (see `sumCount`) of the crossings of the
+         * fragment with local index `i` in our rows.
+         */
+        long[] sums = new long[sumCount * 64];
+
+        /**
+         * `fragmentIds[i]` is the index in the whole graph of the fragment with local index `i`.
+         */
+        int[] fragmentIds;
+
+        /**
+         * `bestDistance[i]` is the (scaled, squared) distance from the centroid of the fragment
+         * with local index `i` to its nearest crossing in our rows, at the pixel with ID
+         * `bestIds[i]`.
+         */
+        long[] bestDistance;
+        int[] bestIds;
+
+        Band(int y0, int y1) {
+            this.y0 = y0;
+            this.y1 = y1;
+        }
+
+        /**
+         * Number the fragments crossing our rows and sum their crossings.  Each crossing between
+         * horizontal (vertical) neighbors samples the vertical (horizontal) pixel edge beside it,
+         * which runs along the boundary.
+         */
+        void accumulate(Weigher<ImageEdge> weigher) {
+            int width = superpixels.width();
+            int height = superpixels.height();
+            for (int y = y0; y < y1; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    int id = ImageVertex.xyToId(x, y, width);
+                    int label = superpixels.labelOf(id);
+                    if (x + 1 < width && label != superpixels.labelOf(id + 1)) {
+                        add(key(label, superpixels.labelOf(id + 1)), x, y, (y + 1 < height)
+                                ? weigher.weight(new ImageEdge(id, id + width, 6)) : -1);
+                    }
+                    if (y + 1 < height && label != superpixels.labelOf(id + width)) {
+                        add(key(label, superpixels.labelOf(id + width)), x, y, (x + 1 < width)
+                                ? weigher.weight(new ImageEdge(id, id + 1, 0)) : -1);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Add a crossing at (`x`, `y`) to the sums of the fragment with key `key`, numbering it if
+         * it is new, along with the weight of the pixel edge beside it (if non-negative).
+         */
+        private void add(long key, int x, int y, int weight) {
+            int i = localIds.putIfAbsent(key, count);
+            if (i == LongIntMap.absent) {
+                i = count++;
+                if (i == keys.length) {
+                    keys = Arrays.copyOf(keys, 2 * i);
+                    sums = Arrays.copyOf(sums, 2 * sums.length);
+                }
+                keys[i] = key;
+            }
+            int s = sumCount * i;
+            sums[s] += x;
+            sums[s + 1] += y;
+            sums[s + 2] += 1;
+            if (weight >= 0) {
+                sums[s + 3] += weight;
+                sums[s + 4] += 1;
+            }
+        }
+
+        /**
+         * Find each of our fragments' crossing nearest its centroid, given the combined sums of
+         * all fragments, `totals` (indexed like our `sums`, but by index in the whole graph).
+         */
+        void place(long[] totals) {
+            int width = superpixels.width();
+            int height = superpixels.height();
+            bestDistance = new long[count];
+            bestIds = new int[count];
+            Arrays.fill(bestDistance, Long.MAX_VALUE);
+            for (int y = y0; y < y1; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    int id = ImageVertex.xyToId(x, y, width);
+                    if (x + 1 < width) {
+                        consider(id, id + 1, x, y, totals);
+                    }
+                    if (y + 1 < height) {
+                        consider(id, id + width, x, y, totals);
+                    }
+                }
+            }
+        }
+
+        /**
+         * If the neighboring pixels with IDs `id` (at (`x`, `y`)) and `otherId` are in different
+         * superpixels, keep the crossing at `id` if it is the nearest yet to the centroid of the
+         * fragment between them (see `place()`).
+         */
+        private void consider(int id, int otherId, int x, int y, long[] totals) {
+            int a = superpixels.labelOf(id);
+            int b = superpixels.labelOf(otherId);
+            if (a == b) {
+                return;
+            }
+            int i = localIds.get(key(a, b));
+            int s = sumCount * fragmentIds[i];
+            long dx = x * totals[s + 2] - totals[s];
+            long dy = y * totals[s + 2] - totals[s + 1];
+            long d = dx * dx + dy * dy;
+            if (d < bestDistance[i]) {
+                bestDistance[i] = d;
+                bestIds[i] = id;
+            }
+        }
+
+        /**
+         * Return the (directed) pairs of distinct fragments that meet at junctions whose top-left
+         * pixel is in our rows, as `(f << 32) | g`, possibly with repeats.  `fragmentIds` maps
+         * fragment keys to their indices in the whole graph.
+         */
+        long[] junctions(LongIntMap fragmentIds) {
+            int width = superpixels.width();
+            int[] corner = new int[4];
+            int[] meeting = new int[4];
+            long[] pairs = new long[64];
+            int pairCount = 0;
+            for (int y = y0; y < Math.min(y1, superpixels.height() - 1); ++y) {
+                for (int x = 0; x + 1 < width; ++x) {
+                    int id = ImageVertex.xyToId(x, y, width);
+                    int a = superpixels.labelOf(id);
+                    int b = superpixels.labelOf(id + 1);
+                    int c = superpixels.labelOf(id + width + 1);
+                    int d = superpixels.labelOf(id + width);
+                    // A block spans 3+ superpixels exactly when at most one pair of corners match
+                    int matches = same(a, b) + same(a, c) + same(a, d) + same(b, c) + same(b, d)
+                            + same(c, d);
+                    if (matches > 1) {
+                        continue;
+                    }
+                    // Fragments between superpixels that are side by side in the block
+                    corner[0] = a;
+                    corner[1] = b;
+                    corner[2] = c;
+                    corner[3] = d;
+                    int count = 0;
+                    for (int i = 0; i < 4; ++i) {
+                        int p = corner[i];
+                        int q = corner[(i + 1) % 4];
+                        if (p != q) {
+                            meeting[count++] = fragmentIds.get(key(p, q));
+                        }
+                    }
+                    for (int i = 0; i < count; ++i) {
+                        for (int j = 0; j < count; ++j) {
+                            if (meeting[i] != meeting[j]) {
+                                if (pairCount == pairs.length) {
+                                    pairs = Arrays.copyOf(pairs, 2 * pairCount);
+                                }
+                                pairs[pairCount++] = ((long) meeting[i] << 32) | meeting[j];
+                            }
+                        }
+                    }
+                }
+            }
+            return Arrays.copyOf(pairs, pairCount);
+        }
+    }
+
+    @Override
+    public int vertexCount() {
+        return positionIds.length;
+    }
+
+    @Override
+    public BoundaryFragment getVertex(int id) {
+        assert id >= 0 && id < vertexCount();
+        return new BoundaryFragment(this, id);
+    }
+
+    /**
+     * Return the superpixels whose boundaries we represent.
+     */
+    Superpixels superpixels() {
+        return superpixels;
+    }
+
+    /**
+     * Return the ID of the image pixel at which fragment `f` is located.
+     */
+    int positionId(int f) {
+        return positionIds[f];
+    }
+
+    /**
+     * Return the labels of the two superpixels on either side of fragment `f`.
+     */
+    int[] labelsOf(int f) {
+        return new int[]{labelsA[f], labelsB[f]};
+    }
+
+    /**
+     * Return the indices of the fragments bordering the superpixel containing the pixel with ID
+     * `pixelId`.
+     */
+    int[] fragmentsAround(int pixelId) {
+        int label = superpixels.labelOf(pixelId);
+        return Arrays.copyOfRange(labelFragments, labelStart[label], labelStart[label + 1]);
+    }
+
+    /**
+     * Return the approximate weight of a pixel path from the pixel with ID `pixelId` to fragment
+     * `f` (assuming that pixel is in one of the superpixels it borders).
+     */
+    int weightTo(int f, int pixelId) {
+        int width = superpixels.width();
+        double dx = pixelId % width - positionIds[f] % width;
+        double dy = pixelId / width - positionIds[f] / width;
+        return (int) Math.max(1, Math.round(unitCosts[f] * Math.hypot(dx, dy)));
+    }
+
+    /**
+     * Return the distance, in pixels, between fragments `f` and `g`.
+     */
+    private double distance(int f, int g) {
+        int width = superpixels.width();
+        return Math.hypot(positionIds[f] % width - positionIds[g] % width,
+                positionIds[f] / width - positionIds[g] / width);
+    }
+
+    /**
+     * Return the edges leaving fragment `f`.
+     */
+    List<BoundaryEdge> edgesFrom(int f) {
+        List<BoundaryEdge> edges = new ArrayList<>(neighborStart[f + 1] - neighborStart[f]);
+        for (int i = neighborStart[f]; i < neighborStart[f + 1]; ++i) {
+            edges.add(new BoundaryEdge(f, neighbors[i], neighborWeights[i]));
+        }
+        return edges;
+    }
+}
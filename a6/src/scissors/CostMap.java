@@ -0,0 +1,86 @@
+package scissors;
+
+import graph.Weigher;
+import java.awt.Point;
+import java.util.Arrays;
+
+/**
+ * Per-pixel adjustments painted onto the weight map of an image by the user, so that paths can be
+ * pushed away from misleading edges (penalties) or pulled along weak ones (bonuses).  The
+ * adjustment of a pixel is added to the weight of every edge leading into it, so painting a pixel
+ * changes only the weights of its incoming edges (as `ShortestPaths.repair()` requires).
+ */
+class CostMap {
+
+    /**
+     * The largest magnitude of any pixel's adjustment, so that repeated strokes over the same
+     * pixels cannot overflow path distances.
+     */
+    static final int maxAdjustment = 1 << 12;
+
+    /**
+     * The dimensions of the image whose pixels we adjust.
+     */
+    private final int width, height;
+
+    /**
+     * The adjustment added to the weight of edges leading into each pixel, indexed by vertex ID.
+     */
+    private final int[] adjustments;
+
+    /**
+     * Create a map with no adjustments for an image of size `width` x `height`.
+     */
+    CostMap(int width, int height) {
+        this.width = width;
+        this.height = height;
+        adjustments = new int[width * height];
+    }
+
+    /**
+     * Create a map with the same adjustments as `copy`.
+     */
+    CostMap(CostMap copy) {
+        width = copy.width;
+        height = copy.height;
+        adjustments = copy.adjustments.clone();
+    }
+
+    /**
+     * Add `delta` to the adjustment of every pixel within `radius` of `center` (clamped to
+     * [-`maxAdjustment`..`maxAdjustment`]).  Returns the IDs of the pixels whose adjustments
+     * changed, which may be empty if the brush lies outside the image or every pixel under it was
+     * already at its limit.
+     */
+    int[] paint(Point center, int radius, int delta) {
+        int[] changed = new int[(2 * radius + 1) * (2 * radius + 1)];
+        int count = 0;
+        int y0 = Math.max(0, center.y - radius);
+        int y1 = Math.min(height - 1, center.y + radius);
+        for (int y = y0; y <= y1; ++y) {
+            int dy = y - center.y;
+            int halfWidth = (int) Math.sqrt(radius * radius - dy * dy);
+            int x0 = Math.max(0, center.x - halfWidth);
+            int x1 = Math.min(width - 1, center.x + halfWidth);
+            for (int x = x0; x <= x1; ++x) {
+                int id = y * width + x;
+                int adjusted = Math.clamp((long) adjustments[id] + delta, -maxAdjustment,
+                        maxAdjustment);
+                if (adjusted != adjustments[id]) {
+                    adjustments[id] = adjusted;
+                    changed[count++] = id;
+                }
+            }
+        }
+        return Arrays.copyOf(changed, count);
+    }
+
+    /**
+     * Return a weigher that adds the adjustment of each edge's end pixel to the weight `base`
+     * gives it, never returning a negative weight.  The returned weigher sees later strokes, so
+     * any paths found with it must be repaired after painting.
+     */
+    Weigher<ImageEdge> adjust(Weigher<ImageEdge> base) {
+        return e -> Math.max(0, base.weight(e) + adjustments[e.endId()]);
+    }
+}
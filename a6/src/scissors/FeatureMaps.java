@@ -0,0 +1,277 @@
+package scissors;
+
+/**
+ * The per-pixel features of an image used by Mortensen and Barrett's "live-wire" cost function:
+ * Laplacian zero-crossings, gradient magnitude, and gradient direction, all measured on a
+ * Gaussian-smoothed copy of the image's luminance.  Computed once per image into primitive arrays
+ * indexed by vertex ID, so that weighing an edge only needs a few array reads.
+ * <p>
+ * The derivatives are found by separable convolution: a horizontal pass applies a Gaussian, its
+ * first derivative, and its second derivative to each row, then a vertical pass combines those
+ * into the smoothed x and y derivatives and the Laplacian of Gaussian.  Every stage runs over
+ * square tiles of the image in parallel (see `Tiling`), each tile writing only its own pixels, so
+ * stages need no synchronization beyond finishing one before starting the next.
+ */
+class FeatureMaps {
+
+    /**
+     * The standard deviation of the Gaussian smoothing applied before differentiating, in pixels.
+     */
+    static final float sigma = 1.0f;
+
+    /**
+     * The radius of our convolution kernels, which covers 3 standard deviations of the Gaussian.
+     * A constant, so that loops over kernel taps can be fully unrolled.
+     */
+    private static final int radius = 3;
+
+    /**
+     * A Gaussian kernel with standard deviation `sigma` and its first and second derivatives, each
+     * indexed by offset + `radius`.
+     */
+    private static final float[] smoothKernel = gaussianKernel();
+    private static final float[] firstKernel = derivativeKernel();
+    private static final float[] secondKernel = secondDerivativeKernel();
+
+    /**
+     * The smallest difference in the Laplacian across a sign change for it to count as a
+     * zero-crossing (in gray levels per square pixel), so that noise in flat areas is ignored.
+     */
+    private static final float minCrossingContrast = 1.0f;
+
+    /**
+     * The dimensions of the image, in pixels.
+     */
+    final int width, height;
+
+    /**
+     * Whether the Laplacian of Gaussian crosses zero at each pixel (the pixel of each sign change
+     * closer to zero is marked).
+     */
+    final boolean[] zeroCrossing;
+
+    /**
+     * The gradient magnitude cost of each pixel, `1 - G / max(G)`, quantized to [0..255].
+     */
+    final byte[] gradientCost;
+
+    /**
+     * The unit vector perpendicular to the gradient at each pixel (the direction an edge through
+     * the pixel runs in), or (0, 0) where the gradient vanishes.
+     */
+    final float[] edgeDirX, edgeDirY;
+
+    /**
+     * Compute the features of the image whose luminance is `gray`.
+     */
+    FeatureMaps(GrayPlane gray) {
+        int width = gray.width;
+        int height = gray.height;
+        byte[] values = gray.values;
+        this.width = width;
+        this.height = height;
+        int n = width * height;
+        // Both passes run per tile: the horizontal pass fills a tile-local buffer covering the
+        //  tile's rows plus `radius` rows of clamped padding above and below it, and the vertical
+        //  pass reads from that, so the intermediate results never leave the cache.  The edge
+        //  direction does not depend on the largest gradient, so it is finished here; the
+        //  gradient magnitude is kept (along with each tile's largest) to be normalized once all
+        //  tiles are done.
+        float[] magnitudes = new float[n];
+        float[] laplacian = new float[n];
+        edgeDirX = new float[n];
+        edgeDirY = new float[n];
+        float[] tileMax = new float[Tiling.tileCount(width) * Tiling.tileCount(height)];
+        Tiling.forEachTile(width, height, (x0, y0, x1, y1) -> {
+            int w = x1 - x0;
+            int rows = y1 - y0 + 2 * radius;
+            float[] rowSmooth = new float[rows * w];
+            float[] rowFirst = new float[rows * w];
+            float[] rowSecond = new float[rows * w];
+            float[] padded = new float[w + 2 * radius];
+            for (int r = 0; r < rows; ++r) {
+                int in = Math.clamp(y0 + r - radius, 0, height - 1) * width;
+                for (int i = 0; i < padded.length; ++i) {
+                    padded[i] = values[in + Math.clamp(x0 + i - radius, 0, width - 1)] & 0xff;
+                }
+                filterRow(padded, w, rowSmooth, rowFirst, rowSecond, r * w);
+            }
+            float max = 0;
+            for (int y = y0; y < y1; ++y) {
+                max = Math.max(max, combineRows(rowSmooth, rowFirst, rowSecond,
+                        (y - y0 + radius) * w, w, y * width + x0, magnitudes, laplacian));
+            }
+            int tile = (y0 / Tiling.tileSize) * Tiling.tileCount(width) + x0 / Tiling.tileSize;
+            tileMax[tile] = max;
+        });
+        float maxMagnitude = 0;
+        for (float max : tileMax) {
+            maxMagnitude = Math.max(maxMagnitude, max);
+        }
+
+        zeroCrossing = new boolean[n];
+        gradientCost = new byte[n];
+        float toCost = (maxMagnitude > 0) ? 255 / maxMagnitude : 0;
+        Tiling.forEachTile(width, height, (x0, y0, x1, y1) -> {
+            for (int y = y0; y < y1; ++y) {
+                finishRow(magnitudes, toCost, laplacian, x0, x1, y);
+            }
+        });
+    }
+
+    /**
+     * Apply our three kernels to the `w` pixels of a row whose values, with `radius` pixels of
+     * padding on either side, are in `padded`, storing the results in `smoothOut`, `firstOut`, and
+     * `secondOut` starting at index `out`.  The kernels are symmetric (or antisymmetric), so each
+     * pair of taps at offsets -k and +k shares one multiplication.
+     */
+    private static void filterRow(float[] padded, int w, float[] smoothOut, float[] firstOut,
+            float[] secondOut, int out) {
+        for (int i = 0; i < w; ++i) {
+            int c = i + radius;
+            float center = padded[c];
+            float s = smoothKernel[radius] * center;
+            float d = 0;
+            float dd = secondKernel[radius] * center;
+            for (int k = 1; k <= radius; ++k) {
+                float left = padded[c - k];
+                float right = padded[c + k];
+                s += smoothKernel[radius + k] * (left + right);
+                d += firstKernel[radius + k] * (right - left);
+                dd += secondKernel[radius + k] * (left + right);
+            }
+            smoothOut[out + i] = s;
+            firstOut[out + i] = d;
+            secondOut[out + i] = dd;
+        }
+    }
+
+    /**
+     * Apply our kernels vertically to the horizontally filtered rows `rowSmooth`, `rowFirst`, and
+     * `rowSecond` (each `w` pixels wide) around the row starting at index `in`, giving the image's
+     * derivatives at the `w` pixels starting at vertex ID `out`.  Store their gradient magnitudes
+     * in `magnitudes`, their Laplacians in `laplacian`, and their edge directions in `edgeDirX`
+     * and `edgeDirY`.  Returns the largest gradient magnitude in the row.
+     */
+    private float combineRows(float[] rowSmooth, float[] rowFirst, float[] rowSecond, int in,
+            int w, int out, float[] magnitudes, float[] laplacian) {
+        float max = 0;
+        for (int i = 0; i < w; ++i) {
+            int c = in + i;
+            float ix = smoothKernel[radius] * rowFirst[c];
+            float iy = 0;
+            float lap = smoothKernel[radius] * rowSecond[c] + secondKernel[radius] * rowSmooth[c];
+            for (int k = 1; k <= radius; ++k) {
+                int above = c - k * w;
+                int below = c + k * w;
+                ix += smoothKernel[radius + k] * (rowFirst[above] + rowFirst[below]);
+                iy += firstKernel[radius + k] * (rowSmooth[below] - rowSmooth[above]);
+                lap += smoothKernel[radius + k] * (rowSecond[above] + rowSecond[below])
+                        + secondKernel[radius + k] * (rowSmooth[above] + rowSmooth[below]);
+            }
+            float magnitude = (float) Math.sqrt(ix * ix + iy * iy);
+            magnitudes[out + i] = magnitude;
+            laplacian[out + i] = lap;
+            max = Math.max(max, magnitude);
+            if (magnitude > 0) {
+                edgeDirX[out + i] = iy / magnitude;
+                edgeDirY[out + i] = -ix / magnitude;
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Set the gradient costs (from `magnitudes`, scaled to [0..255] by `toCost`) and zero-crossings
+     * (from `laplacian`) of the pixels with x in [`x0`..`x1`) in row `y`.
+     */
+    private void finishRow(float[] magnitudes, float toCost, float[] laplacian, int x0, int x1,
+            int y) {
+        for (int x = x0; x < x1; ++x) {
+            int id = y * width + x;
+            gradientCost[id] = (byte) Math.round(255 - magnitudes[id] * toCost);
+            zeroCrossing[id] = crossesZero(laplacian, x, y);
+        }
+    }
+
+    /**
+     * Return whether the Laplacian `laplacian` changes sign between the pixel at (`x`, `y`) and
+     * one of its 4 neighbors, with enough contrast to matter, and the pixel is the one of the pair
+     * closer to zero.
+     */
+    private boolean crossesZero(float[] laplacian, int x, int y) {
+        int id = y * width + x;
+        float here = laplacian[id];
+        return x > 0 && crossesTo(here, laplacian[id - 1])
+                || x + 1 < width && crossesTo(here, laplacian[id + 1])
+                || y > 0 && crossesTo(here, laplacian[id - width])
+                || y + 1 < height && crossesTo(here, laplacian[id + width]);
+    }
+
+    /**
+     * Return whether a pixel with Laplacian `here` is the zero-crossing between itself and a
+     * neighbor with Laplacian `there`.
+     */
+    private static boolean crossesTo(float here, float there) {
+        return (here >= 0) != (there >= 0) && Math.abs(here) <= Math.abs(there)
+                && Math.abs(here - there) >= minCrossingContrast;
+    }
+
+    /**
+     * Return a normalized Gaussian kernel with standard deviation `sigma` and radius `radius`,
+     * indexed by offset + `radius`.
+     */
+    private static float[] gaussianKernel() {
+        float[] kernel = new float[2 * radius + 1];
+        float sum = 0;
+        for (int k = -radius; k <= radius; ++k) {
+            kernel[k + radius] = (float) Math.exp(-k * k / (2 * sigma * sigma));
+            sum += kernel[k + radius];
+        }
+        for (int i = 0; i < kernel.length; ++i) {
+            kernel[i] /= sum;
+        }
+        return kernel;
+    }
+
+    /**
+     * Return the first derivative of our Gaussian kernel, scaled so that applying it to a ramp of
+     * slope 1 gives 1.
+     */
+    private static float[] derivativeKernel() {
+        float[] gauss = gaussianKernel();
+        float[] kernel = new float[gauss.length];
+        float response = 0;
+        for (int k = -radius; k <= radius; ++k) {
+            kernel[k + radius] = k * gauss[k + radius];
+            response += k * kernel[k + radius];
+        }
+        for (int i = 0; i < kernel.length; ++i) {
+            kernel[i] /= response;
+        }
+        return kernel;
+    }
+
+    /**
+     * Return the second derivative of our Gaussian kernel, adjusted to sum to zero and scaled so
+     * that applying it to the parabola `x^2 / 2` gives 1.
+     */
+    private static float[] secondDerivativeKernel() {
+        float[] gauss = gaussianKernel();
+        float[] kernel = new float[gauss.length];
+        float sum = 0;
+        for (int k = -radius; k <= radius; ++k) {
+            kernel[k + radius] = (k * k - sigma * sigma) * gauss[k + radius];
+            sum += kernel[k + radius];
+        }
+        float response = 0;
+        for (int k = -radius; k <= radius; ++k) {
+            kernel[k + radius] -= sum * gauss[k + radius];
+            response += k * k / 2.0f * kernel[k + radius];
+        }
+        for (int i = 0; i < kernel.length; ++i) {
+            kernel[i] /= response;
+        }
+        return kernel;
+    }
+}
@@ -0,0 +1,529 @@
+package scissors;
+
+import static selector.SelectionModel.SelectionState.*;
+
+import graph.MaxFlow;
+import graph.Weigher;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.stream.IntStream;
+import javax.swing.SwingUtilities;
+import selector.PolyLine;
+import selector.RegionOutline;
+import selector.SelectionModel;
+
+/**
+ * Models a selection tool in which the user sketches a rough polygon around the subject and the
+ * exact outline is found by graph cut.  While SELECTING, points are joined by straight lines.
+ * When the selection is finished (or a point is moved), a band around the polygon is segmented
+ * with a minimum cut: pixels inside the polygon but outside the band are fixed to the subject,
+ * those outside both are fixed to the background, and the cost of separating neighboring pixels
+ * in the band is their "intelligent scissors" weight along the boundary between them, so the cut
+ * follows strong edges.  The band narrows to nothing at each control point, making the control
+ * points hard constraints that the outline must pass through.  The outline of the resulting region
+ * replaces the selection, split into one segment per control point.
+ * <p>
+ * The cut is solved on a background thread with `graph.MaxFlow`, over the pixels of the band only,
+ * so weighing links and solving the flow cost time proportional to the polygon's perimeter.  The
+ * remaining passes are linear in the area of the polygon's bounding box, but only do a little
+ * work per pixel: the box is labeled inside or outside a row at a time from the polygon's edge
+ * crossings, and the region's largest component and outline are found over the box.  The model
+ * is PROCESSING while it runs; cancelling leaves the selection as it was.
+ */
+public class GraphCutSelectionModel extends SelectionModel {
+
+    /**
+     * Half the width, in pixels, of the band around the polygon in which the outline may lie.
+     */
+    private static final int bandRadius = 12;
+
+    /**
+     * How quickly the band widens away from a control point: at distance `d` from the nearest
+     * one, it extends at most `taper * d` pixels from the polygon.
+     */
+    private static final double taper = 0.5;
+
+    /**
+     * How each pixel of the box around the band is classified before cutting (see
+     * `bandLabels()`): fixed outside the region, fixed inside it, or in the band.
+     */
+    static final byte fixedOutside = 0;
+    static final byte fixedInside = 1;
+    static final byte inBand = 2;
+
+    /**
+     * The result of a cut: the outline's segments (one per control point), or null if the cut
+     * left no region.
+     */
+    record Cut(List<PolyLine> segments) {}
+
+    /**
+     * The graph representation of the current image (null if inherited `img` is null).
+     */
+    private ImageGraph graph;
+
+    /**
+     * Name of Weigher that will determine the cost of separating neighboring pixels.  Must be
+     * recognized by the `ScissorsWeights` factory.
+     */
+    private final String weightName;
+
+    /**
+     * Weigher named by `weightName` for edges in `graph`, created in the background on first use
+     * and kept for as long as the image is unchanged.  Null if not yet started or if `graph` is
+     * null.
+     */
+    private CompletableFuture<Weigher<ImageEdge>> weigher;
+
+    /**
+     * Set to cancel the cut currently being solved.  Null if we are not PROCESSING.
+     */
+    private AtomicBoolean cancelCut;
+
+    /**
+     * The state we last transitioned into PROCESSING from (and which we will return to if the cut
+     * is cancelled).  Value is unspecified if we are not in PROCESSING.
+     */
+    private SelectionState previousState;
+
+    /**
+     * Create a `GraphCutSelectionModel` whose cuts follow edges according to the weight function
+     * named `weightName` (as recognized by the `ScissorsWeights` factory).  See `SelectionModel`
+     * for interpretation of `notifyOnEdt`.
+     */
+    public GraphCutSelectionModel(String weightName, boolean notifyOnEdt) {
+        super(notifyOnEdt);
+        this.weightName = weightName;
+    }
+
+    /**
+     * Create a `GraphCutSelectionModel` whose cuts follow edges according to the weight function
+     * named `weightName`.  Initialize this model to represent the same selection of the same image
+     * as `copy` (but does not copy any listeners from `copy`).  See `SelectionModel` for thread
+     * restrictions.
+     */
+    public GraphCutSelectionModel(String weightName, SelectionModel copy) {
+        super(copy);
+        this.weightName = weightName;
+        if (image() != null) {
+            graph = new ImageGraph(image());
+        }
+    }
+
+    @Override
+    public void setImage(BufferedImage img) {
+        super.setImage(img);
+        weigher = null;
+        graph = (img != null) ? new ImageGraph(img) : null;
+    }
+
+    @Override
+    public void reset() {
+        if (cancelCut != null) {
+            cancelCut.set(true);
+            cancelCut = null;
+        }
+        super.reset();
+    }
+
+    /**
+     * Return a straight line segment from our last point to `p`.
+     */
+    @Override
+    public PolyLine liveWire(Point p) {
+        return new PolyLine(lastPoint(), p);
+    }
+
+    /**
+     * Append a straight line segment to the current selection path connecting its end with `p`.
+     */
+    @Override
+    protected void appendToSelection(Point p) {
+        selection.add(liveWire(p));
+    }
+
+    /**
+     * Close the polygon through our points and start cutting along it, transitioning to
+     * PROCESSING until the outline replaces our selection (and we are SELECTED).  If no segments
+     * have been added yet, reset instead.
+     */
+    @Override
+    public void finishSelection() {
+        if (state() != SELECTING) {
+            throw new IllegalStateException("Cannot finish selection in state " + state());
+        }
+        if (selection.isEmpty()) {
+            reset();
+            return;
+        }
+        List<Point> controls = controlPoints();
+        controls.add(lastPoint());
+        startCut(controls);
+    }
+
+    /**
+     * Move the control point at the start of the segment with index `index` to `newPos` and cut
+     * again, transitioning to PROCESSING until the new outline replaces our selection.
+     */
+    @Override
+    public void movePoint(int index, Point newPos) {
+        if (state() != SELECTED) {
+            throw new IllegalStateException("May not move point in state " + state());
+        }
+        if (index < 0 || index >= selection.size()) {
+            throw new IllegalArgumentException("Invalid segment index " + index);
+        }
+        List<Point> controls = controlPoints();
+        controls.set(index, new Point(newPos));
+        startCut(controls);
+    }
+
+    @Override
+    public void cancelProcessing() {
+        assert state() == PROCESSING;
+        cancelCut.set(true);
+        cancelCut = null;
+        setState(previousState);
+    }
+
+    /**
+     * Return the starting points of our segments.
+     */
+    private List<Point> controlPoints() {
+        List<Point> controls = new ArrayList<>();
+        for (PolyLine segment : selection) {
+            controls.add(segment.start());
+        }
+        return controls;
+    }
+
+    /**
+     * Transition to PROCESSING and cut along the closed polygon through `controls` in the
+     * background.  When done, replace our selection with the outline and transition to SELECTED
+     * (or, if the cut found no region, return to the previous state).
+     */
+    private void startCut(List<Point> controls) {
+        if (weigher == null) {
+            ImageGraph graph = this.graph;
+            weigher = CompletableFuture.supplyAsync(
+                    () -> ScissorsWeights.makeWeigher(weightName, graph),
+                    ScissorsSelectionModel.interactiveSearches);
+        }
+        AtomicBoolean cancelled = new AtomicBoolean();
+        cancelCut = cancelled;
+        previousState = state();
+        setState(PROCESSING);
+        ImageGraph graph = this.graph;
+        weigher.thenApplyAsync(w -> cut(graph, w, controls, cancelled),
+                ScissorsSelectionModel.interactiveSearches).whenCompleteAsync((cut, e) -> {
+                    if (cancelCut != cancelled) {
+                        // Cancelled, or superseded
+                        return;
+                    }
+                    cancelCut = null;
+                    if (e != null || cut.segments() == null) {
+                        setState(previousState);
+                        return;
+                    }
+                    selection.clear();
+                    selection.addAll(cut.segments());
+                    start = selection.getFirst().start();
+                    setState(SELECTED);
+                    propSupport.firePropertyChange("selection", null, selection());
+                }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Segment the band around the closed polygon through `controls` in the image of `graph` by
+     * minimum cut, with separation costs from `weigher`, and return the outline of the region.
+     * Only links with at least one end in the band are weighed.  Stops early (throwing
+     * `CancellationException`) if `cancelled` is set.
+     */
+    static Cut cut(ImageGraph graph, Weigher<ImageEdge> weigher, List<Point> controls,
+            AtomicBoolean cancelled) {
+        Polygon polygon = new Polygon();
+        for (Point p : controls) {
+            polygon.addPoint(p.x, p.y);
+        }
+        Rectangle box = polygon.getBounds();
+        box.grow(bandRadius + 1, bandRadius + 1);
+        box = box.intersection(new Rectangle(0, 0, graph.width(), graph.height()));
+        int bw = box.width;
+        int bh = box.height;
+        int x0 = box.x;
+        int y0 = box.y;
+        byte[] labels = bandLabels(controls, box);
+
+        // Number the band's pixels and build the network over them.  Links to fixed pixels
+        //  become terminal weights.
+        int[] nodes = new int[bw * bh];
+        int nodeCount = 0;
+        for (int i = 0; i < nodes.length; ++i) {
+            nodes[i] = (labels[i] == inBand) ? nodeCount++ : -1;
+        }
+        MaxFlow network = new MaxFlow(nodeCount);
+        for (int y = 0; y < bh; ++y) {
+            for (int x = 0; x < bw; ++x) {
+                int i = y * bw + x;
+                if (x + 1 < bw && (labels[i] == inBand || labels[i + 1] == inBand)) {
+                    link(network, labels, nodes, i, i + 1,
+                            separationCost(graph, weigher, x0 + x, y0 + y, true));
+                }
+                if (y + 1 < bh && (labels[i] == inBand || labels[i + bw] == inBand)) {
+                    link(network, labels, nodes, i, i + bw,
+                            separationCost(graph, weigher, x0 + x, y0 + y, false));
+                }
+            }
+        }
+        network.solve(cancelled::get);
+
+        boolean[] region = new boolean[bw * bh];
+        for (int i = 0; i < region.length; ++i) {
+            region[i] = (labels[i] == inBand) ? network.inSourceSegment(nodes[i])
+                    : labels[i] == fixedInside;
+        }
+        if (!keepLargestComponent(region, bw, bh)) {
+            return new Cut(null);
+        }
+        int[] contour = RegionOutline.traceBoundary(region, bw, bh);
+        Point[] outline = new Point[contour.length];
+        for (int i = 0; i < contour.length; ++i) {
+            outline[i] = new Point(x0 + contour[i] % bw, y0 + contour[i] / bw);
+        }
+        return new Cut(splitAtControls(outline, controls));
+    }
+
+    /**
+     * Return the classification of each pixel of `box` (indexed by `y * box.width + x`, relative to
+     * its corner) for cutting along the closed polygon through `controls`: `inBand` within
+     * `bandRadius` of the polygon (narrowing to nothing at the control points), otherwise
+     * `fixedInside` or `fixedOutside` according to whether the polygon contains it.  Requires
+     * `box` contains every pixel within `bandRadius` of the polygon that is in the image.
+     */
+    static byte[] bandLabels(List<Point> controls, Rectangle box) {
+        int k = controls.size();
+        int bw = box.width;
+        int bh = box.height;
+        int x0 = box.x;
+        int y0 = box.y;
+        byte[] labels = new byte[bw * bh];
+        // Each row is filled between pairs of the polygon's crossings of it, with the same
+        //  insideness as `Polygon.contains()`
+        IntStream.range(0, bh).parallel().forEach(y -> {
+            double[] crossings = rowCrossings(controls, y0 + y);
+            for (int i = 0; i + 1 < crossings.length; i += 2) {
+                int from = (int) Math.max(x0, Math.min(x0 + bw, Math.ceil(crossings[i])));
+                int to = (int) Math.max(x0, Math.min(x0 + bw, Math.ceil(crossings[i + 1])));
+                Arrays.fill(labels, y * bw + (from - x0), y * bw + (to - x0), fixedInside);
+            }
+        });
+        IntStream.range(0, k).parallel().forEach(i -> {
+            Point a = controls.get(i);
+            Point b = controls.get((i + 1) % k);
+            int xMin = Math.max(x0, Math.min(a.x, b.x) - bandRadius);
+            int xMax = Math.min(x0 + bw - 1, Math.max(a.x, b.x) + bandRadius);
+            int yMin = Math.max(y0, Math.min(a.y, b.y) - bandRadius);
+            int yMax = Math.min(y0 + bh - 1, Math.max(a.y, b.y) + bandRadius);
+            for (int y = yMin; y <= yMax; ++y) {
+                for (int x = xMin; x <= xMax; ++x) {
+                    double toControl = Math.min(a.distance(x, y), b.distance(x, y));
+                    if (segmentDistance(a, b, x, y) <= Math.min(bandRadius, taper * toControl)) {
+                        // Segments only ever mark pixels as in the band, so overlaps do not race
+                        labels[(y - y0) * bw + (x - x0)] = inBand;
+                    }
+                }
+            }
+        });
+        return labels;
+    }
+
+    /**
+     * Return the x coordinates, in increasing order, at which the edges of the closed polygon
+     * through `controls` cross the row `y`.  Each non-horizontal edge crosses the rows from its
+     * lower y up to, but not including, its higher y, so there are always an even number of
+     * crossings, and a pixel in the row is inside the polygon iff an odd number are at or left
+     * of it.
+     */
+    private static double[] rowCrossings(List<Point> controls, int y) {
+        int k = controls.size();
+        double[] crossings = new double[k];
+        int count = 0;
+        for (int i = 0; i < k; ++i) {
+            Point a = controls.get(i);
+            Point b = controls.get((i + 1) % k);
+            Point low = (a.y < b.y) ? a : b;
+            Point high = (a.y < b.y) ? b : a;
+            if (y >= low.y && y < high.y) {
+                crossings[count++] = low.x
+                        + (double) (y - low.y) / (high.y - low.y) * (high.x - low.x);
+            }
+        }
+        crossings = Arrays.copyOf(crossings, count);
+        Arrays.sort(crossings);
+        return crossings;
+    }
+
+    /**
+     * Add the link between the pixels at box indices `i` and `j` (neighbors) with separation cost
+     * `cost` to `network`: as an edge if both are in the band, as a terminal weight on the one in
+     * the band if only one is, or not at all if both are fixed.
+     */
+    private static void link(MaxFlow network, byte[] labels, int[] nodes, int i, int j, int cost) {
+        if (labels[i] == inBand && labels[j] == inBand) {
+            network.addEdge(nodes[i], nodes[j], cost, cost);
+        } else if (labels[i] == inBand || labels[j] == inBand) {
+            int free = (labels[i] == inBand) ? i : j;
+            boolean inside = labels[(free == i) ? j : i] == fixedInside;
+            network.addTerminalWeights(nodes[free], inside ? cost : 0, inside ? 0 : cost);
+        }
+    }
+
+    /**
+     * Return the cost of putting the pixel at (`x`, `y`) and its neighbor to the right (if
+     * `horizontal`) or below on opposite sides of the cut: one more than the weight of the edge
+     * from the pixel that runs along the boundary between them.
+     */
+    private static int separationCost(ImageGraph graph, Weigher<ImageEdge> weigher, int x, int y,
+            boolean horizontal) {
+        ImageVertex v = new ImageVertex(graph, x, y);
+        // Down or up for a boundary between horizontal neighbors; right or left otherwise
+        int dir = horizontal ? 6 : 0;
+        if (!v.validDir(dir)) {
+            dir = horizontal ? 2 : 4;
+        }
+        if (!v.validDir(dir)) {
+            return 1;
+        }
+        return 1 + weigher.weight(new ImageEdge(v.id(), v.neighborId(dir), dir));
+    }
+
+    /**
+     * Return the distance from (`x`, `y`) to the line segment from `a` to `b`.
+     */
+    private static double segmentDistance(Point a, Point b, int x, int y) {
+        double dx = b.x - a.x;
+        double dy = b.y - a.y;
+        double lengthSq = dx * dx + dy * dy;
+        double t = (lengthSq == 0) ? 0
+                : Math.max(0, Math.min(1, ((x - a.x) * dx + (y - a.y) * dy) / lengthSq));
+        return Math.hypot(x - (a.x + t * dx), y - (a.y + t * dy));
+    }
+
+    /**
+     * Clear all but the largest 4-connected component of `region`, a mask over a `width` by
+     * `height` grid.  Returns false if `region` is empty.
+     */
+    private static boolean keepLargestComponent(boolean[] region, int width, int height) {
+        int[] components = new int[region.length];
+        int[] queue = new int[region.length];
+        int best = 0;
+        int bestSize = 0;
+        int next = 1;
+        for (int seed = 0; seed < region.length; ++seed) {
+            if (!region[seed] || components[seed] != 0) {
+                continue;
+            }
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = seed;
+            components[seed] = next;
+            while (head < tail) {
+                int id = queue[head++];
+                int x = id % width;
+                int y = id / width;
+                int[] neighbors = {x > 0 ? id - 1 : -1, x + 1 < width ? id + 1 : -1,
+                        y > 0 ? id - width : -1, y + 1 < height ? id + width : -1};
+                for (int n : neighbors) {
+                    if (n >= 0 && region[n] && components[n] == 0) {
+                        components[n] = next;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            if (tail > bestSize) {
+                best = next;
+                bestSize = tail;
+            }
+            next += 1;
+        }
+        for (int i = 0; i < region.length; ++i) {
+            region[i] = components[i] == best && best != 0;
+        }
+        return best != 0;
+    }
+
+    /**
+     * Split the closed `outline` into one segment per control point, each starting at the point
+     * of the outline nearest its control point, with the last returning to the start of the
+     * first.  The outline is reversed if needed to run in the same direction as `controls`; if
+     * the nearest points are still out of order, the outline is split evenly instead.
+     */
+    private static List<PolyLine> splitAtControls(Point[] outline, List<Point> controls) {
+        int n = outline.length;
+        if (Math.signum(signedArea(Arrays.asList(outline))) != Math.signum(signedArea(controls))) {
+            // Reverses the array in place
+            Collections.reverse(Arrays.asList(outline));
+        }
+        int k = controls.size();
+        int[] starts = new int[k];
+        for (int i = 0; i < k; ++i) {
+            Point c = controls.get(i);
+            double best = Double.POSITIVE_INFINITY;
+            for (int j = 0; j < n; ++j) {
+                double d = c.distanceSq(outline[j]);
+                if (d < best) {
+                    best = d;
+                    starts[i] = j;
+                }
+            }
+        }
+        // Offsets from the first start, which must increase for the segments to be in order
+        int[] offsets = new int[k + 1];
+        boolean ordered = true;
+        for (int i = 1; i < k; ++i) {
+            offsets[i] = Math.floorMod(starts[i] - starts[0], n);
+            ordered &= offsets[i] > offsets[i - 1];
+        }
+        offsets[k] = n;
+        if (!ordered) {
+            for (int i = 1; i < k; ++i) {
+                offsets[i] = (int) ((long) n * i / k);
+            }
+        }
+        List<PolyLine> segments = new ArrayList<>(k);
+        for (int i = 0; i < k; ++i) {
+            int length = offsets[i + 1] - offsets[i] + 1;
+            int[] xs = new int[length];
+            int[] ys = new int[length];
+            for (int j = 0; j < length; ++j) {
+                Point p = outline[(starts[0] + offsets[i] + j) % n];
+                xs[j] = p.x;
+                ys[j] = p.y;
+            }
+            segments.add(new PolyLine(xs, ys));
+        }
+        return segments;
+    }
+
+    /**
+     * Return twice the signed area of the polygon through `points` (positive if clockwise on
+     * screen, where y points down).
+     */
+    private static long signedArea(List<Point> points) {
+        long area = 0;
+        for (int i = 0; i < points.size(); ++i) {
+            Point p = points.get(i);
+            Point q = points.get((i + 1) % points.size());
+            area += (long) p.x * q.y - (long) q.x * p.y;
+        }
+        return area;
+    }
+}
@@ -0,0 +1,144 @@
+package scissors;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * The 8-bit luminance of each pixel of an image, in a single primitive array indexed by vertex ID
+ * (one byte per pixel, rather than the several bands of a `Raster` converted by a `RasterOp`).
+ * Shared by every weigher and feature computation that works on a grayscale copy of an image, so
+ * that it is only extracted once per graph (see `ImageGraph.grayPlane()`).
+ * <p>
+ * Luminance is `0.299 R + 0.587 G + 0.114 B` (in 8-bit fixed point) for color images; alpha is
+ * ignored.  The common image types (INT_RGB, INT_ARGB, 3BYTE_BGR, and BYTE_GRAY) are read a row
+ * at a time as their raw data elements, which copies straight out of the image's `DataBuffer`
+ * without unpacking each sample (and without taking the buffer's array, which would stop Java2D
+ * from accelerating the image when it is displayed).  Rows are converted in parallel, in tiles.
+ */
+class GrayPlane {
+
+    /**
+     * The dimensions of the image, in pixels.
+     */
+    final int width, height;
+
+    /**
+     * The luminance of each pixel, as an unsigned byte indexed by vertex ID.
+     */
+    final byte[] values;
+
+    /**
+     * Create an empty plane for an image of size `width` x `height`.
+     */
+    private GrayPlane(int width, int height) {
+        this.width = width;
+        this.height = height;
+        values = new byte[width * height];
+    }
+
+    /**
+     * Return the luminance plane of `img`.
+     */
+    static GrayPlane of(BufferedImage img) {
+        GrayPlane plane = new GrayPlane(img.getWidth(), img.getHeight());
+        Raster raster = img.getRaster();
+        Tiling.TileTask convert = switch (img.getType()) {
+            case BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB ->
+                    (x0, y0, x1, y1) -> plane.convertPacked(raster, x0, y0, x1, y1);
+            case BufferedImage.TYPE_3BYTE_BGR ->
+                    (x0, y0, x1, y1) -> plane.convertInterleaved(raster, x0, y0, x1, y1);
+            case BufferedImage.TYPE_BYTE_GRAY ->
+                    (x0, y0, x1, y1) -> plane.copyGray(raster, x0, y0, x1, y1);
+            default -> (x0, y0, x1, y1) -> plane.convertSamples(raster, x0, y0, x1, y1);
+        };
+        Tiling.forEachTile(plane.width, plane.height, convert);
+        return plane;
+    }
+
+    /**
+     * Return the luminance of the pixel at (`x`, `y`), in [0..255].
+     */
+    int at(int x, int y) {
+        return values[y * width + x] & 0xff;
+    }
+
+    /**
+     * Return the luminance of a pixel with red, green, and blue components `r`, `g`, and `b`
+     * (each in [0..255]), rounded to an integer in [0..255].
+     */
+    private static int luminance(int r, int g, int b) {
+        return (77 * r + 150 * g + 29 * b + 128) >> 8;
+    }
+
+    /**
+     * Convert the pixels with x in [`x0`..`x1`) and y in [`y0`..`y1`) of `raster`, whose data
+     * elements are pixels packed into ints as 0xAARRGGBB.
+     */
+    private void convertPacked(Raster raster, int x0, int y0, int x1, int y1) {
+        int[] row = new int[x1 - x0];
+        for (int y = y0; y < y1; ++y) {
+            raster.getDataElements(x0, y, row.length, 1, row);
+            int out = y * width + x0;
+            for (int i = 0; i < row.length; ++i) {
+                int p = row[i];
+                values[out + i] = (byte) luminance((p >> 16) & 0xff, (p >> 8) & 0xff, p & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Convert the pixels with x in [`x0`..`x1`) and y in [`y0`..`y1`) of `raster`, whose data
+     * elements are one byte per band, in band (red, green, blue) order.
+     */
+    private void convertInterleaved(Raster raster, int x0, int y0, int x1, int y1) {
+        int w = x1 - x0;
+        byte[] row = new byte[3 * w];
+        for (int y = y0; y < y1; ++y) {
+            raster.getDataElements(x0, y, w, 1, row);
+            int out = y * width + x0;
+            for (int i = 0; i < w; ++i) {
+                values[out + i] = (byte) luminance(row[3 * i] & 0xff, row[3 * i + 1] & 0xff,
+                        row[3 * i + 2] & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Copy the pixels with x in [`x0`..`x1`) and y in [`y0`..`y1`) of `raster`, whose data
+     * elements are already 8-bit gray levels.
+     */
+    private void copyGray(Raster raster, int x0, int y0, int x1, int y1) {
+        byte[] row = new byte[x1 - x0];
+        for (int y = y0; y < y1; ++y) {
+            raster.getDataElements(x0, y, row.length, 1, row);
+            System.arraycopy(row, 0, values, y * width + x0, row.length);
+        }
+    }
+
+    /**
+     * Convert the pixels with x in [`x0`..`x1`) and y in [`y0`..`y1`) of `raster`, which may have
+     * any layout, one band at a time.  The first three bands of color rasters are taken to be red,
+     * green, and blue; samples wider than 8 bits are reduced to their top 8 bits.
+     */
+    private void convertSamples(Raster raster, int x0, int y0, int x1, int y1) {
+        int w = x1 - x0;
+        boolean color = raster.getNumBands() >= 3;
+        int shift = Math.max(0, raster.getSampleModel().getSampleSize(0) - 8);
+        int[] r = new int[w];
+        int[] g = new int[w];
+        int[] b = new int[w];
+        for (int y = y0; y < y1; ++y) {
+            raster.getSamples(x0, y, w, 1, 0, r);
+            if (color) {
+                raster.getSamples(x0, y, w, 1, 1, g);
+                raster.getSamples(x0, y, w, 1, 2, b);
+            }
+            int out = y * width + x0;
+            for (int i = 0; i < w; ++i) {
+                int gray = color ? luminance(r[i] >> shift, g[i] >> shift, b[i] >> shift)
+                        : r[i] >> shift;
+                values[out + i] = (byte) gray;
+            }
+        }
+    }
+}
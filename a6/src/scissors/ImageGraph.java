@@ -1,7 +1,7 @@
 package scissors;
 
 import graph.Edge;
-import graph.Graph;
+import graph.ReversibleGraph;
 import graph.Vertex;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
@@ -13,35 +13,85 @@ import selector.PolyLine;
 
 /**
  * Provides a Graph structure on top of an image where pixels are treated as vertices connected to
- * their neighboring pixels (including diagonals).  Edges are interpreted as connecting pixel
- * centers and are aware of their length and direction within the image.
+ * their neighboring pixels (by default including diagonals; see `Connectivity`).  Edges are
+ * interpreted as connecting pixel centers and are aware of their length and direction within the
+ * image.
  */
-class ImageGraph implements Graph<ImageVertex> {
+class ImageGraph implements ReversibleGraph<ImageVertex, ImageEdge> {
 
     /**
-     * The image we are providing a graph structure for.
+     * The image we are providing a graph structure for, or null if we only provide the structure of
+     * a grid (e.g. for a level of an `ImagePyramid`, whose weights come from elsewhere).
      */
     private final BufferedImage img;
 
     /**
-     * Create a new ImageGraph to provide a graph structure over the image `img`.
+     * The dimensions of our image (or grid), in pixels.
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * Which neighbors each pixel is connected to.
+     */
+    private final Connectivity connectivity;
+
+    /**
+     * The luminance of our image, extracted on first use (see `grayPlane()`), or null if not yet
+     * extracted.
+     */
+    private GrayPlane grayPlane;
+
+    /**
+     * Create a new 8-connected ImageGraph to provide a graph structure over the image `img`.
      */
     public ImageGraph(BufferedImage img) {
+        this(img, Connectivity.EIGHT);
+    }
+
+    /**
+     * Create a new ImageGraph to provide a graph structure over the image `img`, connecting each
+     * pixel to the neighbors given by `connectivity`.
+     */
+    public ImageGraph(BufferedImage img, Connectivity connectivity) {
         this.img = img;
+        width = img.getWidth();
+        height = img.getHeight();
+        this.connectivity = connectivity;
+    }
+
+    /**
+     * Create a new ImageGraph providing the graph structure of a grid of `width` by `height`
+     * pixels without an image behind it, connected as given by `connectivity`.  Weighers for such
+     * a graph must not use `raster()`.
+     */
+    ImageGraph(int width, int height, Connectivity connectivity) {
+        assert width > 0 && height > 0;
+        img = null;
+        this.width = width;
+        this.height = height;
+        this.connectivity = connectivity;
     }
 
     /**
      * Return the width of our image (the number of pixels in one row).
      */
     public int width() {
-        return img.getWidth();
+        return width;
     }
 
     /**
      * Return the height of our image (the number of pixels in one column).
      */
     public int height() {
-        return img.getHeight();
+        return height;
+    }
+
+    /**
+     * Return which neighbors each pixel is connected to.
+     */
+    public Connectivity connectivity() {
+        return connectivity;
     }
 
     @Override
@@ -57,6 +107,11 @@ class ImageGraph implements Graph<ImageVertex> {
         return new ImageVertex(this, x, y);
     }
 
+    @Override
+    public Iterable<ImageEdge> incomingEdges(int id) {
+        return getVertex(id).incomingEdges();
+    }
+
     /**
      * Return the ID of the vertex at pixel location `p`.  Requires `p` is within the bounds of the
      * image.
@@ -76,14 +131,69 @@ class ImageGraph implements Graph<ImageVertex> {
         return new ImageVertex(this, p.x, p.y);
     }
 
+    /**
+     * Return our image.  Requires that we were created from an image.
+     */
+    BufferedImage image() {
+        return img;
+    }
+
     /**
      * Return the Raster backing our image.  This is convenient for querying the brightness of
-     * pixels in different color bands.
+     * pixels in different color bands.  Requires that we were created from an image.
      */
     public Raster raster() {
         return img.getRaster();
     }
 
+    /**
+     * Return the luminance of our image as a single 8-bit plane, extracting it on first use so
+     * that every weigher over this graph shares one copy.  Requires that we were created from an
+     * image.  May be called from any thread.
+     */
+    synchronized GrayPlane grayPlane() {
+        if (grayPlane == null) {
+            grayPlane = GrayPlane.of(img);
+        }
+        return grayPlane;
+    }
+
+    /**
+     * Return the IDs of `count` distinct pixels spaced evenly around the border of the image (or
+     * of every border pixel, if there are fewer than `count`), for use as landmarks by
+     * `graph.LandmarkPaths`.  Landmarks on the periphery give the tightest distance bounds for
+     * paths between interior points.  Requires `count` is positive.
+     */
+    public int[] borderLandmarks(int count) {
+        assert count > 0;
+        int w = width();
+        int h = height();
+        // Walk clockwise from the top-left corner, visiting each border pixel once
+        int perimeter = (w == 1 || h == 1) ? w * h : 2 * (w + h) - 4;
+        count = Math.min(count, perimeter);
+        int[] ids = new int[count];
+        for (int i = 0; i < count; ++i) {
+            int k = (int) ((long) perimeter * i / count);
+            int x;
+            int y;
+            if (k < w) {
+                x = k;
+                y = 0;
+            } else if (k < w + h - 1) {
+                x = w - 1;
+                y = k - w + 1;
+            } else if (k < 2 * w + h - 2) {
+                x = w - 1 - (k - (w + h - 1)) - 1;
+                y = h - 1;
+            } else {
+                x = 0;
+                y = h - 1 - (k - (2 * w + h - 2)) - 1;
+            }
+            ids[i] = ImageVertex.xyToId(x, y, w);
+        }
+        return ids;
+    }
+
     /**
      * Convert a sequence of vertex IDs, `path`, into a `PolyLine` that connects to the
      * corresponding pixels.
@@ -122,11 +232,20 @@ record ImageVertex(ImageGraph image, int x, int y) implements Vertex<ImageEdge>
         return new Iterable<ImageEdge>() {
             @Override
             public Iterator<ImageEdge> iterator() {
-                return new ImageEdgeIterator();
+                return new ImageEdgeIterator(false);
             }
         };
     }
 
+    /**
+     * Return an object supporting iteration over all of the edges connecting a neighboring vertex
+     * to this vertex.  This vertex serves as the "destination" vertex for each such edge, and each
+     * edge's direction is the direction from its source pixel to this one.
+     */
+    public Iterable<ImageEdge> incomingEdges() {
+        return () -> new ImageEdgeIterator(true);
+    }
+
     /**
      * Return the location of the pixel represented by this vertex in the image.
      */
@@ -135,41 +254,70 @@ record ImageVertex(ImageGraph image, int x, int y) implements Vertex<ImageEdge>
     }
 
     /**
-     * Return whether a potential pixel neighbor in the direction `dir` is within the image's
-     * bounds.  Requires `dir` in [0..7], with 0 representing "right" and 2 representing "up".
+     * The offsets to our neighbor in each direction.  Directions [0..7] are the surrounding pixels,
+     * counterclockwise from "right" (so 2 is "up"); [8..15] are the "knight moves",
+     * counterclockwise from two-right-one-up.  Direction `dir` and `opposite(dir)` are opposite.
+     */
+    private static final int[] dx = {1, 1, 0, -1, -1, -1, 0, 1, 2, 1, -1, -2, -2, -1, 1, 2};
+    private static final int[] dy = {0, -1, -1, -1, 0, 1, 1, 1, -1, -2, -2, -1, 1, 2, 2, 1};
+
+    /**
+     * Return whether our graph connects us to a neighbor in the direction `dir` and that neighbor
+     * is within the image's bounds.  Requires `dir` in [0..15], with 0 representing "right" and 2
+     * representing "up" (see `dx` and `dy`).
      */
     boolean validDir(int dir) {
-        return switch (dir) {
-            case 0 -> x + 1 < image.width();
-            case 1 -> x + 1 < image.width() && y > 0;
-            case 2 -> y > 0;
-            case 3 -> x > 0 && y > 0;
-            case 4 -> x > 0;
-            case 5 -> x > 0 && y + 1 < image.height();
-            case 6 -> y + 1 < image.height();
-            case 7 -> x + 1 < image.width() && y + 1 < image.height();
-            default -> false;
-        };
+        if (!image.connectivity().includes(dir)) {
+            return false;
+        }
+        int nx = x + dx[dir];
+        int ny = y + dy[dir];
+        return nx >= 0 && nx < image.width() && ny >= 0 && ny < image.height();
     }
 
     /**
      * Return the ID of our neighboring vertex in the direction `dir`.  Requires that such a
-     * neighbor is within the image's bounds.  Requires `dir` in [0..7], with 0 representing "right"
-     * and 2 representing "up".
+     * neighbor is within the image's bounds.  Requires `dir` in [0..15], with 0 representing
+     * "right" and 2 representing "up".
      */
     int neighborId(int dir) {
         assert validDir(dir);
-        return switch (dir) {
-            case 0 -> xyToId(x + 1, y, image.width());
-            case 1 -> xyToId(x + 1, y - 1, image.width());
-            case 2 -> xyToId(x, y - 1, image.width());
-            case 3 -> xyToId(x - 1, y - 1, image.width());
-            case 4 -> xyToId(x - 1, y, image.width());
-            case 5 -> xyToId(x - 1, y + 1, image.width());
-            case 6 -> xyToId(x, y + 1, image.width());
-            case 7 -> xyToId(x + 1, y + 1, image.width());
-            default -> throw new IllegalArgumentException();
-        };
+        return xyToId(x + dx[dir], y + dy[dir], image.width());
+    }
+
+    /**
+     * Return the direction in which the neighboring vertex with ID `neighborId` lies, or -1 if
+     * that vertex is not one of our neighbors.
+     */
+    int dirTo(int neighborId) {
+        for (int dir : image.connectivity().directions) {
+            if (validDir(dir) && neighborId(dir) == neighborId) {
+                return dir;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Return the direction opposite to `dir` (the direction back from our neighbor in direction
+     * `dir`).  Requires `dir` in [0..15].
+     */
+    static int opposite(int dir) {
+        return (dir < 8) ? (dir + 4) % 8 : 8 + (dir - 4) % 8;
+    }
+
+    /**
+     * Return the horizontal offset to our neighbor in direction `dir` (positive is right).
+     */
+    static int dx(int dir) {
+        return dx[dir];
+    }
+
+    /**
+     * Return the vertical offset to our neighbor in direction `dir` (positive is down).
+     */
+    static int dy(int dir) {
+        return dy[dir];
     }
 
     /**
@@ -182,23 +330,36 @@ record ImageVertex(ImageGraph image, int x, int y) implements Vertex<ImageEdge>
     }
 
     /**
-     * An Iterator for enumerating the valid outgoing edges for this ImageVertex.
+     * An Iterator for enumerating the valid outgoing (or incoming) edges for this ImageVertex.
      */
     class ImageEdgeIterator implements Iterator<ImageEdge> {
 
         /**
-         * The next edge direction to yield, or 8 if all edges have been yielded.
+         * The directions our graph connects pixels in.
+         */
+        private final int[] dirs = image.connectivity().directions;
+
+        /**
+         * The index in `dirs` of the next edge direction to yield, or `dirs.length` if all edges
+         * have been yielded.  For incoming edges, the direction is the direction from this vertex
+         * to the edge's source.
+         */
+        private int next;
+
+        /**
+         * Whether to yield edges leading to this vertex instead of edges leaving it.
          */
-        private int nextDir;
+        private final boolean incoming;
 
-        public ImageEdgeIterator() {
-            nextDir = 0;
+        public ImageEdgeIterator(boolean incoming) {
+            this.incoming = incoming;
+            next = 0;
             findNextValidDir();
         }
 
         @Override
         public boolean hasNext() {
-            return nextDir < 8;
+            return next < dirs.length;
         }
 
         @Override
@@ -206,20 +367,23 @@ record ImageVertex(ImageGraph image, int x, int y) implements Vertex<ImageEdge>
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            ImageEdge nextEdge = new ImageEdge(id(), neighborId(nextDir), nextDir);
-            nextDir += 1;
+            int dir = dirs[next];
+            ImageEdge nextEdge = incoming
+                    ? new ImageEdge(neighborId(dir), id(), opposite(dir))
+                    : new ImageEdge(id(), neighborId(dir), dir);
+            next += 1;
             findNextValidDir();
             return nextEdge;
         }
 
         /**
-         * Advance `nextDir` until it represents the next valid edge direction ("valid" means that
-         * it points to a neighbor that is within the image's bounds).  Advances to 8 when there are
-         * no more valid edge directions.
+         * Advance `next` until it represents the next valid edge direction ("valid" means that it
+         * points to a neighbor that is within the image's bounds).  Advances to `dirs.length` when
+         * there are no more valid edge directions.
          */
         private void findNextValidDir() {
-            while (nextDir < 8 && !validDir(nextDir)) {
-                nextDir += 1;
+            while (next < dirs.length && !validDir(dirs[next])) {
+                next += 1;
             }
         }
     }
@@ -237,7 +401,7 @@ record ImageEdge(int startId, int endId, int dir) implements Edge {
         // This "post-constructor" runs after the record's fields have been initialized to the
         //  constructor's arguments.  Here we just assert that the location is within the image's
         //  bounds.
-        assert dir >= 0 && dir < 8;
+        assert dir >= 0 && dir < 16;
 
         // We can't actually assert these without a reference to the ImageGraph, but we leave them
         //  here as documentation.
@@ -250,7 +414,9 @@ record ImageEdge(int startId, int endId, int dir) implements Edge {
      * centers.
      */
     public double length() {
-        if (dir % 2 == 0) {
+        if (dir >= 8) {
+            return Math.sqrt(5);
+        } else if (dir % 2 == 0) {
             return 1;
         } else {
             return Math.sqrt(2);
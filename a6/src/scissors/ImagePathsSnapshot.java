@@ -32,4 +32,46 @@ public class ImagePathsSnapshot {
     public boolean settled(Point p) {
         return paths.settled(graph.idAt(p));
     }
+
+    /**
+     * Return whether the pixel with index `pixel` (`y * width + x` for the pixel at (x, y)) is
+     * known to be reachable from the pathfinder's starting location.  Requires `pixel` is the index
+     * of a pixel in the image.
+     */
+    public boolean discovered(int pixel) {
+        return paths.discovered(pixel);
+    }
+
+    /**
+     * Return whether a shortest path is known from the pathfinder's starting location to the pixel
+     * with index `pixel` (as above).  Requires `pixel` is the index of a pixel in the image.
+     */
+    public boolean settled(int pixel) {
+        return paths.settled(pixel);
+    }
+
+    /**
+     * Return the number of pixels the pathfinder had discovered when this snapshot was taken.  See
+     * `PathfindingSnapshot.discoveredCount()`.
+     */
+    public int discoveredCount() {
+        return paths.discoveredCount();
+    }
+
+    /**
+     * Return the index (`y * width + x`) of the `i`th pixel the pathfinder discovered.  Requires
+     * `i` is in [0..`discoveredCount()`).
+     */
+    public int discoveredPixel(int i) {
+        return paths.discoveredId(i);
+    }
+
+    /**
+     * Return whether this snapshot was taken later in the same search as `earlier`, so that the
+     * pixels `earlier` had discovered are the first ones discovered by this snapshot, in the same
+     * order.
+     */
+    public boolean continues(ImagePathsSnapshot earlier) {
+        return graph == earlier.graph && paths.continues(earlier.paths);
+    }
 }
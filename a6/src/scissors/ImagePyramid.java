@@ -0,0 +1,262 @@
+package scissors;
+
+import graph.ShortestPaths;
+import graph.Weigher;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.IntStream;
+
+/**
+ * A multi-resolution view of an `ImageGraph` for finding good point-to-point paths in very large
+ * images quickly.  Level 0 is the image itself; each coarser level halves the resolution (rounding
+ * up), with each pixel standing for a 2x2 block of the level below.  The weight of an edge between
+ * two blocks is twice the weight of the cheapest edge between their pixels in that level, so that
+ * thin, low-cost boundaries survive coarsening instead of being averaged away.
+ * <p>
+ * A query is solved at the coarsest level first; each finer level then only searches a narrow
+ * corridor around the previous level's path.  Paths are therefore not guaranteed to be optimal,
+ * but are close to it unless the best path strays far from the coarse one, and the area searched
+ * is a small fraction of the image.  Levels are immutable once constructed; each thread must use
+ * its own `Query`, and queries are pooled so that each costs only the area it searches rather than
+ * arrays the size of every level.  The level-0 weigher must be thread-safe.
+ */
+class ImagePyramid {
+
+    /**
+     * Extra weight charged for entering a pixel outside a level's corridor.  Large enough that no
+     * path leaves its corridor unless it must, so such pixels are discovered but never settled.
+     */
+    private static final int outsidePenalty = 1 << 20;
+
+    /**
+     * `blockDirs[dy + 1][dx + 1]` is the direction of the offset (`dx`, `dy`) between neighboring
+     * blocks (-1 for no offset).
+     */
+    private static final int[][] blockDirs = {{3, 2, 1}, {4, -1, 0}, {5, 6, 7}};
+
+    /**
+     * Our levels' graphs, from finest (the original image graph) to coarsest.
+     */
+    private final List<ImageGraph> graphs = new ArrayList<>();
+
+    /**
+     * Our levels' weighers, parallel to `graphs`.  Level 0 uses the image's weigher; coarser levels
+     * look up their aggregated weights.
+     */
+    private final List<Weigher<ImageEdge>> weighers = new ArrayList<>();
+
+    /**
+     * How far (in pixels of the finer level) each corridor extends beyond the blocks of the coarser
+     * path it was derived from.
+     */
+    private final int corridorRadius;
+
+    /**
+     * Query solvers not currently in use (see `acquireQuery()`).
+     */
+    private final ConcurrentLinkedQueue<Query> idleQueries = new ConcurrentLinkedQueue<>();
+
+    /**
+     * Build a pyramid over `graph` whose finest weights are given by `weigher`, halving the
+     * resolution until neither dimension exceeds `maxCoarseSize`.  Corridors will extend
+     * `corridorRadius` pixels beyond each coarse path.  Aggregation runs in parallel over rows.
+     * Requires `maxCoarseSize` is positive and `corridorRadius` is non-negative.
+     */
+    ImagePyramid(ImageGraph graph, Weigher<ImageEdge> weigher, int maxCoarseSize,
+            int corridorRadius) {
+        assert maxCoarseSize > 0 && corridorRadius >= 0;
+        this.corridorRadius = corridorRadius;
+        graphs.add(graph);
+        weighers.add(weigher);
+        while (graph.width() > maxCoarseSize || graph.height() > maxCoarseSize) {
+            // Coarse levels are 8-connected (knight moves aggregate into diagonal and straight
+            //  moves between blocks), unless the finest level has no diagonal edges to aggregate
+            Connectivity connectivity = (graph.connectivity() == Connectivity.FOUR)
+                    ? Connectivity.FOUR : Connectivity.EIGHT;
+            ImageGraph coarse = new ImageGraph((graph.width() + 1) / 2, (graph.height() + 1) / 2,
+                    connectivity);
+            int[] weights = aggregate(graph, weigher, coarse);
+            weigher = e -> weights[8 * e.startId() + e.dir()];
+            graph = coarse;
+            graphs.add(graph);
+            weighers.add(weigher);
+        }
+    }
+
+    /**
+     * Return the weights of the edges of `coarse`, a graph at half the resolution of `fine` whose
+     * weights are given by `weigher`, indexed by `8 * startId + dir`.
+     */
+    private static int[] aggregate(ImageGraph fine, Weigher<ImageEdge> weigher,
+            ImageGraph coarse) {
+        int[] weights = new int[8 * coarse.vertexCount()];
+        // Each task fills the weights of one coarse row, from the two fine rows it covers
+        IntStream.range(0, coarse.height()).parallel().forEach(cy -> {
+            int rowStart = 8 * cy * coarse.width();
+            Arrays.fill(weights, rowStart, rowStart + 8 * coarse.width(),
+                    Integer.MAX_VALUE);
+            for (int y = 2 * cy; y < Math.min(2 * cy + 2, fine.height()); ++y) {
+                for (int x = 0; x < fine.width(); ++x) {
+                    ImageVertex v = new ImageVertex(fine, x, y);
+                    int blockId = ImageVertex.xyToId(x / 2, cy, coarse.width());
+                    for (int dir : fine.connectivity().directions) {
+                        if (!v.validDir(dir)) {
+                            continue;
+                        }
+                        ImageVertex n = fine.getVertex(v.neighborId(dir));
+                        int blockDir = blockDirs[n.y() / 2 - cy + 1][n.x() / 2 - x / 2 + 1];
+                        if (blockDir < 0) {
+                            // Both ends are in the same block
+                            continue;
+                        }
+                        int i = 8 * blockId + blockDir;
+                        weights[i] = Math.min(weights[i],
+                                weigher.weight(new ImageEdge(v.id(), n.id(), dir)));
+                    }
+                }
+            }
+            for (int i = rowStart; i < rowStart + 8 * coarse.width(); ++i) {
+                // Edges leaving the image are never used, so their weight does not matter
+                weights[i] = (weights[i] == Integer.MAX_VALUE) ? 0 : 2 * weights[i];
+            }
+        });
+        return weights;
+    }
+
+    /**
+     * Return the number of levels in this pyramid (1 if the image is already small enough to
+     * search directly).
+     */
+    int levelCount() {
+        return graphs.size();
+    }
+
+    /**
+     * Return a query solver that no other thread is using, reusing one released earlier if there
+     * is one (each solver holds arrays the size of every level, which are only cleared where the
+     * previous query touched them).  Pass it to `release()` once done with it.
+     */
+    Query acquireQuery() {
+        Query query = idleQueries.poll();
+        return (query != null) ? query : new Query();
+    }
+
+    /**
+     * Make `query`, which was returned by `acquireQuery()` and is no longer in use, available to
+     * later callers.
+     */
+    void release(Query query) {
+        idleQueries.add(query);
+    }
+
+    /**
+     * Finds paths between pairs of pixels coarse-to-fine.  Must only be used by one thread at a
+     * time.
+     */
+    class Query {
+
+        /**
+         * A solver for each level, each restricted to that level's corridor.
+         */
+        private final List<ShortestPaths<ImageVertex, ImageEdge>> solvers = new ArrayList<>();
+
+        /**
+         * The corridor for each level except the coarsest (which is searched without one).
+         */
+        private final List<BitSet> corridors = new ArrayList<>();
+
+        /**
+         * The coarser path each level's corridor was last marked around (null if none), so that
+         * it can be cleared without visiting the whole level.
+         */
+        private final List<List<Integer>> corridorPaths = new ArrayList<>();
+
+        /**
+         * The number of pixels settled (over all levels) by the most recent query.
+         */
+        private int settledCount;
+
+        private Query() {
+            for (int level = 0; level < levelCount(); ++level) {
+                BitSet corridor = new BitSet(graphs.get(level).vertexCount());
+                corridors.add(corridor);
+                corridorPaths.add(null);
+                Weigher<ImageEdge> weigher = weighers.get(level);
+                Weigher<ImageEdge> restricted = (level == levelCount() - 1) ? weigher
+                        : e -> corridor.get(e.endId()) ? weigher.weight(e)
+                                : weigher.weight(e) + outsidePenalty;
+                solvers.add(new ShortestPaths<>(graphs.get(level), restricted));
+            }
+        }
+
+        /**
+         * Return the sequence of vertex IDs in the original image graph along a good path from the
+         * vertex with ID `srcId` to the vertex with ID `dstId` (inclusive).
+         */
+        List<Integer> pathBetween(int srcId, int dstId) {
+            settledCount = 0;
+            ImageVertex src = graphs.getFirst().getVertex(srcId);
+            ImageVertex dst = graphs.getFirst().getVertex(dstId);
+            List<Integer> path = null;
+            for (int level = levelCount() - 1; level >= 0; --level) {
+                ImageGraph graph = graphs.get(level);
+                if (path != null) {
+                    markCorridor(level, path);
+                }
+                int levelSrc = ImageVertex.xyToId(src.x() >> level, src.y() >> level,
+                        graph.width());
+                int levelDst = ImageVertex.xyToId(dst.x() >> level, dst.y() >> level,
+                        graph.width());
+                ShortestPaths<ImageVertex, ImageEdge> solver = solvers.get(level);
+                solver.findPathsTo(levelSrc, levelDst);
+                settledCount += solver.settledCount();
+                path = solver.pathTo(levelDst);
+            }
+            return path;
+        }
+
+        /**
+         * Return the number of pixels settled, over all levels, by the most recent query.
+         */
+        int settledCount() {
+            return settledCount;
+        }
+
+        /**
+         * Make the corridor for `level` cover the blocks of `coarsePath` (a path in the next
+         * coarser level), extended by our corridor radius, and nothing else.
+         */
+        private void markCorridor(int level, List<Integer> coarsePath) {
+            List<Integer> previous = corridorPaths.get(level);
+            if (previous != null) {
+                setCorridor(level, previous, false);
+            }
+            setCorridor(level, coarsePath, true);
+            corridorPaths.set(level, coarsePath);
+        }
+
+        /**
+         * Set whether the corridor for `level` includes the pixels within our corridor radius of
+         * the blocks of `coarsePath` (a path in the next coarser level) to `value`.
+         */
+        private void setCorridor(int level, List<Integer> coarsePath, boolean value) {
+            ImageGraph graph = graphs.get(level);
+            ImageGraph coarse = graphs.get(level + 1);
+            BitSet corridor = corridors.get(level);
+            for (int id : coarsePath) {
+                ImageVertex block = coarse.getVertex(id);
+                int x0 = Math.max(0, 2 * block.x() - corridorRadius);
+                int x1 = Math.min(graph.width() - 1, 2 * block.x() + 1 + corridorRadius);
+                int y0 = Math.max(0, 2 * block.y() - corridorRadius);
+                int y1 = Math.min(graph.height() - 1, 2 * block.y() + 1 + corridorRadius);
+                for (int y = y0; y <= y1; ++y) {
+                    int rowStart = ImageVertex.xyToId(0, y, graph.width());
+                    corridor.set(rowStart + x0, rowStart + x1 + 1, value);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,116 @@
+package scissors;
+
+import graph.Weigher;
+import java.awt.color.ColorSpace;
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import javax.imageio.ImageIO;
+
+/**
+ * Weighs edges using a per-pixel cost map computed outside this program (for example, by a
+ * learned edge detector run offline), so that no weights need to be computed from the image at
+ * all.  Costs are unsigned 16-bit values (0 for a certain boundary, 65535 for certainly not one),
+ * held in a little-endian `ByteBuffer` indexed by `2 * vertexId`.
+ * <p>
+ * Raw cost maps (a file of exactly `2 * width * height` bytes, in row-major order) are
+ * memory-mapped, so loading one costs nothing up front and its pages are shared with the OS file
+ * cache.  PNG cost maps (16-bit or 8-bit grayscale, the latter scaled to 16 bits) are compressed,
+ * so they are decoded once into an off-heap buffer in the same layout.
+ */
+class ImportedCostWeigher implements Weigher<ImageEdge> {
+
+    /**
+     * The cost of each pixel, as little-endian unsigned 16-bit values indexed by `2 * vertexId`.
+     * Only read with absolute gets, so it may be shared by concurrent searches.
+     */
+    private final ByteBuffer costs;
+
+    /**
+     * Create a weigher for costs laid out as described for `costs`.
+     */
+    private ImportedCostWeigher(ByteBuffer costs) {
+        this.costs = costs;
+    }
+
+    /**
+     * Load the cost map in `file` for an image of size `width` x `height`.  Files whose names end
+     * in ".png" are decoded as images; any other file is mapped as raw little-endian 16-bit costs.
+     * Throws IOException if the file cannot be read or its dimensions do not match the image's.
+     */
+    static ImportedCostWeigher load(Path file, int width, int height) throws IOException {
+        boolean png = file.getFileName().toString().toLowerCase().endsWith(".png");
+        ByteBuffer costs = png ? decodePng(file, width, height) : mapRaw(file, width, height);
+        return new ImportedCostWeigher(costs.order(ByteOrder.LITTLE_ENDIAN));
+    }
+
+    /**
+     * Memory-map the raw cost map in `file`, which must hold exactly one 16-bit cost per pixel of a
+     * `width` x `height` image.
+     */
+    private static ByteBuffer mapRaw(Path file, int width, int height) throws IOException {
+        long expected = 2L * width * height;
+        // The mapping remains valid after its channel is closed
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            if (channel.size() != expected) {
+                throw new IOException("Cost map " + file + " has " + channel.size()
+                        + " bytes; a " + width + "x" + height + " image needs " + expected);
+            }
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, expected);
+        }
+    }
+
+    /**
+     * Decode the grayscale PNG cost map in `file`, which must have size `width` x `height`, into a
+     * new off-heap buffer.  Throws IOException if the image is in color, since which of its
+     * channels (if any) holds the costs would be a guess.
+     */
+    private static ByteBuffer decodePng(Path file, int width, int height) throws IOException {
+        BufferedImage img = ImageIO.read(file.toFile());
+        if (img == null) {
+            throw new IOException("Could not decode cost map " + file);
+        }
+        if (img.getWidth() != width || img.getHeight() != height) {
+            throw new IOException("Cost map " + file + " is " + img.getWidth() + "x"
+                    + img.getHeight() + "; expected " + width + "x" + height);
+        }
+        if (img.getColorModel().getColorSpace().getType() != ColorSpace.TYPE_GRAY) {
+            throw new IOException("Cost map " + file + " is not a grayscale image");
+        }
+        Raster raster = img.getRaster();
+        int bits = raster.getSampleModel().getSampleSize(0);
+        ByteBuffer costs = ByteBuffer.allocateDirect(2 * width * height)
+                .order(ByteOrder.LITTLE_ENDIAN);
+        int[] row = new int[width];
+        for (int y = 0; y < height; ++y) {
+            raster.getSamples(0, y, width, 1, 0, row);
+            for (int x = 0; x < width; ++x) {
+                int cost = (bits >= 16) ? row[x] : row[x] * 0xffff / ((1 << bits) - 1);
+                costs.putShort(2 * (y * width + x), (short) cost);
+            }
+        }
+        return costs;
+    }
+
+    /**
+     * Return the cost of the pixel with ID `id`, in [0..65535].
+     */
+    private int cost(int id) {
+        return costs.getShort(2 * id) & 0xffff;
+    }
+
+    /**
+     * Weigh `edge` by the mean cost of its end pixels, scaled by its length and to the range of
+     * our other weighers (at most 255 per unit of length).
+     */
+    @Override
+    public int weight(ImageEdge edge) {
+        int sum = cost(edge.startId()) + cost(edge.endId());
+        return (int) Math.round(sum * edge.length() / 514);
+    }
+}
@@ -0,0 +1,148 @@
+package scissors;
+
+import graph.Weigher;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Remembers the weights another weigher gives to the edges of an `ImageGraph`, computing them
+ * only for pixels that searches actually reach.  The first time an edge leaving a pixel is
+ * weighed, the weights of all of that pixel's outgoing edges are computed and stored; later
+ * searches of the same graph (from other starting points, or bounded by a radius or goal) read
+ * them back instead of recomputing them, so the cost of weighing is proportional to the pixels
+ * visited rather than to the size of the image.
+ * <p>
+ * Weights are stored in square tiles of `tileSize` x `tileSize` pixels, allocated the first time
+ * a pixel in them is touched, with the directions of each pixel interleaved (as in
+ * `WeightCache`).  Each entry holds its weight plus 1 as a `char`, so 0 means "not yet computed";
+ * since every entry is self-describing, concurrent searches may share one instance without
+ * locking (at worst, two threads compute the same pixel's weights).  Once the tiles reach a
+ * memory budget, pixels in unallocated tiles are weighed by the underlying weigher every time.
+ */
+class LazyWeights implements Weigher<ImageEdge> {
+
+    /**
+     * The side length of a tile, in pixels (a power of 2).
+     */
+    private static final int tileShift = 6;
+    private static final int tileSize = 1 << tileShift;
+
+    /**
+     * The graph whose edges we weigh.
+     */
+    private final ImageGraph graph;
+
+    /**
+     * The weigher whose weights we remember.
+     */
+    private final Weigher<ImageEdge> base;
+
+    /**
+     * The number of directions stored per pixel, and the index of each direction among them (-1
+     * for directions not in `graph`'s connectivity).
+     */
+    private final int directionCount;
+    private final int[] planes = new int[16];
+
+    /**
+     * The number of tiles across each row of tiles.
+     */
+    private final int tilesAcross;
+
+    /**
+     * The tiles of stored weights (plus 1), in raster order, or null for tiles not yet touched.
+     */
+    private final AtomicReferenceArray<char[]> tiles;
+
+    /**
+     * The number of tiles allocated so far, and the most we may allocate.
+     */
+    private final AtomicInteger tileCount = new AtomicInteger();
+    private final int maxTiles;
+
+    /**
+     * Create a weigher remembering the weights `base` gives to the edges of `graph`, using at most
+     * about `budgetBytes` bytes of memory to do so.
+     */
+    LazyWeights(ImageGraph graph, Weigher<ImageEdge> base, long budgetBytes) {
+        this.graph = graph;
+        this.base = base;
+        int[] directions = graph.connectivity().directions;
+        directionCount = directions.length;
+        Arrays.fill(planes, -1);
+        for (int i = 0; i < directionCount; ++i) {
+            planes[directions[i]] = i;
+        }
+        tilesAcross = (graph.width() + tileSize - 1) >> tileShift;
+        int tilesDown = (graph.height() + tileSize - 1) >> tileShift;
+        tiles = new AtomicReferenceArray<>(tilesAcross * tilesDown);
+        long tileBytes = 2L * tileSize * tileSize * directionCount;
+        maxTiles = (int) Math.min(Integer.MAX_VALUE, budgetBytes / tileBytes);
+    }
+
+    @Override
+    public int weight(ImageEdge edge) {
+        int id = edge.startId();
+        int width = graph.width();
+        int y = id / width;
+        int x = id - y * width;
+        int tileIndex = (y >> tileShift) * tilesAcross + (x >> tileShift);
+        char[] tile = tiles.getAcquire(tileIndex);
+        if (tile == null) {
+            tile = allocate(tileIndex);
+            if (tile == null) {
+                return base.weight(edge);
+            }
+        }
+        int first = (((y & (tileSize - 1)) << tileShift) | (x & (tileSize - 1))) * directionCount;
+        int slot = first + planes[edge.dir()];
+        int stored = tile[slot];
+        if (stored == 0) {
+            fill(tile, first, x, y);
+            stored = tile[slot];
+            if (stored == 0) {
+                // Too large to store
+                return base.weight(edge);
+            }
+        }
+        return stored - 1;
+    }
+
+    /**
+     * Return the tile with index `tileIndex`, allocating it if no other thread has, or null if
+     * it has not been allocated and our budget is exhausted.
+     */
+    private char[] allocate(int tileIndex) {
+        if (tileCount.getAndIncrement() >= maxTiles) {
+            tileCount.decrementAndGet();
+            return null;
+        }
+        char[] tile = new char[tileSize * tileSize * directionCount];
+        if (!tiles.compareAndSet(tileIndex, null, tile)) {
+            // Another thread allocated it first
+            tileCount.decrementAndGet();
+            return tiles.getAcquire(tileIndex);
+        }
+        return tile;
+    }
+
+    /**
+     * Compute and store (starting at index `first` of `tile`) the weights of every edge leaving
+     * the pixel at (`x`, `y`).  Weights that do not fit in a `char` are left unstored.
+     */
+    private void fill(char[] tile, int first, int x, int y) {
+        ImageVertex v = new ImageVertex(graph, x, y);
+        int id = v.id();
+        int[] directions = graph.connectivity().directions;
+        for (int i = 0; i < directionCount; ++i) {
+            int dir = directions[i];
+            if (v.validDir(dir)) {
+                int weight = base.weight(new ImageEdge(id, v.neighborId(dir), dir));
+                if (weight >= 0 && weight < Character.MAX_VALUE) {
+                    tile[first + i] = (char) (weight + 1);
+                }
+            }
+        }
+    }
+}
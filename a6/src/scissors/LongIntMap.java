@@ -0,0 +1,115 @@
+package scissors;
+
+import java.util.Arrays;
+
+/**
+ * A hash map from `long` keys to non-negative `int` values, for indexing many entries without
+ * boxing each key and value.  Uses open addressing with linear probing, so entries are stored in
+ * two flat arrays; entries cannot be removed.  Not thread-safe, except that any number of threads
+ * may read from a map that is no longer being modified.
+ */
+class LongIntMap {
+
+    /**
+     * The value reported for absent keys, and stored in empty slots.
+     */
+    static final int absent = -1;
+
+    /**
+     * `keys[i]` is the key stored in slot `i`, which is empty if `values[i] == absent`.  Both
+     * arrays have a power-of-two length.
+     */
+    private long[] keys;
+    private int[] values;
+
+    /**
+     * The number of entries stored.
+     */
+    private int size;
+
+    /**
+     * Create an empty map with room for about `expectedSize` entries before it must grow.
+     * Requires `expectedSize` is non-negative.
+     */
+    LongIntMap(int expectedSize) {
+        int capacity = Integer.highestOneBit(Math.max(8, 2 * expectedSize - 1)) << 1;
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, absent);
+    }
+
+    /**
+     * Return the number of entries in this map.
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * Return the value associated with `key`, or `absent` if there is none.
+     */
+    int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); values[i] != absent; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        return absent;
+    }
+
+    /**
+     * Return the value associated with `key` if there is one; otherwise associate `value` with
+     * it and return `absent`.  Requires `value` is non-negative.
+     */
+    int putIfAbsent(long key, int value) {
+        assert value >= 0;
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        for (; values[i] != absent; i = (i + 1) & mask) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+        }
+        keys[i] = key;
+        values[i] = value;
+        size += 1;
+        // Keep at least half of the slots empty, so that probe sequences stay short
+        if (2 * size > keys.length) {
+            grow();
+        }
+        return absent;
+    }
+
+    /**
+     * Return the slot at which probing for `key` starts in tables of `mask + 1` slots.  Keys are
+     * mixed first, since keys built from pairs of small labels differ mostly in their high bits.
+     */
+    private static int slot(long key, int mask) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    /**
+     * Double our capacity, reinserting every entry.
+     */
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldValues = values;
+        keys = new long[2 * oldKeys.length];
+        values = new int[2 * oldValues.length];
+        Arrays.fill(values, absent);
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; ++j) {
+            if (oldValues[j] == absent) {
+                continue;
+            }
+            int i = slot(oldKeys[j], mask);
+            while (values[i] != absent) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            values[i] = oldValues[j];
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package scissors;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.Raster;
+
+/**
+ * The color of each pixel of an image packed into one int (0xAARRGGBB), in a single primitive
+ * array indexed by vertex ID, so that all of a pixel's channels are fetched with one array read
+ * instead of one `Raster.getSample()` call per band.  Built for packed-int (INT_RGB, INT_ARGB) and
+ * interleaved-byte (3BYTE_BGR, 4BYTE_ABGR) images by copying their raw data elements a row at a
+ * time, in parallel tiles; as for `GrayPlane`, this avoids taking the image's `DataBuffer` array,
+ * which would stop Java2D from accelerating the image when it is displayed.
+ */
+class PackedPixels {
+
+    /**
+     * The dimensions of the image, in pixels.
+     */
+    final int width, height;
+
+    /**
+     * The color of each pixel as 0xAARRGGBB, indexed by vertex ID.  The alpha byte is only
+     * meaningful if `channels` is 4.
+     */
+    final int[] pixels;
+
+    /**
+     * The number of channels compared by `crossGradSum()`: 3 (red, green, and blue) or 4 (with
+     * alpha).
+     */
+    final int channels;
+
+    /**
+     * Create an empty array of pixels for an image of size `width` x `height` with `channels`
+     * channels.
+     */
+    private PackedPixels(int width, int height, int channels) {
+        this.width = width;
+        this.height = height;
+        this.channels = channels;
+        pixels = new int[width * height];
+    }
+
+    /**
+     * Return the packed pixels of `img`, whose alpha channel (if it has one) is compared only if
+     * `includeAlpha` is true, or null if `img` is not of one of the types we can copy quickly.
+     */
+    static PackedPixels of(BufferedImage img, boolean includeAlpha) {
+        int type = img.getType();
+        if (type != BufferedImage.TYPE_INT_RGB && type != BufferedImage.TYPE_INT_ARGB
+                && type != BufferedImage.TYPE_3BYTE_BGR && type != BufferedImage.TYPE_4BYTE_ABGR) {
+            return null;
+        }
+        int channels = (includeAlpha && img.getColorModel().hasAlpha()) ? 4 : 3;
+        PackedPixels packed = new PackedPixels(img.getWidth(), img.getHeight(), channels);
+        Raster raster = img.getRaster();
+        boolean ints = type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB;
+        Tiling.forEachTile(packed.width, packed.height, (x0, y0, x1, y1) -> {
+            if (ints) {
+                packed.copyInts(raster, x0, y0, x1, y1);
+            } else {
+                packed.packBytes(raster, x0, y0, x1, y1);
+            }
+        });
+        return packed;
+    }
+
+    /**
+     * Copy the pixels with x in [`x0`..`x1`) and y in [`y0`..`y1`) of `raster`, whose data
+     * elements are already packed as 0xAARRGGBB.
+     */
+    private void copyInts(Raster raster, int x0, int y0, int x1, int y1) {
+        int[] row = new int[x1 - x0];
+        for (int y = y0; y < y1; ++y) {
+            raster.getDataElements(x0, y, row.length, 1, row);
+            System.arraycopy(row, 0, pixels, y * width + x0, row.length);
+        }
+    }
+
+    /**
+     * Pack the pixels with x in [`x0`..`x1`) and y in [`y0`..`y1`) of `raster`, whose data
+     * elements are one byte per band, in band (red, green, blue, and possibly alpha) order.
+     */
+    private void packBytes(Raster raster, int x0, int y0, int x1, int y1) {
+        int w = x1 - x0;
+        int bands = raster.getNumBands();
+        byte[] row = new byte[bands * w];
+        for (int y = y0; y < y1; ++y) {
+            raster.getDataElements(x0, y, w, 1, row);
+            int out = y * width + x0;
+            for (int i = 0, in = 0; i < w; ++i, in += bands) {
+                int alpha = (bands == 4) ? row[in + 3] & 0xff : 0xff;
+                pixels[out + i] = alpha << 24 | (row[in] & 0xff) << 16
+                        | (row[in + 1] & 0xff) << 8 | (row[in + 2] & 0xff);
+            }
+        }
+    }
+
+    /**
+     * Return the sum over our channels of `ScissorsWeights.crossGrad()` for the edge in direction
+     * `dir` from the pixel at (`x`, `y`).  The (up to) four pixels on either side of the edge are
+     * each read once, and every channel's difference is taken from those reads.
+     */
+    int crossGradSum(int x, int y, int dir) {
+        int w = width;
+        int id = y * w + x;
+        // The slope across the edge is the difference between the pixels `a1` + `a2` on one side
+        //  and `b1` + `b2` on the other (single pixels on each side of diagonal edges)
+        int a1;
+        int a2 = 0;
+        int b1;
+        int b2 = 0;
+        switch (dir) {
+            case 0 -> {
+                if (y == 0 || y == height - 1) {
+                    return channels * ScissorsWeights.borderWeight;
+                }
+                a1 = pixels[id + w];
+                a2 = pixels[id + w + 1];
+                b1 = pixels[id - w];
+                b2 = pixels[id - w + 1];
+            }
+            case 1 -> {
+                a1 = pixels[id + 1];
+                b1 = pixels[id - w];
+            }
+            case 2 -> {
+                if (x == 0 || x == w - 1) {
+                    return channels * ScissorsWeights.borderWeight;
+                }
+                a1 = pixels[id - w + 1];
+                a2 = pixels[id + 1];
+                b1 = pixels[id - w - 1];
+                b2 = pixels[id - 1];
+            }
+            case 3 -> {
+                a1 = pixels[id - w];
+                b1 = pixels[id - 1];
+            }
+            case 4 -> {
+                if (y == 0 || y == height - 1) {
+                    return channels * ScissorsWeights.borderWeight;
+                }
+                a1 = pixels[id - w];
+                a2 = pixels[id - w - 1];
+                b1 = pixels[id + w];
+                b2 = pixels[id + w - 1];
+            }
+            case 5 -> {
+                a1 = pixels[id - 1];
+                b1 = pixels[id + w];
+            }
+            case 6 -> {
+                if (x == 0 || x == w - 1) {
+                    return channels * ScissorsWeights.borderWeight;
+                }
+                a1 = pixels[id + w - 1];
+                a2 = pixels[id - 1];
+                b1 = pixels[id + w + 1];
+                b2 = pixels[id + 1];
+            }
+            case 7 -> {
+                a1 = pixels[id + w];
+                b1 = pixels[id + 1];
+            }
+            default -> {
+                // A knight move; see `ScissorsWeights.knightCrossGrad()`
+                int dx = ImageVertex.dx(dir);
+                int dy = ImageVertex.dy(dir);
+                if (Math.abs(dx) == 2) {
+                    int mx = x + dx / 2;
+                    a1 = pixels[(y + dy) * w + x];
+                    a2 = pixels[(y + dy) * w + mx];
+                    b1 = pixels[y * w + mx];
+                    b2 = pixels[y * w + x + dx];
+                } else {
+                    int my = y + dy / 2;
+                    a1 = pixels[y * w + x + dx];
+                    a2 = pixels[my * w + x + dx];
+                    b1 = pixels[my * w + x];
+                    b2 = pixels[(y + dy) * w + x];
+                }
+            }
+        }
+
+        int sum = 0;
+        for (int shift = 0; shift < 8 * channels; shift += 8) {
+            int diff = Math.abs(((a1 >>> shift) & 0xff) + ((a2 >>> shift) & 0xff)
+                    - ((b1 >>> shift) & 0xff) - ((b2 >>> shift) & 0xff));
+            if (dir >= 8) {
+                sum += (int) (diff * Math.sqrt(5) / 4);
+            } else if (dir % 2 == 0) {
+                sum += diff / 4;
+            } else {
+                sum += diff;
+            }
+        }
+        return sum;
+    }
+}
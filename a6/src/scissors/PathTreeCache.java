@@ -0,0 +1,191 @@
+package scissors;
+
+import graph.PathfindingSnapshot;
+import graph.Weigher;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A least-recently-used cache of shortest-path trees computed over one image, keyed by starting
+ * vertex and weigher name.  Completed trees are stored compactly (one byte per pixel giving the
+ * direction to its predecessor) and decoded when needed; trees whose computation was interrupted
+ * are stored as snapshots from which the search can be resumed.  The least recently used entries
+ * are evicted to keep the total size of all entries within a memory budget.  Instances must only
+ * be accessed from one thread (the EDT), but entries are immutable and may be encoded and decoded
+ * on any thread.
+ */
+class PathTreeCache {
+
+    /**
+     * Identifies a tree by the ID of its starting vertex and the name of the weigher it was
+     * computed with.
+     */
+    private record Key(int startId, String weightName) {}
+
+    /**
+     * A cached tree rooted at the vertex with ID `startId`.  If the tree is complete,
+     * `predecessorDirs[id]` is the direction from the vertex with ID `id` to its predecessor (-1
+     * for the start and any unreachable vertices) and `partial` is null.  Otherwise,
+     * `predecessorDirs` is null and `partial` holds the results found before the search was
+     * interrupted.
+     */
+    record Entry(int startId, byte[] predecessorDirs, PathfindingSnapshot partial) {
+
+        /**
+         * Return whether this entry holds a completed tree.
+         */
+        boolean complete() {
+            return partial == null;
+        }
+
+        /**
+         * Return the approximate number of bytes used by this entry.
+         */
+        long sizeBytes() {
+            if (complete()) {
+                return predecessorDirs.length;
+            }
+            // Distances and predecessors, plus one bit per vertex for settled status
+            return 8L * partial.vertexCount() + partial.vertexCount() / 8;
+        }
+
+        /**
+         * Expand this completed tree into a snapshot of shortest paths in `graph`, recomputing
+         * distances with `weigher` (which must be the weigher the tree was computed with).  Takes
+         * time proportional to the size of the image, but far less than searching it.
+         */
+        PathfindingSnapshot decode(ImageGraph graph, Weigher<ImageEdge> weigher) {
+            assert complete();
+            int n = predecessorDirs.length;
+            int[] distances = new int[n];
+            int[] predecessors = new int[n];
+            Arrays.fill(distances, -1);
+            Arrays.fill(predecessors, -1);
+            BitSet settled = new BitSet(n);
+
+            // Visit vertices from the start outward so that each vertex's predecessor has its
+            //  distance computed before the vertex itself.  A neighbor is a child if its
+            //  predecessor direction points back at us.
+            int[] queue = new int[n];
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = startId;
+            distances[startId] = 0;
+            settled.set(startId);
+            while (head < tail) {
+                ImageVertex v = graph.getVertex(queue[head++]);
+                for (int dir : graph.connectivity().directions) {
+                    if (!v.validDir(dir)) {
+                        continue;
+                    }
+                    int childId = v.neighborId(dir);
+                    if (predecessorDirs[childId] == ImageVertex.opposite(dir)
+                            && !settled.get(childId)) {
+                        ImageEdge e = new ImageEdge(v.id(), childId, dir);
+                        distances[childId] = distances[v.id()] + weigher.weight(e);
+                        predecessors[childId] = v.id();
+                        settled.set(childId);
+                        queue[tail++] = childId;
+                    }
+                }
+            }
+            return new PathfindingSnapshot(startId, distances, predecessors, settled);
+        }
+    }
+
+    /**
+     * Return an entry holding the completed tree `tree` compactly.  `tree` must have been computed
+     * in `graph`.
+     */
+    static Entry compact(ImageGraph graph, PathfindingSnapshot tree) {
+        byte[] dirs = new byte[graph.vertexCount()];
+        for (int id = 0; id < dirs.length; ++id) {
+            int predId = tree.predecessor(id);
+            dirs[id] = (byte) ((predId < 0) ? -1 : graph.getVertex(id).dirTo(predId));
+        }
+        return new Entry(tree.start(), dirs, null);
+    }
+
+    /**
+     * Return an entry holding the interrupted search results `partial`.
+     */
+    static Entry partial(PathfindingSnapshot partial) {
+        return new Entry(partial.start(), null, partial);
+    }
+
+    /**
+     * Cached entries, in order from least to most recently used.
+     */
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The maximum total size of our entries, in bytes.
+     */
+    private final long budgetBytes;
+
+    /**
+     * The total size of our entries, in bytes.  Must not exceed `budgetBytes`.
+     */
+    private long usedBytes;
+
+    /**
+     * Create an empty cache whose entries may use at most `budgetBytes` bytes in total.
+     */
+    PathTreeCache(long budgetBytes) {
+        this.budgetBytes = budgetBytes;
+    }
+
+    /**
+     * Create an empty cache whose budget is a fraction of the maximum heap size.
+     */
+    PathTreeCache() {
+        this(Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    /**
+     * Return the tree rooted at the vertex with ID `startId` computed with the weigher named
+     * `weightName`, marking it as recently used, or null if no such tree is cached.
+     */
+    Entry get(int startId, String weightName) {
+        return entries.get(new Key(startId, weightName));
+    }
+
+    /**
+     * Cache `entry` as the tree computed with the weigher named `weightName`, replacing any
+     * previous entry for the same start, then evict the least recently used entries until we are
+     * within budget.  A partial entry does not replace a complete one, and an entry that would not
+     * fit in the budget on its own is not cached.
+     */
+    void put(String weightName, Entry entry) {
+        Key key = new Key(entry.startId(), weightName);
+        Entry old = entries.get(key);
+        if (old != null && old.complete() && !entry.complete()) {
+            return;
+        }
+        if (old != null) {
+            entries.remove(key);
+            usedBytes -= old.sizeBytes();
+        }
+        if (entry.sizeBytes() > budgetBytes) {
+            return;
+        }
+        entries.put(key, entry);
+        usedBytes += entry.sizeBytes();
+        Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while (usedBytes > budgetBytes) {
+            usedBytes -= it.next().getValue().sizeBytes();
+            it.remove();
+        }
+    }
+
+    /**
+     * Remove all entries from this cache.
+     */
+    void clear() {
+        entries.clear();
+        usedBytes = 0;
+    }
+}
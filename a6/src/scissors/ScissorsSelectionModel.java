@@ -4,20 +4,32 @@ package scissors;
 import static selector.SelectionModel.SelectionState.*;
 
 
+import graph.ForwardBackwardPaths;
+import graph.LandmarkPaths;
 import graph.PathfindingSnapshot;
 import graph.ShortestPaths;
+import graph.Weigher;
 import java.awt.Point;
 import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
+import java.io.IOException;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Deque;
 import java.util.List;
 import java.util.ListIterator;
 import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.Future;
-import java.util.concurrent.Future.State;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+import javax.swing.SwingUtilities;
 import javax.swing.SwingWorker;
-import javax.swing.SwingWorker.StateValue;
 import selector.PolyLine;
 import selector.SelectionModel;
 
@@ -29,6 +41,65 @@ import selector.SelectionModel;
 public class ScissorsSelectionModel extends SelectionModel {
 
 
+    /**
+     * How often a running search should publish progress: about 60 times per second, so that its
+     * progress animates smoothly.  Searches are sliced by time rather than by vertex count so that
+     * this holds regardless of image size or weigher cost.
+     */
+    private static final Duration publishPeriod = Duration.ofNanos(1_000_000_000L / 60);
+
+    /**
+     * The least time a search should spend between progress updates, even if publishing them
+     * takes most of `publishPeriod` (as it does for very large images).
+     */
+    private static final Duration minSearchSlice = publishPeriod.dividedBy(4);
+
+    /**
+     * Runs all of our searches.  Searches the user is waiting on run at INTERACTIVE priority;
+     * speculative ones (see `anticipatePoint()`) run at BACKGROUND priority and step aside whenever
+     * interactive work is pending.
+     */
+    private static final SearchExecutor searchExecutor = new SearchExecutor();
+
+    /**
+     * Runs tasks at interactive priority on `searchExecutor`, for use with `CompletableFuture`.
+     * Shared with other models in this package whose preprocessing the user waits on.
+     */
+    static final Executor interactiveSearches =
+            task -> searchExecutor.submit(task, SearchExecutor.Priority.INTERACTIVE);
+
+    /**
+     * Runs tasks at background priority on `searchExecutor` once no interactive work is pending,
+     * for preprocessing that pauses (resubmitting itself here) while `interactivePending()`.
+     */
+    private static final Executor backgroundSearches = searchExecutor::submitWhenInteractiveIdle;
+
+    /**
+     * Where weights computed from an image are stored so that reopening the image need not compute
+     * them again, or null if caching is disabled (see `WeightCache.defaultCache()`).
+     */
+    private static final WeightCache weightCache = WeightCache.defaultCache();
+
+    /**
+     * The most memory each model may use to remember weights computed during its searches (see
+     * `LazyWeights`).
+     */
+    private static final long lazyWeightBudget = Runtime.getRuntime().maxMemory() / 8;
+
+    /**
+     * The number of landmarks used to speed up batches of point-to-point queries (see
+     * `rerouteSelection()`).  Each costs two searches of the image and 8 bytes per pixel.
+     */
+    private static final int landmarkCount = 6;
+
+    /**
+     * The largest dimension of the coarsest level of an image pyramid (see `setMultiResolution()`),
+     * and how far, in pixels, each finer level's corridor extends beyond the coarser path.
+     */
+    private static final int pyramidCoarseSize = 128;
+    private static final int pyramidCorridorRadius = 4;
+
+
     /**
      * The graph representation of the current image being rendered and traced (null if inherited
      * `img` is null).
@@ -43,6 +114,128 @@ public class ScissorsSelectionModel extends SelectionModel {
     private String weightName;
 
 
+    /**
+     * Weigher named by `weightName` for edges in `graph`.  Created on first use and kept for as
+     * long as the image is unchanged, since some weighers (e.g. grayscale conversion) are costly
+     * to construct.  Null if not yet created or if `graph` is null.
+     */
+    private Weigher<ImageEdge> weigher;
+
+
+    /**
+     * A forward/backward solver over `graph` that is not currently in use by any worker, kept so
+     * that goal-bounded searches need not allocate (and clear) arrays the size of the image.  Null
+     * if none is available.
+     */
+    private ForwardBackwardPaths<ImageVertex, ImageEdge> spareSolver;
+
+
+    /**
+     * A single-source solver over `graph` with our weigher that no search is using, kept so that a
+     * speculative search (one is started whenever the pointer rests) reuses its arrays, clearing
+     * only what the previous search touched, instead of allocating arrays the size of the image on
+     * the EDT.  Null if none is available.
+     */
+    private ShortestPaths<ImageVertex, ImageEdge> spareSearch;
+
+
+    /**
+     * A weigher reading an imported cost map (see `importCostMap()`), used in place of the one
+     * named by `weightName`, or null if no cost map has been imported since the image was set.
+     */
+    private Weigher<ImageEdge> importedCosts;
+
+
+    /**
+     * A hash of the pixels of our image, identifying the tables in `weightCache` that hold its
+     * weights.  Computed on first use and kept until a new image is set.  Null if not yet computed,
+     * or if our image's weights are not worth caching.
+     */
+    private byte[] contentHash;
+
+
+    /**
+     * Completes with our weigher (and the hash of our image) once `prepareWeights()` has created
+     * it, or null if no preparation for `graph` is pending.  `weigher()` takes its result instead
+     * of creating a second weigher.
+     */
+    private CompletableFuture<PreparedWeights> preparing;
+
+
+    /**
+     * Creates the weigher `preparing` completes with, unless a thread has already started to;
+     * safe to run on several executors, of which the first to get to it does the work.  Null if
+     * `preparing` is.
+     */
+    private Runnable prepareTask;
+
+
+    /**
+     * Adjustments the user has painted onto the weights of `graph` (see `paintCost()`), or null if
+     * none have been painted since the image was set.
+     */
+    private CostMap costs;
+
+
+    /**
+     * A solver over `graph` with our weigher, kept live between brush strokes so that each one
+     * only re-solves the subtrees through the pixels it painted.  Its search is `repairedPaths`.
+     * Only used by one repair task at a time (see `repairPaths()`).  Null if not yet needed.
+     */
+    private ShortestPaths<ImageVertex, ImageEdge> repairSolver;
+
+
+    /**
+     * A snapshot of the search `repairSolver` holds.  If `paths` is anything else, the solver must
+     * resume `paths` before repairing it.
+     */
+    private PathfindingSnapshot repairedPaths;
+
+
+    /**
+     * The IDs of pixels painted while a repair task was running, each stroke's in its own array,
+     * to be repaired together once it finishes.  Null if no repair task is running.
+     */
+    private List<int[]> pendingRepairs;
+
+
+    /**
+     * Shortest-path trees previously computed for the current image, so that returning to a point
+     * (e.g. by undoing, or by re-adding a point whose processing was cancelled) does not require
+     * searching from it again.  Shared with models copied from this one while they have the same
+     * image.  Null if inherited `img` is null.
+     */
+    private PathTreeCache treeCache;
+
+
+    /**
+     * Landmark distances for answering point-to-point queries in `graph` with our weigher,
+     * precomputed at background priority from the first use by `rerouteSelection()` and kept for
+     * as long as the image is unchanged.  Null if not yet started or if `graph` is null.
+     */
+    private CompletableFuture<LandmarkPaths<ImageVertex, ImageEdge>> landmarks;
+
+
+    /**
+     * Whether point-to-point segments (for moved points and `rerouteSelection()`) are found
+     * coarse-to-fine in an image pyramid rather than at full resolution.
+     */
+    private boolean multiResolution;
+
+
+    /**
+     * Which neighbors each pixel is connected to in `graph` (see `setConnectivity()`).
+     */
+    private Connectivity connectivity = Connectivity.EIGHT;
+
+
+    /**
+     * Pyramid over `graph` with our weigher, started on first use in multi-resolution mode and kept
+     * for as long as the image is unchanged.  Null if not yet started or if `graph` is null.
+     */
+    private CompletableFuture<ImagePyramid> pyramid;
+
+
     /**
      * The shortest paths computed from the last committed point for the current image.  May be null
      * if we are not in the SELECTING state.
@@ -51,20 +244,23 @@ public class ScissorsSelectionModel extends SelectionModel {
 
 
     /**
-     * The most recent intermediate paths from the current shortest paths solve.  Null if no ongoing
-     * solve or if solve has not reported any progress yet.
+     * The most recent intermediate paths from the current shortest paths solve, as a view of its
+     * progress (see `ShortestPaths.progress()`), whose paths to settled pixels are final.  Null if
+     * no ongoing solve or if solve has not reported any progress yet.
      */
     private PathfindingSnapshot pendingPaths;
 
 
     /**
-     * The SwingWorker currently being used to solve for shortest paths on a background thread. Note
-     * that "progress" events from `worker` will be forwarded to our own property change listeners.
+     * The SwingWorker currently being used to solve for shortest paths on a background thread
+     * (either a `ShortestPathsWorker` or, when moving a point, a `RerouteWorker`).  Note that
+     * "progress" (and "pending-paths") events from `worker` will be forwarded to our own property
+     * change listeners.
      * Null if not PROCESSING.  Note: To support asynchronous cancellation, workers should not make
      * any changes to this model or forward any events if `worker` does not currently point to
      * them.
      */
-    private ShortestPathsWorker worker;
+    private SearchWorker<?, ?> worker;
 
 
     /**
@@ -74,6 +270,31 @@ public class ScissorsSelectionModel extends SelectionModel {
     private SelectionState previousState;
 
 
+    /**
+     * Commands received while PROCESSING, in the order they were issued.  They are applied as soon
+     * as the paths they depend on are available (the head command may be applied before the
+     * current solve finishes if its target has already been settled).  Must be empty unless we are
+     * PROCESSING, and may only contain commands if `previousState` is not SELECTED.
+     */
+    private final Deque<QueuedCommand> queuedCommands = new ArrayDeque<>();
+
+
+    /**
+     * True if `paths` came from a solve that was stopped early because a queued command no longer
+     * needed the rest of it.  Such paths may not reach every pixel, so they must be recomputed if
+     * we return to SELECTING from that point.
+     */
+    private boolean pathsPartial;
+
+
+    /**
+     * The speculative search from the pixel the mouse pointer last rested on, if one is still
+     * running (or is waiting to run).  If that pixel is added next, its search is taken over by the
+     * `ShortestPathsWorker` for it; otherwise the search is abandoned.  Null if not speculating.
+     */
+    private Speculation speculation;
+
+
     /**
      * Create a `ScissorsSelectionModel` in which the "intelligent scissors" algorithm will use the
      * weight function named `weightName` (as recognized by the `ScissorsWeights` factory). See
@@ -92,10 +313,37 @@ public class ScissorsSelectionModel extends SelectionModel {
      * not copy any listeners from `copy`).  See `SelectionModel` for thread restrictions.
      */
     public ScissorsSelectionModel(String weightName, SelectionModel copy) {
+        this(weightName, (copy instanceof ScissorsSelectionModel scissors)
+                ? scissors.connectivity : Connectivity.EIGHT, copy);
+    }
+
+
+    /**
+     * Create a `ScissorsSelectionModel` as above whose graph connects each pixel to the neighbors
+     * given by `connectivity` (see `setConnectivity()`), so that a selection in progress in `copy`
+     * is only searched with the requested connectivity.
+     */
+    public ScissorsSelectionModel(String weightName, Connectivity connectivity,
+            SelectionModel copy) {
         super(copy);
         this.weightName = weightName;
+        this.connectivity = connectivity;
         if (image() != null) {
-            graph = new ImageGraph(image());
+            graph = new ImageGraph(image(), connectivity);
+            // Trees are keyed by weigher name, so they can be shared between models of one image
+            //  with the same connectivity (painted costs are copied too, so that shared trees
+            //  remain valid for both)
+            treeCache = (copy instanceof ScissorsSelectionModel scissors && scissors.treeCache != null
+                    && scissors.connectivity == connectivity)
+                    ? scissors.treeCache : new PathTreeCache();
+        }
+        if (copy instanceof ScissorsSelectionModel scissors) {
+            multiResolution = scissors.multiResolution;
+            importedCosts = scissors.importedCosts;
+            contentHash = scissors.contentHash;
+            if (scissors.costs != null && graph != null) {
+                costs = new CostMap(scissors.costs);
+            }
         }
         if (state() == SELECTING) {
             findPaths(graph.idAt(lastPoint()));
@@ -108,10 +356,12 @@ public class ScissorsSelectionModel extends SelectionModel {
         // Overridden due to the need to cancel background processing.
 
 
-        // Cancel any background tasks
+        // Cancel any background tasks (and discard any commands waiting on them)
         if (state() == PROCESSING) {
             cancelProcessing();
         }
+        queuedCommands.clear();
+        stopSpeculating();
 
 
         // Since the inherited behavior will immediately transition to the NO_SELECTION state,
@@ -133,11 +383,71 @@ public class ScissorsSelectionModel extends SelectionModel {
 
 
         // In addition to whatever our superclass does to set the image, we also need to replace our
-        //  graph with one that represents the new image.
+        //  graph with one that represents the new image (along with anything derived from it).
+        weigher = null;
+        importedCosts = null;
+        contentHash = null;
+        preparing = null;
+        prepareTask = null;
+        costs = null;
+        repairSolver = null;
+        spareSolver = null;
+        spareSearch = null;
+        discardLandmarks();
+        pyramid = null;
         if (img != null) {
-            graph = new ImageGraph(img);
+            graph = new ImageGraph(img, connectivity);
+            treeCache = new PathTreeCache();
         } else {
             graph = null;
+            treeCache = null;
+        }
+    }
+
+
+    /**
+     * Add `p` to the selection.  If we are still PROCESSING the previous point, queue `p` to be
+     * added once the path to it is known instead of rejecting it.  Throws IllegalStateException if
+     * `canAddPoint()` is false.
+     */
+    @Override
+    public void addPoint(Point p) {
+        if (state() == PROCESSING) {
+            if (!canQueueCommand()) {
+                throw new IllegalStateException("Cannot add point in state " + state());
+            }
+            queuedCommands.addLast(new QueuedCommand(new Point(p)));
+            fireQueueChanged();
+            applyQueuedCommandsIfReady();
+        } else {
+            super.addPoint(p);
+        }
+    }
+
+
+    @Override
+    public boolean canAddPoint() {
+        return super.canAddPoint() || (state() == PROCESSING && canQueueCommand());
+    }
+
+
+    @Override
+    public boolean canFinishSelection() {
+        return super.canFinishSelection() || (state() == PROCESSING && canQueueCommand());
+    }
+
+
+    /**
+     * If we are still processing, remove the most recently queued command, or cancel processing if
+     * no commands are queued.  Otherwise, behave as `SelectionModel.undo()`.
+     */
+    @Override
+    public void undo() {
+        if (state() == PROCESSING && !queuedCommands.isEmpty()) {
+            queuedCommands.removeLast();
+            fireQueueChanged();
+        } else {
+            super.undo();
         }
     }
 
@@ -169,6 +479,16 @@ public class ScissorsSelectionModel extends SelectionModel {
         if (state() == SELECTED) {
             throw new IllegalStateException("Cannot finish a selection that is already finished");
         }
+        if (state() == PROCESSING) {
+            if (!canQueueCommand()) {
+                throw new IllegalStateException("Cannot finish selection in state " + state());
+            }
+            queuedCommands.addLast(new QueuedCommand(null));
+            fireQueueChanged();
+            applyQueuedCommandsIfReady();
+            return;
+        }
+        stopSpeculating();
         if (selection.isEmpty()) {
             reset();
         } else {
@@ -222,146 +542,891 @@ public class ScissorsSelectionModel extends SelectionModel {
 
 
         pendingPaths = null;
-        worker = new ShortestPathsWorker(startId);
-        worker.execute();
+        ShortestPathsWorker newWorker = new ShortestPathsWorker(startId);
+        worker = newWorker;
+        newWorker.schedule();
+
+        // The worker has taken over any speculation from `startId`; any other is now moot.
+        stopSpeculating();
     }
 
 
+    /**
+     * While we are idle in SELECTING with complete paths from our last point, start searching
+     * from `p` at low priority, so that its paths are ready (or partly found) if `p` is added
+     * next.  Any previous speculation from a different pixel is abandoned.  Does nothing if a
+     * completed tree from `p` is already cached.
+     */
     @Override
-    public void movePoint(int index, Point newPos) {
-        assert state() == SELECTED;
-        assert selection.size() >= 2;
-
-
-        // Start solving for shortest paths from the moved point, which will give us the segments to
-        //  both the preceding and succeeding points.  This will transition us to the PROCESSING
-        //  state.
-        findPaths(graph.idAt(newPos));
+    public void anticipatePoint(Point p) {
+        if (state() != SELECTING || pathsPartial) {
+            return;
+        }
+        int startId = graph.idAt(p);
+        if (speculation != null && speculation.startId == startId) {
+            return;
+        }
+        stopSpeculating();
+        PathTreeCache.Entry cached = treeCache.get(startId, weightName);
+        if (cached != null && cached.complete()) {
+            return;
+        }
+        speculation = new Speculation(startId, cached);
+        speculation.queued = searchExecutor.submit(speculation, SearchExecutor.Priority.BACKGROUND);
+    }
 
 
-        // Our worker's `done()` method is sufficient for adding points, but we need to do more
-        //  in order to move one.  This is one way to tack additional work onto a task (it will run
-        //  on the EDT).
-        worker.addPropertyChangeListener(e -> {
-            ShortestPathsWorker src = (ShortestPathsWorker) e.getSource();
-            if ("state".equals(e.getPropertyName()) && e.getNewValue() == StateValue.DONE) {
-                // If the solve wasn't cancelled, use its results to compute the replacement
-                //  segments.
-                if (src.state() == State.SUCCESS) {
-                    ListIterator<PolyLine> it = selection.listIterator(index + 1);
-                    PolyLine oldAfter = it.previous();
-                    var oaEnd = graph.vertexAt(oldAfter.end());
-                    // New segment is path from moved point to successor point
-                    it.set(graph.pathToPolyLine(paths.pathTo(oaEnd.id())));
+    /**
+     * Abandon any speculative search that is in progress.  Its solver is kept for the next one
+     * once it has stopped.
+     */
+    private void stopSpeculating() {
+        if (speculation != null) {
+            Speculation abandoned = speculation;
+            speculation = null;
+            abandoned.stop().thenAcceptAsync(solver -> recycle(abandoned),
+                    SwingUtilities::invokeLater);
+        }
+    }
 
 
-                    if (!it.hasPrevious()) {
-                        it = selection.listIterator(selection.size());
-                        start = new Point(newPos);
-                    }
-                    PolyLine oldBefore = it.previous();
-                    var obStart = graph.vertexAt(oldBefore.start());
-                    // New segment is the reverse of the path from the moved point to its
-                    //  predecessor point.
-                    it.set(graph.pathToPolyLine(paths.pathTo(obStart.id()).reversed()));
+    /**
+     * Keep the solver of `finished`, a speculative search that no thread is using any more, as
+     * our spare search, unless our graph or weigher have changed since it started or we already
+     * have one.  Must be called from the EDT.
+     */
+    private void recycle(Speculation finished) {
+        if (spareSearch == null && finished.graph == graph && finished.weigher == weigher) {
+            spareSearch = finished.pathfinder;
+        }
+    }
 
 
-                    propSupport.firePropertyChange("selection", null, selection());
+    /**
+     * Return the weigher named by `weightName` for edges in `graph` (or our imported cost map, if
+     * there is one), creating it if necessary, with any costs painted by the user added to its
+     * weights.  If `prepareWeights()` is still creating it, its work is moved to INTERACTIVE
+     * priority and awaited.  Requires `graph` is not null.  Must be called from the EDT.
+     */
+    private Weigher<ImageEdge> weigher() {
+        if (weigher == null) {
+            if (importedCosts != null) {
+                weigher = importedCosts;
+            } else if (preparing != null) {
+                CompletableFuture<PreparedWeights> pending = preparing;
+                // Does nothing if the background task has already started
+                interactiveSearches.execute(prepareTask);
+                preparing = null;
+                prepareTask = null;
+                PreparedWeights prepared = pending.join();
+                contentHash = prepared.contentHash();
+                weigher = prepared.weigher();
+            } else {
+                if (contentHash == null) {
+                    contentHash = contentHash(graph);
                 }
+                weigher = namedWeigher(weightName, graph, contentHash);
             }
-        });
+            if (costs != null) {
+                weigher = costs.adjust(weigher);
+            }
+        }
+        return weigher;
     }
 
 
     /**
-     * Returns the "intelligent scissors" shortest path segment connecting our current selection's
-     * endpoint to `p`.
+     * Start creating our weigher in the background (reading its weights from `weightCache` if
+     * possible), so that the first path the user asks for need not wait for it.  It is created at
+     * BACKGROUND priority on `searchExecutor` once no interactive search is pending, so it never
+     * competes with searches already underway (if a search needs it first, `weigher()` waits for
+     * it instead).  Does nothing if no image has been set, or our weigher already exists or is
+     * being prepared.  If our weigher is still needed once it is ready (and nothing has changed
+     * our image or weights in the meantime), it is installed on the EDT; otherwise it is
+     * discarded.
      */
     @Override
-    public PolyLine liveWire(Point p) {
-        //step 1
-        int currentId = graph.idAt(p); //get the vertex at the point
-        //step 2
-        List<Integer> vertexPath = paths.pathTo(currentId);
-        //step 3
-        return graph.pathToPolyLine(vertexPath);
+    public void prepareWeights() {
+        if (graph == null || weigher != null || importedCosts != null || preparing != null) {
+            return;
+        }
+        ImageGraph target = graph;
+        String name = weightName;
+        byte[] knownHash = contentHash;
+        CompletableFuture<PreparedWeights> prepared = new CompletableFuture<>();
+        AtomicBoolean claimed = new AtomicBoolean();
+        Runnable task = () -> {
+            if (claimed.compareAndSet(false, true)) {
+                try {
+                    byte[] hash = (knownHash != null) ? knownHash : contentHash(target);
+                    prepared.complete(new PreparedWeights(hash, namedWeigher(name, target, hash)));
+                } catch (RuntimeException | Error e) {
+                    prepared.completeExceptionally(e);
+                }
+            }
+        };
+        preparing = prepared;
+        prepareTask = task;
+        backgroundSearches.execute(task);
+        prepared.thenAcceptAsync(result -> {
+            if (preparing == prepared) {
+                preparing = null;
+                prepareTask = null;
+                contentHash = result.contentHash();
+                weigher = result.weigher();
+                if (costs != null) {
+                    weigher = costs.adjust(weigher);
+                }
+            }
+        }, SwingUtilities::invokeLater);
     }
 
 
     /**
-     * Return the most recent pathfinding snapshot produced by our "intelligent scissors"
-     * processing, which attempts to find good paths from the end of our selection to all other
-     * pixels in the image.  Returns null if our processing has not yet produced any results.
+     * A weigher created by `prepareWeights()` for the image whose hash is `contentHash`.
      */
-    @Override
-    public ImagePathsSnapshot getProcessingProgress() {
-        assert state() == PROCESSING;
-        return (pendingPaths != null) ? new ImagePathsSnapshot(graph, pendingPaths) : null;
+    private record PreparedWeights(byte[] contentHash, Weigher<ImageEdge> weigher) {}
+
+
+    /**
+     * Return the hash identifying the tables in `weightCache` that hold weights for `graph`'s
+     * image, or null if its weights are not worth caching (or caching is disabled).  Reads every
+     * pixel of the image.
+     */
+    private static byte[] contentHash(ImageGraph graph) {
+        if (weightCache == null || !WeightCache.worthCaching(graph)) {
+            return null;
+        }
+        return WeightCache.contentHash(graph.raster());
     }
 
 
-    @Override
-    public void cancelProcessing() {
-        assert state() == PROCESSING;
-        if (worker != null) {
-            worker.cancel(false);
+    /**
+     * Return the weigher named `weightName` for edges in `graph`, reading its weights from
+     * `weightCache` if they were stored when this image (whose hash is `contentHash`) was opened
+     * before.  Otherwise the weigher is created from the image, and (if `contentHash` is not null)
+     * its weights are stored in the background for next time; until they are, weights our
+     * searches compute are remembered (if that is worthwhile) so that later searches need not
+     * compute them again, and once they are, the stored table is read instead.  May be called from
+     * any thread.
+     */
+    private static Weigher<ImageEdge> namedWeigher(String weightName, ImageGraph graph,
+            byte[] contentHash) {
+        if (contentHash == null) {
+            return remembered(weightName, graph, ScissorsWeights.makeWeigher(weightName, graph));
+        }
+        String key = WeightCache.key(contentHash, weightName,
+                ScissorsWeights.parameters(weightName), graph.connectivity());
+        Weigher<ImageEdge> cached = weightCache.load(key, graph);
+        if (cached != null) {
+            return cached;
         }
+        // The table is written from the computed weigher, since remembering every weight of the
+        //  image in memory as well as on disk would be wasted
+        Weigher<ImageEdge> computed = ScissorsWeights.makeWeigher(weightName, graph);
+        SwitchingWeigher weigher = new SwitchingWeigher(remembered(weightName, graph, computed));
+        // Only weakly reachable from the store, so that closing the image frees our memo at once
+        WeakReference<SwitchingWeigher> ref = new WeakReference<>(weigher);
+        weightCache.store(key, graph, computed, searchExecutor).thenAccept(table -> {
+            SwitchingWeigher w = ref.get();
+            if (w != null && table != null) {
+                w.switchTo(table);
+            }
+        });
+        return weigher;
     }
 
+
     /**
-     * SwingWorker for computing shortest paths and periodically updating progress.  This is an
-     * inner class, meaning it has access to all fields of its containing TraceComponent. It
-     * publishes preliminary pathfinding results (containing settled and frontier nodes) and returns
-     * the final best paths (or null if cancelled).
+     * Return `computed`, the weigher named `weightName` for edges in `graph`, wrapped so that the
+     * weights it gives are remembered across searches if that is worthwhile.
      */
-    private class ShortestPathsWorker
-            extends SwingWorker<PathfindingSnapshot, PathfindingSnapshot> {
-        /**
-         * The shortest-paths solver this worker will use.  After construction, must only be
-         * accessed from the background thread.
-         */
-        private final ShortestPaths<ImageVertex, ImageEdge> pathfinder;
+    private static Weigher<ImageEdge> remembered(String weightName, ImageGraph graph,
+            Weigher<ImageEdge> computed) {
+        return ScissorsWeights.worthRemembering(weightName)
+                ? new LazyWeights(graph, computed, lazyWeightBudget) : computed;
+    }
+
+
+    /**
+     * Gives the weights of another weigher, which may be replaced by one giving the same weights
+     * more cheaply (e.g. a table stored by `weightCache`, replacing a `LazyWeights` that would
+     * otherwise keep growing) without changing the identity of the weigher our searches and
+     * cached trees are keyed by.
+     */
+    private static class SwitchingWeigher implements Weigher<ImageEdge> {
+
         /**
-         * Construct a worker that, when executed, will find the shortest paths from the vertex with
-         * ID `startId` to every pixel in our outer model's `image`.  "progress" events will be
-         * forwarded to our outer model's listeners.  This must be called from the EDT.
+         * The weigher currently giving our weights.
          */
-        public ShortestPathsWorker(int startId) {
-            pathfinder = new ShortestPaths<>(
-                    graph, ScissorsWeights.makeWeigher(weightName, graph));
-            pathfinder.setStart(startId);
-            // Forward progress property changes to outer model's listeners (as long as we are
-            // still the active solver).
-            addPropertyChangeListener((PropertyChangeEvent evt) -> {
-                if ("progress".equals(evt.getPropertyName()) && worker == this) {
-                    propSupport.firePropertyChange(evt);
-                }
-            });
+        private volatile Weigher<ImageEdge> current;
+
+        SwitchingWeigher(Weigher<ImageEdge> initial) {
+            current = initial;
         }
 
         /**
-         * Solve for shortest paths and return the results.  Periodically publish progress
-         * percentage and preliminary shortest paths.  It is assumed that this is generally not
-         * called from the EDT.  Returns null if cancelled.
+         * Give the weights of `replacement` from now on.  Requires that it gives the same weight
+         * to every edge as our current weigher.
          */
+        void switchTo(Weigher<ImageEdge> replacement) {
+            current = replacement;
+        }
+
         @Override
-        public PathfindingSnapshot doInBackground() {
-            // This is executed on a separate thread; do not access outer model's fields!
+        public int weight(ImageEdge edge) {
+            return current.weight(edge);
+        }
+    }
 
-            PathfindingSnapshot snapshot = null;
-            while(!pathfinder.allPathsFound()){
-                snapshot = pathfinder.extendSearch(10000);
-                double vertexPercent = 100*(double) pathfinder.settledCount() / graph.vertexCount();
-                setProgress((int)vertexPercent);
-                publish(snapshot);
-                if(isCancelled()){
-                    return(null);
-                }
+
+    /**
+     * Add `delta` to the cost of entering each pixel within `radius` of `center`, so that later
+     * paths avoid (positive `delta`) or prefer (negative `delta`) that region.  Segments already
+     * in the selection are not changed.  If we are SELECTING with complete paths from our last
+     * point, those paths are repaired in the background, re-solving only the subtrees through the
+     * painted pixels, so the live wire soon follows the new costs.  Anything else derived from
+     * the old weights is discarded.  Ignored while PROCESSING or if no image has been set.
+     * Notifies listeners that the "costs" property has changed.
+     */
+    @Override
+    public void paintCost(Point center, int radius, int delta) {
+        if (graph == null || state() == PROCESSING) {
+            return;
+        }
+        if (costs == null) {
+            costs = new CostMap(graph.width(), graph.height());
+            if (weigher != null) {
+                weigher = costs.adjust(weigher);
+                repairSolver = null;
             }
-            return(snapshot);
+        }
+        int[] changed = costs.paint(center, radius, delta);
+        if (changed.length == 0) {
+            return;
         }
 
-        /**
+        // Trees, landmarks, and pyramids found with the old weights are no longer shortest
+        stopSpeculating();
+        treeCache = new PathTreeCache();
+        spareSolver = null;
+        spareSearch = null;
+        discardLandmarks();
+        pyramid = null;
+        if (state() == SELECTING && pathsPartial) {
+            findPaths(graph.idAt(lastPoint()));
+        } else if (state() == SELECTING) {
+            repairPaths(changed);
+        }
+        propSupport.firePropertyChange("costs", null, null);
+    }
+
+
+    /**
+     * Repair `paths`, which must be complete, after the pixels with IDs in `changed` were painted,
+     * on a search thread.  Once the repair is done, `paths` is replaced with its result on the EDT
+     * (unless our graph, weigher, or paths have since been replaced) and listeners are notified
+     * that the "costs" property has changed.  If a repair is already running, `changed` is
+     * repaired after it, together with any other strokes painted meanwhile.
+     * <p>
+     * Strokes painted while a repair runs change weights it may read; that is benign, since every
+     * such pixel is also repaired afterwards, which re-solves all paths through it.
+     */
+    private void repairPaths(int[] changed) {
+        if (pendingRepairs != null) {
+            pendingRepairs.add(changed);
+            return;
+        }
+        pendingRepairs = new ArrayList<>();
+        ImageGraph g = graph;
+        Weigher<ImageEdge> w = weigher();
+        PathfindingSnapshot base = paths;
+        ShortestPaths<ImageVertex, ImageEdge> live = repairSolver;
+        boolean resume = live == null || repairedPaths != base;
+        repairSolver = null;
+        CompletableFuture.supplyAsync(() -> {
+            ShortestPaths<ImageVertex, ImageEdge> solver =
+                    (live != null) ? live : new ShortestPaths<>(g, w);
+            if (resume) {
+                solver.resume(base);
+            }
+            solver.repair(changed);
+            PathfindingSnapshot repaired = solver.snapshot();
+            return new Repair(solver, repaired, PathTreeCache.compact(g, repaired));
+        }, interactiveSearches).whenCompleteAsync((repair, e) -> {
+            List<int[]> more = pendingRepairs;
+            pendingRepairs = null;
+            if (repair != null && graph == g && weigher == w) {
+                repairSolver = repair.solver();
+                repairedPaths = repair.paths();
+                if (paths == base) {
+                    paths = repair.paths();
+                    treeCache.put(weightName, repair.tree());
+                    propSupport.firePropertyChange("costs", null, null);
+                }
+            }
+            if (!more.isEmpty() && state() == SELECTING && !pathsPartial) {
+                repairPaths(concat(more));
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+
+    /**
+     * The result of a repair task: the solver it used, a snapshot of the repaired search, and that
+     * search's tree compacted for `treeCache`.
+     */
+    private record Repair(ShortestPaths<ImageVertex, ImageEdge> solver, PathfindingSnapshot paths,
+                          PathTreeCache.Entry tree) {}
+
+
+    /**
+     * Return the elements of every array in `arrays`, in order, as one array.
+     */
+    private static int[] concat(List<int[]> arrays) {
+        int[] all = new int[arrays.stream().mapToInt(a -> a.length).sum()];
+        int length = 0;
+        for (int[] a : arrays) {
+            System.arraycopy(a, 0, all, length, a.length);
+            length += a.length;
+        }
+        return all;
+    }
+
+
+    /**
+     * Return whether a command issued now could be queued behind our current processing.  Commands
+     * may only be queued while extending a selection (not while moving a point of a finished one),
+     * and nothing may follow a queued `finishSelection()`.
+     */
+    private boolean canQueueCommand() {
+        assert state() == PROCESSING;
+        return previousState != SELECTED
+                && (queuedCommands.isEmpty() || !queuedCommands.getLast().finishes());
+    }
+
+
+    /**
+     * Notify listeners that the "state" property has changed (though its value has not) because a
+     * command was queued or withdrawn, since that changes which commands may be queued next (see
+     * `canAddPoint()` and `canFinishSelection()`).
+     */
+    private void fireQueueChanged() {
+        propSupport.firePropertyChange("state", null, state());
+    }
+
+
+    /**
+     * Leave the PROCESSING state using `result` as the shortest paths from our last point.  Returns
+     * to the state we entered PROCESSING from, unless that was NO_SELECTION, in which case we are
+     * now SELECTING.  `partial` indicates whether `result` may not reach every pixel.
+     */
+    private void finishProcessing(PathfindingSnapshot result, boolean partial) {
+        paths = result;
+        pathsPartial = partial;
+        if (previousState == NO_SELECTION) {
+            setState(SELECTING);
+        } else {
+            setState(previousState);
+        }
+    }
+
+
+    /**
+     * If the command at the head of our queue only needs paths that the current solve has already
+     * settled, stop that solve early (the rest of it is obsolete) and apply queued commands.
+     */
+    private void applyQueuedCommandsIfReady() {
+        if (worker == null || pendingPaths == null || queuedCommands.isEmpty()) {
+            return;
+        }
+        QueuedCommand next = queuedCommands.getFirst();
+        Point target = next.finishes() ? start : next.point();
+        if (pendingPaths.settled(graph.idAt(target))) {
+            // Detach the worker before cancelling it so that it leaves us alone when it finishes.
+            SearchWorker<?, ?> obsolete = worker;
+            worker = null;
+            obsolete.stop();
+            // Keep what was found in case we come back to this point (e.g. by undoing)
+            treeCache.put(weightName, PathTreeCache.partial(pendingPaths));
+            finishProcessing(pendingPaths, true);
+            applyQueuedCommands();
+        }
+    }
+
+
+    /**
+     * Apply queued commands in order until one of them starts new processing (or the queue is
+     * empty).  Requires that we are not PROCESSING.
+     */
+    private void applyQueuedCommands() {
+        while (state() != PROCESSING && !queuedCommands.isEmpty()) {
+            QueuedCommand command = queuedCommands.removeFirst();
+            if (command.finishes()) {
+                finishSelection();
+            } else {
+                addPoint(command.point());
+            }
+        }
+    }
+
+
+    /**
+     * Move the starting point of the segment with index `index` to `newPos`, replacing it and the
+     * preceding segment (wrapping around) with "intelligent scissors" paths.  Since only the paths
+     * between `newPos` and its two neighboring control points are needed, the search stops as soon
+     * as both are reached rather than solving for the whole image.  Transitions to PROCESSING until
+     * the new segments are known.
+     */
+    @Override
+    public void movePoint(int index, Point newPos) {
+        assert state() == SELECTED;
+        assert selection.size() >= 2;
+
+        int prevId = graph.idAt(selection.get(Math.floorMod(index - 1, selection.size())).start());
+        int nextId = graph.idAt(selection.get(index).end());
+
+        previousState = state();
+        setState(PROCESSING);
+
+        pendingPaths = null;
+        RerouteWorker newWorker = new RerouteWorker(index, newPos, prevId, nextId);
+        worker = newWorker;
+        newWorker.schedule();
+    }
+
+
+    /**
+     * Returns the "intelligent scissors" shortest path segment connecting our current selection's
+     * endpoint to `p`.
+     */
+    @Override
+    public PolyLine liveWire(Point p) {
+        //step 1
+        int currentId = graph.idAt(p); //get the vertex at the point
+        //step 2
+        List<Integer> vertexPath = paths.pathTo(currentId);
+        //step 3
+        return graph.pathToPolyLine(vertexPath);
+    }
+
+
+    /**
+     * Find every segment of the selection again between the same control points, as after
+     * changing our weights or connectivity.  Answering many such queries on one image is sped up
+     * by distances from a few landmarks around the image's border, which the first call starts
+     * precomputing at background priority; once they are ready, each segment only costs a search
+     * of a narrow corridor around it (until then, each search stops at its segment's end).
+     * Transitions to PROCESSING until the new segments are known; if any control point cannot be
+     * reached from the one before it, the selection is left unchanged.  Throws
+     * IllegalStateException unless we are SELECTED.
+     */
+    public void rerouteSelection() {
+        if (state() != SELECTED) {
+            throw new IllegalStateException("Cannot re-route selection in state " + state());
+        }
+        int[] pointIds = new int[selection.size() + 1];
+        int i = 0;
+        for (PolyLine segment : selection) {
+            pointIds[i++] = graph.idAt(segment.start());
+        }
+        pointIds[i] = pointIds[0];
+
+        previousState = state();
+        setState(PROCESSING);
+
+        pendingPaths = null;
+        BatchRouteWorker newWorker = new BatchRouteWorker(pointIds);
+        worker = newWorker;
+        newWorker.schedule();
+    }
+
+
+    /**
+     * Return our landmark distances if they are ready, or else null, starting to precompute them
+     * at background priority if that has not been started yet.  Requires `graph` is not null.
+     * Must be called from the EDT.
+     */
+    private LandmarkPaths<ImageVertex, ImageEdge> readyLandmarks() {
+        if (landmarks == null) {
+            landmarks = LandmarkPaths.precompute(graph, weigher(),
+                    graph.borderLandmarks(landmarkCount), backgroundSearches,
+                    searchExecutor::interactivePending);
+        }
+        return (landmarks.isDone() && !landmarks.isCompletedExceptionally())
+                ? landmarks.join() : null;
+    }
+
+
+    /**
+     * Stop precomputing our landmark distances, if we were, and forget them.
+     */
+    private void discardLandmarks() {
+        if (landmarks != null) {
+            landmarks.cancel(false);
+            landmarks = null;
+        }
+    }
+
+
+    /**
+     * Choose whether point-to-point segments (those replaced when a point is moved, and those
+     * found by `rerouteSelection()`) are found coarse-to-fine in a pyramid of successively halved
+     * resolutions.  Each level only searches a narrow corridor around the path found at the level
+     * above, so on very large images this searches orders of magnitude fewer pixels, at the cost
+     * of paths that are close to, but not always exactly, the best ones.  Paths from a newly added
+     * point are unaffected, since the live wire needs them to every pixel.
+     */
+    public void setMultiResolution(boolean multiResolution) {
+        this.multiResolution = multiResolution;
+    }
+
+
+    /**
+     * Return whether point-to-point segments are found coarse-to-fine (see
+     * `setMultiResolution()`).
+     */
+    public boolean isMultiResolution() {
+        return multiResolution;
+    }
+
+
+    /**
+     * Choose which neighbors each pixel is connected to when searching for paths.  4-connectivity
+     * roughly halves the edges relaxed by every search (useful for bulk queries such as
+     * `rerouteSelection()` where smoothness matters less), while 16-connectivity adds "knight
+     * moves" for smoother paths along shallow slopes.  Segments already in the selection are unchanged;
+     * if we are SELECTING, paths from our last point are found again.  Anything else derived from
+     * the old graph is discarded.  Throws IllegalStateException if we are PROCESSING.
+     */
+    public void setConnectivity(Connectivity connectivity) {
+        if (state() == PROCESSING) {
+            throw new IllegalStateException("Cannot change connectivity while processing");
+        }
+        if (connectivity == this.connectivity) {
+            return;
+        }
+        this.connectivity = connectivity;
+        if (graph == null) {
+            return;
+        }
+        graph = new ImageGraph(image(), connectivity);
+        replaceWeights();
+    }
+
+
+    /**
+     * Weigh edges using the precomputed per-pixel costs in `file` (a 16-bit grayscale PNG, or raw
+     * little-endian 16-bit costs, one per pixel in row-major order) instead of computing weights
+     * from the image, until a new image is set.  The file is read by a background worker (raw
+     * files are memory-mapped, so even very large cost maps are ready at once); once it has been,
+     * segments already in the selection are unchanged and, if we are SELECTING, paths from our
+     * last point are found again.  Returns a future completed on the EDT once the new weights are
+     * in use, or completed exceptionally (leaving our weights unchanged) with an IOException if
+     * the file cannot be read, is not grayscale, or its size does not match the image's, or with
+     * an IllegalStateException if our image was replaced or we started PROCESSING meanwhile.
+     * Throws IllegalStateException if no image has been set or we are PROCESSING.
+     */
+    public CompletableFuture<Void> importCostMap(Path file) {
+        if (graph == null || state() == PROCESSING) {
+            throw new IllegalStateException("Cannot import costs in state " + state());
+        }
+        ImageGraph target = graph;
+        CompletableFuture<Void> imported = new CompletableFuture<>();
+        new SwingWorker<Weigher<ImageEdge>, Void>() {
+            @Override
+            protected Weigher<ImageEdge> doInBackground() throws IOException {
+                return ScissorsWeights.importCostMap(file, target);
+            }
+
+            @Override
+            protected void done() {
+                try {
+                    Weigher<ImageEdge> loaded = get();
+                    if (graph != target || ScissorsSelectionModel.this.state() == PROCESSING) {
+                        throw new IllegalStateException("The selection changed while the cost "
+                                + "map was being read");
+                    }
+                    importedCosts = loaded;
+                    replaceWeights();
+                    imported.complete(null);
+                } catch (ExecutionException e) {
+                    imported.completeExceptionally(e.getCause());
+                } catch (InterruptedException | RuntimeException e) {
+                    imported.completeExceptionally(e);
+                }
+            }
+        }.execute();
+        return imported;
+    }
+
+
+    /**
+     * Discard our weigher and everything derived from it or from our previous graph, and, if we
+     * are SELECTING, start finding paths from our last point again.  Requires we are not
+     * PROCESSING and `graph` is not null.
+     */
+    private void replaceWeights() {
+        stopSpeculating();
+        weigher = null;
+        preparing = null;
+        prepareTask = null;
+        repairSolver = null;
+        spareSolver = null;
+        spareSearch = null;
+        discardLandmarks();
+        pyramid = null;
+        treeCache = new PathTreeCache();
+        if (state() == SELECTING) {
+            findPaths(graph.idAt(lastPoint()));
+        }
+    }
+
+
+    /**
+     * Return which neighbors each pixel is connected to when searching for paths (see
+     * `setConnectivity()`).
+     */
+    public Connectivity connectivity() {
+        return connectivity;
+    }
+
+
+    /**
+     * Return our image pyramid, starting to build it at interactive priority if necessary.
+     * Requires `graph` is not null.  Must be called from the EDT.
+     */
+    private CompletableFuture<ImagePyramid> pyramid() {
+        if (pyramid == null) {
+            ImageGraph graph = this.graph;
+            Weigher<ImageEdge> weigher = weigher();
+            pyramid = searchInteractively(() -> new ImagePyramid(graph, weigher,
+                    pyramidCoarseSize, pyramidCorridorRadius));
+        }
+        return pyramid;
+    }
+
+
+    /**
+     * Run `search` at interactive priority on our search executor, returning a future that
+     * completes with its result (or exception).
+     */
+    private static <T> CompletableFuture<T> searchInteractively(Supplier<T> search) {
+        return CompletableFuture.supplyAsync(search, interactiveSearches);
+    }
+
+
+    /**
+     * Return the most recent pathfinding snapshot produced by our "intelligent scissors"
+     * processing, which attempts to find good paths from the end of our selection to all other
+     * pixels in the image.  Returns null if our processing has not yet produced any results.
+     */
+    @Override
+    public ImagePathsSnapshot getProcessingProgress() {
+        assert state() == PROCESSING;
+        return (pendingPaths != null) ? new ImagePathsSnapshot(graph, pendingPaths) : null;
+    }
+
+
+    @Override
+    public void cancelProcessing() {
+        assert state() == PROCESSING;
+        // Queued commands depend on the processing being cancelled, so they are discarded too
+        queuedCommands.clear();
+        if (worker != null) {
+            worker.stop();
+        }
+    }
+
+
+    /**
+     * A SwingWorker that runs on our search executor rather than on Swing's shared worker threads.
+     * Stopping it before it has started also withdraws it from the executor's queue, where it would
+     * otherwise count as pending interactive work (holding up background searches) until its turn
+     * came.
+     */
+    private abstract class SearchWorker<T, V> extends SwingWorker<T, V> {
+
+        /**
+         * Our submission to the search executor, or null if we have not been scheduled.
+         */
+        private Future<?> submission;
+
+        /**
+         * Submit this worker to our search executor, returning the submission.  Must be called
+         * from the EDT.
+         */
+        abstract Future<?> submit();
+
+        /**
+         * Queue this worker to run on our search executor.  Must be called from the EDT, instead
+         * of `execute()`.
+         */
+        final void schedule() {
+            submission = submit();
+        }
+
+        /**
+         * Cancel this worker (see `cancel()`), withdrawing it from our search executor if it has
+         * not started.  `done()` is called on the EDT either way (a SwingWorker that never starts
+         * does not call it itself).  Must be called from the EDT.
+         */
+        final void stop() {
+            // Checked first, since a cancelled worker reports that it is DONE
+            boolean started = getState() != StateValue.PENDING;
+            if (submission != null) {
+                submission.cancel(false);
+            }
+            cancel(false);
+            if (!started) {
+                // Should we have started after all, our second `done()` call finds us detached
+                SwingUtilities.invokeLater(this::done);
+            }
+        }
+    }
+
+    /**
+     * SwingWorker for computing shortest paths and periodically updating progress.  This is an
+     * inner class, meaning it has access to all fields of its containing TraceComponent. It
+     * publishes preliminary pathfinding results (containing settled and frontier nodes) and returns
+     * the final best paths (or null if cancelled).
+     */
+    private class ShortestPathsWorker
+            extends SearchWorker<PathfindingSnapshot, PathfindingSnapshot> {
+        /**
+         * The shortest-paths solver this worker will use, or null if a completed tree was found in
+         * our outer model's cache.  If we are taking over a speculative search, this is null until
+         * that search hands over its solver.  After construction, must only be accessed from the
+         * background thread.
+         */
+        private ShortestPaths<ImageVertex, ImageEdge> pathfinder;
+
+        /**
+         * Completes with the solver of the speculative search we are taking over once that search
+         * has stopped, or null if we are not taking one over.
+         */
+        private final CompletableFuture<ShortestPaths<ImageVertex, ImageEdge>> handoff;
+
+        /**
+         * The graph and weigher of our outer model when we were constructed (so that the
+         * background thread need not access the model's fields).
+         */
+        private final ImageGraph graph;
+        private final Weigher<ImageEdge> weigher;
+
+        /**
+         * A cached tree from our starting vertex, or null if there was none.  If it is complete,
+         * we only need to decode it; otherwise, we resume its search.
+         */
+        private final PathTreeCache.Entry cached;
+
+        /**
+         * The compact form of our completed tree, to be added to our outer model's cache.  Set by
+         * the background thread before it returns; null if no new tree was completed.
+         */
+        private PathTreeCache.Entry completed;
+
+        /**
+         * Construct a worker that, when executed, will find the shortest paths from the vertex with
+         * ID `startId` to every pixel in our outer model's `image`, reusing any tree cached for
+         * that vertex or continuing any speculative search from it.  "progress" and "pending-paths"
+         * events will be forwarded to our outer model's listeners (the latter so that views can
+         * show the search's progress as each snapshot arrives).  This must be called from the EDT.
+         */
+        public ShortestPathsWorker(int startId) {
+            graph = ScissorsSelectionModel.this.graph;
+            weigher = weigher();
+            cached = treeCache.get(startId, weightName);
+            if (cached != null && cached.complete()) {
+                pathfinder = null;
+                handoff = null;
+            } else if (speculation != null && speculation.startId == startId) {
+                pathfinder = null;
+                handoff = speculation.stop();
+                // The solver is ours now, so it must not be recycled when speculation stops
+                speculation = null;
+            } else {
+                handoff = null;
+                pathfinder = new ShortestPaths<>(graph, weigher);
+                if (cached != null) {
+                    pathfinder.resume(cached.partial());
+                } else {
+                    pathfinder.setStart(startId);
+                }
+            }
+            // Forward progress property changes to outer model's listeners (as long as we are
+            // still the active solver).
+            addPropertyChangeListener((PropertyChangeEvent evt) -> {
+                String name = evt.getPropertyName();
+                if (("progress".equals(name) || "pending-paths".equals(name)) && worker == this) {
+                    propSupport.firePropertyChange(evt);
+                }
+            });
+        }
+
+        /**
+         * Submit this worker to run at interactive priority.  If we are taking over a speculative
+         * search, we are only queued once it has stopped.
+         */
+        @Override
+        Future<?> submit() {
+            if (handoff != null) {
+                return searchExecutor.submitAfter(handoff, this,
+                        SearchExecutor.Priority.INTERACTIVE);
+            } else {
+                return searchExecutor.submit(this, SearchExecutor.Priority.INTERACTIVE);
+            }
+        }
+
+        /**
+         * Solve for shortest paths and return the results.  Periodically publish progress
+         * percentage and preliminary shortest paths (as views of the solver's progress, which cost
+         * nothing to take).  It is assumed that this is generally not
+         * called from the EDT.  Returns null if cancelled.
+         */
+        @Override
+        public PathfindingSnapshot doInBackground() {
+            // This is executed on a separate thread; do not access outer model's fields!
+
+            if (handoff != null) {
+                pathfinder = handoff.join();
+            }
+            if (pathfinder == null) {
+                return cached.decode(graph, weigher);
+            }
+
+            PathfindingSnapshot snapshot = null;
+            // Time spent taking and publishing the previous snapshot, which comes out of the
+            //  search's share of each publish period
+            Duration publishCost = Duration.ZERO;
+            while(!pathfinder.allPathsFound()){
+                Duration slice = publishPeriod.minus(publishCost);
+                if (slice.compareTo(minSearchSlice) < 0) {
+                    slice = minSearchSlice;
+                }
+                // Checking for cancellation inside the search lets an undo stop it within a frame
+                pathfinder.advance(slice, this::isCancelled);
+                if(isCancelled()){
+                    return(null);
+                }
+                long publishStart = System.nanoTime();
+                // A view rather than a snapshot, since copying the search's arrays at every step
+                //  would cost as much as the search itself on large images
+                snapshot = pathfinder.progress();
+                double vertexPercent = 100*(double) pathfinder.settledCount() / graph.vertexCount();
+                setProgress((int)vertexPercent);
+                publish(snapshot);
+                publishCost = Duration.ofNanos(System.nanoTime() - publishStart);
+            }
+            if (snapshot == null) {
+                // A resumed search may already have been finished
+                snapshot = pathfinder.progress();
+            }
+            completed = PathTreeCache.compact(graph, snapshot);
+            return(snapshot);
+        }
+
+        /**
          * Save the most recent preliminary paths published by the worker's background task to our
          * outer Model's `pendingPaths` and notify listeners that the "pending-paths" property has
          * changed.  This is executed on the EDT.
@@ -374,12 +1439,16 @@ public class ScissorsSelectionModel extends SelectionModel {
             }
             pendingPaths = publishedPaths.getLast();
             firePropertyChange("pending-paths", null, pendingPaths);
+
+            // Queued commands may not need to wait for the rest of this solve
+            applyQueuedCommandsIfReady();
         }
 
         /**
          * This is executed on the EDT.  If we are still the active worker, set model's state to the
          * state it transitioned to PROCESSING from, unless it was NO_SELECTION and our task
-         * finished successfully, in which case transition to SELECTING.
+         * finished successfully, in which case transition to SELECTING.  Then apply any commands
+         * that were queued while we were running.
          */
         @Override
         public void done() {
@@ -389,13 +1458,19 @@ public class ScissorsSelectionModel extends SelectionModel {
             try {
                 if (!isCancelled()) {
                     PathfindingSnapshot result = get();
-                    paths = result;
-                    if (previousState == NO_SELECTION && result != null) {
-                        setState(SELECTING);
+                    if (completed != null) {
+                        treeCache.put(weightName, completed);
+                    }
+                    if (result != null) {
+                        finishProcessing(result, false);
                     } else {
                         setState(previousState);
                     }
                 } else {
+                    // Keep what was found in case this point is added again
+                    if (pendingPaths != null) {
+                        treeCache.put(weightName, PathTreeCache.partial(pendingPaths));
+                    }
                     if (previousState == SELECTING) {
                         undoPoint();
                     }
@@ -409,10 +1484,508 @@ public class ScissorsSelectionModel extends SelectionModel {
                 }
                 worker = null;
             }
+
+            if (ScissorsSelectionModel.this.state() == SELECTING && pathsPartial) {
+                // We backed up to a point whose solve was cut short, so finish it
+                findPaths(graph.idAt(lastPoint()));
+            } else {
+                applyQueuedCommands();
+            }
         }
     }
-}
 
 
+    /**
+     * SwingWorker for computing the replacement segments around a moved control point.  Searches
+     * forward from the moved point to the next control point and, concurrently (on another search
+     * thread at the same priority, if one is free), backward from the moved point to the previous
+     * control point (so that segment is correct even for asymmetric weighers).  Each search
+     * stops as soon as its target is settled, so the cost depends on how far apart the points are
+     * rather than on the size of the image.  Reports progress relative to that bounded region (no
+     * pathfinding snapshots are published, since copying image-sized arrays would cost more than
+     * the search itself).
+     */
+    private class RerouteWorker extends SearchWorker<RerouteWorker.Segments, Void> {
+
+        /**
+         * The replacement for the segment preceding the moved point (`before`) and for the segment
+         * starting at it (`after`).
+         */
+        record Segments(PolyLine before, PolyLine after) {}
+
+        /**
+         * The forward/backward solver this worker will use, or null in multi-resolution mode.
+         * After construction, must only be accessed from the background thread (until `done()` is
+         * called for a search that was not cancelled).
+         */
+        private final ForwardBackwardPaths<ImageVertex, ImageEdge> pathfinder;
 
+        /**
+         * The image pyramid to find the segments in, or null if searching at full resolution.
+         */
+        private final CompletableFuture<ImagePyramid> levels;
 
+        /**
+         * Index of the selection segment whose starting point is being moved.
+         */
+        private final int index;
+
+        /**
+         * The new location of the moved point.
+         */
+        private final Point newPos;
+
+        /**
+         * Vertex IDs of the moved point's new location and of the control points before and after
+         * it.
+         */
+        private final int startId, prevId, nextId;
+
+        /**
+         * Construct a worker that, when executed, will find paths connecting `newPos` to the
+         * control points with vertex IDs `prevId` and `nextId` in order to replace the segments
+         * around the starting point of segment `index`.  "progress" events will be forwarded to our
+         * outer model's listeners.  This must be called from the EDT.
+         */
+        RerouteWorker(int index, Point newPos, int prevId, int nextId) {
+            this.index = index;
+            this.newPos = new Point(newPos);
+            this.startId = graph.idAt(newPos);
+            this.prevId = prevId;
+            this.nextId = nextId;
+            if (multiResolution) {
+                levels = pyramid();
+                pathfinder = null;
+            } else {
+                levels = null;
+                pathfinder = (spareSolver != null) ? spareSolver
+                        : new ForwardBackwardPaths<>(graph, weigher(), interactiveSearches);
+                spareSolver = null;
+            }
+            addPropertyChangeListener((PropertyChangeEvent evt) -> {
+                if ("progress".equals(evt.getPropertyName()) && worker == this) {
+                    propSupport.firePropertyChange(evt);
+                }
+            });
+        }
+
+        /**
+         * Submit this worker to run at interactive priority.  In multi-resolution mode, we are
+         * only queued once our pyramid has been built, so that we never hold a search thread while
+         * waiting for it.
+         */
+        @Override
+        Future<?> submit() {
+            if (levels != null) {
+                return searchExecutor.submitAfter(levels, this,
+                        SearchExecutor.Priority.INTERACTIVE);
+            } else {
+                return searchExecutor.submit(this, SearchExecutor.Priority.INTERACTIVE);
+            }
+        }
+
+        /**
+         * Search forward to the next control point and backward to the previous one until both
+         * are settled, periodically reporting progress as the fraction of the distance to each
+         * target that has been covered (whichever is less).  In multi-resolution mode, instead
+         * find each segment coarse-to-fine in our pyramid.  Returns the replacement segments, or
+         * null if cancelled or if either control point cannot be reached from the moved point (in
+         * which case the selection is left unchanged).
+         */
+        @Override
+        public Segments doInBackground() {
+            // This is executed on a separate thread; do not access outer model's fields!
+            if (levels != null) {
+                ImagePyramid pyramid = levels.join();
+                ImagePyramid.Query query = pyramid.acquireQuery();
+                try {
+                    PolyLine before = graph.pathToPolyLine(query.pathBetween(prevId, startId));
+                    setProgress(50);
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    PolyLine after = graph.pathToPolyLine(query.pathBetween(startId, nextId));
+                    return new Segments(before, after);
+                } finally {
+                    pyramid.release(query);
+                }
+            }
+            int[] forwardTargets = {nextId};
+            int[] backwardTargets = {prevId};
+            pathfinder.setStart(startId);
+            while (!pathfinder.extendSearchTo(forwardTargets, backwardTargets, 10000)) {
+                if (isCancelled()) {
+                    return null;
+                }
+                if (unreachable(pathfinder.forward(), nextId)
+                        || unreachable(pathfinder.backward(), prevId)) {
+                    // One search has run out of vertices without reaching its target (the other
+                    //  may have stopped at its own), so no amount of searching will connect them
+                    return null;
+                }
+                int forwardDist = pathfinder.distanceFrom(nextId);
+                int backwardDist = pathfinder.distanceTo(prevId);
+                if (forwardDist >= 0 && backwardDist >= 0) {
+                    int forwardPercent = 100 * pathfinder.forward().settledRadius()
+                            / Math.max(1, forwardDist);
+                    int backwardPercent = 100 * pathfinder.backward().settledRadius()
+                            / Math.max(1, backwardDist);
+                    setProgress(Math.min(99, Math.min(forwardPercent, backwardPercent)));
+                }
+            }
+            // New segment is the path from the predecessor point to the moved point
+            PolyLine before = graph.pathToPolyLine(pathfinder.pathTo(prevId));
+            // New segment is path from moved point to successor point
+            PolyLine after = graph.pathToPolyLine(pathfinder.pathFrom(nextId));
+            return new Segments(before, after);
+        }
+
+        /**
+         * Return whether `search` has settled every vertex it can reach without reaching the
+         * vertex with ID `targetId`.
+         */
+        private static boolean unreachable(ShortestPaths<?, ?> search, int targetId) {
+            return search.allPathsFound() && !search.settled(targetId);
+        }
+
+        /**
+         * This is executed on the EDT.  If we are still the active worker and were not cancelled,
+         * splice the replacement segments into the selection and notify listeners (if no path
+         * was found, the selection is unchanged, and the moved point stays where it was).  Either
+         * way, return to the state we entered PROCESSING from.
+         */
+        @Override
+        public void done() {
+            if (worker != this) {
+                return;
+            }
+            worker = null;
+            try {
+                Segments result = isCancelled() ? null : get();
+                if (!isCancelled() && pathfinder != null) {
+                    // Our background search has finished, so its solver is free to be reused
+                    spareSolver = pathfinder;
+                }
+                if (result != null) {
+                    ListIterator<PolyLine> it = selection.listIterator(index + 1);
+                    it.previous();
+                    it.set(result.after());
+                    if (!it.hasPrevious()) {
+                        it = selection.listIterator(selection.size());
+                        start = new Point(newPos);
+                    }
+                    it.previous();
+                    it.set(result.before());
+                    propSupport.firePropertyChange("selection", null, selection());
+                }
+            } catch (InterruptedException ignored) {
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            } finally {
+                setState(previousState);
+            }
+        }
+    }
+
+
+    /**
+     * SwingWorker for finding every segment of the selection again between its control points (see
+     * `rerouteSelection()`), one segment after another, reporting progress as the fraction of
+     * segments found.  Segments are found with landmark-guided searches if our landmarks are
+     * ready, coarse-to-fine in our pyramid in multi-resolution mode, and otherwise by searches
+     * from each control point that stop once the next one is settled.
+     */
+    private class BatchRouteWorker extends SearchWorker<List<PolyLine>, Void> {
+
+        /**
+         * Vertex IDs of the control points, in order, with the first repeated at the end.
+         */
+        private final int[] pointIds;
+
+        /**
+         * The graph and weigher to search with (the weigher is only used without landmarks or a
+         * pyramid).
+         */
+        private final ImageGraph graph;
+        private final Weigher<ImageEdge> weigher;
+
+        /**
+         * Our outer model's landmark distances, or null if they were not ready when we started.
+         */
+        private final LandmarkPaths<ImageVertex, ImageEdge> alt;
+
+        /**
+         * The image pyramid to find the segments in, or null if searching at full resolution.
+         */
+        private final CompletableFuture<ImagePyramid> levels;
+
+        /**
+         * The solver used when there are neither landmarks nor a pyramid, created (or taken from
+         * our outer model's spare) when first needed.  Must only be accessed from the background
+         * thread until `done()` is called for a search that was not cancelled.
+         */
+        private ShortestPaths<ImageVertex, ImageEdge> solver;
+
+        /**
+         * Construct a worker that, when executed, will find paths connecting each of the control
+         * points with vertex IDs `pointIds` to the next.  "progress" events will be forwarded to
+         * our outer model's listeners.  This must be called from the EDT.
+         */
+        BatchRouteWorker(int[] pointIds) {
+            this.pointIds = pointIds;
+            graph = ScissorsSelectionModel.this.graph;
+            weigher = weigher();
+            alt = readyLandmarks();
+            levels = (multiResolution && alt == null) ? pyramid() : null;
+            solver = spareSearch;
+            spareSearch = null;
+            addPropertyChangeListener((PropertyChangeEvent evt) -> {
+                if ("progress".equals(evt.getPropertyName()) && worker == this) {
+                    propSupport.firePropertyChange(evt);
+                }
+            });
+        }
+
+        /**
+         * Submit this worker to run at interactive priority (in multi-resolution mode, once our
+         * pyramid has been built).
+         */
+        @Override
+        Future<?> submit() {
+            if (levels != null) {
+                return searchExecutor.submitAfter(levels, this,
+                        SearchExecutor.Priority.INTERACTIVE);
+            } else {
+                return searchExecutor.submit(this, SearchExecutor.Priority.INTERACTIVE);
+            }
+        }
+
+        /**
+         * Find the path from each control point to the next.  Returns the new segments, or null
+         * if cancelled or if some control point cannot be reached from the one before it.
+         */
+        @Override
+        public List<PolyLine> doInBackground() {
+            // This is executed on a separate thread; do not access outer model's fields!
+            LandmarkPaths<ImageVertex, ImageEdge>.Query altQuery =
+                    (alt != null) ? alt.newQuery() : null;
+            ImagePyramid pyramid = (levels != null) ? levels.join() : null;
+            ImagePyramid.Query pyramidQuery = (pyramid != null) ? pyramid.acquireQuery() : null;
+            try {
+                List<PolyLine> segments = new ArrayList<>();
+                for (int i = 0; i + 1 < pointIds.length; ++i) {
+                    if (isCancelled()) {
+                        return null;
+                    }
+                    List<Integer> path = pathBetween(altQuery, pyramidQuery, pointIds[i],
+                            pointIds[i + 1]);
+                    if (path == null) {
+                        return null;
+                    }
+                    segments.add(graph.pathToPolyLine(path));
+                    setProgress(100 * (i + 1) / (pointIds.length - 1));
+                }
+                return segments;
+            } finally {
+                if (pyramidQuery != null) {
+                    pyramid.release(pyramidQuery);
+                }
+            }
+        }
+
+        /**
+         * Return the vertex IDs along a path from the vertex with ID `srcId` to the vertex with
+         * ID `dstId` (inclusive), found with `altQuery` if it is not null, else with
+         * `pyramidQuery` if it is not null, else with our solver.  Returns null if there is no
+         * such path.
+         */
+        private List<Integer> pathBetween(LandmarkPaths<ImageVertex, ImageEdge>.Query altQuery,
+                ImagePyramid.Query pyramidQuery, int srcId, int dstId) {
+            if (altQuery != null) {
+                return altQuery.pathBetween(srcId, dstId);
+            } else if (pyramidQuery != null) {
+                return pyramidQuery.pathBetween(srcId, dstId);
+            }
+            if (solver == null) {
+                solver = new ShortestPaths<>(graph, weigher);
+            }
+            solver.findPathsTo(srcId, dstId);
+            return solver.settled(dstId) ? solver.pathTo(dstId) : null;
+        }
+
+        /**
+         * This is executed on the EDT.  If we are still the active worker and were not cancelled,
+         * replace the selection's segments with the new ones and notify listeners (if some
+         * segment could not be found, the selection is unchanged).  Either way, return to the
+         * state we entered PROCESSING from.
+         */
+        @Override
+        public void done() {
+            if (worker != this) {
+                return;
+            }
+            worker = null;
+            try {
+                List<PolyLine> result = isCancelled() ? null : get();
+                if (!isCancelled() && solver != null) {
+                    // Our background search has finished, so its solver is free to be reused
+                    spareSearch = solver;
+                }
+                if (result != null) {
+                    selection.clear();
+                    selection.addAll(result);
+                    propSupport.firePropertyChange("selection", null, selection());
+                }
+            } catch (InterruptedException ignored) {
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e);
+            } finally {
+                setState(previousState);
+            }
+        }
+    }
+
+
+    /**
+     * A command received while PROCESSING: either adding `point` to the selection or, if `point`
+     * is null, finishing the selection.
+     */
+    private record QueuedCommand(Point point) {
+
+        /**
+         * Return whether this command finishes the selection (as opposed to adding a point).
+         */
+        boolean finishes() {
+            return point == null;
+        }
+    }
+
+
+    /**
+     * A search for shortest paths from one pixel that runs at BACKGROUND priority on our search
+     * executor until it finishes or is stopped, giving up its thread whenever interactive work is
+     * pending.  A finished tree is added to our outer model's cache (if this is still its current
+     * speculation); a stopped search hands its solver, with whatever it has found so far, to
+     * whoever stopped it.
+     */
+    private class Speculation implements Runnable {
+        /**
+         * The ID of the vertex we are searching from.
+         */
+        final int startId;
+
+        /**
+         * The graph and weigher of our outer model when we were constructed.
+         */
+        private final ImageGraph graph;
+        private final Weigher<ImageEdge> weigher;
+
+        /**
+         * Our solver.  Only accessed by whichever thread holds `running` until `stopped`
+         * completes.
+         */
+        private final ShortestPaths<ImageVertex, ImageEdge> pathfinder;
+
+        /**
+         * Completes with `pathfinder` once no background thread will use it again.
+         */
+        private final CompletableFuture<ShortestPaths<ImageVertex, ImageEdge>> stopped =
+                new CompletableFuture<>();
+
+        /**
+         * Set (from the EDT) to ask the background thread to stop searching.
+         */
+        private volatile boolean stopRequested;
+
+        /**
+         * Held (set) while a thread is using `pathfinder`: either a background thread searching,
+         * or, once set by `stop()`, for good.  Lets `stop()` hand over the solver at once if we are
+         * waiting to run rather than running.
+         */
+        private final AtomicBoolean running = new AtomicBoolean();
+
+        /**
+         * Our initial submission to the search executor, so that it can be withdrawn if we are
+         * stopped before it runs.  Only accessed from the EDT.
+         */
+        Future<?> queued;
+
+        /**
+         * Prepare to search from the vertex with ID `startId`, resuming from `partial` if it is
+         * not null.  Uses our outer model's spare search if it has one.  Must be called from the
+         * EDT.
+         */
+        Speculation(int startId, PathTreeCache.Entry partial) {
+            this.startId = startId;
+            graph = ScissorsSelectionModel.this.graph;
+            weigher = weigher();
+            pathfinder = (spareSearch != null) ? spareSearch : new ShortestPaths<>(graph, weigher);
+            spareSearch = null;
+            if (partial != null) {
+                pathfinder.resume(partial.partial());
+            } else {
+                pathfinder.setStart(startId);
+            }
+        }
+
+        /**
+         * Search in time slices until all paths are found or we are asked to stop.  If interactive
+         * work becomes pending first, give up our thread and continue once it is done.
+         */
+        @Override
+        public void run() {
+            if (!running.compareAndSet(false, true)) {
+                // Stopped (and solver handed over) while we were waiting to run
+                return;
+            }
+            boolean paused = false;
+            try {
+                while (!stopRequested && !pathfinder.advance(publishPeriod,
+                        () -> stopRequested || searchExecutor.interactivePending())) {
+                    if (searchExecutor.interactivePending()) {
+                        paused = true;
+                        break;
+                    }
+                }
+                if (!paused && !stopRequested) {
+                    PathTreeCache.Entry tree = PathTreeCache.compact(graph, pathfinder.snapshot());
+                    SwingUtilities.invokeLater(() -> {
+                        if (speculation == this) {
+                            treeCache.put(weightName, tree);
+                            speculation = null;
+                            recycle(this);
+                        }
+                    });
+                }
+            } finally {
+                if (!paused) {
+                    stopped.complete(pathfinder);
+                } else {
+                    running.set(false);
+                    if (!stopRequested) {
+                        searchExecutor.submitWhenInteractiveIdle(this);
+                    } else if (running.compareAndSet(false, true)) {
+                        // `stop()` was called before we let go, so it is up to us to hand over
+                        stopped.complete(pathfinder);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Ask our search to stop, returning a future that completes with its solver once it has.
+         * Must be called from the EDT.
+         */
+        CompletableFuture<ShortestPaths<ImageVertex, ImageEdge>> stop() {
+            stopRequested = true;
+            if (running.compareAndSet(false, true)) {
+                // No thread is searching, and none will start now
+                if (queued != null) {
+                    queued.cancel(false);
+                }
+                stopped.complete(pathfinder);
+            }
+            return stopped;
+        }
+    }
+}
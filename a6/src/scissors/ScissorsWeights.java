@@ -1,14 +1,15 @@
 package scissors;
 
 import graph.Weigher;
-import java.awt.image.BandCombineOp;
 import java.awt.image.Raster;
-import java.awt.image.RasterOp;
-import java.util.Arrays;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.List;
 
 /**
  * Factory for edge weight functions appropriate for use by the Intelligent Scissors algorithm.
+ * Every weigher is defined for edges in all 16 directions, so it may be used with an `ImageGraph`
+ * of any `Connectivity`.
  */
 public class ScissorsWeights {
 
@@ -21,58 +22,142 @@ public class ScissorsWeights {
         return switch (weightName) {
             case "CrossGradMono" -> new CrossGradMonoWeight(graph);
             case "Color" -> new ColorWeigher(graph);
+            case "ColorNoAlpha" -> new ColorWeigher(graph, false);
+            case "MultiFeature" -> new MultiFeatureWeigher(graph);
             default -> throw new IllegalArgumentException("Unknown weigher: " + weightName);
         };
     }
 
+    /**
+     * Return a description of the tunable parameters of the weigher named `weightName`, so that
+     * weights cached on disk (see `WeightCache`) are not reused after those parameters change.
+     * Throws IllegalArgumentException if `weightName` is not among our `weightNames()`.
+     */
+    static String parameters(String weightName) {
+        return switch (weightName) {
+            case "CrossGradMono", "Color", "ColorNoAlpha" -> "";
+            case "MultiFeature" -> MultiFeatureWeigher.parameters();
+            default -> throw new IllegalArgumentException("Unknown weigher: " + weightName);
+        };
+    }
+
+    /**
+     * Return whether weights given by the weigher named `weightName` are costly enough to compute
+     * that remembering them (see `LazyWeights`) pays off.  The grayscale weigher only reads a few
+     * bytes of a luminance plane per edge, which is as fast as looking its weight up.
+     */
+    static boolean worthRemembering(String weightName) {
+        return !weightName.equals("CrossGradMono");
+    }
+
+    /**
+     * Create a `Weigher` for edges in `graph` that uses the precomputed per-pixel costs in `file`
+     * (a 16-bit grayscale PNG, or raw little-endian 16-bit costs) instead of computing weights
+     * from the image; see `ImportedCostWeigher`.  Throws IOException if the file cannot be read
+     * or does not match the size of `graph`'s image.
+     */
+    static Weigher<ImageEdge> importCostMap(Path file, ImageGraph graph) throws IOException {
+        return ImportedCostWeigher.load(file, graph.width(), graph.height());
+    }
+
     /**
      * Return the names of weight functions that this factory can create.
      */
     static Iterable<String> weightNames() {
-        return List.of("CrossGradMono", "Color");
+        return List.of("CrossGradMono", "Color", "ColorNoAlpha", "MultiFeature");
     }
 
     /**
-     * Return the magnitude of the slope of the image intensity of `img` in band `b` perpendicular
-     * to the direction `dir` from the pixel at location (`x`, `y`), multiplied by the distance to
-     * the neighboring pixel in that direction.
-     * <p>
-     * The conventions for `dir` are the same as in `ImageVertex`: it is an integer in [0..8] where
-     * 0 points right and 2 points up.
+     * The value of `crossGrad()` for edges along the image's border, whose far side lies outside
+     * the image.
      */
-    static int crossGrad(Raster img, int x, int y, int b, int dir) {
-        int width = img.getWidth();
-        int height = img.getHeight();
+    // Note: Image boundaries are given slightly less than the maximum value, making it easier to
+    //  select subjects that are cut off by the image's border without trying too hard to find
+    //  paths that cut into the subject.
+    static final int borderWeight = 180 - 64;
 
-        // Note: Image boundaries are given slightly less than the maximum value, making it easier
-        //  to select subjects that are cut off by the image's border without trying too hard to
-        //  find paths that cut into the subject.
-        int borderWeight = 180 - 64;
+    /**
+     * The intensity of one band of an image at each pixel location.
+     */
+    interface Intensity {
+        /**
+         * Return the intensity of the pixel at (`x`, `y`), which must be within the image.
+         */
+        int at(int x, int y);
+    }
 
+    /**
+     * Return the magnitude of the slope of the intensity `img` of a `width` x `height` image
+     * perpendicular to the direction `dir` from the pixel at location (`x`, `y`), multiplied by the
+     * distance to the neighboring pixel in that direction.
+     * <p>
+     * The conventions for `dir` are the same as in `ImageVertex`: it is an integer in [0..15] where
+     * 0 points right, 2 points up, and [8..15] are knight moves.  Knight moves compare the two
+     * pixels on either side of the edge, which are always within the image.
+     */
+    static int crossGrad(Intensity img, int width, int height, int x, int y, int dir) {
         return switch (dir) {
             case 0 -> (y == 0 || y == height - 1) ? borderWeight :
-                    Math.abs((img.getSample(x, y + 1, b) + img.getSample(x + 1, y + 1, b)) -
-                            (img.getSample(x, y - 1, b) + img.getSample(x + 1, y - 1, b))) / 4;
-            case 1 -> Math.abs(img.getSample(x + 1, y, b) - img.getSample(x, y - 1, b));
+                    Math.abs((img.at(x, y + 1) + img.at(x + 1, y + 1)) -
+                            (img.at(x, y - 1) + img.at(x + 1, y - 1))) / 4;
+            case 1 -> Math.abs(img.at(x + 1, y) - img.at(x, y - 1));
             case 2 -> (x == 0 || x == width - 1) ? borderWeight :
-                    Math.abs((img.getSample(x + 1, y - 1, b) + img.getSample(x + 1, y, b)) -
-                            (img.getSample(x - 1, y - 1, b) + img.getSample(x - 1, y, b))) / 4;
-            case 3 -> Math.abs(img.getSample(x, y - 1, b) - img.getSample(x - 1, y, b));
+                    Math.abs((img.at(x + 1, y - 1) + img.at(x + 1, y)) -
+                            (img.at(x - 1, y - 1) + img.at(x - 1, y))) / 4;
+            case 3 -> Math.abs(img.at(x, y - 1) - img.at(x - 1, y));
             case 4 -> (y == 0 || y == height - 1) ? borderWeight :
-                    Math.abs((img.getSample(x, y - 1, b) + img.getSample(x - 1, y - 1, b)) -
-                            (img.getSample(x, y + 1, b) + img.getSample(x - 1, y + 1, b))) / 4;
-            case 5 -> Math.abs(img.getSample(x - 1, y, b) - img.getSample(x, y + 1, b));
+                    Math.abs((img.at(x, y - 1) + img.at(x - 1, y - 1)) -
+                            (img.at(x, y + 1) + img.at(x - 1, y + 1))) / 4;
+            case 5 -> Math.abs(img.at(x - 1, y) - img.at(x, y + 1));
             case 6 -> (x == 0 || x == width - 1) ? borderWeight :
-                    Math.abs((img.getSample(x - 1, y + 1, b) + img.getSample(x - 1, y, b)) -
-                            (img.getSample(x + 1, y + 1, b) + img.getSample(x + 1, y, b))) / 4;
-            case 7 -> Math.abs(img.getSample(x, y + 1, b) - img.getSample(x + 1, y, b));
+                    Math.abs((img.at(x - 1, y + 1) + img.at(x - 1, y)) -
+                            (img.at(x + 1, y + 1) + img.at(x + 1, y))) / 4;
+            case 7 -> Math.abs(img.at(x, y + 1) - img.at(x + 1, y));
+            case 8, 9, 10, 11, 12, 13, 14, 15 -> knightCrossGrad(img, x, y, dir);
             default -> throw new IllegalArgumentException();
         };
     }
 
+    /**
+     * Return `crossGrad()` for the knight move `dir` from (`x`, `y`).  The edge runs through the
+     * middle of a 2x3 (or 3x2) block of pixels, with two pixels of the block on either side of
+     * it; the slope across it is estimated from the difference between those pairs.
+     */
+    private static int knightCrossGrad(Intensity img, int x, int y, int dir) {
+        int dx = ImageVertex.dx(dir);
+        int dy = ImageVertex.dy(dir);
+        int sideA;
+        int sideB;
+        if (Math.abs(dx) == 2) {
+            // The edge crosses the block's two rows; each side has two pixels in one row
+            int mx = x + dx / 2;
+            sideA = img.at(x, y + dy) + img.at(mx, y + dy);
+            sideB = img.at(mx, y) + img.at(x + dx, y);
+        } else {
+            // The edge crosses the block's two columns; each side has two pixels in one column
+            int my = y + dy / 2;
+            sideA = img.at(x + dx, y) + img.at(x + dx, my);
+            sideB = img.at(x, my) + img.at(x, y + dy);
+        }
+        // The pairs are about one pixel apart, and the edge is sqrt(5) long
+        return (int) (Math.abs(sideA - sideB) * Math.sqrt(5) / 4);
+    }
+
+    /**
+     * Return the largest value that `crossGrad()` is considered to reach for an edge in direction
+     * `dir`, scaled by the edge's length, so that weights of edges in every direction are
+     * comparable.  Subtracting `crossGrad()` from this converts a gradient "reward" into a cost.
+     */
+    static int maxCrossGrad(int dir) {
+        if (dir >= 8) {
+            return 402;  // 180 * sqrt(5)
+        }
+        return (dir % 2 == 0) ? 180 : 255;
+    }
+
     /**
      * Weight edges less if they run perpendicular to a large brightness gradient in an ImageGraph's
-     * image.  Only considers the brightness of a grayscale (band-averaged) version of the image.
+     * image.  Only considers the luminance of the image (see `GrayPlane`).
      */
     static class CrossGradMonoWeight implements Weigher<ImageEdge> {
 
@@ -82,9 +167,14 @@ public class ScissorsWeights {
         private ImageGraph graph;
 
         /**
-         * A grayscale copy of the image represented by `graph`.
+         * The luminance of the image represented by `graph`.
          */
-        private Raster grayImage;
+        private final GrayPlane gray;
+
+        /**
+         * `gray`, for `crossGrad()`.
+         */
+        private final Intensity grayImage;
 
         /**
          * Create a new weigher capable of weighing edges in `graph`.
@@ -92,19 +182,9 @@ public class ScissorsWeights {
         CrossGradMonoWeight(ImageGraph graph) {
             this.graph = graph;
 
-            // Extract the "raster" for our graph's image, from which we can query pixel
-            //  brightnesses.
-            Raster src = graph.raster();
-
-            // Convert our graph's image to black-and-white by averaging its bands
-            // This involves linear algebra; we do not expect most students to understand how this
-            //  works yet (consider CS 4670 if you are interested).
-            float weight = 1.0f / src.getNumBands();
-            float[][] avgMatrix = new float[3][src.getNumBands()];
-            Arrays.fill(avgMatrix[0], weight);
-            Arrays.fill(avgMatrix, avgMatrix[0]);
-            RasterOp op = new BandCombineOp(avgMatrix, null);
-            grayImage = op.filter(src, null);
+            // Our graph's image in black-and-white, shared with any other weighers of the graph
+            gray = graph.grayPlane();
+            grayImage = gray::at;
         }
 
         @Override
@@ -115,20 +195,23 @@ public class ScissorsWeights {
             int y = src.y();
 
             // Compute the largest possible slope, multiplied by the edge's length, that could be
-            //  observed perpendicular to this edge's direction (even directions are horizontal or
-            //  vertical; odd edges are diagonal).  By subtracting a "reward" quantity from this,
-            //  we convert the reward into a "cost".
-            int eGradMax = ((edge.dir() % 2) == 0) ? 180 : 255;
+            //  observed perpendicular to this edge's direction (even directions below 8 are
+            //  horizontal or vertical; odd ones are diagonal; the rest are knight moves).  By
+            //  subtracting a "reward" quantity from this, we convert the reward into a "cost".
+            int eGradMax = maxCrossGrad(edge.dir());
 
             // Compute the magnitude of the slope perpendicular to this edge, multiplied by this
             //  edge's length, then subtract it from the best possible value.
-            return eGradMax - crossGrad(grayImage, x, y, 0, edge.dir());
+            return eGradMax - crossGrad(grayImage, gray.width, gray.height, x, y, edge.dir());
         }
     }
 
     /**
      * Weight edges less if they run perpendicular to a large color gradient in an ImageGraph's
      * image. Considers the brightness of each rbg aspect(band-averaged) in the image.
+     * <p>
+     * Packed-int and interleaved-byte images are read from a `PackedPixels` copy, which fetches
+     * every channel of a pixel at once; other images are read band by band from their raster.
      */
     static class ColorWeigher implements Weigher<ImageEdge> {
         /**
@@ -136,18 +219,47 @@ public class ScissorsWeights {
          */
         private ImageGraph graph;
 
+        /**
+         * A packed copy of the image represented by `graph`, or null if its type has no fast path
+         * (in which case `bands` is used instead).
+         */
+        private final PackedPixels packed;
+
         /**
          * A color copy of the image represented by `graph`.
          */
         private Raster colorImage;
 
         /**
-         * Create a new weigher capable of weighing edges in `graph`.
+         * Each band of `colorImage` that we compare, for `crossGrad()`.
+         */
+        private final Intensity[] bands;
+
+        /**
+         * Create a new weigher capable of weighing edges in `graph`, comparing the alpha channel of
+         * its image (if it has one) along with the color bands.
          */
         ColorWeigher(ImageGraph graph) {
+            this(graph, true);
+        }
+
+        /**
+         * Create a new weigher capable of weighing edges in `graph`.  The alpha channel of its
+         * image (if it has one) is compared only if `includeAlpha` is true.
+         */
+        ColorWeigher(ImageGraph graph, boolean includeAlpha) {
             this.graph = graph;
             this.colorImage = graph.raster();
+            packed = PackedPixels.of(graph.image(), includeAlpha);
+            boolean alpha = graph.image().getColorModel().hasAlpha();
+            int bandCount = colorImage.getNumBands() - ((alpha && !includeAlpha) ? 1 : 0);
+            bands = new Intensity[bandCount];
+            for (int b = 0; b < bands.length; ++b) {
+                int band = b;
+                bands[b] = (x, y) -> colorImage.getSample(x, y, band);
+            }
         }
+
         @Override
         public int weight(ImageEdge edge) {
             ImageVertex src = graph.getVertex(edge.startId());
@@ -155,15 +267,118 @@ public class ScissorsWeights {
             int y = src.y();
 
             // Compute largest possible slope
-            int eGradMax = ((edge.dir() % 2) == 0) ? 180 : 255;
+            int eGradMax = maxCrossGrad(edge.dir());
+
+            if (packed != null) {
+                int channels = packed.channels;
+                return (channels * eGradMax - packed.crossGradSum(x, y, edge.dir())) / channels;
+            }
 
             int weight = 0;
-            for (int b = 0; b < colorImage.getNumBands(); b++) {
-                int bandWeight = eGradMax - ScissorsWeights.crossGrad(colorImage, x, y, b, edge.dir());
+            for (int b = 0; b < bands.length; b++) {
+                int bandWeight = eGradMax - ScissorsWeights.crossGrad(bands[b],
+                        colorImage.getWidth(), colorImage.getHeight(), x, y, edge.dir());
                 weight += bandWeight;
             }
-            return weight / colorImage.getNumBands();
+            return weight / bands.length;
         }
     }
-}
 
+    /**
+     * Weight edges with Mortensen and Barrett's "live-wire" cost, a weighted sum of three features
+     * of the edge's end pixels in a smoothed copy of an ImageGraph's image (see `FeatureMaps`):
+     * * a Laplacian zero-crossing term, which is 0 where the edge ends on a zero-crossing (the
+     *   center of an intensity edge) and 1 elsewhere;
+     * * a gradient magnitude term, which is low where the gradient is strong, scaled by the edge's
+     *   length (relative to a diagonal) so that long edges cost proportionally more;
+     * * a gradient direction term, which is low when the edge runs along the boundary direction
+     *   at both ends, penalizing sharp changes in direction.
+     * The features are computed once, when the weigher is created, so weighing an edge only reads
+     * a few array elements.  Weights are scaled to be comparable with our other weighers.
+     */
+    static class MultiFeatureWeigher implements Weigher<ImageEdge> {
+
+        /**
+         * The relative importance of the zero-crossing, gradient direction, and gradient magnitude
+         * terms, as recommended by Mortensen and Barrett.
+         */
+        private static final float zeroCrossingWeight = 0.43f;
+        private static final float directionWeight = 0.43f;
+        private static final float magnitudeWeight = 0.14f;
+
+        /**
+         * The weight of an edge whose terms are all 1.
+         */
+        private static final float scale = 255;
+
+        /**
+         * `acos(c)` for `c` in [-1..1], sampled at `acosSteps` + 1 evenly spaced points.
+         */
+        private static final int acosSteps = 1024;
+        private static final float[] acosTable = new float[acosSteps + 1];
+
+        static {
+            for (int i = 0; i <= acosSteps; ++i) {
+                acosTable[i] = (float) Math.acos(2.0 * i / acosSteps - 1);
+            }
+        }
+
+        /**
+         * The features of the image represented by the graph whose edges we weigh.
+         */
+        private final FeatureMaps features;
+
+        /**
+         * Create a new weigher capable of weighing edges in `graph`, computing the features of its
+         * image.
+         */
+        MultiFeatureWeigher(ImageGraph graph) {
+            features = new FeatureMaps(graph.grayPlane());
+        }
+
+        @Override
+        public int weight(ImageEdge edge) {
+            int p = edge.startId();
+            int q = edge.endId();
+            double length = edge.length();
+            float linkX = (float) (ImageVertex.dx(edge.dir()) / length);
+            float linkY = (float) (ImageVertex.dy(edge.dir()) / length);
+
+            // Orient the link so that it makes an angle of at most 90 degrees with the edge
+            //  direction at `p`, then measure its angles to the edge directions at both ends
+            float dp = features.edgeDirX[p] * linkX + features.edgeDirY[p] * linkY;
+            if (dp < 0) {
+                dp = -dp;
+                linkX = -linkX;
+                linkY = -linkY;
+            }
+            float dq = linkX * features.edgeDirX[q] + linkY * features.edgeDirY[q];
+            float direction = (float) (2 / (3 * Math.PI)) * (acos(dp) + acos(dq));
+
+            float zeroCrossing = features.zeroCrossing[q] ? 0 : 1;
+            float magnitude = (features.gradientCost[q] & 0xff) / 255f
+                    * (float) (length / Math.sqrt(2));
+            return Math.round(scale * (zeroCrossingWeight * zeroCrossing
+                    + directionWeight * direction + magnitudeWeight * magnitude));
+        }
+
+        /**
+         * Return a description of our feature weights and the features' smoothing, which
+         * determine the weights we give.
+         */
+        static String parameters() {
+            return "sigma=" + FeatureMaps.sigma + " zeroCrossing=" + zeroCrossingWeight
+                    + " direction=" + directionWeight + " magnitude=" + magnitudeWeight
+                    + " scale=" + scale;
+        }
+
+        /**
+         * Return an approximation of `acos(c)`, for `c` in [-1..1] (clamped if rounding error has
+         * taken it slightly outside that range).
+         */
+        private static float acos(float c) {
+            int i = Math.round((c + 1) / 2 * acosSteps);
+            return acosTable[Math.clamp(i, 0, acosSteps)];
+        }
+    }
+}
@@ -0,0 +1,218 @@
+package scissors;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs path searches on a dedicated pool of platform threads (one per processor), so that they
+ * neither compete with nor wait behind unrelated work on Swing's shared SwingWorker executor.
+ * Queued tasks run in order of priority, then submission.  INTERACTIVE tasks are ones the user is
+ * waiting on; BACKGROUND tasks (e.g. speculation) must poll `interactivePending()` and, when it is
+ * true, give up their thread and continue later via `submitWhenInteractiveIdle()`, so that they
+ * never delay interactive ones.  Waiting (for a prerequisite, or for interactive work to finish) is
+ * done on virtual threads rather than by tying up a pool thread.
+ */
+class SearchExecutor {
+
+    /**
+     * How urgently a task should run.
+     */
+    enum Priority {
+        /**
+         * The user is waiting on this task's result.
+         */
+        INTERACTIVE,
+
+        /**
+         * This task's result may never be needed; it should only use otherwise idle time.
+         */
+        BACKGROUND
+    }
+
+    /**
+     * A task queued with a priority.  Cancelling a task that has not started removes it from the
+     * queue, so that stale tasks do not hold up fresh ones.  An INTERACTIVE task counts as pending
+     * from its creation until it finishes or is cancelled.
+     */
+    private class PrioritizedTask extends FutureTask<Void> implements Comparable<PrioritizedTask> {
+        private final Priority priority;
+
+        /**
+         * Breaks ties between tasks of equal priority in favor of the one submitted first.
+         */
+        private final long sequence;
+
+        PrioritizedTask(Runnable task, Priority priority) {
+            super(task, null);
+            this.priority = priority;
+            sequence = submissions.getAndIncrement();
+            if (priority == Priority.INTERACTIVE) {
+                synchronized (SearchExecutor.this) {
+                    interactiveCount += 1;
+                }
+            }
+        }
+
+        @Override
+        public int compareTo(PrioritizedTask other) {
+            int byPriority = priority.compareTo(other.priority);
+            return (byPriority != 0) ? byPriority : Long.compare(sequence, other.sequence);
+        }
+
+        /**
+         * Run at a thread priority matching our own, so that the OS scheduler also favors
+         * interactive work.
+         */
+        @Override
+        public void run() {
+            Thread thread = Thread.currentThread();
+            thread.setPriority(priority == Priority.INTERACTIVE ? Thread.NORM_PRIORITY
+                    : Thread.MIN_PRIORITY);
+            try {
+                super.run();
+            } finally {
+                thread.setPriority(Thread.NORM_PRIORITY);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean cancelled = super.cancel(mayInterruptIfRunning);
+            if (cancelled) {
+                pool.remove(this);
+            }
+            return cancelled;
+        }
+
+        /**
+         * Called once when we finish or are cancelled.
+         */
+        @Override
+        protected void done() {
+            if (priority == Priority.INTERACTIVE) {
+                interactiveFinished();
+            }
+        }
+    }
+
+    /**
+     * Platform threads that run tasks, taking them from a priority queue.
+     */
+    private final ThreadPoolExecutor pool;
+
+    /**
+     * Virtual threads that wait on behalf of tasks that are not yet ready to run.
+     */
+    private final ExecutorService coordinator = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * The number of tasks submitted so far (used to order tasks of equal priority).
+     */
+    private final AtomicLong submissions = new AtomicLong();
+
+    /**
+     * The number of INTERACTIVE tasks that have been submitted but have not finished or been
+     * cancelled.  Guarded by `this`.
+     */
+    private int interactiveCount;
+
+    /**
+     * Create an executor that runs up to `threadCount` tasks at once on daemon threads.
+     */
+    SearchExecutor(int threadCount) {
+        pool = new ThreadPoolExecutor(threadCount, threadCount, 0, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<>(), r -> {
+                    Thread thread = new Thread(r, "path-search");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Create an executor with one thread per available processor.
+     */
+    SearchExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Queue `task` to run with priority `priority`.  Returns a future that may be used to cancel
+     * it; a task cancelled before it starts never runs.
+     */
+    Future<?> submit(Runnable task, Priority priority) {
+        PrioritizedTask prioritized = new PrioritizedTask(task, priority);
+        // `submit()` would wrap our task in an incomparable one, so bypass it
+        pool.execute(prioritized);
+        return prioritized;
+    }
+
+    /**
+     * Once `prerequisite` completes (normally or not), queue `task` to run with priority
+     * `priority`.  The wait happens on a virtual thread; an INTERACTIVE task counts as pending
+     * from now, so that background work steps aside while it waits.  Returns a future that may be
+     * used to cancel `task`, whether it is still waiting or already queued.
+     */
+    Future<?> submitAfter(CompletableFuture<?> prerequisite, Runnable task, Priority priority) {
+        PrioritizedTask prioritized = new PrioritizedTask(task, priority);
+        coordinator.execute(() -> {
+            prerequisite.handle((result, e) -> null).join();
+            // A task cancelled while waiting is never queued (and would do nothing if it were)
+            if (!prioritized.isDone()) {
+                pool.execute(prioritized);
+            }
+        });
+        return prioritized;
+    }
+
+    /**
+     * Once no INTERACTIVE task is queued, waiting, or running, queue `task` to run with BACKGROUND
+     * priority.  The wait happens on a virtual thread.
+     */
+    void submitWhenInteractiveIdle(Runnable task) {
+        coordinator.execute(() -> {
+            try {
+                awaitInteractiveIdle();
+                submit(task, Priority.BACKGROUND);
+            } catch (InterruptedException e) {
+                // Only happens if the coordinator is shut down, in which case `task` is abandoned
+                Thread.currentThread().interrupt();
+            }
+        });
+    }
+
+    /**
+     * Return whether any INTERACTIVE task is queued, waiting, or running.  BACKGROUND tasks should
+     * poll this regularly (e.g. as part of a search's cancellation token) and, when it is true,
+     * pause their work and continue it with `submitWhenInteractiveIdle()`.
+     */
+    synchronized boolean interactivePending() {
+        return interactiveCount > 0;
+    }
+
+    /**
+     * Block until no INTERACTIVE task is queued, waiting, or running.
+     */
+    private synchronized void awaitInteractiveIdle() throws InterruptedException {
+        while (interactiveCount > 0) {
+            wait();
+        }
+    }
+
+    /**
+     * Record that an INTERACTIVE task has finished (or been cancelled), waking any BACKGROUND
+     * tasks waiting for interactive work to finish.
+     */
+    private synchronized void interactiveFinished() {
+        interactiveCount -= 1;
+        if (interactiveCount == 0) {
+            notifyAll();
+        }
+    }
+}
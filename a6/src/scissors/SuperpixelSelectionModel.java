@@ -0,0 +1,470 @@
+package scissors;
+
+import static selector.SelectionModel.SelectionState.*;
+
+import graph.PathfindingSnapshot;
+import graph.ShortestPaths;
+import graph.Weigher;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.concurrent.CompletableFuture;
+import javax.swing.SwingUtilities;
+import selector.PolyLine;
+import selector.SelectionModel;
+
+/**
+ * Models a selection tool that, like `ScissorsSelectionModel`, connects points with paths that
+ * follow edges in the image, but searches at the granularity of superpixels.  When an image is
+ * set, it is partitioned into superpixels in the background, and the boundaries between them are
+ * gathered into a `BoundaryGraph`.  The live wire is a shortest path through that graph, which is
+ * orders of magnitude smaller than the image, so it can be recomputed for every point added at
+ * negligible cost.  Only when a segment is committed is it refined to a pixel path, by a search
+ * confined to the superpixels along its coarse path.  Refinement runs on a search thread: the
+ * coarse path is added to the selection at once, and replaced by the pixel path (notifying
+ * listeners that the selection has changed) once that is ready.
+ * <p>
+ * Segments are not guaranteed to match those of `ScissorsSelectionModel`, since they follow
+ * superpixel borders between junctions, but superpixel borders tend to lie on the same edges.
+ * The model is PROCESSING only while waiting for superpixels to be computed.
+ */
+public class SuperpixelSelectionModel extends SelectionModel {
+
+    /**
+     * Approximate width, in pixels, of each superpixel.
+     */
+    private static final int regionSize = 16;
+
+    /**
+     * Trade-off between color similarity and compactness when forming superpixels (see
+     * `Superpixels`).
+     */
+    private static final double compactness = 10;
+
+    /**
+     * Extra weight charged, when refining a segment, for entering a pixel outside the superpixels
+     * along its coarse path (as in `ImagePyramid`).
+     */
+    private static final int outsidePenalty = 1 << 20;
+
+    /**
+     * The products of preprocessing an image: its superpixel boundaries, and a refiner for pixel
+     * paths along them.
+     */
+    private record Prepared(BoundaryGraph boundaries, Refiner refiner) {}
+
+    /**
+     * The graph representation of the current image (null if inherited `img` is null).
+     */
+    private ImageGraph graph;
+
+    /**
+     * Name of Weigher that will determine edge weights between neighboring pixels.  Must be
+     * recognized by the `ScissorsWeights` factory.
+     */
+    private final String weightName;
+
+    /**
+     * The superpixel boundaries and refiner for the current image, computed in the background.
+     * Null if `graph` is null.
+     */
+    private CompletableFuture<Prepared> prepared;
+
+    /**
+     * The result of `prepared` once it has completed normally (as observed on the EDT), or null
+     * until then.
+     */
+    private Prepared ready;
+
+    /**
+     * The most recently requested refinement, which the next one waits for, so that refiners
+     * are only used by one thread at a time.
+     */
+    private CompletableFuture<PolyLine> refinements = CompletableFuture.completedFuture(null);
+
+    /**
+     * Shortest paths through the boundary graph from our last point (via the fragments around it).
+     * Null if we are not SELECTING, or are waiting for preprocessing to finish.
+     */
+    private PathfindingSnapshot boundaryPaths;
+
+    /**
+     * The action waiting for preprocessing to finish, or null if none is.  Non-null exactly when
+     * we are PROCESSING.
+     */
+    private Runnable whenPrepared;
+
+    /**
+     * The state we transitioned into PROCESSING from (and which we will return to once
+     * preprocessing finishes or is cancelled).  Value is unspecified if we are not in PROCESSING.
+     */
+    private SelectionState previousState;
+
+    /**
+     * Create a `SuperpixelSelectionModel` whose paths follow edges according to the weight
+     * function named `weightName` (as recognized by the `ScissorsWeights` factory).  See
+     * `SelectionModel` for interpretation of `notifyOnEdt`.
+     */
+    public SuperpixelSelectionModel(String weightName, boolean notifyOnEdt) {
+        super(notifyOnEdt);
+        this.weightName = weightName;
+    }
+
+    /**
+     * Create a `SuperpixelSelectionModel` whose paths follow edges according to the weight
+     * function named `weightName`.  Initialize this model to represent the same selection of the
+     * same image as `copy` (but does not copy any listeners from `copy`).  See `SelectionModel` for
+     * thread restrictions.
+     */
+    public SuperpixelSelectionModel(String weightName, SelectionModel copy) {
+        super(copy);
+        this.weightName = weightName;
+        if (image() != null) {
+            prepare(image());
+        }
+        if (state() == SELECTING) {
+            afterPreparation(this::searchFromLastPoint);
+        }
+    }
+
+    @Override
+    public void setImage(BufferedImage img) {
+        super.setImage(img);
+        ready = null;
+        refinements = CompletableFuture.completedFuture(null);
+        if (img != null) {
+            prepare(img);
+        } else {
+            graph = null;
+            prepared = null;
+        }
+    }
+
+    @Override
+    public void reset() {
+        // Any action waiting on preprocessing no longer applies
+        whenPrepared = null;
+        boundaryPaths = null;
+        super.reset();
+    }
+
+    @Override
+    protected void startSelection(Point start) {
+        super.startSelection(start);
+        afterPreparation(this::searchFromLastPoint);
+    }
+
+    /**
+     * Return a path from our last point to `p` through the boundaries between superpixels, as
+     * straight lines between the fragments it passes.
+     */
+    @Override
+    public PolyLine liveWire(Point p) {
+        if (boundaryPaths == null) {
+            return coarsePath(lastPoint(), List.of(), p);
+        }
+        return coarsePath(lastPoint(),
+                fragmentPathTo(ready.boundaries(), boundaryPaths, lastPoint(), p), p);
+    }
+
+    /**
+     * Append the path from our last point to `p` through the boundary graph to the selection, and
+     * start refining it to a pixel path, then find paths through the boundary graph from `p`.
+     */
+    @Override
+    protected void appendToSelection(Point p) {
+        Point from = lastPoint();
+        List<Integer> fragments = fragmentPathTo(ready.boundaries(), boundaryPaths, from, p);
+        PolyLine coarse = coarsePath(from, fragments, p);
+        selection.add(coarse);
+        refineLater(coarse, from, p, fragments);
+        searchFromLastPoint();
+    }
+
+    @Override
+    protected void undoPoint() {
+        super.undoPoint();
+        if (state() == SELECTING) {
+            afterPreparation(this::searchFromLastPoint);
+        }
+    }
+
+    /**
+     * Move the point at the start of the segment with index `index` to `newPos`, re-routing the
+     * segments on either side of it.  If preprocessing has not finished, this happens once it has
+     * (transitioning through PROCESSING).  Notify listeners that the "selection" property has
+     * changed.
+     */
+    @Override
+    public void movePoint(int index, Point newPos) {
+        if (state() != SELECTED) {
+            throw new IllegalStateException("May not move point in state " + state());
+        }
+        if (index < 0 || index >= selection.size()) {
+            throw new IllegalArgumentException("Invalid segment index " + index);
+        }
+        Point pos = new Point(newPos);
+        afterPreparation(() -> {
+            int prevIndex = (index + selection.size() - 1) % selection.size();
+            Point prevStart = (prevIndex == index) ? pos : selection.get(prevIndex).start();
+            PolyLine before = route(prevStart, pos);
+            PolyLine after = route(pos, selection.get(index).end());
+            ListIterator<PolyLine> it = selection.listIterator(prevIndex);
+            it.next();
+            it.set(before);
+            selection.set(index, after);
+            if (index == 0) {
+                start = pos;
+            }
+            propSupport.firePropertyChange("selection", null, selection());
+        });
+    }
+
+    @Override
+    public void cancelProcessing() {
+        assert state() == PROCESSING;
+        whenPrepared = null;
+        returnFromProcessing();
+    }
+
+    /**
+     * Start preprocessing `img` in the background.
+     */
+    private void prepare(BufferedImage img) {
+        ImageGraph graph = new ImageGraph(img);
+        this.graph = graph;
+        CompletableFuture<Prepared> target = CompletableFuture.supplyAsync(() -> {
+            Weigher<ImageEdge> weigher = ScissorsWeights.makeWeigher(weightName, graph);
+            Superpixels superpixels = new Superpixels(img, regionSize, compactness);
+            BoundaryGraph boundaries = new BoundaryGraph(superpixels, graph, weigher);
+            return new Prepared(boundaries, new Refiner(graph, weigher, boundaries));
+        }, ScissorsSelectionModel.interactiveSearches);
+        prepared = target;
+        target.thenAcceptAsync(result -> {
+            // Ignore preprocessing of an image we no longer select from
+            if (prepared == target) {
+                ready = result;
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Run `action` now if preprocessing has finished.  Otherwise transition to PROCESSING and run
+     * it on the EDT once preprocessing finishes (unless cancelled first), after returning to our
+     * current state.
+     */
+    private void afterPreparation(Runnable action) {
+        if (ready != null) {
+            action.run();
+            return;
+        }
+        previousState = state();
+        whenPrepared = action;
+        setState(PROCESSING);
+        prepared.whenCompleteAsync((result, e) -> {
+            if (whenPrepared != action) {
+                // Cancelled, or superseded by a change of image
+                return;
+            }
+            whenPrepared = null;
+            if (e == null) {
+                ready = result;
+                setState(previousState);
+                action.run();
+            } else {
+                returnFromProcessing();
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Return to the state we were in before PROCESSING without having run the action that was
+     * waiting.  A selection whose start point was never searched from is abandoned.
+     */
+    private void returnFromProcessing() {
+        setState(previousState);
+        if (state() == SELECTING && boundaryPaths == null) {
+            reset();
+        }
+    }
+
+    /**
+     * Find paths through the boundary graph from our last point.  Requires preprocessing has
+     * finished.
+     */
+    private void searchFromLastPoint() {
+        boundaryPaths = searchFrom(ready.boundaries(), lastPoint());
+    }
+
+    /**
+     * Return shortest paths through `boundaries` from the fragments around the superpixel
+     * containing `p`, each seeded with the approximate cost of reaching it from `p`, or null if
+     * that superpixel has no neighbors.
+     */
+    private PathfindingSnapshot searchFrom(BoundaryGraph boundaries, Point p) {
+        int id = graph.idAt(p);
+        int[] seeds = boundaries.fragmentsAround(id);
+        if (seeds.length == 0) {
+            return null;
+        }
+        int[] initialDistances = new int[seeds.length];
+        for (int i = 0; i < seeds.length; ++i) {
+            initialDistances[i] = boundaries.weightTo(seeds[i], id);
+        }
+        ShortestPaths<BoundaryFragment, BoundaryEdge> pathfinder =
+                new ShortestPaths<>(boundaries, BoundaryEdge::weight);
+        pathfinder.setStart(seeds, initialDistances);
+        pathfinder.advance(pathfinder.vertexCount());
+        return pathfinder.snapshot();
+    }
+
+    /**
+     * Return the fragments along the best path in `paths` (searched from `from`) to `to`: the one
+     * ending at whichever fragment around `to`'s superpixel minimizes the total approximate cost.
+     * Empty if `paths` is null, no such fragment was reached, or both points are in the same
+     * superpixel (in which case the best path stays inside it).
+     */
+    private List<Integer> fragmentPathTo(BoundaryGraph boundaries, PathfindingSnapshot paths,
+            Point from, Point to) {
+        int id = graph.idAt(to);
+        Superpixels superpixels = boundaries.superpixels();
+        if (paths == null || superpixels.labelOf(graph.idAt(from)) == superpixels.labelOf(id)) {
+            return List.of();
+        }
+        int best = -1;
+        long bestCost = Long.MAX_VALUE;
+        for (int f : boundaries.fragmentsAround(id)) {
+            if (paths.distanceTo(f) < 0) {
+                continue;
+            }
+            long cost = (long) paths.distanceTo(f) + boundaries.weightTo(f, id);
+            if (cost < bestCost) {
+                bestCost = cost;
+                best = f;
+            }
+        }
+        return (best < 0) ? List.of() : paths.pathTo(best);
+    }
+
+    /**
+     * Return a path from `from` to `to` through the boundary graph, starting to refine it to a
+     * pixel path.  Requires preprocessing has finished.
+     */
+    private PolyLine route(Point from, Point to) {
+        BoundaryGraph boundaries = ready.boundaries();
+        PathfindingSnapshot paths = searchFrom(boundaries, from);
+        List<Integer> fragments = fragmentPathTo(boundaries, paths, from, to);
+        PolyLine coarse = coarsePath(from, fragments, to);
+        refineLater(coarse, from, to, fragments);
+        return coarse;
+    }
+
+    /**
+     * Return the path from `from` to `to` through the positions of `fragments`, as straight lines
+     * between them.
+     */
+    private PolyLine coarsePath(Point from, List<Integer> fragments, Point to) {
+        List<Point> points = new ArrayList<>();
+        points.add(from);
+        for (int f : fragments) {
+            points.add(graph.getVertex(ready.boundaries().positionId(f)).point());
+        }
+        points.add(to);
+        return new PolyLine(points.stream().mapToInt(q -> q.x).toArray(),
+                points.stream().mapToInt(q -> q.y).toArray());
+    }
+
+    /**
+     * Start refining `coarse`, a segment from `from` to `to` through `fragments`, to a pixel path
+     * on a search thread, after any refinements requested earlier.  Once it is refined, it
+     * replaces `coarse` in the selection, unless `coarse` has been removed or replaced by then.
+     * Requires preprocessing has finished.
+     */
+    private void refineLater(PolyLine coarse, Point from, Point to, List<Integer> fragments) {
+        Refiner refiner = ready.refiner();
+        int fromId = graph.idAt(from);
+        int toId = graph.idAt(to);
+        CompletableFuture<PolyLine> refined = refinements.handleAsync(
+                (previous, e) -> refiner.refine(fromId, toId, fragments),
+                ScissorsSelectionModel.interactiveSearches);
+        refinements = refined;
+        refined.thenAcceptAsync(path -> {
+            ListIterator<PolyLine> it = selection.listIterator();
+            while (it.hasNext()) {
+                if (it.next() == coarse) {
+                    it.set(path);
+                    propSupport.firePropertyChange("selection", null, selection());
+                    return;
+                }
+            }
+        }, SwingUtilities::invokeLater);
+    }
+
+    /**
+     * Refines segments to pixel paths in one image, with a solver restricted to a corridor of the
+     * superpixels along each segment's coarse path.  The solver holds arrays the size of the
+     * image, so it is created on first use (off the EDT), and must only be used by one thread at
+     * a time.
+     */
+    private static class Refiner {
+
+        /**
+         * The graph of the image, its weigher, and the boundaries between its superpixels.
+         */
+        private final ImageGraph graph;
+        private final Weigher<ImageEdge> weigher;
+        private final BoundaryGraph boundaries;
+
+        /**
+         * Solver for refining segments to pixel paths, restricted to `corridor`.  Null until
+         * first used.
+         */
+        private ShortestPaths<ImageVertex, ImageEdge> solver;
+
+        /**
+         * `corridor[l]` is whether the superpixel labeled `l` is along the coarse path of the
+         * segment currently being refined.
+         */
+        private boolean[] corridor;
+
+        Refiner(ImageGraph graph, Weigher<ImageEdge> weigher, BoundaryGraph boundaries) {
+            this.graph = graph;
+            this.weigher = weigher;
+            this.boundaries = boundaries;
+        }
+
+        /**
+         * Return the best pixel path from the pixel with ID `fromId` to the pixel with ID `toId`
+         * that stays within the superpixels containing them and on either side of each of
+         * `fragments` (unless it has no other way).
+         */
+        PolyLine refine(int fromId, int toId, List<Integer> fragments) {
+            Superpixels superpixels = boundaries.superpixels();
+            if (solver == null) {
+                corridor = new boolean[superpixels.regionCount()];
+                boolean[] inside = corridor;
+                solver = new ShortestPaths<>(graph, e -> inside[superpixels.labelOf(e.endId())]
+                        ? weigher.weight(e) : weigher.weight(e) + outsidePenalty);
+            }
+            List<Integer> labels = new ArrayList<>();
+            labels.add(superpixels.labelOf(fromId));
+            labels.add(superpixels.labelOf(toId));
+            for (int f : fragments) {
+                for (int label : boundaries.labelsOf(f)) {
+                    labels.add(label);
+                }
+            }
+            for (int label : labels) {
+                corridor[label] = true;
+            }
+            solver.findPathsTo(fromId, toId);
+            PolyLine path = graph.pathToPolyLine(solver.pathTo(toId));
+            for (int label : labels) {
+                corridor[label] = false;
+            }
+            return path;
+        }
+    }
+}
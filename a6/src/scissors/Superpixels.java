@@ -0,0 +1,224 @@
+package scissors;
+
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+
+/**
+ * A partition of an image into superpixels: compact, connected regions of similar color, roughly
+ * `regionSize` pixels across, whose borders tend to follow edges in the image.  Computed with SLIC
+ * (simple linear iterative clustering), which alternates between assigning each pixel to the
+ * nearest of the cluster centers around it (by a mix of color and spatial distance) and moving
+ * each center to the mean of its pixels.  Both steps run in parallel over bands of rows.
+ */
+class Superpixels {
+
+    /**
+     * The number of assignment/update iterations to run; SLIC converges in a handful.
+     */
+    private static final int iterations = 5;
+
+    /**
+     * Dimensions of the image, in pixels.
+     */
+    private final int width;
+    private final int height;
+
+    /**
+     * `labels[y * width + x]` is the index of the superpixel containing pixel (x, y), in
+     * [0..regionCount).
+     */
+    private final int[] labels;
+
+    /**
+     * The number of superpixels.
+     */
+    private final int regionCount;
+
+    /**
+     * Partition `img` into superpixels about `regionSize` pixels across.  `compactness` trades off
+     * adherence to image edges (low values) against regular, compact shapes (high values); 10 is
+     * typical for 8-bit color.  Requires `regionSize` is positive.
+     */
+    Superpixels(BufferedImage img, int regionSize, double compactness) {
+        assert regionSize > 0;
+        width = img.getWidth();
+        height = img.getHeight();
+        int[] rgb = img.getRGB(0, 0, width, height, null, 0, width);
+        int[] clustered = cluster(rgb, regionSize, compactness);
+        labels = new int[width * height];
+        regionCount = enforceConnectivity(clustered, regionSize * regionSize / 4);
+    }
+
+    /**
+     * Return the label of the superpixel containing the pixel with vertex ID `id`.
+     */
+    int labelOf(int id) {
+        return labels[id];
+    }
+
+    /**
+     * Return the number of superpixels.
+     */
+    int regionCount() {
+        return regionCount;
+    }
+
+    /**
+     * Return the width of the image, in pixels.
+     */
+    int width() {
+        return width;
+    }
+
+    /**
+     * Return the height of the image, in pixels.
+     */
+    int height() {
+        return height;
+    }
+
+    /**
+     * Run SLIC on the packed RGB pixels `rgb`, returning the cluster index of each pixel.  Clusters
+     * may not be connected.
+     */
+    private int[] cluster(int[] rgb, int s, double compactness) {
+        int gridWidth = (width + s - 1) / s;
+        int gridHeight = (height + s - 1) / s;
+        int k = gridWidth * gridHeight;
+        // Cluster centers: position and color.  Centers start at the middle of grid cells and
+        //  stay near them, so each pixel need only consider the centers of its own and
+        //  neighboring cells.
+        double[][] centers = new double[k][5];
+        for (int gy = 0; gy < gridHeight; ++gy) {
+            for (int gx = 0; gx < gridWidth; ++gx) {
+                int x = Math.min(width - 1, gx * s + s / 2);
+                int y = Math.min(height - 1, gy * s + s / 2);
+                int c = rgb[y * width + x];
+                centers[gy * gridWidth + gx] = new double[]{x, y, (c >> 16) & 0xff,
+                        (c >> 8) & 0xff, c & 0xff};
+            }
+        }
+
+        int[] assigned = new int[width * height];
+        double spatialWeight = (compactness / s) * (compactness / s);
+        int bands = Math.min(height, 4 * Runtime.getRuntime().availableProcessors());
+        for (int iter = 0; iter < iterations; ++iter) {
+            // Assignment: every pixel independently, so bands need no coordination
+            IntStream.range(0, height).parallel().forEach(y -> {
+                int gy = Math.min(y / s, gridHeight - 1);
+                for (int x = 0; x < width; ++x) {
+                    int gx = Math.min(x / s, gridWidth - 1);
+                    int c = rgb[y * width + x];
+                    int r = (c >> 16) & 0xff;
+                    int g = (c >> 8) & 0xff;
+                    int b = c & 0xff;
+                    double best = Double.POSITIVE_INFINITY;
+                    int bestIndex = 0;
+                    for (int ny = Math.max(0, gy - 1); ny <= Math.min(gridHeight - 1, gy + 1);
+                            ++ny) {
+                        for (int nx = Math.max(0, gx - 1); nx <= Math.min(gridWidth - 1, gx + 1);
+                                ++nx) {
+                            double[] center = centers[ny * gridWidth + nx];
+                            double dx = x - center[0];
+                            double dy = y - center[1];
+                            double dr = r - center[2];
+                            double dg = g - center[3];
+                            double db = b - center[4];
+                            double d = dr * dr + dg * dg + db * db
+                                    + spatialWeight * (dx * dx + dy * dy);
+                            if (d < best) {
+                                best = d;
+                                bestIndex = ny * gridWidth + nx;
+                            }
+                        }
+                    }
+                    assigned[y * width + x] = bestIndex;
+                }
+            });
+
+            // Update: each band sums its own pixels, then the sums are combined
+            double[][] sums = IntStream.range(0, bands).parallel().mapToObj(band -> {
+                double[] partial = new double[6 * k];
+                int y0 = (int) ((long) height * band / bands);
+                int y1 = (int) ((long) height * (band + 1) / bands);
+                for (int y = y0; y < y1; ++y) {
+                    for (int x = 0; x < width; ++x) {
+                        int c = rgb[y * width + x];
+                        int i = 6 * assigned[y * width + x];
+                        partial[i] += x;
+                        partial[i + 1] += y;
+                        partial[i + 2] += (c >> 16) & 0xff;
+                        partial[i + 3] += (c >> 8) & 0xff;
+                        partial[i + 4] += c & 0xff;
+                        partial[i + 5] += 1;
+                    }
+                }
+                return partial;
+            }).toArray(double[][]::new);
+            for (int i = 0; i < k; ++i) {
+                double count = 0;
+                double[] mean = new double[5];
+                for (double[] partial : sums) {
+                    for (int j = 0; j < 5; ++j) {
+                        mean[j] += partial[6 * i + j];
+                    }
+                    count += partial[6 * i + 5];
+                }
+                if (count > 0) {
+                    for (int j = 0; j < 5; ++j) {
+                        centers[i][j] = mean[j] / count;
+                    }
+                }
+            }
+        }
+        return assigned;
+    }
+
+    /**
+     * Fill `labels` with connected superpixels derived from `clustered`: each 4-connected run of
+     * pixels with the same cluster becomes its own superpixel, except that runs of fewer than
+     * `minSize` pixels are merged into a neighboring superpixel.  Returns the number of
+     * superpixels.
+     */
+    private int enforceConnectivity(int[] clustered, int minSize) {
+        Arrays.fill(labels, -1);
+        int[] queue = new int[width * height];
+        int next = 0;
+        for (int seed = 0; seed < labels.length; ++seed) {
+            if (labels[seed] >= 0) {
+                continue;
+            }
+            // Remember a superpixel next to this one, in case this one is too small
+            int sx = seed % width;
+            int adjacent = (sx > 0) ? labels[seed - 1]
+                    : (seed >= width) ? labels[seed - width] : -1;
+
+            int head = 0;
+            int tail = 0;
+            queue[tail++] = seed;
+            labels[seed] = next;
+            while (head < tail) {
+                int id = queue[head++];
+                int x = id % width;
+                int y = id / width;
+                int[] neighbors = {x > 0 ? id - 1 : -1, x + 1 < width ? id + 1 : -1,
+                        y > 0 ? id - width : -1, y + 1 < height ? id + width : -1};
+                for (int n : neighbors) {
+                    if (n >= 0 && labels[n] < 0 && clustered[n] == clustered[seed]) {
+                        labels[n] = next;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+            if (tail < minSize && adjacent >= 0) {
+                for (int i = 0; i < tail; ++i) {
+                    labels[queue[i]] = adjacent;
+                }
+            } else {
+                next += 1;
+            }
+        }
+        return next;
+    }
+}
@@ -0,0 +1,72 @@
+package scissors;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Runs per-pixel work over an image in parallel, as square tiles of `tileSize` x `tileSize`
+ * pixels in the common fork-join pool.  Each tile should write only its own pixels, so that tasks
+ * need no synchronization beyond waiting for `forEachTile()` to return.  Shared by the passes that
+ * extract and filter an image's pixels (`GrayPlane`, `PackedPixels`, and `FeatureMaps`).
+ */
+class Tiling {
+
+    /**
+     * The side length of the square tiles processed by each fork-join task, in pixels.
+     */
+    static final int tileSize = 128;
+
+    /**
+     * Work to be done on the pixels with x in [`x0`..`x1`) and y in [`y0`..`y1`).
+     */
+    interface TileTask {
+        void run(int x0, int y0, int x1, int y1);
+    }
+
+    /**
+     * Run `task` on every tile of a `width` x `height` image in the common fork-join pool,
+     * returning once all have finished.
+     */
+    static void forEachTile(int width, int height, TileTask task) {
+        ForkJoinPool.commonPool().invoke(
+                new Tiles(task, width, height, 0, tileCount(width) * tileCount(height)));
+    }
+
+    /**
+     * Return the number of tiles needed to cover `length` pixels.
+     */
+    static int tileCount(int length) {
+        return (length + tileSize - 1) / tileSize;
+    }
+
+    /**
+     * Runs a task on the tiles with indices in [`begin`..`end`) (in raster order), splitting the
+     * range in half until each action has a single tile.
+     */
+    private static class Tiles extends RecursiveAction {
+        private final TileTask task;
+        private final int width, height;
+        private final int begin, end;
+
+        Tiles(TileTask task, int width, int height, int begin, int end) {
+            this.task = task;
+            this.width = width;
+            this.height = height;
+            this.begin = begin;
+            this.end = end;
+        }
+
+        @Override
+        protected void compute() {
+            if (end - begin > 1) {
+                int middle = (begin + end) >>> 1;
+                invokeAll(new Tiles(task, width, height, begin, middle),
+                        new Tiles(task, width, height, middle, end));
+                return;
+            }
+            int x0 = (begin % tileCount(width)) * tileSize;
+            int y0 = (begin / tileCount(width)) * tileSize;
+            task.run(x0, y0, Math.min(x0 + tileSize, width), Math.min(y0 + tileSize, height));
+        }
+    }
+}
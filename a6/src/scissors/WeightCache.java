@@ -0,0 +1,489 @@
+package scissors;
+
+import graph.Weigher;
+import java.awt.image.Raster;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Stream;
+
+/**
+ * A directory of precomputed edge-weight tables, so that reopening an image need not compute its
+ * weights from the pixels again.  Tables are keyed by a hash of the image's contents together with
+ * the weigher's name and parameters and the graph's connectivity, so an edited image (or a changed
+ * weigher) never reads a stale table.
+ * <p>
+ * A table file holds a `headerSize`-byte header followed by one unsigned little-endian 16-bit
+ * weight for each direction in the connectivity of each vertex, indexed by
+ * `vertexId * directionCount + plane`, where `plane` is the index of the edge's direction in
+ * `Connectivity.directions` (edges leaving the image have weight 0).  Interleaving the directions
+ * of each vertex keeps all of the weights a search reads when settling it on one cache line.
+ * Tables are memory-mapped when loaded, so a cache hit costs nothing up front and its pages are
+ * shared with the OS file cache.
+ * <p>
+ * The tables' total size is capped: whenever a table is stored, the least recently used tables
+ * (by modification time, which loading a table updates) are deleted until the rest fit.
+ * <p>
+ * At most one table is stored per key at a time: a store requested while another of the same
+ * table is in progress (e.g. by a second model of the same image) awaits that one instead.
+ */
+class WeightCache {
+
+    /**
+     * Identifies table files ("ECWT") and the version of their format, which also covers the
+     * definitions of our weighers: bump `version` whenever either changes.
+     */
+    private static final int magic = 0x45435754;
+    private static final int version = 2;
+
+    /**
+     * The size of a table's header: magic, version, width, height, and connectivity ordinal, as
+     * little-endian ints, padded to a multiple of 8 bytes.
+     */
+    private static final int headerSize = 24;
+
+    /**
+     * The number of pixels an image must exceed for its weights to be cached.  Smaller images
+     * (including the previews shown while large images load) are weighed quickly enough that
+     * their tables would only clutter the cache.
+     */
+    private static final int minCachedPixels = 1 << 20;
+
+    /**
+     * The number of rows whose weights are computed (and written) at a time when storing a
+     * table; background writers check whether to yield between bands.
+     */
+    private static final int bandHeight = 16;
+
+    /**
+     * The default cap on the total size of our tables, in bytes.
+     */
+    private static final long defaultMaxBytes = 4L << 30;
+
+    /**
+     * How old a temporary file must be for `sweep()` to delete it.  Younger ones may belong to a
+     * table another instance of the program is still writing.
+     */
+    private static final Duration staleAge = Duration.ofHours(1);
+
+    /**
+     * The directory holding our table files.
+     */
+    private final Path directory;
+
+    /**
+     * The most bytes our tables may occupy in total.
+     */
+    private final long maxBytes;
+
+    /**
+     * The stores in progress, by key, each with the future its writer completes (see `store()`).
+     */
+    private final Map<String, CompletableFuture<Weigher<ImageEdge>>> storing =
+            new ConcurrentHashMap<>();
+
+    /**
+     * Create a cache storing at most `maxBytes` bytes of tables in `directory` (which is created
+     * when the first table is stored), deleting any temporary files left there by writers that
+     * never finished.
+     */
+    WeightCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+        sweep();
+    }
+
+    /**
+     * Return the cache in the directory named by the system property "scissors.weightCache" (by
+     * default, ".cache/edgecutter/weights" in the user's home directory), holding at most the
+     * number of bytes given by the property "scissors.weightCacheBytes" (by default 4 GiB), or
+     * null if the directory property is set to the empty string to disable caching.
+     */
+    static WeightCache defaultCache() {
+        String dir = System.getProperty("scissors.weightCache");
+        long maxBytes = Long.getLong("scissors.weightCacheBytes", defaultMaxBytes);
+        if (dir == null) {
+            return new WeightCache(Path.of(System.getProperty("user.home"), ".cache", "edgecutter",
+                    "weights"), maxBytes);
+        }
+        return dir.isEmpty() ? null : new WeightCache(Path.of(dir), maxBytes);
+    }
+
+    /**
+     * Delete the temporary files in our directory older than `staleAge`, which were left by
+     * writers that were interrupted (e.g. by the program exiting) and will never be completed.
+     */
+    private void sweep() {
+        FileTime cutoff = FileTime.from(Instant.now().minus(staleAge));
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".tmp")
+                        && Files.getLastModifiedTime(file).compareTo(cutoff) < 0) {
+                    Files.deleteIfExists(file);
+                }
+            }
+        } catch (IOException e) {
+            // Includes the directory not existing yet; stray files are never read anyway
+        }
+    }
+
+    /**
+     * Delete the least recently used tables other than `kept` until our tables occupy at most
+     * `maxBytes` bytes.
+     */
+    private void evict(Path kept) throws IOException {
+        record Table(Path file, long size, FileTime used) {}
+        List<Table> tables = new ArrayList<>();
+        long total = 0;
+        try (Stream<Path> files = Files.list(directory)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (file.getFileName().toString().endsWith(".weights")) {
+                    Table t = new Table(file, Files.size(file), Files.getLastModifiedTime(file));
+                    tables.add(t);
+                    total += t.size();
+                }
+            }
+        }
+        tables.sort(Comparator.comparing(Table::used));
+        for (Table t : tables) {
+            if (total <= maxBytes) {
+                break;
+            }
+            if (!t.file().equals(kept)) {
+                Files.deleteIfExists(t.file());
+                total -= t.size();
+            }
+        }
+    }
+
+    /**
+     * Return whether the weights of edges in `graph` are worth caching.
+     */
+    static boolean worthCaching(ImageGraph graph) {
+        return graph.vertexCount() > minCachedPixels;
+    }
+
+    /**
+     * Return a hash of the size, layout, and pixel values of `raster`, suitable for combining with
+     * weigher settings in `key()`.  Reads every pixel, so callers should compute it once per image.
+     */
+    static byte[] contentHash(Raster raster) {
+        MessageDigest digest = sha256();
+        int width = raster.getWidth();
+        int bands = raster.getNumBands();
+        ByteBuffer header = ByteBuffer.allocate(16).order(ByteOrder.LITTLE_ENDIAN);
+        header.putInt(width).putInt(raster.getHeight()).putInt(bands)
+                .putInt(raster.getTransferType());
+        digest.update(header.flip());
+        int[] row = new int[width * bands];
+        ByteBuffer bytes = ByteBuffer.allocate(4 * row.length).order(ByteOrder.LITTLE_ENDIAN);
+        for (int y = 0; y < raster.getHeight(); ++y) {
+            raster.getPixels(0, y, width, 1, row);
+            bytes.clear();
+            bytes.asIntBuffer().put(row);
+            digest.update(bytes);
+        }
+        return digest.digest();
+    }
+
+    /**
+     * Return the key of the table for the weigher named `weightName` (with parameters described by
+     * `parameters`) over a graph of an image with hash `contentHash` and connectivity
+     * `connectivity`.
+     */
+    static String key(byte[] contentHash, String weightName, String parameters,
+            Connectivity connectivity) {
+        MessageDigest digest = sha256();
+        digest.update(contentHash);
+        String settings = weightName + "\n" + parameters + "\n" + connectivity + "\n" + version;
+        digest.update(settings.getBytes(StandardCharsets.UTF_8));
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Return a SHA-256 digest.  Every Java platform is required to support SHA-256.
+     */
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    /**
+     * Return the file holding the table with key `key`.
+     */
+    private Path file(String key) {
+        return directory.resolve(key + ".weights");
+    }
+
+    /**
+     * Return the size in bytes of a table for `graph`.  Tables larger than 2 GiB cannot be mapped
+     * into a single buffer, so they are never stored.
+     */
+    private static long tableSize(ImageGraph graph) {
+        return headerSize + 2L * graph.connectivity().directions.length * graph.vertexCount();
+    }
+
+    /**
+     * Return a weigher reading the table with key `key` for edges in `graph`, or null if no such
+     * table is cached (or it cannot be read, or does not match `graph`).  Marks the table as
+     * recently used.
+     */
+    Weigher<ImageEdge> load(String key, ImageGraph graph) {
+        long expected = tableSize(graph);
+        if (expected > Integer.MAX_VALUE) {
+            return null;
+        }
+        // The mapping remains valid after its channel is closed
+        try (FileChannel channel = FileChannel.open(file(key), StandardOpenOption.READ)) {
+            if (channel.size() != expected) {
+                return null;
+            }
+            ByteBuffer table = channel.map(FileChannel.MapMode.READ_ONLY, 0, expected)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            if (table.getInt(0) != magic || table.getInt(4) != version
+                    || table.getInt(8) != graph.width() || table.getInt(12) != graph.height()
+                    || table.getInt(16) != graph.connectivity().ordinal()) {
+                return null;
+            }
+            try {
+                Files.setLastModifiedTime(file(key), FileTime.from(Instant.now()));
+            } catch (IOException e) {
+                // The table is still usable; it may just be evicted sooner
+            }
+            return new TableWeigher(table, graph.connectivity());
+        } catch (IOException e) {
+            // Includes the table not existing; either way we must compute the weights
+            return null;
+        }
+    }
+
+    /**
+     * Start storing the weights `weigher` gives to the edges of `graph` as the table with key
+     * `key`, with a task (see `storeTask()`) submitted to `executor` at BACKGROUND priority,
+     * unless that table is already being stored, in which case `weigher` is not used.  Returns a
+     * future that completes with a weigher reading the table once it has been stored, or with null
+     * if it was not.
+     */
+    CompletableFuture<Weigher<ImageEdge>> store(String key, ImageGraph graph,
+            Weigher<ImageEdge> weigher, SearchExecutor executor) {
+        TableWriter writer = new TableWriter(key, graph, weigher, executor);
+        CompletableFuture<Weigher<ImageEdge>> pending = storing.putIfAbsent(key, writer.stored);
+        if (pending != null) {
+            return pending;
+        }
+        executor.submit(writer, SearchExecutor.Priority.BACKGROUND);
+        return writer.stored;
+    }
+
+    /**
+     * Return a task that stores the weights `weigher` gives to the edges of `graph` as the table
+     * with key `key`.  Weights are computed and written a band of rows at a time; if
+     * `executor.interactivePending()` becomes true, the task resubmits itself with
+     * `submitWhenInteractiveIdle()` and returns, so it may be run at BACKGROUND priority.  The
+     * table is written to a temporary file and moved into place once complete, so readers never
+     * see a partial table, and then the least recently used tables are evicted if our tables no
+     * longer fit.  If the table cannot be written (e.g. the disk is full, or a weight does not fit
+     * in 16 bits), or alone would exceed our cap, nothing is cached.  `weigher` must be safe to
+     * use concurrently with other searches, but should not remember the weights it gives (as a
+     * `LazyWeights` would), since every edge of the image is weighed.
+     */
+    Runnable storeTask(String key, ImageGraph graph, Weigher<ImageEdge> weigher,
+            SearchExecutor executor) {
+        return new TableWriter(key, graph, weigher, executor);
+    }
+
+    /**
+     * A resumable task computing and writing a table; see `storeTask()`.
+     */
+    private class TableWriter implements Runnable {
+
+        private final String key;
+        private final ImageGraph graph;
+        private final Weigher<ImageEdge> weigher;
+        private final SearchExecutor executor;
+
+        /**
+         * Completes with a weigher reading our table once it is stored, or with null if it is not.
+         */
+        private final CompletableFuture<Weigher<ImageEdge>> stored = new CompletableFuture<>();
+
+        /**
+         * The file being written, or null if not yet created.
+         */
+        private Path temp;
+
+        /**
+         * The first row whose weights have not been written yet.
+         */
+        private int nextRow;
+
+        TableWriter(String key, ImageGraph graph, Weigher<ImageEdge> weigher,
+                SearchExecutor executor) {
+            this.key = key;
+            this.graph = graph;
+            this.weigher = weigher;
+            this.executor = executor;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (tableSize(graph) > Math.min(Integer.MAX_VALUE, maxBytes)) {
+                    finish(null);
+                    return;
+                }
+                if (temp == null) {
+                    Files.createDirectories(directory);
+                    temp = Files.createTempFile(directory, key, ".tmp");
+                    writeHeader();
+                }
+                try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                    while (nextRow < graph.height()) {
+                        if (executor.interactivePending()) {
+                            executor.submitWhenInteractiveIdle(this);
+                            return;
+                        }
+                        writeBand(channel);
+                    }
+                    channel.force(false);
+                }
+                Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING,
+                        StandardCopyOption.ATOMIC_MOVE);
+                evict(file(key));
+                finish(load(key, graph));
+            } catch (IOException | RuntimeException e) {
+                discard();
+                finish(null);
+            }
+        }
+
+        /**
+         * Complete `stored` with `table`, so that this table may be stored again.
+         */
+        private void finish(Weigher<ImageEdge> table) {
+            storing.remove(key, stored);
+            stored.complete(table);
+        }
+
+        /**
+         * Write our table's header to `temp`.
+         */
+        private void writeHeader() throws IOException {
+            ByteBuffer header = ByteBuffer.allocate(headerSize).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(magic).putInt(version).putInt(graph.width()).putInt(graph.height())
+                    .putInt(graph.connectivity().ordinal());
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.write(header.clear(), 0);
+            }
+        }
+
+        /**
+         * Compute the weights of the edges leaving the next `bandHeight` rows and write them to
+         * `channel`.  Throws IOException if a weight does not fit in 16 bits.
+         */
+        private void writeBand(FileChannel channel) throws IOException {
+            int width = graph.width();
+            int[] directions = graph.connectivity().directions;
+            int rows = Math.min(bandHeight, graph.height() - nextRow);
+            ByteBuffer band = ByteBuffer.allocate(2 * rows * width * directions.length)
+                    .order(ByteOrder.LITTLE_ENDIAN);
+            for (int y = nextRow; y < nextRow + rows; ++y) {
+                for (int x = 0; x < width; ++x) {
+                    ImageVertex v = new ImageVertex(graph, x, y);
+                    int id = v.id();
+                    for (int dir : directions) {
+                        int weight = 0;
+                        if (v.validDir(dir)) {
+                            weight = weigher.weight(new ImageEdge(id, v.neighborId(dir), dir));
+                        }
+                        if (weight < 0 || weight > 0xffff) {
+                            throw new IOException("Weight " + weight + " does not fit in a table");
+                        }
+                        band.putShort((short) weight);
+                    }
+                }
+            }
+            long position = headerSize + 2L * directions.length * nextRow * width;
+            band.flip();
+            while (band.hasRemaining()) {
+                position += channel.write(band, position);
+            }
+            nextRow += rows;
+        }
+
+        /**
+         * Delete our partial table, if any.
+         */
+        private void discard() {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    // Nothing more we can do; the stray file is never read
+                }
+            }
+        }
+    }
+
+    /**
+     * Weighs edges by looking them up in a table laid out as described for `WeightCache`.
+     */
+    private static class TableWeigher implements Weigher<ImageEdge> {
+
+        /**
+         * The table, including its header.  Only read with absolute gets, so it may be shared by
+         * concurrent searches.
+         */
+        private final ByteBuffer table;
+
+        /**
+         * The number of directions (planes) per vertex in `table`.
+         */
+        private final int directionCount;
+
+        /**
+         * The plane holding the weights of edges in each direction, or -1 for directions not in
+         * the table's connectivity.
+         */
+        private final int[] planes = new int[16];
+
+        TableWeigher(ByteBuffer table, Connectivity connectivity) {
+            this.table = table;
+            directionCount = connectivity.directions.length;
+            Arrays.fill(planes, -1);
+            for (int i = 0; i < directionCount; ++i) {
+                planes[connectivity.directions[i]] = i;
+            }
+        }
+
+        @Override
+        public int weight(ImageEdge edge) {
+            int plane = planes[edge.dir()];
+            assert plane >= 0;
+            long index = (long) edge.startId() * directionCount + plane;
+            return table.getShort((int) (headerSize + 2 * index)) & 0xffff;
+        }
+    }
+}
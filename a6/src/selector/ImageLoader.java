@@ -0,0 +1,195 @@
+package selector;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.List;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.event.IIOReadProgressListener;
+import javax.imageio.stream.ImageInputStream;
+import javax.swing.SwingWorker;
+
+/**
+ * Decodes an image file off the Event Dispatch Thread in two passes: first a subsampled preview
+ * (reading only every `subsampling()`-th pixel of every `subsampling()`-th row), which is published
+ * as soon as it is ready so that it can be displayed (and selected from) at once, then the image at
+ * full resolution, which is the worker's result.  Images no larger than `previewSize` are read
+ * once, at full resolution.  Both are converted to a `LoadedImage` (in the background, too) so
+ * that they are fast to draw and to weigh however they were encoded.
+ * <p>
+ * The worker's "progress" property reports how much of the file has been decoded (the preview
+ * accounts for the first `previewShare` percent).  Cancelling the worker aborts whichever pass is
+ * underway.  `get()` throws an ExecutionException wrapping an IOException if the file cannot be
+ * read.
+ */
+class ImageLoader extends SwingWorker<LoadedImage, LoadedImage> {
+
+    /**
+     * The largest dimension of an image that is read without a preview, and the largest dimension
+     * of a preview.
+     */
+    private static final int previewSize = 1024;
+
+    /**
+     * The percentage of our progress accounted for by decoding the preview.
+     */
+    private static final int previewShare = 10;
+
+    /**
+     * The file to decode.
+     */
+    private final File file;
+
+    /**
+     * The configuration of the screen our images will be displayed on, or null if there is none.
+     */
+    private final GraphicsConfiguration gc;
+
+    /**
+     * The reader decoding `file`, or null if not yet found.  Only used by our background thread.
+     */
+    private ImageReader reader;
+
+    /**
+     * The factor by which our preview is subsampled in each dimension (1 if we do not publish a
+     * preview).  Set before the preview is published.
+     */
+    private volatile int subsampling = 1;
+
+    /**
+     * Create a worker to decode `file` for display on the screen with configuration `gc` (which
+     * may be null).  Call `execute()` to start it.
+     */
+    ImageLoader(File file, GraphicsConfiguration gc) {
+        this.file = file;
+        this.gc = gc;
+    }
+
+    /**
+     * Return the factor by which published previews are subsampled in each dimension: a point
+     * (x, y) in the preview corresponds to (`subsampling() * x`, `subsampling() * y`) in the full
+     * image.  Only meaningful once a preview has been published.
+     */
+    int subsampling() {
+        return subsampling;
+    }
+
+    @Override
+    protected LoadedImage doInBackground() throws IOException {
+        try (ImageInputStream in = ImageIO.createImageInputStream(file)) {
+            Iterator<ImageReader> readers = (in == null) ? null : ImageIO.getImageReaders(in);
+            if (readers == null || !readers.hasNext()) {
+                throw new IOException("Could not read the image at " + file.getPath());
+            }
+            reader = readers.next();
+            try {
+                reader.setInput(in);
+                int largest = Math.max(reader.getWidth(0), reader.getHeight(0));
+                int step = (largest + previewSize - 1) / previewSize;
+                int fullStart = 0;
+                if (step > 1) {
+                    subsampling = step;
+                    BufferedImage preview = read(step, 0, previewShare);
+                    if (preview == null) {
+                        return null;
+                    }
+                    publish(LoadedImage.of(preview, gc));
+                    fullStart = previewShare;
+                }
+                BufferedImage full = read(1, fullStart, 100);
+                return (full == null) ? null : LoadedImage.of(full, gc);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    /**
+     * Decode the first image in our file, subsampled by `step` in each dimension, reporting the
+     * reader's progress as our own progress in [`from`..`to`].  Returns null if we were cancelled
+     * (and the read aborted).
+     */
+    private BufferedImage read(int step, int from, int to) throws IOException {
+        ImageReadParam param = reader.getDefaultReadParam();
+        param.setSourceSubsampling(step, step, 0, 0);
+        IIOReadProgressListener listener = new ProgressListener(from, to);
+        reader.addIIOReadProgressListener(listener);
+        try {
+            BufferedImage img = reader.read(0, param);
+            return isCancelled() ? null : img;
+        } finally {
+            reader.removeIIOReadProgressListener(listener);
+        }
+    }
+
+    @Override
+    protected void process(List<LoadedImage> previews) {
+        // Only a single preview is ever published
+        for (LoadedImage preview : previews) {
+            previewReady(preview);
+        }
+    }
+
+    /**
+     * Called on the EDT once the preview has been decoded, with the preview.  Subclasses should
+     * override this to display it; the default implementation does nothing.
+     */
+    protected void previewReady(LoadedImage preview) {
+        // Default implementation does nothing
+    }
+
+    /**
+     * Relays a reader's progress on one pass as our progress, and aborts the read if we are
+     * cancelled.
+     */
+    private class ProgressListener implements IIOReadProgressListener {
+
+        /**
+         * The range of our progress that this pass accounts for.
+         */
+        private final int from, to;
+
+        ProgressListener(int from, int to) {
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        public void imageProgress(ImageReader source, float percentageDone) {
+            if (isCancelled()) {
+                source.abort();
+                return;
+            }
+            int percent = from + Math.round(percentageDone * (to - from) / 100);
+            setProgress(Math.clamp(percent, 0, 100));
+        }
+
+        @Override
+        public void imageStarted(ImageReader source, int imageIndex) {}
+
+        @Override
+        public void imageComplete(ImageReader source) {}
+
+        @Override
+        public void sequenceStarted(ImageReader source, int minIndex) {}
+
+        @Override
+        public void sequenceComplete(ImageReader source) {}
+
+        @Override
+        public void thumbnailStarted(ImageReader source, int imageIndex, int thumbnailIndex) {}
+
+        @Override
+        public void thumbnailProgress(ImageReader source, float percentageDone) {}
+
+        @Override
+        public void thumbnailComplete(ImageReader source) {}
+
+        @Override
+        public void readAborted(ImageReader source) {}
+    }
+}
@@ -2,38 +2,54 @@ package selector;
 
 import java.awt.BorderLayout;
 import java.awt.CardLayout;
+import java.awt.Dimension;
+import java.awt.Point;
+import java.awt.event.MouseWheelEvent;
 import java.awt.image.BufferedImage;
-import javax.swing.ImageIcon;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
+import javax.swing.JViewport;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 
 /**
  * A Swing component that displays an image and facilitates interaction with it in order to select
  * a region of the image.  The image and selection model can both be changed, and a placeholder
  * label is shown if no valid image has been set.
+ * <p>
+ * The image can be zoomed in and out (with the mouse wheel while ctrl is held, or by calling
+ * `setZoom()`); when placed in a scroll pane, zooming keeps the image point under the mouse pointer
+ * (or in the center of the view) in place, and the scroll pane pans.  Only the part of the image in
+ * view is drawn (see `TiledImageView`), so large images stay responsive at any zoom.
  */
 public class ImagePanel extends JPanel {
 
     /**
-     * Label for drawing the image when a valid image has been set.
+     * The smallest and largest zoom factors we allow.
      */
-    private final JLabel pic;
+    private static final double minZoom = 1.0 / 64;
+    private static final double maxZoom = 32;
+
+    /**
+     * The factor by which one step of zooming (such as one notch of the mouse wheel) zooms in.
+     */
+    static final double zoomStep = Math.sqrt(2);
+
+    /**
+     * Component for drawing the image when a valid image has been set.
+     */
+    private final TiledImageView pic;
 
     /**
      * Component for interactively building a selection; must be placed on top of `pic` with their
-     * upper-left corners aligned in order for coordinates within this component to match pixel
-     * locations in `pic`.
+     * upper-left corners aligned, and given the same scale, in order for coordinates within this
+     * component to match pixel locations in `pic`.
      */
     private final SelectionComponent selector;
 
     public ImagePanel() {
         // Create components to show when a valid image is set.
-        pic = new JLabel();
-        // Set pic's icon alignment so that its coordinates will match those of any component added
-        //  to `pic`.
-        pic.setHorizontalAlignment(SwingConstants.LEFT);
-        pic.setVerticalAlignment(SwingConstants.TOP);
+        pic = new TiledImageView();
 
         // Default to using a point-to-point selection model
         SelectionModel selection = new PointToPointSelectionModel(true);
@@ -47,7 +63,7 @@ public class ImagePanel extends JPanel {
         JLabel placeholder = new JLabel("No image loaded.");
         placeholder.setHorizontalAlignment(SwingConstants.CENTER);
         placeholder.setVerticalAlignment(SwingConstants.CENTER);
-        placeholder.setFont(pic.getFont().deriveFont(48.0f));
+        placeholder.setFont(placeholder.getFont().deriveFont(48.0f));
 
         // Use a CardLayout to easily toggle between showing different components when an image is
         //  set vs. when one isn't.
@@ -55,6 +71,18 @@ public class ImagePanel extends JPanel {
         // Placeholder is first, pic is last
         add(placeholder);
         add(pic);
+
+        // Zoom with the mouse wheel while ctrl is held; otherwise let it scroll as usual
+        addMouseWheelListener(e -> {
+            if (e.isControlDown()) {
+                Point anchor = SwingUtilities.convertPoint(e.getComponent(), e.getPoint(), this);
+                setZoom(zoom() * Math.pow(zoomStep, -e.getPreciseWheelRotation()), anchor);
+            } else if (getParent() != null) {
+                MouseWheelEvent forwarded = (MouseWheelEvent) SwingUtilities.convertMouseEvent(
+                        e.getComponent(), e, getParent());
+                getParent().dispatchEvent(forwarded);
+            }
+        });
     }
 
     /**
@@ -92,19 +120,120 @@ public class ImagePanel extends JPanel {
      * instead).  This will set the image on our selection model (which may reset its selection).
      */
     public void setImage(BufferedImage img) {
+        setImage(img, img);
+    }
+
+    /**
+     * Select from `img` as above, but display `display` (an image with the same size and colors as
+     * `img`, in a layout that is faster to draw) in its place.  If `img` is null, `display` must be
+     * null too.
+     */
+    public void setImage(BufferedImage img, BufferedImage display) {
         // Update or remove image in selection model
         selection().setImage(img);
 
         // We set our own layout manager, so it should still be a CardLayout.
         CardLayout cards = (CardLayout)getLayout();
         if (img != null) {
-            // Update and show image label
-            pic.setIcon(new ImageIcon(img));
+            // Update and show image view
+            pic.setImage(display);
             cards.last(this);
         } else {
             // Free image and display placeholder
-            pic.setIcon(null);
+            pic.setImage(null);
             cards.first(this);
         }
     }
+
+    /**
+     * Display `img` as `setImage(img, display)` does, but at zoom factor `zoom` (rather than at our
+     * current zoom), without moving the view.  Useful when `img` replaces an image of different
+     * size that showed the same scene.
+     */
+    public void setImage(BufferedImage img, BufferedImage display, double zoom) {
+        applyZoom(Math.clamp(zoom, minZoom, maxZoom));
+        setImage(img, display);
+    }
+
+    /**
+     * Return the number of screen pixels per image pixel in each dimension.
+     */
+    public double zoom() {
+        return pic.scale();
+    }
+
+    /**
+     * Display our image with `zoom` screen pixels per image pixel in each dimension (clamped to
+     * the range we allow), keeping the image point in the center of the view in place.
+     */
+    public void setZoom(double zoom) {
+        JViewport viewport = viewport();
+        Point center = new Point();
+        if (viewport != null) {
+            Point corner = viewport.getViewPosition();
+            Dimension extent = viewport.getExtentSize();
+            center.setLocation(corner.x + extent.width / 2, corner.y + extent.height / 2);
+        }
+        setZoom(zoom, center);
+    }
+
+    /**
+     * Display our image with `zoom` screen pixels per image pixel in each dimension (clamped to
+     * the range we allow), keeping the image point at `anchor` (in our coordinates) in place on
+     * the screen, as far as the scroll pane we are in (if any) can pan to it.
+     */
+    public void setZoom(double zoom, Point anchor) {
+        double oldZoom = zoom();
+        double newZoom = Math.clamp(zoom, minZoom, maxZoom);
+        if (newZoom == oldZoom) {
+            return;
+        }
+        JViewport viewport = viewport();
+        Point corner = (viewport == null) ? new Point() : viewport.getViewPosition();
+        applyZoom(newZoom);
+        if (viewport != null) {
+            // Lay out at our new size now, so that the view can be panned within it
+            viewport.validate();
+            double ratio = newZoom / oldZoom;
+            Dimension size = getSize();
+            Dimension extent = viewport.getExtentSize();
+            int x = (int) Math.round(anchor.x * ratio) - (anchor.x - corner.x);
+            int y = (int) Math.round(anchor.y * ratio) - (anchor.y - corner.y);
+            viewport.setViewPosition(new Point(
+                    Math.clamp(x, 0, Math.max(0, size.width - extent.width)),
+                    Math.clamp(y, 0, Math.max(0, size.height - extent.height))));
+        }
+    }
+
+    /**
+     * Return the zoom factor at which our whole image fits in the view of the scroll pane we are
+     * in, or 1 if we have no image or are not in a scroll pane.
+     */
+    public double fitZoom() {
+        JViewport viewport = viewport();
+        BufferedImage img = image();
+        if (viewport == null || img == null) {
+            return 1;
+        }
+        Dimension extent = viewport.getExtentSize();
+        return Math.min((double) extent.width / img.getWidth(),
+                (double) extent.height / img.getHeight());
+    }
+
+    /**
+     * Set the scale of our image view and selection component to `zoom`.
+     */
+    private void applyZoom(double zoom) {
+        pic.setScale(zoom);
+        selector.setScale(zoom);
+        revalidate();
+    }
+
+    /**
+     * Return the viewport of the scroll pane we are displayed in, or null if we are not the view
+     * of a viewport.
+     */
+    private JViewport viewport() {
+        return (getParent() instanceof JViewport viewport) ? viewport : null;
+    }
 }
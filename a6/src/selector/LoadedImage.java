@@ -0,0 +1,73 @@
+package selector;
+
+import java.awt.GraphicsConfiguration;
+import java.awt.Transparency;
+import java.awt.image.BufferedImage;
+import java.util.stream.IntStream;
+
+/**
+ * An image as loaded for selection, in two layouts: `pixels`, the canonical layout that selection
+ * models read (TYPE_INT_RGB, or TYPE_INT_ARGB if the image has alpha, for which the scissors
+ * weighers have fast paths), and `display`, a copy compatible with the screen's
+ * `GraphicsConfiguration`, which Java2D can draw without converting each pixel on every repaint.
+ * The two are the same object when the screen's layout is already canonical (as it usually is), or
+ * when no screen is available.
+ */
+record LoadedImage(BufferedImage pixels, BufferedImage display) {
+
+    /**
+     * The number of rows converted at a time by each parallel task.
+     */
+    private static final int bandHeight = 64;
+
+    /**
+     * Return `decoded` (an image in whatever layout its reader produced) converted to our layouts
+     * for display on `gc` (which may be null if there is no screen).  Images that are already
+     * canonical are used as-is; others are converted in parallel bands of rows, reading each
+     * band's colors once for both copies.
+     */
+    static LoadedImage of(BufferedImage decoded, GraphicsConfiguration gc) {
+        boolean alpha = decoded.getColorModel().hasAlpha();
+        int canonicalType = alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB;
+        int width = decoded.getWidth();
+        int height = decoded.getHeight();
+        BufferedImage pixels = (decoded.getType() == canonicalType) ? decoded
+                : new BufferedImage(width, height, canonicalType);
+        BufferedImage display = pixels;
+        if (gc != null) {
+            // Compare color models first, so that an image the size of ours is only allocated if
+            //  its layout differs
+            int transparency = alpha ? Transparency.TRANSLUCENT : Transparency.OPAQUE;
+            if (!gc.getColorModel(transparency).equals(pixels.getColorModel())) {
+                display = gc.createCompatibleImage(width, height, transparency);
+            }
+        }
+        if (pixels == decoded && display == decoded) {
+            return new LoadedImage(decoded, decoded);
+        }
+
+        BufferedImage canonical = pixels;
+        BufferedImage screen = display;
+        int bands = (height + bandHeight - 1) / bandHeight;
+        IntStream.range(0, bands).parallel().forEach(band -> {
+            int y0 = band * bandHeight;
+            int rows = Math.min(bandHeight, height - y0);
+            // Colors as sRGB 0xAARRGGBB, which is also the canonical layout
+            int[] argb = decoded.getRGB(0, y0, width, rows, null, 0, width);
+            if (!alpha) {
+                for (int i = 0; i < argb.length; ++i) {
+                    argb[i] &= 0xffffff;
+                }
+            }
+            if (canonical != decoded) {
+                // Writing through the raster (rather than taking its array) keeps the image
+                //  eligible for acceleration
+                canonical.getRaster().setDataElements(0, y0, width, rows, argb);
+            }
+            if (screen != canonical) {
+                screen.setRGB(0, y0, width, rows, argb, 0, width);
+            }
+        });
+        return new LoadedImage(pixels, display);
+    }
+}
@@ -0,0 +1,295 @@
+package selector;
+
+import static selector.SelectionModel.SelectionState.*;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.ListIterator;
+import java.util.stream.IntStream;
+
+/**
+ * Models a "magic wand" selection tool: clicking a pixel selects the connected region of pixels
+ * with similar color around it.  The region is found with a scanline flood fill, parallelized
+ * across horizontal bands of the image, and its outer boundary (holes are included in the
+ * region) is traced through the centers of its border pixels.  The traced boundary is split into
+ * segments of about `segmentLength` pixels, so that the selection can be edited and saved like
+ * any other.  Since no path trees are built, this is much cheaper than scissors for regions with
+ * uniform color, such as plain backgrounds.
+ * <p>
+ * A click selects immediately, transitioning straight from NO_SELECTION to SELECTED.  Once a
+ * traced selection is undone back into SELECTING, points are connected with straight lines as in
+ * `PointToPointSelectionModel`.
+ */
+public class MagicWandSelectionModel extends SelectionModel {
+
+    /**
+     * The approximate number of boundary pixels per segment of a traced selection.
+     */
+    private static final int segmentLength = 64;
+
+    /**
+     * The largest difference, in any color channel, between a pixel and the clicked pixel for
+     * the pixel to be included in the region.
+     */
+    private int tolerance = 32;
+
+    public MagicWandSelectionModel(boolean notifyOnEdt) {
+        super(notifyOnEdt);
+    }
+
+    public MagicWandSelectionModel(SelectionModel copy) {
+        super(copy);
+        if (copy instanceof MagicWandSelectionModel wand) {
+            tolerance = wand.tolerance;
+        }
+    }
+
+    /**
+     * Return the largest difference in any color channel from the clicked pixel that a pixel may
+     * have and still be selected.
+     */
+    public int tolerance() {
+        return tolerance;
+    }
+
+    /**
+     * Set the largest difference in any color channel from the clicked pixel that a pixel may have
+     * and still be selected by subsequent clicks.  Requires `tolerance` is in [0..255].
+     */
+    public void setTolerance(int tolerance) {
+        assert tolerance >= 0 && tolerance <= 255;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Select the region of similar color around `seed`, whose traced boundary becomes our
+     * selection (starting and ending at its top-left pixel).  Transition to the SELECTED state and
+     * notify listeners that the "selection" property has changed.  Requires an image has been set
+     * and `seed` is within it.
+     */
+    @Override
+    protected void startSelection(Point seed) {
+        if (state() != NO_SELECTION) {
+            throw new IllegalStateException("Cannot start selection from state " + state());
+        }
+        BufferedImage img = image();
+        assert seed.x >= 0 && seed.x < img.getWidth() && seed.y >= 0 && seed.y < img.getHeight();
+        boolean[] region = fill(img, seed, tolerance);
+        int[] contour = RegionOutline.traceBoundary(region, img.getWidth(), img.getHeight());
+        start = new Point(contour[0] % img.getWidth(), contour[0] / img.getWidth());
+        selection.addAll(toSegments(contour, img.getWidth()));
+        setState(SELECTED);
+        propSupport.firePropertyChange("selection", null, selection());
+    }
+
+    /**
+     * Return a straight line segment from our last point to `p`.
+     */
+    @Override
+    public PolyLine liveWire(Point p) {
+        return new PolyLine(lastPoint(), p);
+    }
+
+    /**
+     * Append a straight line segment to the current selection path connecting its end with `p`.
+     */
+    @Override
+    protected void appendToSelection(Point p) {
+        selection.add(liveWire(p));
+    }
+
+    /**
+     * Move the starting point of the segment of our selection with index `index` to `newPos`,
+     * replacing that segment and the previous one (wrapping around) with straight lines, as in
+     * `PointToPointSelectionModel`.  Notify listeners that the "selection" property has changed.
+     */
+    @Override
+    public void movePoint(int index, Point newPos) {
+        if (state() != SELECTED) {
+            throw new IllegalStateException("May not move point in state " + state());
+        }
+        if (index < 0 || index >= selection.size()) {
+            throw new IllegalArgumentException("Invalid segment index " + index);
+        }
+        Point pos = new Point(newPos);
+        int prevIndex = (index + selection.size() - 1) % selection.size();
+        ListIterator<PolyLine> it = selection.listIterator(prevIndex);
+        PolyLine prev = it.next();
+        it.set(new PolyLine(prevIndex == index ? pos : prev.start(), pos));
+        selection.set(index, new PolyLine(pos, selection.get(index).end()));
+        if (index == 0) {
+            start = pos;
+        }
+        propSupport.firePropertyChange("selection", null, selection());
+    }
+
+    /**
+     * Return a mask of the pixels of `img` (indexed by `y * width + x`) that are 4-connected to
+     * `seed` by pixels whose color channels each differ from `seed`'s by at most `tolerance`.
+     * <p>
+     * The image is split into bands of rows, each filled by its own task with a scanline fill.
+     * Spans that reach the edge of a band leave seeds for the neighboring band, which are filled
+     * in the next round; rounds repeat until no band has seeds left.  Each band only writes its own
+     * rows of the mask, so bands need no synchronization within a round.
+     */
+    static boolean[] fill(BufferedImage img, Point seed, int tolerance) {
+        int width = img.getWidth();
+        int height = img.getHeight();
+        int seedRgb = img.getRGB(seed.x, seed.y);
+
+        // Decide which pixels are similar up front, in parallel, so that the fill itself only
+        //  consults a mask
+        boolean[] similar = new boolean[width * height];
+        IntStream.range(0, height).parallel().forEach(y -> {
+            int[] row = img.getRGB(0, y, width, 1, null, 0, width);
+            for (int x = 0; x < width; ++x) {
+                similar[y * width + x] = colorDistance(row[x], seedRgb) <= tolerance;
+            }
+        });
+
+        int bandCount = Math.min(height, 4 * Runtime.getRuntime().availableProcessors());
+        int[] bandStart = new int[bandCount + 1];
+        for (int b = 0; b <= bandCount; ++b) {
+            bandStart[b] = (int) ((long) height * b / bandCount);
+        }
+        boolean[] region = new boolean[width * height];
+        IntList[] seeds = new IntList[bandCount];
+        for (int b = 0; b < bandCount; ++b) {
+            seeds[b] = new IntList();
+        }
+        seeds[bandOf(bandStart, seed.y)].add(seed.y * width + seed.x);
+
+        while (Arrays.stream(seeds).anyMatch(s -> s.size > 0)) {
+            IntList[] current = seeds;
+            // `handoffs[b]` collects the seeds band `b` leaves for its neighbors this round
+            IntList[][] handoffs = new IntList[bandCount][];
+            IntStream.range(0, bandCount).parallel().forEach(b -> handoffs[b] = fillBand(
+                    similar, region, width, bandStart[b], bandStart[b + 1], current[b]));
+            seeds = new IntList[bandCount];
+            for (int b = 0; b < bandCount; ++b) {
+                seeds[b] = new IntList();
+            }
+            for (int b = 0; b < bandCount; ++b) {
+                if (b > 0) {
+                    seeds[b - 1].addAll(handoffs[b][0]);
+                }
+                if (b + 1 < bandCount) {
+                    seeds[b + 1].addAll(handoffs[b][1]);
+                }
+            }
+        }
+        return region;
+    }
+
+    /**
+     * Scanline-fill `region` from each of `seeds` within rows [`y0`..`y1`), following `similar`.
+     * Returns the seeds found in the row above the band and in the row below it, in that order.
+     */
+    private static IntList[] fillBand(boolean[] similar, boolean[] region, int width, int y0,
+            int y1, IntList seeds) {
+        IntList above = new IntList();
+        IntList below = new IntList();
+        IntList stack = seeds;
+        while (stack.size > 0) {
+            int id = stack.values[--stack.size];
+            if (region[id] || !similar[id]) {
+                continue;
+            }
+            int y = id / width;
+            int rowStart = y * width;
+            int left = id - rowStart;
+            int right = left;
+            while (left > 0 && similar[rowStart + left - 1] && !region[rowStart + left - 1]) {
+                left -= 1;
+            }
+            while (right + 1 < width && similar[rowStart + right + 1]
+                    && !region[rowStart + right + 1]) {
+                right += 1;
+            }
+            Arrays.fill(region, rowStart + left, rowStart + right + 1, true);
+
+            // Seed one pixel of each run of fillable pixels above and below the span
+            for (int ny : new int[]{y - 1, y + 1}) {
+                if (ny < 0 || ny * width >= region.length) {
+                    continue;
+                }
+                IntList target = (ny < y0) ? above : (ny >= y1) ? below : stack;
+                boolean inRun = false;
+                for (int x = left; x <= right; ++x) {
+                    int n = ny * width + x;
+                    boolean fillable = similar[n] && (target != stack || !region[n]);
+                    if (fillable && !inRun) {
+                        target.add(n);
+                    }
+                    inRun = fillable;
+                }
+            }
+        }
+        return new IntList[]{above, below};
+    }
+
+    /**
+     * Return the index of the band (delimited by `bandStart`) containing row `y`.
+     */
+    private static int bandOf(int[] bandStart, int y) {
+        int b = Arrays.binarySearch(bandStart, y);
+        return (b >= 0) ? Math.min(b, bandStart.length - 2) : -b - 2;
+    }
+
+    /**
+     * Return the largest difference between corresponding color channels of the packed RGB
+     * colors `a` and `b`.
+     */
+    private static int colorDistance(int a, int b) {
+        int dr = Math.abs(((a >> 16) & 0xff) - ((b >> 16) & 0xff));
+        int dg = Math.abs(((a >> 8) & 0xff) - ((b >> 8) & 0xff));
+        int db = Math.abs((a & 0xff) - (b & 0xff));
+        return Math.max(dr, Math.max(dg, db));
+    }
+
+    /**
+     * Split the closed `contour` (pixel IDs in an image `width` pixels wide) into a list of
+     * segments of about `segmentLength` pixels each, the last of which returns to its first pixel.
+     */
+    private static List<PolyLine> toSegments(int[] contour, int width) {
+        int segmentCount = Math.max(1, Math.round((float) contour.length / segmentLength));
+        List<PolyLine> segments = new ArrayList<>(segmentCount);
+        for (int s = 0; s < segmentCount; ++s) {
+            int begin = (int) ((long) contour.length * s / segmentCount);
+            int end = (int) ((long) contour.length * (s + 1) / segmentCount);
+            int[] xs = new int[end - begin + 1];
+            int[] ys = new int[end - begin + 1];
+            for (int i = begin; i <= end; ++i) {
+                int id = contour[i % contour.length];
+                xs[i - begin] = id % width;
+                ys[i - begin] = id / width;
+            }
+            segments.add(new PolyLine(xs, ys));
+        }
+        return segments;
+    }
+
+    /**
+     * A growable list of ints (used as both a list and a stack).
+     */
+    private static class IntList {
+        int[] values = new int[16];
+        int size;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            values[size++] = value;
+        }
+
+        void addAll(IntList other) {
+            for (int i = 0; i < other.size; ++i) {
+                add(other.values[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package selector;
+
+import java.awt.Color;
+import java.awt.Graphics;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.IndexColorModel;
+import java.util.Arrays;
+import scissors.ImagePathsSnapshot;
+
+/**
+ * An image, the size of the image being selected from, that shades each pixel according to its
+ * status in a path search (settled, frontier, or undiscovered), kept up to date incrementally as
+ * snapshots of the search's progress arrive.  Each update only visits the pixels discovered since
+ * the previous one, plus the pixels still on the frontier (which may have been settled since); a
+ * search's frontier is much smaller than the area it has covered, so keeping up with a search
+ * costs far less than the search itself.  Updates report the bounding box of the pixels they
+ * changed, so that only that area needs to be repainted.
+ * <p>
+ * Statuses are stored one byte per pixel, in an indexed image whose palette holds the shading for
+ * each status, which Java2D draws directly (and which takes a quarter of the memory of an ARGB
+ * image).
+ */
+class ProgressOverlay {
+
+    /**
+     * The palette index of each status.
+     */
+    private static final byte undiscovered = 0;
+    private static final byte frontier = 1;
+    private static final byte settled = 2;
+
+    /**
+     * The shading of frontier and settled pixels.
+     */
+    private static final Color frontierColor = new Color(96, 96, 192, 128);
+    private static final Color settledColor = new Color(192, 192, 96, 128);
+
+    /**
+     * The image of pixel statuses.
+     */
+    private final BufferedImage image;
+
+    /**
+     * The status of each pixel, by index (`y * width + x`); the raster of `image`.
+     */
+    private final byte[] statuses;
+
+    /**
+     * The width of `image`, in pixels.
+     */
+    private final int width;
+
+    /**
+     * The snapshot our statuses reflect, or null if they reflect no search (and are all
+     * undiscovered).
+     */
+    private ImagePathsSnapshot shown;
+
+    /**
+     * Indices of the pixels shaded as frontier (only the first `frontierCount` elements are
+     * meaningful).
+     */
+    private int[] frontierPixels = new int[1024];
+    private int frontierCount;
+
+    /**
+     * The bounding box of the pixels changed by the current update, as inclusive bounds (empty if
+     * `dirtyMaxX < dirtyMinX`).
+     */
+    private int dirtyMinX, dirtyMinY, dirtyMaxX, dirtyMaxY;
+
+    /**
+     * The bounding box of all pixels not shaded as undiscovered, as inclusive bounds (empty if
+     * `shadedMaxX < shadedMinX`).
+     */
+    private int shadedMinX, shadedMinY, shadedMaxX, shadedMaxY;
+
+    /**
+     * Create an overlay for an image of size `width` x `height`, with every pixel undiscovered.
+     */
+    ProgressOverlay(int width, int height) {
+        this.width = width;
+        byte[] alphas = {0, (byte) frontierColor.getAlpha(), (byte) settledColor.getAlpha()};
+        byte[] reds = {0, (byte) frontierColor.getRed(), (byte) settledColor.getRed()};
+        byte[] greens = {0, (byte) frontierColor.getGreen(), (byte) settledColor.getGreen()};
+        byte[] blues = {0, (byte) frontierColor.getBlue(), (byte) settledColor.getBlue()};
+        IndexColorModel palette = new IndexColorModel(8, 3, reds, greens, blues, alphas);
+        image = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_INDEXED, palette);
+        statuses = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        resetBounds();
+    }
+
+    /**
+     * Return whether this overlay is the size of `img`.
+     */
+    boolean fits(BufferedImage img) {
+        return img.getWidth() == image.getWidth() && img.getHeight() == image.getHeight();
+    }
+
+    /**
+     * Return whether our statuses reflect the search that `paths` was taken from (though perhaps
+     * an earlier snapshot of it).
+     */
+    boolean shows(ImagePathsSnapshot paths) {
+        return shown != null && paths.continues(shown);
+    }
+
+    /**
+     * Update our statuses to reflect `paths`, which must be a snapshot of a search in an image of
+     * our size.  If it continues the search we reflect, only pixels discovered since, and pixels
+     * on the frontier, are visited; otherwise our previous search is cleared first.  Returns the
+     * bounding box (in image coordinates) of the pixels whose status changed, or null if none did.
+     */
+    Rectangle update(ImagePathsSnapshot paths) {
+        dirtyMinX = dirtyMinY = Integer.MAX_VALUE;
+        dirtyMaxX = dirtyMaxY = -1;
+        int start = 0;
+        if (shows(paths)) {
+            start = shown.discoveredCount();
+        } else {
+            clear();
+        }
+
+        // Frontier pixels may have been settled since our last update
+        int kept = 0;
+        for (int i = 0; i < frontierCount; ++i) {
+            int pixel = frontierPixels[i];
+            if (paths.settled(pixel)) {
+                set(pixel, settled);
+            } else {
+                frontierPixels[kept++] = pixel;
+            }
+        }
+        frontierCount = kept;
+
+        // Newly discovered pixels may already have been settled as well
+        for (int i = start; i < paths.discoveredCount(); ++i) {
+            int pixel = paths.discoveredPixel(i);
+            if (paths.settled(pixel)) {
+                set(pixel, settled);
+            } else if (paths.discovered(pixel) && statuses[pixel] == undiscovered) {
+                set(pixel, frontier);
+                if (frontierCount == frontierPixels.length) {
+                    frontierPixels = Arrays.copyOf(frontierPixels, 2 * frontierCount);
+                }
+                frontierPixels[frontierCount++] = pixel;
+            }
+        }
+        shown = paths;
+
+        if (dirtyMaxX < dirtyMinX) {
+            return null;
+        }
+        return new Rectangle(dirtyMinX, dirtyMinY, dirtyMaxX - dirtyMinX + 1,
+                dirtyMaxY - dirtyMinY + 1);
+    }
+
+    /**
+     * Mark every pixel undiscovered (visiting only the pixels of the search we reflected) and stop
+     * reflecting that search, releasing its snapshot.  Pixels changed are included in the bounding
+     * box of the current update, if any.
+     */
+    void clear() {
+        if (shown != null) {
+            for (int i = 0; i < shown.discoveredCount(); ++i) {
+                statuses[shown.discoveredPixel(i)] = undiscovered;
+            }
+        }
+        if (shadedMinX <= shadedMaxX) {
+            dirtyMinX = shadedMinX;
+            dirtyMinY = shadedMinY;
+            dirtyMaxX = shadedMaxX;
+            dirtyMaxY = shadedMaxY;
+        }
+        shown = null;
+        frontierCount = 0;
+        resetBounds();
+    }
+
+    /**
+     * Set the status of the pixel with index `pixel` to `status`, growing the current update's
+     * bounding box (and that of all shaded pixels) to include it if that changed its status.
+     */
+    private void set(int pixel, byte status) {
+        if (statuses[pixel] == status) {
+            return;
+        }
+        statuses[pixel] = status;
+        int y = pixel / width;
+        int x = pixel - y * width;
+        dirtyMinX = Math.min(dirtyMinX, x);
+        dirtyMinY = Math.min(dirtyMinY, y);
+        dirtyMaxX = Math.max(dirtyMaxX, x);
+        dirtyMaxY = Math.max(dirtyMaxY, y);
+        shadedMinX = Math.min(shadedMinX, x);
+        shadedMinY = Math.min(shadedMinY, y);
+        shadedMaxX = Math.max(shadedMaxX, x);
+        shadedMaxY = Math.max(shadedMaxY, y);
+    }
+
+    /**
+     * Empty the bounding box of shaded pixels.
+     */
+    private void resetBounds() {
+        shadedMinX = shadedMinY = Integer.MAX_VALUE;
+        shadedMaxX = shadedMaxY = -1;
+    }
+
+    /**
+     * Draw the part of our statuses within `area` (in image coordinates) on `g`, which must draw in
+     * image coordinates.
+     */
+    void paint(Graphics g, Rectangle area) {
+        Rectangle r = area.intersection(new Rectangle(0, 0, image.getWidth(), image.getHeight()));
+        if (r.isEmpty()) {
+            return;
+        }
+        g.drawImage(image, r.x, r.y, r.x + r.width, r.y + r.height, r.x, r.y, r.x + r.width,
+                r.y + r.height, null);
+    }
+}
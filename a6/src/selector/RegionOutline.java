@@ -0,0 +1,93 @@
+package selector;
+
+import java.util.Arrays;
+
+/**
+ * Traces the outlines of regions of an image given as masks (indexed by `y * width + x`), for
+ * selection models that find regions rather than paths.
+ */
+public class RegionOutline {
+
+    /**
+     * Offsets of the 8 neighbors of a pixel, clockwise (in image coordinates, where y points down)
+     * starting from the left.
+     */
+    private static final int[] neighborDx = {-1, -1, 0, 1, 1, 1, 0, -1};
+    private static final int[] neighborDy = {0, -1, -1, -1, 0, 1, 1, 1};
+
+    /**
+     * Return the IDs (`y * width + x`) of the pixels along the outer boundary of `region`, a
+     * mask over an image of the given dimensions, in clockwise order starting from its topmost
+     * (then leftmost) pixel.  The start is not repeated at the end.  Uses Moore-neighbor tracing,
+     * stopping when the start is re-entered from the same direction it was first left in.
+     * Requires `region` is not empty and is 4-connected.
+     */
+    public static int[] traceBoundary(boolean[] region, int width, int height) {
+        int first = 0;
+        while (!region[first]) {
+            first += 1;
+        }
+        int[] contour = new int[16];
+        int length = 0;
+        contour[length++] = first;
+        // We arrived at the first pixel from the left (everything above and to the left of it is
+        //  outside), so start searching its neighbors clockwise from there
+        int current = first;
+        int from = 0;
+        int firstExit = -1;
+        while (true) {
+            int cx = current % width;
+            int cy = current / width;
+            int next = -1;
+            int dir = -1;
+            for (int k = 1; k <= 8; ++k) {
+                int d = (from + k) % 8;
+                int nx = cx + neighborDx[d];
+                int ny = cy + neighborDy[d];
+                if (nx >= 0 && nx < width && ny >= 0 && ny < height && region[ny * width + nx]) {
+                    next = ny * width + nx;
+                    dir = d;
+                    break;
+                }
+            }
+            if (next < 0) {
+                // A single isolated pixel
+                break;
+            }
+            if (current == first) {
+                if (dir == firstExit) {
+                    break;
+                }
+                if (firstExit < 0) {
+                    firstExit = dir;
+                }
+            }
+            if (next != first) {
+                if (length == contour.length) {
+                    contour = Arrays.copyOf(contour, 2 * length);
+                }
+                contour[length++] = next;
+            }
+            // Resume the clockwise search at the neighbor checked just before `next`, as seen
+            //  from `next`: it is the outside pixel we were "standing on"
+            int back = (dir + 7) % 8;
+            int bx = neighborDx[back] - neighborDx[dir];
+            int by = neighborDy[back] - neighborDy[dir];
+            from = directionOf(bx, by);
+            current = next;
+        }
+        return Arrays.copyOf(contour, length);
+    }
+
+    /**
+     * Return the index in `neighborDx`/`neighborDy` of the offset (`dx`, `dy`).
+     */
+    private static int directionOf(int dx, int dy) {
+        for (int d = 0; d < 8; ++d) {
+            if (neighborDx[d] == dx && neighborDy[d] == dy) {
+                return d;
+            }
+        }
+        throw new IllegalArgumentException("Not a neighbor offset: " + dx + ", " + dy);
+    }
+}
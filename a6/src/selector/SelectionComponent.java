@@ -2,9 +2,11 @@ package selector;
 
 import static selector.SelectionModel.SelectionState.*;
 
+import java.awt.BasicStroke;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.Graphics2D;
 import java.awt.Point;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseListener;
@@ -14,13 +16,15 @@ import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.util.List;
 import javax.swing.JComponent;
+import javax.swing.Timer;
 import java.awt.Rectangle;
 import scissors.ImagePathsSnapshot;
 
 /**
  * A transparent (overlay) component enabling interactive selection (aka "tracing") of an underlying
  * image.  Layout must ensure that our upper-left corner coincides with that of the underlying image
- * view.
+ * view, and our scale must match the scale at which that view displays the image: mouse locations
+ * are mapped to the image pixels under them, and the selection is drawn over those pixels.
  */
 public class SelectionComponent extends JComponent implements MouseListener, MouseMotionListener,
         PropertyChangeListener {
@@ -45,8 +49,29 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
      */
     private Point mouseLocation = new Point();
 
+    /**
+     * Fires once the mouse pointer has rested at the same location for `hoverDwellMillis` while a
+     * selection is in progress, at which point our model is told that the pointer's location is
+     * likely to be the next point added.  Restarted by every mouse motion, so that sweeping the
+     * pointer across the image does not flood the model with hints.
+     */
+    private final Timer hoverTimer;
+
+    /**
+     * The status of each pixel in our model's current path search, shaded for display while it is
+     * processing, or null if we have not shown a search for our current image.  Cleared (but kept
+     * for reuse) when processing stops.
+     */
+    private ProgressOverlay progressOverlay;
+
     /* View parameters */
 
+    /**
+     * The number of our pixels per image pixel in each dimension.  A point (x, y) in our
+     * coordinates lies over the image pixel (floor(x / scale), floor(y / scale)).
+     */
+    private double scale = 1;
+
     /**
      * The radius of a control point, in pixels.  Used both for rendering and for tolerance when
      * selecting points with the mouse.
@@ -68,6 +93,21 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
      */
     private Color controlPointColor = Color.CYAN;
 
+    /**
+     * How long the mouse pointer must rest in one place before our model is asked to anticipate a
+     * point being added there, in milliseconds.
+     */
+    private int hoverDwellMillis = 250;
+
+    /**
+     * The radius, in pixels, of the brush used to paint costs onto the image while a selection is
+     * in progress, and the amounts by which one dab of it raises (shift-drag) or lowers (ctrl-drag)
+     * the cost of tracing through the pixels under it.
+     */
+    private int costBrushRadius = 6;
+    private int costBrushPenalty = 64;
+    private int costBrushBonus = -32;
+
     /**
      * Construct a new SelectionComponent that will participate in viewing and controlling the
      * selection modeled by `model`.  View will update upon receiving property change events from
@@ -80,6 +120,9 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
         // Listen for mouse events that occur over us
         addMouseListener(this);
         addMouseMotionListener(this);
+
+        hoverTimer = new Timer(hoverDwellMillis, e -> anticipateHoveredPoint());
+        hoverTimer.setRepeats(false);
     }
 
     /**
@@ -101,14 +144,15 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
         model.addPropertyChangeListener(this);
 
         // Update our preferred size to match the image used by the new model
-        if (model.image() != null) {
-            setPreferredSize(new Dimension(model.image().getWidth(), model.image().getHeight()));
-        }
+        updatePreferredSize();
 
         // If we were in the process of moving a point, reset that interaction, since the selected
         // index may not be valid in the new model
         selectedIndex = -1;
 
+        // Any search progress we were showing was the old model's
+        progressOverlay = null;
+
         // Model state has changed; update our view.
         repaint();
     }
@@ -121,20 +165,63 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
     }
 
     /**
-     * Record `p` as the most recent mouse pointer location and update the view.  If `p` is outside
-     * of our model's image area, clamp `p`'s coordinates to the nearest edge of the image area.
-     * This method does not modify or save a reference to `p` (meaning the client is free to mutate
-     * it after this method returns, which Swing will do with Points used by MouseEvents).
+     * Return the number of our pixels per image pixel in each dimension.
+     */
+    public double scale() {
+        return scale;
+    }
+
+    /**
+     * Map mouse locations to, and draw the selection over, an image displayed with `scale` of our
+     * pixels per image pixel in each dimension.  Requires `scale` is positive.
+     */
+    public void setScale(double scale) {
+        assert scale > 0;
+        this.scale = scale;
+        updatePreferredSize();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Set our preferred size to the size of our model's image at our scale (if it has an image).
+     */
+    private void updatePreferredSize() {
+        BufferedImage img = model.image();
+        if (img != null) {
+            setPreferredSize(new Dimension((int) Math.ceil(img.getWidth() * scale),
+                    (int) Math.ceil(img.getHeight() * scale)));
+        }
+    }
+
+    /**
+     * Record the image pixel under `p` (a point in our coordinates) as the most recent mouse
+     * pointer location and update the view.  If `p` is outside of our model's image area, clamp the
+     * pixel's coordinates to the nearest edge of the image area.  This method does not modify or
+     * save a reference to `p` (meaning the client is free to mutate it after this method returns,
+     * which Swing will do with Points used by MouseEvents).
      */
     private void updateMouseLocation(Point p) {
-        // Clamp `p`'s coordinates to be within the image bounds and save them in our field
-        mouseLocation.x = Math.clamp(p.x, 0, model.image().getWidth()-1);
-        mouseLocation.y = Math.clamp(p.y, 0, model.image().getHeight()-1);
+        // Clamp the pixel's coordinates to be within the image bounds and save them in our field
+        mouseLocation.x = Math.clamp((long) Math.floor(p.x / scale), 0,
+                model.image().getWidth()-1);
+        mouseLocation.y = Math.clamp((long) Math.floor(p.y / scale), 0,
+                model.image().getHeight()-1);
 
         // Update the view to reflect the new mouse location
         repaint();
     }
 
+    /**
+     * If a selection is still in progress, hint to our model that the pixel under the resting
+     * mouse pointer is likely to be the next point added.
+     */
+    private void anticipateHoveredPoint() {
+        if (model.state() == SELECTING) {
+            model.anticipatePoint(new Point(mouseLocation));
+        }
+    }
+
     /**
      * Return whether we are currently interacting with a control point of a closed selection.
      */
@@ -144,29 +231,28 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
 
     // New in A6
     /**
-     * Shade image pixels according to their current path search status (settled, frontier, or
-     * undiscovered).  Do nothing if there is no pending path solution.
-     */
-    private void paintPathfindingProgress(Graphics g, ImagePathsSnapshot pendingPaths) {
-        int settledColor = new Color(192, 192, 96, 128).getRGB();
-        int frontierColor = new Color(96, 96, 192, 128).getRGB();
-
-        Rectangle bounds = g.getClipBounds();
-        int width = Math.min(bounds.width, model.image().getWidth() - bounds.x);
-        int height = Math.min(bounds.height, model.image().getHeight() - bounds.y);
-
-        BufferedImage img = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-        for (int x = bounds.x; x < bounds.x + width; ++x) {
-            for (int y = bounds.y; y < bounds.y + height; ++y) {
-                Point p = new Point(x, y);
-                if (pendingPaths.settled(p)) {
-                    img.setRGB(x - bounds.x, y - bounds.y, settledColor);
-                } else if (pendingPaths.discovered(p)) {
-                    img.setRGB(x - bounds.x, y - bounds.y, frontierColor);
-                }
-            }
+     * Bring our progress overlay up to date with our model's latest pathfinding snapshot (if it is
+     * processing and produces snapshots we recognize), creating the overlay if we do not have one
+     * for an image of this size, and repaint only the area in which pixels changed status.
+     */
+    private void updateProgressOverlay() {
+        if (model.state() != PROCESSING
+                || !(model.getProcessingProgress() instanceof ImagePathsSnapshot pendingPaths)) {
+            return;
+        }
+        BufferedImage img = model.image();
+        if (progressOverlay == null || !progressOverlay.fits(img)) {
+            progressOverlay = new ProgressOverlay(img.getWidth(), img.getHeight());
+        }
+        Rectangle dirty = progressOverlay.update(pendingPaths);
+        if (dirty != null) {
+            // Cover every one of our pixels that overlaps a changed image pixel
+            int x0 = (int) Math.floor(dirty.x * scale);
+            int y0 = (int) Math.floor(dirty.y * scale);
+            int x1 = (int) Math.ceil((dirty.x + dirty.width) * scale);
+            int y1 = (int) Math.ceil((dirty.y + dirty.height) * scale);
+            repaint(x0, y0, x1 - x0, y1 - y0);
         }
-        g.drawImage(img, bounds.x, bounds.y, null);
     }
 
     /**
@@ -177,20 +263,31 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
     public void paintComponent(Graphics g) {
         List<PolyLine> segments = model.selection();
 
+        // Paths are drawn in image coordinates, through the centers of their pixels, with lines
+        //  one of our pixels wide
+        Graphics2D paths = (Graphics2D) g.create();
+        if (scale != 1) {
+            double center = 0.5 - 0.5 / scale;
+            paths.scale(scale, scale);
+            paths.translate(center, center);
+            paths.setStroke(new BasicStroke((float) (1 / scale)));
+        }
+
         // Draw perimeter
-        paintSelectionPerimeter(g, segments);
+        paintSelectionPerimeter(paths, segments);
 
         // If dragging a point, draw guide lines
         if (isInteractingWithPoint() && mouseLocation != null) {
-            paintMoveGuides(g, segments);
+            paintMoveGuides(paths, segments);
         }
 
         // Draw live wire
         if (model.state() == SELECTING && mouseLocation != null) {
-            paintLiveWire(g);
+            paintLiveWire(paths);
         }
+        paths.dispose();
 
-        // Draw handles
+        // Draw handles (in our coordinates, so that they keep their size at any scale)
         if (model.state() == SELECTED) {
             paintControlPoints(g, segments);
         }
@@ -198,12 +295,24 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
         // New in A6: Paint processing progress (if we recognize its type)
         if (model.state() == PROCESSING) {
             Object progress = model.getProcessingProgress();
-            if (progress instanceof ImagePathsSnapshot) {
-                paintPathfindingProgress(g, (ImagePathsSnapshot) progress);
+            if (progress instanceof ImagePathsSnapshot pendingPaths && progressOverlay != null
+                    && progressOverlay.shows(pendingPaths)) {
+                Graphics2D pixels = (Graphics2D) g.create();
+                pixels.scale(scale, scale);
+                progressOverlay.paint(pixels, pixels.getClipBounds());
+                pixels.dispose();
             }
         }
     }
 
+    /**
+     * Return the coordinate (in our coordinates) of the center of the image pixel with coordinate
+     * `c` (rounded to the pixel to the upper left of the center when it falls between pixels).
+     */
+    private int toView(int c) {
+        return (int) Math.round((c + 0.5) * scale - 0.5);
+    }
+
     /**
      * Draw on `g` along the selection path represented by `segments` using our selection perimeter
      * color.
@@ -228,12 +337,14 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
     /**
      * Draw filled circles on `g` centered at the control points between each of the selection path
      * segments in `segments` using our control point color.  The circles' radius should be our
-     * control point radius.
+     * control point radius.  `g` draws in our coordinates.
      */
     private void paintControlPoints(Graphics g, List<PolyLine> segments) {
         g.setColor(controlPointColor);
         for(PolyLine seg : segments) {
-            g.fillOval(seg.xs()[0]-controlPointRadius, seg.ys()[0]-controlPointRadius,
+            int x = toView(seg.xs()[0]);
+            int y = toView(seg.ys()[0]);
+            g.fillOval(x-controlPointRadius, y-controlPointRadius,
                     controlPointRadius*2, controlPointRadius*2);
         }
     }
@@ -257,26 +368,29 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
     /* Event listeners */
 
     /**
-     * When mouse button 1 is clicked and a selection has either not yet been started or is still in
-     * progress, add the location of the point to the selection.  Note: `mousePressed()` and
-     * `mouseReleased()` handle presses of button 1 when the selection is finished.
+     * When mouse button 1 is clicked and our model can accept a new point (a selection has either
+     * not yet been started or is still in progress, possibly with processing underway), add the
+     * location of the point to the selection.  Note: `mousePressed()` and `mouseReleased()` handle
+     * presses of button 1 when the selection is finished.
      * <p>
-     * When mouse button 2 is clicked and a selection is in progress, finish the selection.
+     * When mouse button 2 is clicked and our model can accept it, finish the selection.
      * <p>
-     * When mouse button 3 is clicked and a selection is either in progress or finished, undo the
-     * last point added to the selection.
+     * When mouse button 3 is clicked and a selection has been started, undo the last point added
+     * to the selection (or the last command queued while processing).
      */
     @Override
     public void mouseClicked(MouseEvent e) {
         updateMouseLocation(e.getPoint());
 
-        if (e.getButton() == MouseEvent.BUTTON1 && (model.state() == NO_SELECTION || model.state() == SELECTING)) {
+        // Models that are still processing may queue these commands, so ask rather than assume
+        //  based on state.
+        if (e.getButton() == MouseEvent.BUTTON1 && model.canAddPoint()) {
             model.addPoint(mouseLocation);
         }
-        else if (e.getButton() == MouseEvent.BUTTON2 && model.state() == SELECTING) {
+        else if (e.getButton() == MouseEvent.BUTTON2 && model.canFinishSelection()) {
             model.finishSelection();
         }
-        else if (e.getButton() == MouseEvent.BUTTON3 && (model.state() == SELECTING || model.state() == SELECTED)) {
+        else if (e.getButton() == MouseEvent.BUTTON3 && model.state() != NO_SELECTION) {
             model.undo();
         }
 
@@ -286,12 +400,14 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
 
     /**
      * When a selection is in progress, update our last-observed mouse location to the location of
-     * this event and repaint ourselves to draw a "live wire" to the mouse pointer.
+     * this event and repaint ourselves to draw a "live wire" to the mouse pointer.  If the pointer
+     * then comes to rest, our model will be asked to anticipate a point being added there.
      */
     @Override
     public void mouseMoved(MouseEvent e) {
         if (model.state() == SELECTING) {
             updateMouseLocation(e.getPoint());
+            hoverTimer.restart();
         }
     }
 
@@ -299,13 +415,20 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
      * When a selection is in progress, or when we are interacting with a control point, update our
      * last-observed mouse location to the location of this event and repaint ourselves to draw a
      * "live wire" to the mouse pointer.  (Note that mouseMoved events are not sent while dragging,
-     * which is why this overlaps with the duties of that handler.)
+     * which is why this overlaps with the duties of that handler.)  While a selection is in
+     * progress, dragging with shift held paints a penalty onto the image under the pointer, and
+     * dragging with ctrl held paints a bonus, steering the live wire away from or towards those
+     * pixels.
      */
     @Override
     public void mouseDragged(MouseEvent e) {
         if (model.state() == SELECTING || isInteractingWithPoint()) {
             updateMouseLocation(e.getPoint());
         }
+        if (model.state() == SELECTING && (e.isShiftDown() || e.isControlDown())) {
+            int delta = e.isShiftDown() ? costBrushPenalty : costBrushBonus;
+            model.paintCost(mouseLocation, costBrushRadius, delta);
+        }
     }
 
     /**
@@ -315,10 +438,12 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
     @Override
     public void mousePressed(MouseEvent e) {
         if(e.getButton() == MouseEvent.BUTTON1 && model.state() == SELECTED) {
-            Point current = e.getPoint();
-            int maxDistanceSq = controlPointRadius * controlPointRadius;
-            selectedIndex = model.closestPoint(current, maxDistanceSq);
             updateMouseLocation(e.getPoint());
+            // Our control point radius is in our pixels, which may be smaller or larger than
+            //  image pixels
+            double radius = controlPointRadius / scale;
+            int maxDistanceSq = (int) Math.ceil(radius * radius);
+            selectedIndex = model.closestPoint(new Point(mouseLocation), maxDistanceSq);
         }
     }
 
@@ -340,14 +465,32 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
 
     /**
      * Repaint to update our view in response to any property changes from our model.  Additionally,
-     * if the "image" property changed, update our preferred size to match the new image size.
+     * if the "image" property changed, update our preferred size to match the new image size.  New
+     * "pending-paths" only repaint the area whose search progress changed, and "progress" (which is
+     * shown elsewhere) does not repaint at all.
      */
     @Override
     public void propertyChange(PropertyChangeEvent e) {
-        // If model image changed, update preferred size
-        if (e.getPropertyName().equals("image") && e.getNewValue() != null) {
-            BufferedImage img = (BufferedImage) e.getNewValue();
-            setPreferredSize(new Dimension(img.getWidth(), img.getHeight()));
+        if (e.getPropertyName().equals("pending-paths")) {
+            updateProgressOverlay();
+            return;
+        }
+        if (e.getPropertyName().equals("progress")) {
+            return;
+        }
+
+        // If model image changed, update preferred size and discard progress shown for the old one
+        if (e.getPropertyName().equals("image")) {
+            progressOverlay = null;
+            if (e.getNewValue() != null) {
+                updatePreferredSize();
+            }
+        }
+
+        // Once processing stops, its progress is no longer shown (and its snapshot not needed)
+        if (e.getPropertyName().equals("state") && e.getNewValue() != PROCESSING
+                && progressOverlay != null) {
+            progressOverlay.clear();
         }
 
         // If the model's selection changed while we are interacting with a control point, cancel
@@ -367,6 +510,7 @@ public class SelectionComponent extends JComponent implements MouseListener, Mou
 
     @Override
     public void mouseExited(MouseEvent e) {
-        // Ignored
+        // The pointer is no longer resting over the image
+        hoverTimer.stop();
     }
 }
\ No newline at end of file
@@ -172,6 +172,24 @@ public abstract class SelectionModel {
         }
     }
 
+    /**
+     * Return whether `addPoint()` would currently be accepted.  By default, points may only be
+     * added when no selection has been started or while one is in progress; subclasses that can
+     * queue input during asynchronous processing may accept points in more states.
+     */
+    public boolean canAddPoint() {
+        return state == NO_SELECTION || state == SELECTING;
+    }
+
+    /**
+     * Return whether `finishSelection()` would currently be accepted.  By default, only a
+     * selection in progress may be finished; subclasses that can queue input during asynchronous
+     * processing may accept this command in more states.
+     */
+    public boolean canFinishSelection() {
+        return state == SELECTING;
+    }
+
     /**
      * Return the last (end) point along the current selection path.  If no segments have been added
      * to the selection yet, or if the selection has finished, this will be the starting point.
@@ -392,6 +410,35 @@ public abstract class SelectionModel {
         // Default implementation does nothing
     }
 
+    /**
+     * Hint that `p` is likely to be the next point added to the selection (for example, because
+     * the mouse pointer has come to rest over it).  Subclasses may use idle time to prepare for
+     * that point; the default implementation does nothing.  Does not change our state or
+     * selection.
+     */
+    public void anticipatePoint(Point p) {
+        // Default implementation does nothing
+    }
+
+    /**
+     * Add `delta` to the cost of tracing through each pixel within `radius` of `center`, steering
+     * later paths away from (positive `delta`) or towards (negative `delta`) that region.  Only
+     * meaningful for models whose paths follow costs; others ignore it.
+     */
+    public void paintCost(Point center, int radius, int delta) {
+        // Default implementation does nothing
+    }
+
+    /**
+     * Start preparing, in the background, anything this model needs before it can find paths in
+     * its current image (such as edge weights), so that the first point the user adds need not
+     * wait for it.  The default implementation does nothing.  Does not change our state or
+     * selection.
+     */
+    public void prepareWeights() {
+        // Default implementation does nothing
+    }
+
     /**
      * Return an indication of the progress of any asynchronous processing currently being performed
      * on behalf of this model.  The type of object returned will depend on the subclass.  Returns
@@ -9,11 +9,17 @@ import java.awt.image.BufferedImage;
 import java.beans.PropertyChangeEvent;
 import java.beans.PropertyChangeListener;
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
 import javax.imageio.ImageIO;
 import javax.swing.*;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import selector.SelectionModel.SelectionState;
+import scissors.Connectivity;
+import scissors.GraphCutSelectionModel;
 import scissors.ScissorsSelectionModel;
+import scissors.SuperpixelSelectionModel;
 
 /**
  * A graphical application for selecting and extracting regions of images.
@@ -37,7 +43,12 @@ public class SelectorApp implements PropertyChangeListener {
 
     /* Components whose state must be changed during the selection process. */
     private JMenuItem saveItem;
+    private JMenuItem importCostsItem;
     private JMenuItem undoItem;
+    private JMenuItem rerouteItem;
+    private JCheckBoxMenuItem multiResolutionItem;
+    private JMenu connectivityMenu;
+    private JRadioButtonMenuItem[] connectivityItems;
     private JButton cancelButton;
     private JButton undoButton;
     private JButton resetButton;
@@ -49,6 +60,12 @@ public class SelectorApp implements PropertyChangeListener {
      */
     private JProgressBar processingProgress;
 
+    /**
+     * The worker loading the image the user most recently chose to open, or null if no image is
+     * being loaded.
+     */
+    private ImageLoader loader;
+
     /**
      * Construct a new application instance.  Initializes GUI components, so must be invoked on the
      * Swing Event Dispatch Thread.  Does not show the application window (call `start()` to do
@@ -67,6 +84,9 @@ public class SelectorApp implements PropertyChangeListener {
         imgPanel = new ImagePanel();
         JScrollPane scrollPane = new JScrollPane(imgPanel, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS, ScrollPaneConstants.HORIZONTAL_SCROLLBAR_ALWAYS);
         scrollPane.setPreferredSize(new Dimension(600, 400));
+        // Scroll by a useful distance per notch of the mouse wheel (the default is one pixel)
+        scrollPane.getHorizontalScrollBar().setUnitIncrement(16);
+        scrollPane.getVerticalScrollBar().setUnitIncrement(16);
         frame.add(scrollPane, BorderLayout.CENTER);
 
 
@@ -99,6 +119,8 @@ public class SelectorApp implements PropertyChangeListener {
         fileMenu.add(openItem);
         saveItem = new JMenuItem("Save...");
         fileMenu.add(saveItem);
+        importCostsItem = new JMenuItem("Import cost map...");
+        fileMenu.add(importCostsItem);
         JMenuItem closeItem = new JMenuItem("Close");
         fileMenu.add(closeItem);
         JMenuItem exitItem = new JMenuItem("Exit");
@@ -109,6 +131,35 @@ public class SelectorApp implements PropertyChangeListener {
         menuBar.add(editMenu);
         undoItem = new JMenuItem("Undo");
         editMenu.add(undoItem);
+        rerouteItem = new JMenuItem("Re-route selection");
+        editMenu.add(rerouteItem);
+        multiResolutionItem = new JCheckBoxMenuItem("Multi-resolution paths");
+        editMenu.add(multiResolutionItem);
+        // One item per connectivity, in the order of `Connectivity.values()`
+        connectivityMenu = new JMenu("Pixel connectivity");
+        editMenu.add(connectivityMenu);
+        ButtonGroup connectivityGroup = new ButtonGroup();
+        String[] connectivityNames = {"4 neighbors", "8 neighbors", "16 neighbors"};
+        connectivityItems = new JRadioButtonMenuItem[connectivityNames.length];
+        for (int i = 0; i < connectivityItems.length; ++i) {
+            connectivityItems[i] = new JRadioButtonMenuItem(connectivityNames[i]);
+            connectivityGroup.add(connectivityItems[i]);
+            connectivityMenu.add(connectivityItems[i]);
+            connectivityItems[i].addActionListener(e -> applyPathOptions(model));
+        }
+        connectivityItems[Connectivity.EIGHT.ordinal()].setSelected(true);
+
+        // Create and populate View menu
+        JMenu viewMenu = new JMenu("View");
+        menuBar.add(viewMenu);
+        JMenuItem zoomInItem = new JMenuItem("Zoom in");
+        viewMenu.add(zoomInItem);
+        JMenuItem zoomOutItem = new JMenuItem("Zoom out");
+        viewMenu.add(zoomOutItem);
+        JMenuItem actualSizeItem = new JMenuItem("Actual size");
+        viewMenu.add(actualSizeItem);
+        JMenuItem fitItem = new JMenuItem("Fit to window");
+        viewMenu.add(fitItem);
 
         fileMenu.setMnemonic(KeyEvent.VK_F);
         openItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, KeyEvent.CTRL_DOWN_MASK));
@@ -116,13 +167,35 @@ public class SelectorApp implements PropertyChangeListener {
         closeItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_C, KeyEvent.CTRL_DOWN_MASK));
         exitItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_E, KeyEvent.CTRL_DOWN_MASK));
         undoItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_U, KeyEvent.CTRL_DOWN_MASK));
+        viewMenu.setMnemonic(KeyEvent.VK_V);
+        zoomInItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS,
+                KeyEvent.CTRL_DOWN_MASK));
+        zoomOutItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS,
+                KeyEvent.CTRL_DOWN_MASK));
+        actualSizeItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0,
+                KeyEvent.CTRL_DOWN_MASK));
+        fitItem.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_9, KeyEvent.CTRL_DOWN_MASK));
 
         // Controller: Attach menu item listeners
         openItem.addActionListener(e -> openImage());
-        closeItem.addActionListener(e -> imgPanel.setImage(null));
+        closeItem.addActionListener(e -> {
+            cancelLoading();
+            imgPanel.setImage(null);
+        });
         saveItem.addActionListener(e -> saveSelection());
+        importCostsItem.addActionListener(e -> importCostMap());
         exitItem.addActionListener(e -> frame.dispose());
         undoItem.addActionListener(e -> model.undo());
+        rerouteItem.addActionListener(e -> {
+            if (model instanceof ScissorsSelectionModel scissors) {
+                scissors.rerouteSelection();
+            }
+        });
+        multiResolutionItem.addActionListener(e -> applyPathOptions(model));
+        zoomInItem.addActionListener(e -> imgPanel.setZoom(imgPanel.zoom() * ImagePanel.zoomStep));
+        zoomOutItem.addActionListener(e -> imgPanel.setZoom(imgPanel.zoom() / ImagePanel.zoomStep));
+        actualSizeItem.addActionListener(e -> imgPanel.setZoom(1));
+        fitItem.addActionListener(e -> imgPanel.setZoom(imgPanel.fitZoom()));
 
         return menuBar;
     }
@@ -144,19 +217,33 @@ public class SelectorApp implements PropertyChangeListener {
         resetButton.addActionListener(e -> model.reset());
         finishButton.addActionListener(e -> model.finishSelection());
 
-        String[] models = {"Point-to-point", "Intelligent scissors: gray", "Intelligent scissors: color"};
+        String[] models = {"Point-to-point", "Intelligent scissors: gray",
+                "Intelligent scissors: color", "Superpixel scissors", "Magic wand",
+                "Graph cut", "Intelligent scissors: multi-feature",
+                "Intelligent scissors: color, ignoring alpha"};
         JComboBox<String> modelComboBox = new JComboBox<>(models);
         modelComboBox.addActionListener(e -> {
             int index = modelComboBox.getSelectedIndex();
             if (index == 0) {
                 model = new PointToPointSelectionModel(model);
             } else if (index == 1) {
-                model = new ScissorsSelectionModel("CrossGradMono", model);
+                model = new ScissorsSelectionModel("CrossGradMono", selectedConnectivity(), model);
             } else if (index == 2) {
-                model = new ScissorsSelectionModel("Color", model);
+                model = new ScissorsSelectionModel("Color", selectedConnectivity(), model);
+            } else if (index == 3) {
+                model = new SuperpixelSelectionModel("CrossGradMono", model);
+            } else if (index == 4) {
+                model = new MagicWandSelectionModel(model);
+            } else if (index == 5) {
+                model = new GraphCutSelectionModel("CrossGradMono", model);
+            } else if (index == 6) {
+                model = new ScissorsSelectionModel("MultiFeature", selectedConnectivity(), model);
+            } else if (index == 7) {
+                model = new ScissorsSelectionModel("ColorNoAlpha", selectedConnectivity(), model);
             } else {
                 throw new IllegalStateException();
             }
+            applyPathOptions(model);
             setSelectionModel(model);
         });
 
@@ -171,6 +258,30 @@ public class SelectorApp implements PropertyChangeListener {
         return panel;
     }
 
+    /**
+     * Configure `model` according to our path-finding menu options, if they apply to it.
+     */
+    private void applyPathOptions(SelectionModel model) {
+        if (model instanceof ScissorsSelectionModel scissors) {
+            scissors.setMultiResolution(multiResolutionItem.isSelected());
+            if (scissors.state() != PROCESSING) {
+                scissors.setConnectivity(selectedConnectivity());
+            }
+        }
+    }
+
+    /**
+     * Return the pixel connectivity chosen in our path-finding menu options.
+     */
+    private Connectivity selectedConnectivity() {
+        for (int i = 0; i < connectivityItems.length; ++i) {
+            if (connectivityItems[i].isSelected()) {
+                return Connectivity.values()[i];
+            }
+        }
+        return Connectivity.EIGHT;
+    }
+
     /**
      * Start the application by showing its window.
      */
@@ -218,11 +329,13 @@ public class SelectorApp implements PropertyChangeListener {
             undoButton.setEnabled(true);
             resetButton.setEnabled(true);
         }
-        if (model.state() == SELECTING) {
-            finishButton.setEnabled(true);
-        } else {
-            finishButton.setEnabled(false);
-        }
+        finishButton.setEnabled(model.canFinishSelection());
+        // Changing the graph or weights of a model that is searching it is not supported
+        connectivityMenu.setEnabled(model.state() != PROCESSING);
+        importCostsItem.setEnabled(model instanceof ScissorsSelectionModel
+                && model.state() != PROCESSING);
+        rerouteItem.setEnabled(model instanceof ScissorsSelectionModel
+                && model.state() == SELECTED);
         if (model.state() == SELECTED) {
             saveItem.setEnabled(true);
         } else {
@@ -257,6 +370,11 @@ public class SelectorApp implements PropertyChangeListener {
         // Since the new model's initial state may be different from the old model's state, manually
         //  trigger an update to our state-dependent view.
         reflectSelectionState(model.state());
+
+        // Get the new model ready to find paths before the user starts selecting
+        if (model.image() != null && loader == null) {
+            model.prepareWeights();
+        }
     }
 
     /**
@@ -265,12 +383,32 @@ public class SelectorApp implements PropertyChangeListener {
      */
     public void setImage(BufferedImage img) {
         imgPanel.setImage(img);
+        if (img != null) {
+            model.prepareWeights();
+        }
+    }
+
+    /**
+     * Start selecting from the loaded image `img` (displaying its screen-compatible copy) instead
+     * of any previous image.
+     */
+    private void setImage(LoadedImage img) {
+        imgPanel.setImage(img.pixels(), img.display());
+        model.prepareWeights();
     }
 
     /**
-     * Allow the user to choose a new image from an "open" dialog.  If they do, start displaying and
-     * selecting from that image.  Show an error message dialog (and retain any previous image) if
-     * the chosen image could not be opened.
+     * Start selecting from `img` as above, displaying it at zoom factor `zoom` without moving the
+     * view.
+     */
+    private void setImage(LoadedImage img, double zoom) {
+        imgPanel.setImage(img.pixels(), img.display(), zoom);
+        model.prepareWeights();
+    }
+
+    /**
+     * Allow the user to choose a new image from an "open" dialog.  If they do, start loading that
+     * image in the background (see `loadImage()`).
      */
     private void openImage() {
         JFileChooser chooser = new JFileChooser();
@@ -280,32 +418,145 @@ public class SelectorApp implements PropertyChangeListener {
         chooser.setFileFilter(new FileNameExtensionFilter("Image files",
                 ImageIO.getReaderFileSuffixes()));
         //comment the block above out if you want to test filetype errors
-        boolean tryOpen;
-        do {
-            tryOpen = false;
-            int returnVal = chooser.showOpenDialog(frame);
-            File file = null;
-            if (returnVal == JFileChooser.APPROVE_OPTION) {
-                file = chooser.getSelectedFile();
+        if (chooser.showOpenDialog(frame) == JFileChooser.APPROVE_OPTION) {
+            loadImage(chooser.getSelectedFile());
+        }
+    }
+
+    /**
+     * Start decoding the image in `file` off the EDT, abandoning any image still loading.  Large
+     * images are first shown as a subsampled preview, which the user may start selecting from;
+     * once the full image is decoded it replaces the preview (carrying over any selection started
+     * on it), and our model starts preparing its weights.  A progress dialog lets the user cancel
+     * loading, in which case any preview is removed.  Show an error message dialog (and let the
+     * user choose another file) if the image could not be read; the previous image is retained
+     * unless a preview of the new one had replaced it.
+     */
+    private void loadImage(File file) {
+        cancelLoading();
+        ProgressMonitor monitor = new ProgressMonitor(frame, "Loading " + file.getName(), null, 0,
+                100);
+        ImageLoader newLoader = new ImageLoader(file, frame.getGraphicsConfiguration()) {
+            /**
+             * The preview we are displaying, or null if none has been displayed.
+             */
+            private BufferedImage preview;
+
+            @Override
+            protected void previewReady(LoadedImage img) {
+                if (loader == this) {
+                    preview = img.pixels();
+                    imgPanel.setImage(img.pixels(), img.display());
+                }
             }
-            else {
-                break;
+
+            @Override
+            protected void done() {
+                monitor.close();
+                if (loader != this) {
+                    // Superseded by another image (or closed); leave the display to that
+                    return;
+                }
+                loader = null;
+                if (isCancelled()) {
+                    if (preview != null && imgPanel.image() == preview) {
+                        imgPanel.setImage(null);
+                    }
+                    return;
+                }
+                try {
+                    LoadedImage img = get();
+                    if (preview != null && imgPanel.image() == preview) {
+                        replacePreview(img, subsampling());
+                    } else {
+                        setImage(img);
+                    }
+                } catch (ExecutionException | InterruptedException e) {
+                    JOptionPane.showMessageDialog(frame,
+                            "Could not read the image at " + file.getPath(),
+                            "Unsupported image format",
+                            JOptionPane.ERROR_MESSAGE);
+                    openImage();
+                }
             }
-            BufferedImage img = null;
-            try {
-                img = ImageIO.read(file);
-                if (img == null) {
-                    throw new IOException();
+        };
+        newLoader.addPropertyChangeListener(evt -> {
+            if ("progress".equals(evt.getPropertyName())) {
+                monitor.setProgress((Integer) evt.getNewValue());
+                if (monitor.isCanceled()) {
+                    newLoader.cancel(false);
                 }
-                this.setImage(img); //only change if not null
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(frame,
-                        "Could not read the image at " + file.getPath(),
-                        "Unsupported image format",
-                        JOptionPane.ERROR_MESSAGE);
-                tryOpen = true;
             }
-        } while (tryOpen);
+        });
+        loader = newLoader;
+        newLoader.execute();
+    }
+
+    /**
+     * Stop loading any image that is still being loaded, leaving whatever is displayed.
+     */
+    private void cancelLoading() {
+        if (loader != null) {
+            loader.cancel(false);
+            loader = null;
+        }
+    }
+
+    /**
+     * Display and select from `loaded` in place of the preview of it currently displayed, which was
+     * subsampled by `scale` in each dimension.  Any selection the user has started on the preview
+     * is carried over by adding its points (scaled up) again, so that its paths are found at full
+     * resolution.  The full image is zoomed out by `scale` relative to the preview, so that it
+     * covers the same area of the screen and the view stays where the user left it.
+     */
+    private void replacePreview(LoadedImage loaded, int scale) {
+        BufferedImage img = loaded.pixels();
+        List<Point> points = new ArrayList<>();
+        SelectionState previous = model.state();
+        if (previous != NO_SELECTION) {
+            for (PolyLine segment : model.selection()) {
+                points.add(segment.start());
+            }
+            if (previous != SELECTED) {
+                points.add(model.lastPoint());
+            }
+        }
+        setImage(loaded, imgPanel.zoom() / scale);
+        for (Point p : points) {
+            if (!model.canAddPoint()) {
+                break;
+            }
+            model.addPoint(new Point(Math.min(p.x * scale, img.getWidth() - 1),
+                    Math.min(p.y * scale, img.getHeight() - 1)));
+        }
+        if (previous == SELECTED && model.canFinishSelection()) {
+            model.finishSelection();
+        }
+    }
+
+    /**
+     * Allow the user to choose a precomputed cost map for the current image from an "open" dialog
+     * and, if they do, have our (scissors) model weigh paths with it once it has been read in the
+     * background.  Show an error message dialog (and keep the previous weights) if the cost map
+     * could not be read.
+     */
+    private void importCostMap() {
+        if (!(model instanceof ScissorsSelectionModel scissors) || model.image() == null) {
+            return;
+        }
+        JFileChooser chooser = new JFileChooser();
+        chooser.setCurrentDirectory(new File(System.getProperty("user.dir")));
+        chooser.setFileFilter(new FileNameExtensionFilter("Cost maps (16-bit PNG or raw)",
+                "png", "raw", "bin"));
+        if (chooser.showOpenDialog(frame) != JFileChooser.APPROVE_OPTION) {
+            return;
+        }
+        File file = chooser.getSelectedFile();
+        scissors.importCostMap(file.toPath()).exceptionally(e -> {
+            JOptionPane.showMessageDialog(frame, e.getMessage(), "Could not import cost map",
+                    JOptionPane.ERROR_MESSAGE);
+            return null;
+        });
     }
 
     /**
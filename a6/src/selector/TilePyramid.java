@@ -0,0 +1,271 @@
+package selector;
+
+import java.awt.image.BufferedImage;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A mip-map pyramid of an image, cut into square tiles of `tileSize` x `tileSize` pixels.  Level 0
+ * is the image itself; each level above it is half the size of the one below (rounded up) in each
+ * dimension, down to the first level that fits in a single tile.  A tile of a reduced level is
+ * computed the first time it is asked for, by averaging each 2 x 2 block of the (up to) four tiles
+ * below it, so reducing a region costs about a third more than reading it once, however far the
+ * view is zoomed out.
+ * <p>
+ * Reduced tiles are kept in a least-recently-used cache bounded by a memory budget; tiles of level
+ * 0 are never copied, since the image can be drawn from directly.  All methods may be called from
+ * any thread (tiles are usually computed in the background while the EDT paints the ones that are
+ * ready); two threads asking for the same missing tile may both compute it.
+ */
+class TilePyramid {
+
+    /**
+     * The side length of a tile, in pixels (a power of 2).
+     */
+    static final int tileShift = 8;
+    static final int tileSize = 1 << tileShift;
+
+    /**
+     * The image at the base of the pyramid.
+     */
+    private final BufferedImage image;
+
+    /**
+     * Whether our tiles keep the image's alpha channel.
+     */
+    private final boolean alpha;
+
+    /**
+     * The number of levels, including level 0.
+     */
+    private final int levelCount;
+
+    /**
+     * Cached tiles of reduced levels, keyed by `key()`, in order from least to most recently used.
+     */
+    private final LinkedHashMap<Long, BufferedImage> tiles = new LinkedHashMap<>(16, 0.75f, true);
+
+    /**
+     * The maximum total size of our cached tiles, in bytes.
+     */
+    private final long budgetBytes;
+
+    /**
+     * The total size of our cached tiles, in bytes.  Must not exceed `budgetBytes`.
+     */
+    private long usedBytes;
+
+    /**
+     * Create a pyramid over `image` whose cached tiles may use at most `budgetBytes` bytes in
+     * total.  No tiles are computed until they are asked for.
+     */
+    TilePyramid(BufferedImage image, long budgetBytes) {
+        this.image = image;
+        this.budgetBytes = budgetBytes;
+        alpha = image.getColorModel().hasAlpha();
+        int levels = 1;
+        while (levelWidth(levels - 1) > tileSize || levelHeight(levels - 1) > tileSize) {
+            ++levels;
+        }
+        levelCount = levels;
+    }
+
+    /**
+     * Create a pyramid over `image` whose cache budget is a fraction of the maximum heap size.
+     */
+    TilePyramid(BufferedImage image) {
+        this(image, Runtime.getRuntime().maxMemory() / 16);
+    }
+
+    /**
+     * Return the image at the base of this pyramid.
+     */
+    BufferedImage image() {
+        return image;
+    }
+
+    /**
+     * Return the number of levels in this pyramid, including level 0.
+     */
+    int levelCount() {
+        return levelCount;
+    }
+
+    /**
+     * Return the width of level `level`, in pixels.
+     */
+    int levelWidth(int level) {
+        return (int) (((long) image.getWidth() + (1L << level) - 1) >> level);
+    }
+
+    /**
+     * Return the height of level `level`, in pixels.
+     */
+    int levelHeight(int level) {
+        return (int) (((long) image.getHeight() + (1L << level) - 1) >> level);
+    }
+
+    /**
+     * Return the number of columns of tiles in level `level`.
+     */
+    int tilesAcross(int level) {
+        return (levelWidth(level) + tileSize - 1) >> tileShift;
+    }
+
+    /**
+     * Return the number of rows of tiles in level `level`.
+     */
+    int tilesDown(int level) {
+        return (levelHeight(level) + tileSize - 1) >> tileShift;
+    }
+
+    /**
+     * Return the cached tile in column `tx` and row `ty` of reduced level `level` (at least 1),
+     * marking it as recently used, or null if it is not cached.
+     */
+    synchronized BufferedImage cachedTile(int level, int tx, int ty) {
+        return tiles.get(key(level, tx, ty));
+    }
+
+    /**
+     * Return the tile in column `tx` and row `ty` of reduced level `level` (at least 1), computing
+     * it (and any missing tiles below it) if it is not cached.  Tiles on the right and bottom edges
+     * of a level may be smaller than `tileSize`.
+     */
+    BufferedImage tile(int level, int tx, int ty) {
+        assert level >= 1 && level < levelCount;
+        BufferedImage tile = cachedTile(level, tx, ty);
+        if (tile == null) {
+            tile = reduce(level, tx, ty);
+            put(key(level, tx, ty), tile);
+        }
+        return tile;
+    }
+
+    /**
+     * Compute the tile in column `tx` and row `ty` of reduced level `level` from the (up to) four
+     * tiles below it.
+     */
+    private BufferedImage reduce(int level, int tx, int ty) {
+        int width = Math.min(tileSize, levelWidth(level) - (tx << tileShift));
+        int height = Math.min(tileSize, levelHeight(level) - (ty << tileShift));
+        int[] argb = new int[width * height];
+        int half = tileSize / 2;
+        for (int dy = 0; dy < 2; ++dy) {
+            for (int dx = 0; dx < 2; ++dx) {
+                int cx = 2 * tx + dx;
+                int cy = 2 * ty + dy;
+                if (cx < tilesAcross(level - 1) && cy < tilesDown(level - 1)) {
+                    int childWidth = Math.min(tileSize,
+                            levelWidth(level - 1) - (cx << tileShift));
+                    int childHeight = Math.min(tileSize,
+                            levelHeight(level - 1) - (cy << tileShift));
+                    int[] child = pixels(level - 1, cx, cy, childWidth, childHeight);
+                    halve(child, childWidth, childHeight, argb, width, dx * half, dy * half);
+                }
+            }
+        }
+        BufferedImage tile = new BufferedImage(width, height,
+                alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB);
+        // Writing through the raster (rather than taking its array) keeps the tile eligible for
+        //  acceleration
+        tile.getRaster().setDataElements(0, 0, width, height, argb);
+        return tile;
+    }
+
+    /**
+     * Return the colors (as 0xAARRGGBB) of the `width` x `height` tile in column `tx` and row `ty`
+     * of level `level`, in raster order.
+     */
+    private int[] pixels(int level, int tx, int ty, int width, int height) {
+        if (level == 0) {
+            return image.getRGB(tx << tileShift, ty << tileShift, width, height, null, 0, width);
+        }
+        BufferedImage tile = tile(level, tx, ty);
+        int[] argb = (int[]) tile.getRaster().getDataElements(0, 0, width, height, null);
+        if (!alpha) {
+            for (int i = 0; i < argb.length; ++i) {
+                argb[i] |= 0xff000000;
+            }
+        }
+        return argb;
+    }
+
+    /**
+     * Average each 2 x 2 block of the `width` x `height` pixels `src` into one pixel of `dst` (an
+     * image `dstWidth` pixels wide), starting at (`x0`, `y0`).  If `src` has an odd width or
+     * height, its last column or row is averaged with itself.
+     */
+    private static void halve(int[] src, int width, int height, int[] dst, int dstWidth, int x0,
+            int y0) {
+        for (int y = 0; y < height; y += 2) {
+            int row0 = y * width;
+            int row1 = (y + 1 < height) ? row0 + width : row0;
+            int out = (y0 + y / 2) * dstWidth + x0;
+            for (int x = 0; x < width; x += 2) {
+                int x1 = (x + 1 < width) ? x + 1 : x;
+                dst[out + x / 2] = average(src[row0 + x], src[row0 + x1], src[row1 + x],
+                        src[row1 + x1]);
+            }
+        }
+    }
+
+    /**
+     * Return the average of four colors packed as 0xAARRGGBB, channel by channel, rounded.
+     */
+    private static int average(int a, int b, int c, int d) {
+        int result = 0;
+        for (int shift = 0; shift < 32; shift += 8) {
+            int sum = ((a >>> shift) & 0xff) + ((b >>> shift) & 0xff) + ((c >>> shift) & 0xff)
+                    + ((d >>> shift) & 0xff);
+            result |= ((sum + 2) >> 2) << shift;
+        }
+        return result;
+    }
+
+    /**
+     * Cache `tile` under `key`, replacing any tile already cached there, then evict the least
+     * recently used tiles until we are within budget.  A tile that would not fit in the budget on
+     * its own is not cached.
+     */
+    private synchronized void put(long key, BufferedImage tile) {
+        long size = sizeBytes(tile);
+        if (size > budgetBytes) {
+            return;
+        }
+        BufferedImage old = tiles.put(key, tile);
+        if (old != null) {
+            usedBytes -= sizeBytes(old);
+        }
+        usedBytes += size;
+        Iterator<Map.Entry<Long, BufferedImage>> it = tiles.entrySet().iterator();
+        while (usedBytes > budgetBytes) {
+            usedBytes -= sizeBytes(it.next().getValue());
+            it.remove();
+        }
+    }
+
+    /**
+     * Remove all cached tiles.
+     */
+    synchronized void clear() {
+        tiles.clear();
+        usedBytes = 0;
+    }
+
+    /**
+     * Return the approximate memory used by `tile`, in bytes.
+     */
+    private static long sizeBytes(BufferedImage tile) {
+        return 4L * tile.getWidth() * tile.getHeight();
+    }
+
+    /**
+     * Return the key under which the tile in column `tx` and row `ty` of level `level` is cached
+     * (also used by `TiledImageView` to track the tiles it has requested).
+     */
+    static long key(int level, int tx, int ty) {
+        return ((long) level << 58) | ((long) ty << 29) | tx;
+    }
+}
@@ -0,0 +1,207 @@
+package selector;
+
+import java.awt.Dimension;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import javax.swing.JComponent;
+import javax.swing.SwingUtilities;
+
+/**
+ * A Swing component that displays an image at an adjustable scale, drawing only the tiles of it
+ * that intersect the area being painted, so that the cost of a repaint depends on the size of the
+ * viewport rather than on the size of the image.  When zoomed out, tiles are drawn from the level
+ * of a `TilePyramid` closest to (but no smaller than) the displayed size; tiles of that level
+ * that have not been computed yet are computed in the background, and the finest coarser tile
+ * already cached is stretched over their area until they are ready.  When zoomed in, pixels are
+ * drawn as (nearest-neighbor) blocks so that they can be told apart.
+ * <p>
+ * Our preferred size is the size of the image at our current scale; a point (x, y) in our
+ * coordinates lies over the pixel (floor(x / scale), floor(y / scale)).
+ */
+class TiledImageView extends JComponent {
+
+    /**
+     * The pyramid of the image we display, or null if there is none.
+     */
+    private TilePyramid pyramid;
+
+    /**
+     * The number of our pixels per image pixel in each dimension.
+     */
+    private double scale = 1;
+
+    /**
+     * The tiles of `pyramid` being computed in the background (by `TilePyramid.key()`), so that
+     * each is only requested once.
+     */
+    private final Set<Long> requested = new HashSet<>();
+
+    /**
+     * Display `img` instead of our current image (or nothing, if `img` is null), at our current
+     * scale.
+     */
+    void setImage(BufferedImage img) {
+        if (pyramid != null) {
+            pyramid.clear();
+        }
+        pyramid = (img == null) ? null : new TilePyramid(img);
+        requested.clear();
+        revalidate();
+        repaint();
+    }
+
+    /**
+     * Return the number of our pixels per image pixel in each dimension.
+     */
+    double scale() {
+        return scale;
+    }
+
+    /**
+     * Display our image with `scale` of our pixels per image pixel in each dimension.  Requires
+     * `scale` is positive.
+     */
+    void setScale(double scale) {
+        assert scale > 0;
+        this.scale = scale;
+        revalidate();
+        repaint();
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        if (isPreferredSizeSet() || pyramid == null) {
+            return super.getPreferredSize();
+        }
+        BufferedImage img = pyramid.image();
+        return new Dimension((int) Math.ceil(img.getWidth() * scale),
+                (int) Math.ceil(img.getHeight() * scale));
+    }
+
+    /**
+     * Return the pyramid level to draw at our current scale: the smallest level that is no smaller
+     * than the displayed image (so that each displayed pixel averages at most 2 x 2 pixels of the
+     * level), or the top level if all are larger.
+     */
+    private int level() {
+        int level = 0;
+        while (level + 1 < pyramid.levelCount() && Math.scalb(scale, level + 1) <= 1) {
+            ++level;
+        }
+        return level;
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        if (pyramid == null) {
+            return;
+        }
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) {
+            clip = new Rectangle(getSize());
+        }
+        int level = level();
+        double levelScale = Math.scalb(scale, level);
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_INTERPOLATION, (levelScale > 1)
+                ? RenderingHints.VALUE_INTERPOLATION_NEAREST_NEIGHBOR
+                : RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+
+        // Only the tiles intersecting the clip are drawn
+        double tileExtent = TilePyramid.tileSize * levelScale;
+        int tx0 = Math.max(0, (int) (clip.x / tileExtent));
+        int ty0 = Math.max(0, (int) (clip.y / tileExtent));
+        int tx1 = Math.min(pyramid.tilesAcross(level) - 1,
+                (int) ((clip.x + clip.width - 1) / tileExtent));
+        int ty1 = Math.min(pyramid.tilesDown(level) - 1,
+                (int) ((clip.y + clip.height - 1) / tileExtent));
+        for (int ty = ty0; ty <= ty1; ++ty) {
+            for (int tx = tx0; tx <= tx1; ++tx) {
+                paintTile(g2, level, tx, ty);
+            }
+        }
+        g2.dispose();
+    }
+
+    /**
+     * Draw the tile in column `tx` and row `ty` of level `level` of our pyramid on `g`, or (if it
+     * has not been computed yet) request it and draw the finest coarser tile covering its area.
+     */
+    private void paintTile(Graphics2D g, int level, int tx, int ty) {
+        Rectangle r = tileBounds(level, tx, ty);
+        if (level == 0) {
+            int sx = tx << TilePyramid.tileShift;
+            int sy = ty << TilePyramid.tileShift;
+            int sw = Math.min(TilePyramid.tileSize, pyramid.levelWidth(0) - sx);
+            int sh = Math.min(TilePyramid.tileSize, pyramid.levelHeight(0) - sy);
+            g.drawImage(pyramid.image(), r.x, r.y, r.x + r.width, r.y + r.height, sx, sy,
+                    sx + sw, sy + sh, null);
+            return;
+        }
+
+        BufferedImage tile = pyramid.cachedTile(level, tx, ty);
+        if (tile != null) {
+            g.drawImage(tile, r.x, r.y, r.width, r.height, null);
+            return;
+        }
+        request(level, tx, ty);
+        for (int coarser = level + 1; coarser < pyramid.levelCount(); ++coarser) {
+            int shift = coarser - level;
+            BufferedImage cover = pyramid.cachedTile(coarser, tx >> shift, ty >> shift);
+            if (cover != null) {
+                Rectangle c = tileBounds(coarser, tx >> shift, ty >> shift);
+                Graphics2D part = (Graphics2D) g.create();
+                part.clipRect(r.x, r.y, r.width, r.height);
+                part.drawImage(cover, c.x, c.y, c.width, c.height, null);
+                part.dispose();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Return the area (in our coordinates) covered by the tile in column `tx` and row `ty` of
+     * level `level` of our pyramid.  The edges of neighboring tiles are rounded alike, so tiles
+     * meet without gaps or overlaps.
+     */
+    private Rectangle tileBounds(int level, int tx, int ty) {
+        double levelScale = Math.scalb(scale, level);
+        int x0 = tx << TilePyramid.tileShift;
+        int y0 = ty << TilePyramid.tileShift;
+        int x1 = Math.min(x0 + TilePyramid.tileSize, pyramid.levelWidth(level));
+        int y1 = Math.min(y0 + TilePyramid.tileSize, pyramid.levelHeight(level));
+        int left = (int) Math.round(x0 * levelScale);
+        int top = (int) Math.round(y0 * levelScale);
+        return new Rectangle(left, top, (int) Math.round(x1 * levelScale) - left,
+                (int) Math.round(y1 * levelScale) - top);
+    }
+
+    /**
+     * Start computing the tile in column `tx` and row `ty` of level `level` of our pyramid in the
+     * background, unless it has already been requested, and repaint its area once it is ready.
+     */
+    private void request(int level, int tx, int ty) {
+        long key = TilePyramid.key(level, tx, ty);
+        if (!requested.add(key)) {
+            return;
+        }
+        TilePyramid target = pyramid;
+        CompletableFuture.runAsync(() -> target.tile(level, tx, ty), ForkJoinPool.commonPool())
+                .whenCompleteAsync((done, e) -> {
+                    // Ignore tiles of an image we no longer display
+                    if (pyramid == target) {
+                        requested.remove(key);
+                        if (e == null && level == level()) {
+                            repaint(tileBounds(level, tx, ty));
+                        }
+                    }
+                }, SwingUtilities::invokeLater);
+    }
+}
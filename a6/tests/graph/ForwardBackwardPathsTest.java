@@ -0,0 +1,58 @@
+package graph;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class ForwardBackwardPathsTest {
+
+    /**
+     * Convert a list of vertex IDs in `g` to an array of their labels.
+     */
+    static String[] labels(SimpleGraph g, List<Integer> path) {
+        return path.stream()
+                .map(id -> g.getVertex(id).label())
+                .toArray(String[]::new);
+    }
+
+    @DisplayName("WHEN solving forward and backward from a vertex of a directed graph, THEN paths "
+            + "leaving it follow outgoing edges AND paths reaching it follow incoming edges")
+    @Test
+    void testDirectedPaths() {
+        SimpleGraph g = SimpleGraph.fromText(ShortestPathsTest.graph1);
+        ForwardBackwardPaths<SimpleVertex, SimpleEdge> pathfinder = new ForwardBackwardPaths<>(
+                g, new SimpleWeigher(), ForkJoinPool.commonPool());
+
+        int a = g.getVertexByLabel("A").id();
+        int d = g.getVertexByLabel("D").id();
+        int gId = g.getVertexByLabel("G").id();
+        pathfinder.setStart(d);
+        assertTrue(pathfinder.extendSearchTo(new int[]{gId}, new int[]{a}, g.vertexCount()));
+
+        assertEquals(36, pathfinder.distanceFrom(gId));
+        assertArrayEquals(new String[]{"D", "F", "G"}, labels(g, pathfinder.pathFrom(gId)));
+
+        assertEquals(15, pathfinder.distanceTo(a));
+        assertArrayEquals(new String[]{"A", "D"}, labels(g, pathfinder.pathTo(a)));
+    }
+
+    @DisplayName("WHEN a vertex cannot reach the start, THEN no backward path to it is found")
+    @Test
+    void testUnreachable() {
+        SimpleGraph g = SimpleGraph.fromText(ShortestPathsTest.graph1);
+        ForwardBackwardPaths<SimpleVertex, SimpleEdge> pathfinder = new ForwardBackwardPaths<>(
+                g, new SimpleWeigher(), Runnable::run);
+
+        // B only leads to E, F, and G, so it has no path to D
+        int b = g.getVertexByLabel("B").id();
+        int d = g.getVertexByLabel("D").id();
+        pathfinder.setStart(d);
+        assertFalse(pathfinder.extendSearchTo(new int[]{}, new int[]{b}, g.vertexCount()));
+        assertTrue(pathfinder.backward().allPathsFound());
+        assertEquals(-1, pathfinder.distanceTo(b));
+        assertThrows(IllegalArgumentException.class, () -> pathfinder.pathTo(b));
+    }
+}
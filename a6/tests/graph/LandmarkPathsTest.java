@@ -0,0 +1,122 @@
+package graph;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ForkJoinPool;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class LandmarkPathsTest {
+
+    @DisplayName("WHEN querying every pair of vertices with landmark-guided search, THEN the "
+            + "distances match those found by Dijkstra's algorithm")
+    @Test
+    void testMatchesDijkstra() {
+        for (String text : new String[]{ShortestPathsTest.graph1, ShortestPathsTest.graph2}) {
+            SimpleGraph g = SimpleGraph.fromText(text);
+            Weigher<SimpleEdge> w = new SimpleWeigher();
+            LandmarkPaths<SimpleVertex, SimpleEdge> landmarks = LandmarkPaths.precompute(
+                    g, w, new int[]{0, g.vertexCount() - 1}, ForkJoinPool.commonPool()).join();
+            LandmarkPaths<SimpleVertex, SimpleEdge>.Query query = landmarks.newQuery();
+            ShortestPaths<SimpleVertex, SimpleEdge> dijkstra = new ShortestPaths<>(g, w);
+
+            for (int src = 0; src < g.vertexCount(); ++src) {
+                PathfindingSnapshot expected = dijkstra.findAllPaths(src);
+                for (int dst = 0; dst < g.vertexCount(); ++dst) {
+                    int distance = expected.distanceTo(dst);
+                    assertEquals(distance, query.distanceBetween(src, dst));
+                    if (distance >= 0) {
+                        assertTrue(landmarks.lowerBound(src, dst) <= distance);
+                    }
+                }
+            }
+        }
+    }
+
+    @DisplayName("WHEN finding paths in bulk, THEN they are returned in query order, AND "
+            + "unreachable destinations give null")
+    @Test
+    void testPathsBetween() {
+        SimpleGraph g = SimpleGraph.fromText(ShortestPathsTest.graph1);
+        int a = g.getVertexByLabel("A").id();
+        int b = g.getVertexByLabel("B").id();
+        int d = g.getVertexByLabel("D").id();
+        int gId = g.getVertexByLabel("G").id();
+        LandmarkPaths<SimpleVertex, SimpleEdge> landmarks = LandmarkPaths.precompute(
+                g, new SimpleWeigher(), new int[]{a, gId}, Runnable::run).join();
+
+        List<List<Integer>> paths = landmarks.pathsBetween(
+                new int[]{a, d, b}, new int[]{gId, gId, d}, ForkJoinPool.commonPool()).join();
+        assertEquals(3, paths.size());
+        assertArrayEquals(new String[]{"A", "C", "E", "F", "G"},
+                ForwardBackwardPathsTest.labels(g, paths.get(0)));
+        assertArrayEquals(new String[]{"D", "F", "G"},
+                ForwardBackwardPathsTest.labels(g, paths.get(1)));
+        assertNull(paths.get(2));
+    }
+
+    /**
+     * Return a graph of `n` vertices in a line, each connected to its neighbors in both directions
+     * by edges of weight 1.
+     */
+    static SimpleGraph line(int n) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i + 1 < n; ++i) {
+            text.append("V").append(i).append(" -> V").append(i + 1).append(" 1\n");
+            text.append("V").append(i + 1).append(" -> V").append(i).append(" 1\n");
+        }
+        return SimpleGraph.fromText(text.toString());
+    }
+
+    @DisplayName("GIVEN searches that are always asked to pause, WHEN precomputing landmarks, "
+            + "THEN each search gives up its thread and is resubmitted, AND the results match "
+            + "those of searches that never pause")
+    @Test
+    void testPauseResubmits() {
+        SimpleGraph g = line(2000);
+        Weigher<SimpleEdge> w = new SimpleWeigher();
+        int[] landmarkIds = {0, g.vertexCount() - 1};
+        Deque<Runnable> queued = new ArrayDeque<>();
+        CompletableFuture<LandmarkPaths<SimpleVertex, SimpleEdge>> paused =
+                LandmarkPaths.precompute(g, w, landmarkIds, queued::add, () -> true);
+        int runs = 0;
+        while (!queued.isEmpty()) {
+            queued.removeFirst().run();
+            runs += 1;
+        }
+        assertTrue(runs > 4 * landmarkIds.length);
+
+        LandmarkPaths<SimpleVertex, SimpleEdge> expected =
+                LandmarkPaths.precompute(g, w, landmarkIds, Runnable::run).join();
+        LandmarkPaths<SimpleVertex, SimpleEdge> actual = paused.join();
+        for (int src = 0; src < g.vertexCount(); src += 97) {
+            for (int dst = 0; dst < g.vertexCount(); dst += 89) {
+                assertEquals(expected.lowerBound(src, dst), actual.lowerBound(src, dst));
+            }
+        }
+    }
+
+    @DisplayName("GIVEN a paused precomputation, WHEN it is cancelled, THEN its searches stop "
+            + "without being resubmitted again")
+    @Test
+    void testCancelStops() {
+        SimpleGraph g = line(2000);
+        Deque<Runnable> queued = new ArrayDeque<>();
+        CompletableFuture<LandmarkPaths<SimpleVertex, SimpleEdge>> landmarks =
+                LandmarkPaths.precompute(g, new SimpleWeigher(), new int[]{0},
+                        queued::add, () -> true);
+        queued.removeFirst().run();
+        assertFalse(queued.isEmpty());
+
+        landmarks.cancel(false);
+        for (int waiting = queued.size(); waiting > 0; --waiting) {
+            queued.removeFirst().run();
+        }
+        assertTrue(queued.isEmpty());
+        assertTrue(landmarks.isCancelled());
+    }
+}
@@ -0,0 +1,89 @@
+package graph;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+class MaxFlowTest {
+
+    @DisplayName("WHEN solving small random networks, THEN the flow equals the capacity of the "
+            + "minimum cut found by brute force, AND the returned segmentation has that capacity")
+    @Test
+    void testMatchesBruteForce() {
+        Random rng = new Random(3110);
+        for (int trial = 0; trial < 200; ++trial) {
+            int n = 1 + rng.nextInt(8);
+            int[][] caps = new int[n][n];
+            long[] sourceCaps = new long[n];
+            long[] sinkCaps = new long[n];
+            MaxFlow network = new MaxFlow(n);
+            for (int u = 0; u < n; ++u) {
+                sourceCaps[u] = rng.nextInt(3) == 0 ? rng.nextInt(20) : 0;
+                sinkCaps[u] = rng.nextInt(3) == 0 ? rng.nextInt(20) : 0;
+                network.addTerminalWeights(u, sourceCaps[u], sinkCaps[u]);
+                for (int v = u + 1; v < n; ++v) {
+                    if (rng.nextBoolean()) {
+                        caps[u][v] = rng.nextInt(10);
+                        caps[v][u] = rng.nextInt(10);
+                        network.addEdge(u, v, caps[u][v], caps[v][u]);
+                    }
+                }
+            }
+            long flow = network.solve(() -> false);
+
+            long best = Long.MAX_VALUE;
+            for (int mask = 0; mask < (1 << n); ++mask) {
+                best = Math.min(best, cutCapacity(mask, caps, sourceCaps, sinkCaps));
+            }
+            assertEquals(best, flow);
+            int segmentation = 0;
+            for (int u = 0; u < n; ++u) {
+                if (network.inSourceSegment(u)) {
+                    segmentation |= 1 << u;
+                }
+            }
+            assertEquals(best, cutCapacity(segmentation, caps, sourceCaps, sinkCaps));
+        }
+    }
+
+    @DisplayName("WHEN nodes are fixed to the terminals with infinite capacity, THEN they are on "
+            + "their terminal's side of the cut, AND the cut follows the cheapest edges between them")
+    @Test
+    void testHardConstraints() {
+        // A chain 0 - 1 - 2 - 3 - 4 whose weakest link is between 2 and 3
+        MaxFlow network = new MaxFlow(5);
+        int[] links = {7, 5, 2, 6};
+        for (int u = 0; u < 4; ++u) {
+            network.addEdge(u, u + 1, links[u], links[u]);
+        }
+        network.addTerminalWeights(0, MaxFlow.infinity, 0);
+        network.addTerminalWeights(4, 0, MaxFlow.infinity);
+
+        assertEquals(2, network.solve(() -> false));
+        assertTrue(network.inSourceSegment(0));
+        assertTrue(network.inSourceSegment(2));
+        assertFalse(network.inSourceSegment(3));
+        assertFalse(network.inSourceSegment(4));
+    }
+
+    /**
+     * Return the capacity of the cut putting the nodes in `sourceSide` (a bit mask) with the
+     * source and the rest with the sink.
+     */
+    private static long cutCapacity(int sourceSide, int[][] caps, long[] sourceCaps,
+            long[] sinkCaps) {
+        long total = 0;
+        for (int u = 0; u < caps.length; ++u) {
+            boolean uSource = (sourceSide & (1 << u)) != 0;
+            total += uSource ? sinkCaps[u] : sourceCaps[u];
+            for (int v = 0; v < caps.length; ++v) {
+                if (uSource && (sourceSide & (1 << v)) == 0) {
+                    total += caps[u][v];
+                }
+            }
+        }
+        return total;
+    }
+}
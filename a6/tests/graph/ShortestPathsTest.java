@@ -1,10 +1,12 @@
 package graph;
 
+import java.time.Duration;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.Scanner;
 import java.util.Set;
 import org.junit.jupiter.api.DisplayName;
@@ -153,6 +155,268 @@ class ShortestPathsTest {
         assertEquals(g.vertexCount(), pathfinder.settledCount());
         assertTrue(pathfinder.allPathsFound());
     }
+
+    @DisplayName("WHEN a time-budgeted search is cancelled, THEN it stops well short of the whole "
+            + "graph, AND extending it with a generous budget finds every path")
+    @Test
+    void testExtendSearchWithBudget() {
+        // A long chain, so that the search cannot finish within a single poll interval
+        SimpleGraph g = new SimpleGraph();
+        int n = 100000;
+        for (int i = 0; i < n; ++i) {
+            g.addVertex("V" + i);
+        }
+        for (int i = 1; i < n; ++i) {
+            g.addEdge(i - 1, i, 1);
+        }
+        ShortestPaths<SimpleVertex, SimpleEdge> pathfinder =
+                new ShortestPaths<>(g, new SimpleWeigher());
+        pathfinder.setStart(0);
+
+        assertFalse(pathfinder.advance(Duration.ofMinutes(1), () -> true));
+        assertTrue(pathfinder.settledCount() > 0);
+        assertTrue(pathfinder.settledCount() < n);
+
+        PathfindingSnapshot paths = pathfinder.extendSearch(Duration.ofMinutes(1));
+        assertTrue(pathfinder.allPathsFound());
+        assertEquals(n - 1, paths.distanceTo(n - 1));
+    }
+
+    @DisplayName("WHEN a search starts from several seeds, THEN each vertex's path starts from its "
+            + "nearest seed, AND initial distances are added to each seed's paths")
+    @Test
+    void testMultipleSeeds() {
+        SimpleGraph g = SimpleGraph.fromText(graph1);
+        Weigher<SimpleEdge> w = new SimpleWeigher();
+        ShortestPaths<SimpleVertex, SimpleEdge> pathfinder = new ShortestPaths<>(g, w);
+        int b = g.getVertexByLabel("B").id();
+        int d = g.getVertexByLabel("D").id();
+        int f = g.getVertexByLabel("F").id();
+        int gId = g.getVertexByLabel("G").id();
+
+        pathfinder.setStart(new int[]{b, d});
+        PathfindingSnapshot paths = pathfinder.extendSearch(g.vertexCount());
+        assertTrue(pathfinder.allPathsFound());
+        assertEquals(0, paths.distanceTo(d));
+        assertEquals(20, paths.distanceTo(f));
+        assertEquals(36, paths.distanceTo(gId));
+        String[] pathLabels = paths.pathTo(gId).stream()
+                .map(id -> g.getVertex(id).label())
+                .toArray(String[]::new);
+        assertArrayEquals(new String[]{"D", "F", "G"}, pathLabels);
+        // A is not reachable from either seed
+        assertFalse(paths.discovered(g.getVertexByLabel("A").id()));
+
+        // Starting D 10 further away makes B's paths to F and G shorter
+        pathfinder.setStart(new int[]{b, d}, new int[]{0, 10});
+        paths = pathfinder.extendSearch(g.vertexCount());
+        assertEquals(10, paths.distanceTo(d));
+        assertEquals(26, paths.distanceTo(f));
+        assertEquals(42, paths.distanceTo(gId));
+        pathLabels = pathfinder.pathTo(gId).stream()
+                .map(id -> g.getVertex(id).label())
+                .toArray(String[]::new);
+        assertArrayEquals(new String[]{"B", "E", "F", "G"}, pathLabels);
+    }
+
+    @DisplayName("WHEN a search is resumed from a partial snapshot, THEN it finds the same "
+            + "paths as an uninterrupted search")
+    @Test
+    void testResume() {
+        SimpleGraph g = SimpleGraph.fromText(graph2);
+        Weigher<SimpleEdge> w = new SimpleWeigher();
+        ShortestPaths<SimpleVertex, SimpleEdge> pathfinder = new ShortestPaths<>(g, w);
+
+        SimpleVertex start = g.getVertexByLabel("A");
+        pathfinder.setStart(start.id());
+        PathfindingSnapshot partial = pathfinder.extendSearch(2);
+
+        // Resume in a different solver (as if the partial results had been saved elsewhere)
+        ShortestPaths<SimpleVertex, SimpleEdge> resumed = new ShortestPaths<>(g, w);
+        resumed.resume(partial);
+        assertEquals(2, resumed.settledCount());
+        PathfindingSnapshot paths = resumed.extendSearch(g.vertexCount());
+        assertTrue(resumed.allPathsFound());
+
+        SimpleVertex end = g.getVertexByLabel("D");
+        assertEquals(4, paths.distanceTo(end.id()));
+        String[] pathLabels = paths.pathTo(end.id()).stream()
+                .map(id -> g.getVertex(id).label())
+                .toArray(String[]::new);
+        assertArrayEquals(new String[]{"A", "B", "C", "E", "D"}, pathLabels);
+    }
+
+    @DisplayName("WHEN searching for paths to specific targets, THEN the search stops once they "
+            + "are settled, AND reusing the solver from a new start gives correct paths")
+    @Test
+    void testFindPathsTo() {
+        SimpleGraph g = SimpleGraph.fromText(graph1);
+        Weigher<SimpleEdge> w = new SimpleWeigher();
+        ShortestPaths<SimpleVertex, SimpleEdge> pathfinder = new ShortestPaths<>(g, w);
+
+        // C and D are the 3rd and 4th closest vertices to A, so only A, B, C, D should be settled
+        int a = g.getVertexByLabel("A").id();
+        int c = g.getVertexByLabel("C").id();
+        int d = g.getVertexByLabel("D").id();
+        pathfinder.findPathsTo(a, c, d);
+        assertTrue(pathfinder.settled(c));
+        assertTrue(pathfinder.settled(d));
+        assertEquals(4, pathfinder.settledCount());
+        assertFalse(pathfinder.allPathsFound());
+        assertEquals(15, pathfinder.distanceTo(d));
+        assertEquals(List.of(a, d), pathfinder.pathTo(d));
+
+        // Searching again from C must not see any results left over from the search from A
+        int gId = g.getVertexByLabel("G").id();
+        pathfinder.findPathsTo(c, gId);
+        assertEquals(-1, pathfinder.distanceTo(a));
+        assertFalse(pathfinder.settled(a));
+        assertEquals(36, pathfinder.distanceTo(gId));
+        String[] pathLabels = pathfinder.pathTo(gId).stream()
+                .map(id -> g.getVertex(id).label())
+                .toArray(String[]::new);
+        assertArrayEquals(new String[]{"C", "E", "F", "G"}, pathLabels);
+    }
+
+    @DisplayName("WHEN the weights of edges into some vertices increase or decrease after a "
+            + "complete search, THEN repairing the search gives the same distances as searching "
+            + "again, AND settles fewer vertices")
+    @Test
+    void testRepair() {
+        // A grid with random weights, where every edge into a vertex also pays that vertex's cost
+        int size = 30;
+        Random rng = new Random(39);
+        SimpleGraph g = randomGrid(size, rng);
+        int[] costs = new int[size * size];
+        Weigher<SimpleEdge> w = e -> e.weight() + costs[e.endId()];
+        ShortestPaths<SimpleVertex, SimpleEdge> pathfinder = new ShortestPaths<>(g, w);
+        pathfinder.findAllPaths(size * size / 2 + size / 2);
+
+        for (int round = 0; round < 20; ++round) {
+            // Change the costs of a small square of vertices, raising or lowering them
+            int x0 = rng.nextInt(size - 4);
+            int y0 = rng.nextInt(size - 4);
+            int delta = (round % 2 == 0) ? 20 : -10;
+            int[] changed = new int[16];
+            for (int i = 0; i < changed.length; ++i) {
+                int id = (y0 + i / 4) * size + x0 + i % 4;
+                costs[id] = Math.max(0, costs[id] + delta);
+                changed[i] = id;
+            }
+            int resettled = pathfinder.repair(changed);
+            assertTrue(pathfinder.allPathsFound());
+            assertTrue(resettled < size * size);
+
+            ShortestPaths<SimpleVertex, SimpleEdge> fresh = new ShortestPaths<>(g, w);
+            fresh.findAllPaths(size * size / 2 + size / 2);
+            assertEquals(fresh.settledCount(), pathfinder.settledCount());
+            for (int id = 0; id < size * size; ++id) {
+                assertEquals(fresh.distanceTo(id), pathfinder.distanceTo(id));
+                List<Integer> path = pathfinder.pathTo(id);
+                int length = 0;
+                for (int i = 1; i < path.size(); ++i) {
+                    int from = path.get(i - 1);
+                    int to = path.get(i);
+                    length += g.getVertex(from).outgoingEdges().stream()
+                            .filter(e -> e.endId() == to)
+                            .mapToInt(w::weight)
+                            .min().orElseThrow();
+                }
+                assertEquals(pathfinder.distanceTo(id), length);
+            }
+        }
+    }
+
+    /**
+     * Return a `size` x `size` grid whose vertices (with IDs in raster order) are joined to their
+     * horizontal and vertical neighbors in both directions by edges with random weights in
+     * [1..9], drawn from `rng`.
+     */
+    static SimpleGraph randomGrid(int size, Random rng) {
+        SimpleGraph g = new SimpleGraph();
+        for (int i = 0; i < size * size; ++i) {
+            g.addVertex("V" + i);
+        }
+        for (int y = 0; y < size; ++y) {
+            for (int x = 0; x < size; ++x) {
+                int id = y * size + x;
+                if (x + 1 < size) {
+                    g.addEdge(id, id + 1, 1 + rng.nextInt(9));
+                    g.addEdge(id + 1, id, 1 + rng.nextInt(9));
+                }
+                if (y + 1 < size) {
+                    g.addEdge(id, id + size, 1 + rng.nextInt(9));
+                    g.addEdge(id + size, id, 1 + rng.nextInt(9));
+                }
+            }
+        }
+        return g;
+    }
+
+    @DisplayName("GIVEN a view of a partial search's progress, WHEN the search continues and the "
+            + "solver then starts a new search, THEN the vertices the view reported settled keep "
+            + "their final distances, AND the view reports no vertex settled that was not")
+    @Test
+    void testProgressView() {
+        int size = 20;
+        SimpleGraph g = randomGrid(size, new Random(50));
+        Weigher<SimpleEdge> w = new SimpleWeigher();
+        ShortestPaths<SimpleVertex, SimpleEdge> full = new ShortestPaths<>(g, w);
+        full.findAllPaths(0);
+
+        ShortestPaths<SimpleVertex, SimpleEdge> pathfinder = new ShortestPaths<>(g, w);
+        pathfinder.setStart(0);
+        pathfinder.advance(size * size / 3);
+        PathfindingSnapshot view = pathfinder.progress();
+        assertFalse(view.frontierKnown());
+        int settled = 0;
+        for (int id = 0; id < g.vertexCount(); ++id) {
+            if (view.settled(id)) {
+                assertTrue(pathfinder.settled(id));
+                settled += 1;
+            }
+        }
+        assertTrue(settled > 0 && settled <= pathfinder.settledCount());
+
+        pathfinder.advance(g.vertexCount());
+        pathfinder.findAllPaths(g.vertexCount() - 1);
+        int stillSettled = 0;
+        for (int id = 0; id < g.vertexCount(); ++id) {
+            if (view.settled(id)) {
+                assertEquals(full.distanceTo(id), view.distanceTo(id));
+                assertEquals(full.pathTo(id).size(), view.pathTo(id).size());
+                stillSettled += 1;
+            }
+        }
+        assertEquals(settled, stillSettled);
+    }
+
+    @DisplayName("WHEN a search is resumed from a view of its progress, which does not record its "
+            + "frontier, THEN it finds the same distances as an uninterrupted search")
+    @Test
+    void testResumeFromProgress() {
+        int size = 20;
+        SimpleGraph g = randomGrid(size, new Random(51));
+        Weigher<SimpleEdge> w = new SimpleWeigher();
+        ShortestPaths<SimpleVertex, SimpleEdge> full = new ShortestPaths<>(g, w);
+        full.findAllPaths(size * size / 2);
+
+        ShortestPaths<SimpleVertex, SimpleEdge> pathfinder = new ShortestPaths<>(g, w);
+        pathfinder.setStart(size * size / 2);
+        pathfinder.advance(size * size / 4);
+        PathfindingSnapshot view = pathfinder.progress();
+
+        ShortestPaths<SimpleVertex, SimpleEdge> resumed = new ShortestPaths<>(g, w);
+        resumed.resume(view);
+        resumed.advance(g.vertexCount());
+        assertTrue(resumed.allPathsFound());
+        for (int id = 0; id < g.vertexCount(); ++id) {
+            assertEquals(full.distanceTo(id), resumed.distanceTo(id));
+        }
+        // Views of finished searches have no frontier to lose
+        pathfinder.advance(g.vertexCount());
+        assertTrue(pathfinder.progress().frontierKnown());
+    }
 }
 
 /*
@@ -0,0 +1,122 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static scissors.GraphCutSelectionModel.*;
+
+import graph.Weigher;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test suite for `GraphCutSelectionModel`.
+ */
+class GraphCutSelectionModelTest {
+
+    /**
+     * The corners of a 60x60 square in a 100x100 image, clockwise from the top left.
+     */
+    static final List<Point> square = List.of(new Point(20, 20), new Point(80, 20),
+            new Point(80, 80), new Point(20, 80));
+
+    @DisplayName("GIVEN a square polygon, WHEN classifying the pixels around it, THEN pixels deep "
+            + "inside are fixed inside, pixels far outside are fixed outside, pixels on its "
+            + "edges are in the band, AND the band narrows to nothing at the control points")
+    @Test
+    void testBandLabels() {
+        Rectangle box = new Rectangle(0, 0, 100, 100);
+        byte[] labels = bandLabels(square, box);
+        assertEquals(fixedInside, labels[50 * 100 + 50]);
+        assertEquals(fixedOutside, labels[2 * 100 + 50]);
+        assertEquals(fixedOutside, labels[95 * 100 + 95]);
+        assertEquals(inBand, labels[20 * 100 + 50]);
+        assertEquals(inBand, labels[30 * 100 + 50]);
+        assertEquals(inBand, labels[50 * 100 + 75]);
+        // Next to a corner the band is only as wide as half the distance to it
+        assertEquals(inBand, labels[20 * 100 + 22]);
+        assertEquals(fixedInside, labels[23 * 100 + 22]);
+        assertEquals(fixedOutside, labels[17 * 100 + 22]);
+    }
+
+    @DisplayName("GIVEN random polygons (some self-intersecting) and boxes that clip them, WHEN "
+            + "classifying pixels, THEN every pixel outside the band is fixed inside iff "
+            + "`Polygon.contains()` says the polygon contains it")
+    @Test
+    void testBandLabelsMatchPolygon() {
+        Random rng = new Random(7);
+        for (int trial = 0; trial < 50; ++trial) {
+            List<Point> controls = new ArrayList<>();
+            Polygon polygon = new Polygon();
+            for (int i = 3 + rng.nextInt(8); i > 0; --i) {
+                Point p = new Point(rng.nextInt(200), rng.nextInt(200));
+                controls.add(p);
+                polygon.addPoint(p.x, p.y);
+            }
+            Rectangle box = new Rectangle(rng.nextInt(40), rng.nextInt(40), 100 + rng.nextInt(100),
+                    100 + rng.nextInt(100));
+            byte[] labels = bandLabels(controls, box);
+            for (int y = 0; y < box.height; ++y) {
+                for (int x = 0; x < box.width; ++x) {
+                    byte label = labels[y * box.width + x];
+                    if (label != inBand) {
+                        boolean inside = polygon.contains(box.x + x, box.y + y);
+                        assertEquals(inside ? fixedInside : fixedOutside, label);
+                    }
+                }
+            }
+        }
+    }
+
+    @DisplayName("GIVEN a bright square slightly inside the polygon, WHEN cutting, THEN the outline "
+            + "has one segment starting near each control point, AND only links touching the band "
+            + "are weighed")
+    @Test
+    void testCutWeighsBandOnly() {
+        BufferedImage img = new BufferedImage(100, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(24, 24, 53, 53);
+        g.dispose();
+        ImageGraph graph = new ImageGraph(img);
+        Weigher<ImageEdge> weigher = ScissorsWeights.makeWeigher("CrossGradMono", graph);
+        AtomicInteger weighed = new AtomicInteger();
+        Weigher<ImageEdge> counting = e -> {
+            weighed.incrementAndGet();
+            return weigher.weight(e);
+        };
+
+        Cut cut = cut(graph, counting, square, new AtomicBoolean());
+        assertNotNull(cut.segments());
+        assertEquals(square.size(), cut.segments().size());
+        for (int i = 0; i < square.size(); ++i) {
+            assertTrue(square.get(i).distance(cut.segments().get(i).start()) <= 3);
+        }
+
+        // Each link between neighbors, at least one of which is in the band, is weighed at most
+        //  once (links leaving the box around the band are not weighed at all)
+        byte[] labels = bandLabels(square, new Rectangle(0, 0, 100, 100));
+        int links = 0;
+        for (int y = 0; y < 100; ++y) {
+            for (int x = 0; x < 100; ++x) {
+                int i = y * 100 + x;
+                if (x + 1 < 100 && (labels[i] == inBand || labels[i + 1] == inBand)) {
+                    links += 1;
+                }
+                if (y + 1 < 100 && (labels[i] == inBand || labels[i + 100] == inBand)) {
+                    links += 1;
+                }
+            }
+        }
+        assertTrue(weighed.get() <= links);
+    }
+}
@@ -0,0 +1,87 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Point;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test suite for `ImageGraph` and its vertices' direction conventions.
+ */
+class ImageGraphTest {
+
+    /**
+     * Return the number of edges leaving the pixel at (`x`, `y`) in `graph`.
+     */
+    static int outDegree(ImageGraph graph, int x, int y) {
+        int count = 0;
+        for (ImageEdge e : graph.vertexAt(new Point(x, y)).outgoingEdges()) {
+            count += 1;
+        }
+        return count;
+    }
+
+    @DisplayName("WHEN the opposite of the opposite of any of the 16 directions is taken, THEN "
+            + "it is that direction, AND the opposite direction's offsets are negated")
+    @Test
+    void testOppositeInvolution() {
+        for (int dir = 0; dir < 16; ++dir) {
+            int back = ImageVertex.opposite(dir);
+            assertNotEquals(dir, back);
+            assertEquals(dir, ImageVertex.opposite(back));
+            assertEquals(-ImageVertex.dx(dir), ImageVertex.dx(back));
+            assertEquals(-ImageVertex.dy(dir), ImageVertex.dy(back));
+        }
+    }
+
+    @DisplayName("GIVEN a 16-connected graph, WHEN knight moves are checked at pixels one away "
+            + "from the image's edges, THEN only those landing inside the image are valid")
+    @Test
+    void testKnightBounds() {
+        ImageGraph graph = new ImageGraph(5, 4, Connectivity.SIXTEEN);
+        for (int y = 0; y < 4; ++y) {
+            for (int x = 0; x < 5; ++x) {
+                ImageVertex v = graph.vertexAt(new Point(x, y));
+                for (int dir = 8; dir < 16; ++dir) {
+                    int nx = x + ImageVertex.dx(dir);
+                    int ny = y + ImageVertex.dy(dir);
+                    boolean inside = nx >= 0 && nx < 5 && ny >= 0 && ny < 4;
+                    assertEquals(inside, v.validDir(dir), "(" + x + ", " + y + ") dir " + dir);
+                }
+            }
+        }
+        // Two-right-one-up from the second column of the top row leaves the image...
+        assertFalse(graph.vertexAt(new Point(1, 0)).validDir(8));
+        // ...but one-right-two-down does not
+        assertTrue(graph.vertexAt(new Point(1, 0)).validDir(14));
+        // Two-left-one-up from the second pixel of the second row leaves it too
+        assertFalse(graph.vertexAt(new Point(1, 1)).validDir(11));
+    }
+
+    @DisplayName("GIVEN graphs with each connectivity, WHEN edges leaving interior, edge, and "
+            + "corner pixels are counted, THEN there are at most 4, 8, or 16 of them, AND only "
+            + "the connectivity's own directions are valid")
+    @Test
+    void testConnectivityDegrees() {
+        int[][] expected = {
+                // interior, top edge, corner
+                {4, 3, 2},
+                {8, 5, 3},
+                {16, 9, 5},
+        };
+        Connectivity[] connectivities = {Connectivity.FOUR, Connectivity.EIGHT,
+                Connectivity.SIXTEEN};
+        for (int i = 0; i < connectivities.length; ++i) {
+            ImageGraph graph = new ImageGraph(7, 7, connectivities[i]);
+            assertEquals(expected[i][0], outDegree(graph, 3, 3));
+            assertEquals(expected[i][1], outDegree(graph, 3, 0));
+            assertEquals(expected[i][2], outDegree(graph, 0, 0));
+            assertEquals(expected[i][0], connectivities[i].directions.length);
+            ImageVertex center = graph.vertexAt(new Point(3, 3));
+            for (int dir = 0; dir < 16; ++dir) {
+                assertEquals(connectivities[i].includes(dir), center.validDir(dir));
+            }
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import graph.Weigher;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test suite for `ImagePyramid`.
+ */
+class ImagePyramidTest {
+
+    /**
+     * Return a 200x150 black image with white circles, whose edges make paths worth finding.
+     */
+    static BufferedImage circlesImage() {
+        BufferedImage img = new BufferedImage(200, 150, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillOval(20, 20, 70, 70);
+        g.fillOval(110, 40, 60, 90);
+        g.dispose();
+        return img;
+    }
+
+    @DisplayName("GIVEN a released query that has already found a path, WHEN it is acquired again "
+            + "and finds another, THEN that path matches the one found by a fresh query")
+    @Test
+    void testReusedQuery() {
+        ImageGraph graph = new ImageGraph(circlesImage());
+        Weigher<ImageEdge> weigher = ScissorsWeights.makeWeigher("CrossGradMono", graph);
+        ImagePyramid pyramid = new ImagePyramid(graph, weigher, 32, 2);
+        assertTrue(pyramid.levelCount() > 2);
+
+        ImagePyramid.Query used = pyramid.acquireQuery();
+        assertNotNull(used.pathBetween(graph.idAt(new Point(20, 55)),
+                graph.idAt(new Point(90, 55))));
+        pyramid.release(used);
+        ImagePyramid.Query fresh = pyramid.acquireQuery();
+        assertSame(used, fresh);
+        ImagePyramid.Query other = pyramid.acquireQuery();
+        assertNotSame(used, other);
+
+        int srcId = graph.idAt(new Point(140, 40));
+        int dstId = graph.idAt(new Point(140, 130));
+        List<Integer> reused = fresh.pathBetween(srcId, dstId);
+        List<Integer> expected = other.pathBetween(srcId, dstId);
+        assertEquals(expected, reused);
+        assertEquals(other.settledCount(), fresh.settledCount());
+    }
+}
@@ -0,0 +1,57 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import javax.imageio.ImageIO;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test suite for `ImportedCostWeigher`.
+ */
+class ImportedCostWeigherTest {
+
+    /**
+     * Write `img` to a new temporary PNG file, which is deleted when the JVM exits, and return
+     * its path.
+     */
+    static Path writePng(BufferedImage img) throws IOException {
+        Path file = Files.createTempFile("costs", ".png");
+        file.toFile().deleteOnExit();
+        ImageIO.write(img, "png", file.toFile());
+        return file;
+    }
+
+    @DisplayName("GIVEN an 8-bit grayscale PNG cost map, WHEN it is loaded, THEN each edge is "
+            + "weighed by the mean of its end pixels' costs, scaled to 16 bits and back")
+    @Test
+    void testGrayPng() throws IOException {
+        BufferedImage map = new BufferedImage(3, 2, BufferedImage.TYPE_BYTE_GRAY);
+        map.getRaster().setSample(0, 0, 0, 255);
+        map.getRaster().setSample(1, 0, 0, 255);
+        ImportedCostWeigher weigher = ImportedCostWeigher.load(writePng(map), 3, 2);
+        ImageGraph graph = new ImageGraph(3, 2, Connectivity.FOUR);
+        // Right from (0, 0) to (1, 0): both costly
+        assertEquals(255, weigher.weight(new ImageEdge(0, 1, 0)));
+        // Right from (1, 0) to (2, 0): one costly
+        assertEquals(128, weigher.weight(new ImageEdge(1, 2, 0)));
+        // Right from (0, 1) to (1, 1): neither
+        assertEquals(0, weigher.weight(
+                new ImageEdge(graph.idAt(new Point(0, 1)), graph.idAt(new Point(1, 1)), 0)));
+    }
+
+    @DisplayName("GIVEN an RGB PNG of the right size, WHEN it is loaded as a cost map, THEN an "
+            + "IOException is thrown rather than reading costs from one of its channels")
+    @Test
+    void testColorPngRejected() throws IOException {
+        BufferedImage map = new BufferedImage(3, 2, BufferedImage.TYPE_INT_RGB);
+        map.setRGB(0, 0, 0xff0000);
+        Path file = writePng(map);
+        assertThrows(IOException.class, () -> ImportedCostWeigher.load(file, 3, 2));
+    }
+}
@@ -0,0 +1,276 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static selector.SelectionModel.SelectionState.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import javax.swing.SwingUtilities;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import selector.PolyLine;
+
+/**
+ * A test suite for `ScissorsSelectionModel`.
+ */
+class ScissorsSelectionModelTest {
+
+    // Note: Models are driven from the EDT (as the app does), since their workers report back on
+    //  it.  They are constructed with `notifyOnEdt=false` so that listeners are notified at once.
+
+    /**
+     * Return a 40x30 black image with a white square at x in [10..29], y in [5..24].
+     */
+    static BufferedImage squareImage() {
+        BufferedImage img = new BufferedImage(40, 30, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(10, 5, 20, 20);
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Occupy every search thread until the returned latch is counted down, so that searches
+     * submitted in the meantime stay PROCESSING.  Returns once all threads are occupied.
+     */
+    static CountDownLatch holdSearches() throws InterruptedException {
+        int threads = Runtime.getRuntime().availableProcessors();
+        CountDownLatch started = new CountDownLatch(threads);
+        CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < threads; ++i) {
+            ScissorsSelectionModel.interactiveSearches.execute(() -> {
+                started.countDown();
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            });
+        }
+        started.await();
+        return release;
+    }
+
+    /**
+     * Run `action` on the EDT and wait for it to finish, rethrowing any assertion it fails.
+     */
+    static void onEdt(Runnable action) throws Exception {
+        Throwable[] failure = new Throwable[1];
+        SwingUtilities.invokeAndWait(() -> {
+            try {
+                action.run();
+            } catch (Throwable e) {
+                failure[0] = e;
+            }
+        });
+        if (failure[0] instanceof Error error) {
+            throw error;
+        } else if (failure[0] != null) {
+            throw new RuntimeException(failure[0]);
+        }
+    }
+
+    /**
+     * Wait (polling the EDT) until `model` is no longer PROCESSING, failing if that takes more
+     * than 10 seconds.
+     */
+    static void awaitIdle(ScissorsSelectionModel model) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        boolean[] processing = {true};
+        while (processing[0]) {
+            assertTrue(System.nanoTime() < deadline, "processing did not finish");
+            Thread.sleep(10);
+            onEdt(() -> processing[0] = model.state() == PROCESSING);
+        }
+    }
+
+    @DisplayName("GIVEN a model PROCESSING its start point, WHEN a point is queued, a finish is "
+            + "queued, and the finish is undone, THEN listeners are notified that the 'state' "
+            + "property has changed each time, AND whether the selection can be finished follows "
+            + "the queue")
+    @Test
+    void testQueueNotifies() throws Exception {
+        CountDownLatch release = holdSearches();
+        ScissorsSelectionModel model = new ScissorsSelectionModel("CrossGradMono", false);
+        List<String> events = new ArrayList<>();
+        try {
+            onEdt(() -> {
+                model.setImage(squareImage());
+                model.addPoint(new Point(10, 5));
+                assertEquals(PROCESSING, model.state());
+                model.addPropertyChangeListener(e -> events.add(e.getPropertyName()));
+
+                model.addPoint(new Point(29, 5));
+                assertEquals(List.of("state"), events);
+                assertTrue(model.canFinishSelection());
+
+                model.finishSelection();
+                assertEquals(List.of("state", "state"), events);
+                assertFalse(model.canFinishSelection());
+                assertFalse(model.canAddPoint());
+
+                model.undo();
+                assertEquals(List.of("state", "state", "state"), events);
+                assertEquals(PROCESSING, model.state());
+                assertTrue(model.canFinishSelection());
+            });
+        } finally {
+            release.countDown();
+        }
+        awaitIdle(model);
+        onEdt(model::reset);
+    }
+
+    @DisplayName("GIVEN a model whose search has not started yet, WHEN processing is cancelled, "
+            + "THEN the model leaves PROCESSING without waiting for a search thread")
+    @Test
+    void testCancelBeforeStart() throws Exception {
+        CountDownLatch release = holdSearches();
+        ScissorsSelectionModel model = new ScissorsSelectionModel("CrossGradMono", false);
+        try {
+            onEdt(() -> {
+                model.setImage(squareImage());
+                model.addPoint(new Point(10, 5));
+                model.cancelProcessing();
+            });
+            awaitIdle(model);
+            onEdt(() -> assertEquals(NO_SELECTION, model.state()));
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @DisplayName("GIVEN a model PROCESSING its start point, WHEN a point and a finish are queued, "
+            + "THEN once processing is done the point is added AND the selection is finished")
+    @Test
+    void testQueueApplied() throws Exception {
+        CountDownLatch release = holdSearches();
+        ScissorsSelectionModel model = new ScissorsSelectionModel("CrossGradMono", false);
+        Point start = new Point(10, 5);
+        Point corner = new Point(29, 24);
+        try {
+            onEdt(() -> {
+                model.setImage(squareImage());
+                model.addPoint(start);
+                model.addPoint(corner);
+                model.finishSelection();
+            });
+        } finally {
+            release.countDown();
+        }
+        awaitIdle(model);
+        onEdt(() -> {
+            assertEquals(SELECTED, model.state());
+            assertEquals(2, model.selection().size());
+            assertEquals(start, model.selection().getFirst().start());
+            assertEquals(corner, model.selection().getFirst().end());
+            assertEquals(start, model.selection().getLast().end());
+        });
+    }
+
+    @DisplayName("GIVEN a finished selection, WHEN it is re-routed (twice, the second time after "
+            + "landmarks have had time to be precomputed), THEN listeners are notified of the new "
+            + "selection each time, AND its segments still connect the same control points")
+    @Test
+    void testRerouteSelection() throws Exception {
+        ScissorsSelectionModel model = new ScissorsSelectionModel("CrossGradMono", false);
+        List<Point> points = List.of(new Point(10, 5), new Point(29, 5), new Point(29, 24));
+        onEdt(() -> model.setImage(squareImage()));
+        for (Point p : points) {
+            onEdt(() -> model.addPoint(p));
+            awaitIdle(model);
+        }
+        onEdt(model::finishSelection);
+        awaitIdle(model);
+
+        List<String> events = new ArrayList<>();
+        onEdt(() -> model.addPropertyChangeListener(e -> events.add(e.getPropertyName())));
+        for (int attempt = 0; attempt < 2; ++attempt) {
+            Thread.sleep(200);
+            onEdt(model::rerouteSelection);
+            awaitIdle(model);
+            onEdt(() -> {
+                assertEquals(SELECTED, model.state());
+                assertTrue(events.contains("selection"));
+                List<PolyLine> selection = model.selection();
+                assertEquals(points.size(), selection.size());
+                for (int i = 0; i < points.size(); ++i) {
+                    assertEquals(points.get(i), selection.get(i).start());
+                    assertEquals(points.get((i + 1) % points.size()), selection.get(i).end());
+                }
+            });
+            events.clear();
+        }
+    }
+
+    @DisplayName("GIVEN a model SELECTING with complete paths, WHEN costs are painted across the "
+            + "live wire, THEN the paths are repaired in the background, AND once they are, "
+            + "listeners are notified again AND the live wire detours around the painted pixels")
+    @Test
+    void testPaintRepairsInBackground() throws Exception {
+        ScissorsSelectionModel model = new ScissorsSelectionModel("CrossGradMono", false);
+        Point end = new Point(29, 5);
+        onEdt(() -> {
+            model.setImage(squareImage());
+            model.addPoint(new Point(10, 5));
+        });
+        awaitIdle(model);
+        PolyLine[] before = new PolyLine[1];
+        onEdt(() -> before[0] = model.liveWire(end));
+
+        List<String> events = new ArrayList<>();
+        onEdt(() -> {
+            model.addPropertyChangeListener(e -> events.add(e.getPropertyName()));
+            model.paintCost(new Point(20, 5), 2, 1000);
+            assertEquals(SELECTING, model.state());
+        });
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        boolean[] repaired = {false};
+        while (!repaired[0]) {
+            assertTrue(System.nanoTime() < deadline, "repair did not finish");
+            Thread.sleep(10);
+            onEdt(() -> repaired[0] = events.size() == 2);
+        }
+        onEdt(() -> {
+            assertEquals(List.of("costs", "costs"), events);
+            assertNotEquals(before[0], model.liveWire(end));
+        });
+    }
+
+    @DisplayName("GIVEN a model SELECTING, WHEN a grayscale cost map is imported, THEN the "
+            + "returned future completes once it is in use AND paths are found again with it, "
+            + "AND WHEN a color image is imported, THEN the future fails with an IOException")
+    @Test
+    void testImportCostMap() throws Exception {
+        ScissorsSelectionModel model = new ScissorsSelectionModel("CrossGradMono", false);
+        onEdt(() -> {
+            model.setImage(squareImage());
+            model.addPoint(new Point(10, 5));
+        });
+        awaitIdle(model);
+        Path gray = ImportedCostWeigherTest.writePng(
+                new BufferedImage(40, 30, BufferedImage.TYPE_BYTE_GRAY));
+        List<CompletableFuture<Void>> imports = new ArrayList<>();
+        onEdt(() -> imports.add(model.importCostMap(gray)));
+        imports.getFirst().get(10, TimeUnit.SECONDS);
+        awaitIdle(model);
+        onEdt(() -> assertEquals(SELECTING, model.state()));
+
+        Path color = ImportedCostWeigherTest.writePng(squareImage());
+        onEdt(() -> imports.add(model.importCostMap(color)));
+        ExecutionException e = assertThrows(ExecutionException.class,
+                () -> imports.getLast().get(10, TimeUnit.SECONDS));
+        assertTrue(e.getCause() instanceof IOException);
+    }
+}
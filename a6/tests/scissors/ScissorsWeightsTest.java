@@ -0,0 +1,121 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import graph.Weigher;
+import java.awt.image.BufferedImage;
+import java.util.Random;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test suite for `ScissorsWeights`.
+ */
+class ScissorsWeightsTest {
+
+    @DisplayName("GIVEN a vertical black-to-white step, WHEN the cross gradient of a knight move "
+            + "crossing the step's columns is computed, THEN it is the full step scaled by the "
+            + "move's length, AND a knight move along a uniform area has none")
+    @Test
+    void testKnightCrossGradStep() {
+        ScissorsWeights.Intensity step = (x, y) -> (x >= 2) ? 255 : 0;
+        // One-right-two-up from (1, 2): pixels (2, 1) and (2, 2) lie on one side, (1, 0) and (1, 1)
+        //  on the other
+        int expected = (int) (510 * Math.sqrt(5) / 4);
+        assertEquals(expected, ScissorsWeights.crossGrad(step, 5, 5, 1, 2, 9));
+        // Two-right-one-down from (2, 2) stays within the white half
+        assertEquals(0, ScissorsWeights.crossGrad(step, 5, 5, 2, 2, 15));
+    }
+
+    @DisplayName("GIVEN an image of varied intensities, WHEN the cross gradient of every knight "
+            + "move is computed, THEN it is the same from either end of the edge, AND it is "
+            + "non-negative and at most `maxCrossGrad()`")
+    @Test
+    void testKnightCrossGradSymmetric() {
+        int width = 6;
+        int height = 5;
+        ScissorsWeights.Intensity img = (x, y) -> (37 * x * x + 91 * y + 13 * x * y) % 256;
+        ImageGraph graph = new ImageGraph(width, height, Connectivity.SIXTEEN);
+        for (int id = 0; id < graph.vertexCount(); ++id) {
+            ImageVertex v = graph.getVertex(id);
+            for (int dir = 8; dir < 16; ++dir) {
+                if (!v.validDir(dir)) {
+                    continue;
+                }
+                ImageVertex n = graph.getVertex(v.neighborId(dir));
+                int forward = ScissorsWeights.crossGrad(img, width, height, v.x(), v.y(), dir);
+                int backward = ScissorsWeights.crossGrad(img, width, height, n.x(), n.y(),
+                        ImageVertex.opposite(dir));
+                assertEquals(forward, backward);
+                assertTrue(forward >= 0 && forward <= ScissorsWeights.maxCrossGrad(dir));
+            }
+        }
+    }
+
+    /**
+     * Return a `width` x `height` image of type `type` whose pixels are the colors in `rgbs`, in
+     * raster order.
+     */
+    static BufferedImage image(int type, int width, int height, int[] rgbs) {
+        BufferedImage img = new BufferedImage(width, height, type);
+        img.setRGB(0, 0, width, height, rgbs, 0, width);
+        return img;
+    }
+
+    /**
+     * Assert that the "Color" weigher gives every edge of a 16-connected graph of `expected`'s
+     * image the same weight as it does the corresponding edge for `actual`'s image.  The images
+     * must have the same size.
+     */
+    static void assertSameColorWeights(BufferedImage expected, BufferedImage actual) {
+        ImageGraph expectedGraph = new ImageGraph(expected, Connectivity.SIXTEEN);
+        ImageGraph actualGraph = new ImageGraph(actual, Connectivity.SIXTEEN);
+        Weigher<ImageEdge> expectedWeigher = ScissorsWeights.makeWeigher("Color", expectedGraph);
+        Weigher<ImageEdge> actualWeigher = ScissorsWeights.makeWeigher("Color", actualGraph);
+        for (int id = 0; id < expectedGraph.vertexCount(); ++id) {
+            for (ImageEdge e : expectedGraph.getVertex(id).outgoingEdges()) {
+                assertEquals(expectedWeigher.weight(e), actualWeigher.weight(e), e.toString());
+            }
+        }
+    }
+
+    @DisplayName("GIVEN a small RGB image stored as packed ints, as interleaved bytes, and in a "
+            + "type read band by band from its raster, WHEN the \"Color\" weigher weighs every "
+            + "edge, THEN the weights read from packed pixels match those read from the raster")
+    @Test
+    void testPackedMatchesRasterRgb() {
+        int width = 12;
+        int height = 9;
+        Random random = new Random(45);
+        int[] rgbs = new int[width * height];
+        for (int i = 0; i < rgbs.length; ++i) {
+            rgbs[i] = random.nextInt(1 << 24);
+        }
+        BufferedImage raster = image(BufferedImage.TYPE_INT_BGR, width, height, rgbs);
+        assertNull(PackedPixels.of(raster, true));
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_3BYTE_BGR}) {
+            BufferedImage packed = image(type, width, height, rgbs);
+            assertNotNull(PackedPixels.of(packed, true));
+            assertSameColorWeights(raster, packed);
+        }
+    }
+
+    @DisplayName("GIVEN a small gray image stored as bytes (read from its raster) and as gray RGB "
+            + "packed ints, WHEN the \"Color\" weigher weighs every edge, THEN the weights read "
+            + "from packed pixels match those read from the raster")
+    @Test
+    void testPackedMatchesRasterGray() {
+        int width = 12;
+        int height = 9;
+        Random random = new Random(45);
+        BufferedImage raster = new BufferedImage(width, height, BufferedImage.TYPE_BYTE_GRAY);
+        int[] rgbs = new int[width * height];
+        for (int i = 0; i < rgbs.length; ++i) {
+            int level = random.nextInt(256);
+            raster.getRaster().setSample(i % width, i / width, 0, level);
+            rgbs[i] = level * 0x010101;
+        }
+        assertNull(PackedPixels.of(raster, true));
+        assertSameColorWeights(raster, image(BufferedImage.TYPE_INT_RGB, width, height, rgbs));
+    }
+}
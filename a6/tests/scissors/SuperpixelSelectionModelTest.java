@@ -0,0 +1,107 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static scissors.ScissorsSelectionModelTest.onEdt;
+import static selector.SelectionModel.SelectionState.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.BooleanSupplier;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import selector.PolyLine;
+
+/**
+ * A test suite for `SuperpixelSelectionModel`.
+ */
+class SuperpixelSelectionModelTest {
+
+    /**
+     * Return an 80x60 black image with a white rectangle at x in [20..59], y in [15..44].
+     */
+    static BufferedImage rectangleImage() {
+        BufferedImage img = new BufferedImage(80, 60, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(20, 15, 40, 30);
+        g.dispose();
+        return img;
+    }
+
+    /**
+     * Wait (polling the EDT) until `done` returns true, failing if that takes more than 10
+     * seconds.
+     */
+    static void await(BooleanSupplier done) throws Exception {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        boolean[] finished = {false};
+        while (!finished[0]) {
+            assertTrue(System.nanoTime() < deadline, "timed out");
+            Thread.sleep(10);
+            onEdt(() -> finished[0] = done.getAsBoolean());
+        }
+    }
+
+    @DisplayName("GIVEN a model whose image has been preprocessed, WHEN a point is added, THEN "
+            + "the coarse segment is added at once, AND it is later replaced by a refined pixel "
+            + "path between the same points, notifying listeners")
+    @Test
+    void testRefinedInBackground() throws Exception {
+        SuperpixelSelectionModel model = new SuperpixelSelectionModel("CrossGradMono", false);
+        Point start = new Point(20, 15);
+        Point end = new Point(59, 44);
+        onEdt(() -> {
+            model.setImage(rectangleImage());
+            model.addPoint(start);
+        });
+        await(() -> model.state() == SELECTING);
+
+        List<String> events = new ArrayList<>();
+        PolyLine[] coarse = new PolyLine[1];
+        onEdt(() -> {
+            model.addPropertyChangeListener(e -> events.add(e.getPropertyName()));
+            model.addPoint(end);
+            coarse[0] = model.selection().getLast();
+            assertEquals(List.of("selection"), events);
+        });
+        await(() -> model.selection().getLast() != coarse[0]);
+        onEdt(() -> {
+            assertEquals(List.of("selection", "selection"), events);
+            PolyLine refined = model.selection().getLast();
+            assertEquals(start, refined.start());
+            assertEquals(end, refined.end());
+        });
+    }
+
+    @DisplayName("GIVEN a segment still being refined, WHEN it is undone, THEN its refinement "
+            + "does not reappear in the selection")
+    @Test
+    void testUndoneRefinementDropped() throws Exception {
+        SuperpixelSelectionModel model = new SuperpixelSelectionModel("CrossGradMono", false);
+        onEdt(() -> {
+            model.setImage(rectangleImage());
+            model.addPoint(new Point(20, 15));
+        });
+        await(() -> model.state() == SELECTING);
+        onEdt(() -> {
+            model.addPoint(new Point(59, 44));
+            model.undo();
+            assertTrue(model.selection().isEmpty());
+        });
+        // Refinements run in order, so once a later one has arrived, the undone one has too
+        PolyLine[] coarse = new PolyLine[1];
+        onEdt(() -> {
+            model.addPoint(new Point(59, 15));
+            coarse[0] = model.selection().getLast();
+        });
+        await(() -> model.selection().getLast() != coarse[0]);
+        onEdt(() -> {
+            assertEquals(1, model.selection().size());
+            assertEquals(new Point(59, 15), model.selection().getFirst().end());
+        });
+    }
+}
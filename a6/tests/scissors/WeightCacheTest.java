@@ -0,0 +1,128 @@
+package scissors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import graph.Weigher;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test suite for `WeightCache`.
+ */
+class WeightCacheTest {
+
+    /**
+     * Return a new temporary directory, to be deleted when the JVM exits.
+     */
+    static Path tempDirectory() throws IOException {
+        Path dir = Files.createTempDirectory("weights");
+        dir.toFile().deleteOnExit();
+        return dir;
+    }
+
+    /**
+     * Store the weights `weigher` gives the edges of `graph` in `cache` as the table with key
+     * `key`, running the store task to completion on this thread.
+     */
+    static void store(WeightCache cache, String key, ImageGraph graph, Weigher<ImageEdge> weigher) {
+        cache.storeTask(key, graph, weigher, new SearchExecutor(1)).run();
+    }
+
+    @DisplayName("GIVEN weights stored in a cache, WHEN they are loaded, THEN every edge of the "
+            + "graph is given the same weight as by the weigher they were stored from")
+    @Test
+    void testRoundTrip() throws IOException {
+        ImageGraph graph = new ImageGraph(ImagePyramidTest.circlesImage(), Connectivity.EIGHT);
+        Weigher<ImageEdge> weigher = ScissorsWeights.makeWeigher("CrossGradMono", graph);
+        WeightCache cache = new WeightCache(tempDirectory(), Long.MAX_VALUE);
+        store(cache, "circles", graph, weigher);
+
+        Weigher<ImageEdge> loaded = cache.load("circles", graph);
+        assertNotNull(loaded);
+        for (int id = 0; id < graph.vertexCount(); ++id) {
+            for (ImageEdge e : graph.getVertex(id).outgoingEdges()) {
+                assertEquals(weigher.weight(e), loaded.weight(e));
+            }
+        }
+        assertNull(cache.load("other", graph));
+        assertNull(cache.load("circles", new ImageGraph(ImagePyramidTest.circlesImage(),
+                Connectivity.FOUR)));
+    }
+
+    @DisplayName("GIVEN a cache with room for two tables holding two, WHEN the older is loaded "
+            + "and a third is stored, THEN the least recently used table is evicted")
+    @Test
+    void testEvictsLeastRecentlyUsed() throws IOException, InterruptedException {
+        ImageGraph graph = new ImageGraph(10, 10, Connectivity.FOUR);
+        Weigher<ImageEdge> weigher = e -> e.dir();
+        Path dir = tempDirectory();
+        long tableSize = 24 + 2 * 4 * 100;
+        WeightCache cache = new WeightCache(dir, 2 * tableSize);
+        store(cache, "a", graph, weigher);
+        store(cache, "b", graph, weigher);
+        Files.setLastModifiedTime(dir.resolve("a.weights"),
+                FileTime.from(Instant.now().minus(Duration.ofMinutes(2))));
+        Files.setLastModifiedTime(dir.resolve("b.weights"),
+                FileTime.from(Instant.now().minus(Duration.ofMinutes(1))));
+        assertNotNull(cache.load("a", graph));
+
+        store(cache, "c", graph, weigher);
+        assertNotNull(cache.load("a", graph));
+        assertNull(cache.load("b", graph));
+        assertNotNull(cache.load("c", graph));
+    }
+
+    @DisplayName("GIVEN a table being stored, WHEN the same table is stored again, THEN the "
+            + "second store awaits the first, which completes with a weigher reading the table")
+    @Test
+    void testOneStorePerKey() throws IOException, InterruptedException {
+        ImageGraph graph = new ImageGraph(10, 10, Connectivity.FOUR);
+        Weigher<ImageEdge> weigher = e -> e.dir();
+        WeightCache cache = new WeightCache(tempDirectory(), Long.MAX_VALUE);
+        SearchExecutor executor = new SearchExecutor(1);
+        // Keep the executor's only thread busy so that the first store is still pending
+        CountDownLatch release = new CountDownLatch(1);
+        executor.submit(() -> {
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }, SearchExecutor.Priority.BACKGROUND);
+
+        CompletableFuture<Weigher<ImageEdge>> first = cache.store("a", graph, weigher, executor);
+        CompletableFuture<Weigher<ImageEdge>> second = cache.store("a", graph, e -> 1, executor);
+        assertSame(first, second);
+        release.countDown();
+        Weigher<ImageEdge> table = first.join();
+        assertNotNull(table);
+        for (int id = 0; id < graph.vertexCount(); ++id) {
+            for (ImageEdge e : graph.getVertex(id).outgoingEdges()) {
+                assertEquals(weigher.weight(e), table.weight(e));
+            }
+        }
+        assertNotSame(first, cache.store("a", graph, weigher, executor));
+    }
+
+    @DisplayName("GIVEN a cache directory holding an old and a recent temporary file, WHEN a "
+            + "cache is opened on it, THEN only the old one is deleted")
+    @Test
+    void testSweepsStaleTemporaryFiles() throws IOException {
+        Path dir = tempDirectory();
+        Path stale = Files.createFile(dir.resolve("stale.tmp"));
+        Files.setLastModifiedTime(stale, FileTime.from(Instant.now().minus(Duration.ofDays(1))));
+        Path recent = Files.createFile(dir.resolve("recent.tmp"));
+
+        new WeightCache(dir, Long.MAX_VALUE);
+        assertFalse(Files.exists(stale));
+        assertTrue(Files.exists(recent));
+    }
+}
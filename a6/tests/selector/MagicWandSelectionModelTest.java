@@ -0,0 +1,90 @@
+package selector;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static selector.SelectionModel.SelectionState.*;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.util.List;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+/**
+ * A test suite for `MagicWandSelectionModel`.
+ */
+class MagicWandSelectionModelTest {
+
+    /**
+     * Return a 200x100 black image with a white rectangle at x in [20..149], y in [30..59], which
+     * has a black hole at x in [60..69], y in [40..49].
+     */
+    static BufferedImage rectangleImage() {
+        BufferedImage img = new BufferedImage(200, 100, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = img.createGraphics();
+        g.setColor(Color.WHITE);
+        g.fillRect(20, 30, 130, 30);
+        g.setColor(Color.BLACK);
+        g.fillRect(60, 40, 10, 10);
+        g.dispose();
+        return img;
+    }
+
+    @DisplayName("WHEN a pixel in a uniform region is clicked, THEN the region is filled, "
+            + "including any hole in it, AND nothing outside it is filled")
+    @Test
+    void testFill() {
+        BufferedImage img = rectangleImage();
+        boolean[] region = MagicWandSelectionModel.fill(img, new Point(100, 45), 32);
+        for (int y = 0; y < img.getHeight(); ++y) {
+            for (int x = 0; x < img.getWidth(); ++x) {
+                boolean inRect = x >= 20 && x < 150 && y >= 30 && y < 60;
+                boolean inHole = x >= 60 && x < 70 && y >= 40 && y < 50;
+                assertEquals(inRect && !inHole, region[y * img.getWidth() + x]);
+            }
+        }
+    }
+
+    @DisplayName("GIVEN a model in the NO_SELECTION state, WHEN a point is added, THEN the model "
+            + "transitions to SELECTED, AND its selection is a closed path around the region of "
+            + "similar color containing that point")
+    @Test
+    void testSelectRegion() {
+        SelectionModel model = new MagicWandSelectionModel(false);
+        model.setImage(rectangleImage());
+        PclTester observer = new PclTester();
+        model.addPropertyChangeListener(observer);
+
+        model.addPoint(new Point(100, 45));
+
+        observer.assertChangedTo("state", SELECTED);
+        observer.assertChanged("selection");
+        List<PolyLine> selection = model.selection();
+        assertEquals(new Point(20, 30), selection.getFirst().start());
+        assertEquals(new Point(20, 30), selection.getLast().end());
+        for (int i = 1; i < selection.size(); ++i) {
+            assertEquals(selection.get(i - 1).end(), selection.get(i).start());
+        }
+        Polygon outline = PolyLine.makePolygon(selection);
+        assertEquals(new Rectangle(20, 30, 129, 29), outline.getBounds());
+    }
+
+    @DisplayName("WHEN a single isolated pixel is clicked, THEN the selection is that pixel")
+    @Test
+    void testSinglePixel() {
+        BufferedImage img = new BufferedImage(5, 5, BufferedImage.TYPE_INT_RGB);
+        img.setRGB(2, 2, 0xffffff);
+        SelectionModel model = new MagicWandSelectionModel(false);
+        model.setImage(img);
+
+        model.addPoint(new Point(2, 2));
+
+        assertEquals(SELECTED, model.state());
+        assertEquals(1, model.selection().size());
+        assertEquals(new Point(2, 2), model.selection().getFirst().start());
+        assertEquals(new Point(2, 2), model.selection().getFirst().end());
+    }
+}